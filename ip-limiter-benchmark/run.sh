@@ -0,0 +1,19 @@
+#!/usr/bin/env bash
+# 一键运行基准测试,结果输出到 results/ 目录
+#   ./run.sh                 完整运行: 名单匹配单线程, 限流器与切面按 1/4/16/64 线程, 均开启 GC profiler 统计分配速率
+#   ./run.sh <JMH参数>        直接透传给 JMH, 如 ./run.sh LimiterEngineBenchmark -t 8 -p keys=1
+set -euo pipefail
+cd "$(dirname "$0")"
+
+mvn -B -q -f ../pom.xml -P '!release',benchmark -DskipTests package -pl ip-limiter-benchmark -am
+
+if [ $# -gt 0 ]; then
+  exec java -jar target/benchmarks.jar "$@"
+fi
+
+mkdir -p results
+java -jar target/benchmarks.jar 'IpListMatcherBenchmark' -t 1 -prof gc -rf json -rff results/lists.json
+for threads in 1 4 16 64; do
+  java -jar target/benchmarks.jar 'LimiterEngineBenchmark|IpLimitAspectBenchmark' -t "$threads" -prof gc \
+    -rf json -rff "results/threads-$threads.json"
+done
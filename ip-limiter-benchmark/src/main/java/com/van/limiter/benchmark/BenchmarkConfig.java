@@ -0,0 +1,21 @@
+package com.van.limiter.benchmark;
+
+import com.van.limiter.core.annotation.EnableIpLimit;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.EnableAspectJAutoProxy;
+
+/**
+ * 基准测试使用的最小 Spring 容器
+ * @author van
+ */
+@Configuration
+@EnableIpLimit
+@EnableAspectJAutoProxy(proxyTargetClass = true)
+public class BenchmarkConfig {
+
+    @Bean
+    public LimitedService limitedService() {
+        return new LimitedService();
+    }
+}
@@ -0,0 +1,59 @@
+package com.van.limiter.benchmark;
+
+import com.van.limiter.core.annotation.IpLimit;
+import com.van.limiter.core.enums.LimitType;
+import com.van.limiter.core.util.IpKey;
+
+import java.util.Random;
+
+/**
+ * 基准测试共用的注解与测试数据
+ * @author van
+ */
+final class BenchmarkPolicies {
+    private BenchmarkPolicies() {}
+
+    static final String GROUP = "BENCHMARK_GROUP";
+
+    static final String WHITE_GROUP = "BENCHMARK_WHITE_GROUP";
+
+    @IpLimit(maxTimes = 100, groupName = GROUP)
+    static void limited() {
+    }
+
+    @IpLimit(limitType = LimitType.WHITE_LIST, whiteList = {}, groupName = WHITE_GROUP)
+    static void whiteListed() {
+    }
+
+    static IpLimit annotation(String methodName) {
+        try {
+            return BenchmarkPolicies.class.getDeclaredMethod(methodName).getAnnotation(IpLimit.class);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 固定种子的随机IPV4,保证多次运行的数据一致
+     * @param count 数量
+     * @param seed 种子
+     * @return ip
+     */
+    static String[] randomIps(int count, long seed) {
+        Random random = new Random(seed);
+        String[] ips = new String[count];
+        for (int i = 0; i < count; i++) {
+            int ip = random.nextInt();
+            ips[i] = (ip >>> 24) + "." + (ip >>> 16 & 0xFF) + "." + (ip >>> 8 & 0xFF) + "." + (ip & 0xFF);
+        }
+        return ips;
+    }
+
+    static IpKey[] toKeys(String[] ips) {
+        IpKey[] keys = new IpKey[ips.length];
+        for (int i = 0; i < ips.length; i++) {
+            keys[i] = IpKey.of(ips[i]);
+        }
+        return keys;
+    }
+}
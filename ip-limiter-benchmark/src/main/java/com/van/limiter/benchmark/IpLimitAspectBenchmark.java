@@ -0,0 +1,100 @@
+package com.van.limiter.benchmark;
+
+import com.van.limiter.core.exception.IpLimitException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 切面整体开销,含代理调用、IP解析、策略查找与限流器
+ * <ul>
+ *     <li>unlimited: 同一个代理对象上未被限流的方法,作为基线</li>
+ *     <li>permitted: 请求总是通过</li>
+ *     <li>rejected: 请求几乎总是被拒绝,包含异常的构建与抛出</li>
+ * </ul>
+ * clients=shared 时所有线程使用同一个IP, distinct 时每个线程使用不同的IP
+ * @author van
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IpLimitAspectBenchmark {
+
+    @Param({"shared", "distinct"})
+    public String clients;
+
+    private AnnotationConfigApplicationContext context;
+
+    private LimitedService service;
+
+    private final AtomicInteger threadIndex = new AtomicInteger();
+
+    @Setup
+    public void setUp() {
+        context = new AnnotationConfigApplicationContext(BenchmarkConfig.class);
+        service = context.getBean(LimitedService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * 每个压测线程绑定自己的请求
+     */
+    @State(Scope.Thread)
+    public static class RequestState {
+
+        @Setup
+        public void bind(IpLimitAspectBenchmark benchmark) {
+            MockHttpServletRequest request = new MockHttpServletRequest();
+            int index = "shared".equals(benchmark.clients) ? 1 : benchmark.threadIndex.incrementAndGet();
+            request.setRemoteAddr("10.0." + (index >>> 8 & 0xFF) + "." + (index & 0xFF));
+            RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        }
+
+        @TearDown
+        public void unbind() {
+            RequestContextHolder.resetRequestAttributes();
+        }
+    }
+
+    @Benchmark
+    public int unlimited(RequestState requestState) {
+        return service.unlimited(1);
+    }
+
+    @Benchmark
+    public int permitted(RequestState requestState) {
+        return service.permitted(1);
+    }
+
+    @Benchmark
+    public int rejected(RequestState requestState) {
+        try {
+            return service.rejected(1);
+        } catch (IpLimitException e) {
+            return -1;
+        }
+    }
+}
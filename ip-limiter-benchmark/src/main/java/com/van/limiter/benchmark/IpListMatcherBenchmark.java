@@ -0,0 +1,130 @@
+package com.van.limiter.benchmark;
+
+import com.van.limiter.core.annotation.IpLimit;
+import com.van.limiter.core.matcher.IpListMatcher;
+import com.van.limiter.core.util.IpKey;
+import com.van.limiter.core.util.IpLimitUtils;
+import com.van.limiter.core.util.IpUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 黑白名单匹配开销,名单由精确IP与CIDR各占一半组成,探测IP一半命中一半未命中
+ * <ul>
+ *     <li>compiledMatcher: 编译后的前缀树匹配,不含IP解析</li>
+ *     <li>compiledMatcherMiss / bloomMatcherMiss: 只探测未命中的IP,对比前缀树之前有无布隆过滤器(黑名单的典型场景)</li>
+ *     <li>ipInWhiteIpList: {@link IpLimitUtils} 对外接口,含IP解析</li>
+ *     <li>ipFuzzyMatch: 逐条调用 {@link IpUtils#ipFuzzyMatch(String, String)} 的原始实现,作为对照</li>
+ * </ul>
+ * @author van
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IpListMatcherBenchmark {
+
+    private static final int PROBES = 1024;
+
+    @Param({"10", "1000", "100000"})
+    public int size;
+
+    private List<String> rules;
+
+    private IpListMatcher matcher;
+
+    private IpListMatcher bloomMatcher;
+
+    private IpKey[] missKeys;
+
+    private String[] probeIps;
+
+    private IpKey[] probeKeys;
+
+    private AnnotationConfigApplicationContext context;
+
+    private IpLimitUtils ipLimitUtils;
+
+    private IpLimit whiteListed;
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        String[] ips = BenchmarkPolicies.randomIps(size, 7L);
+        rules = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            rules.add(i % 2 == 0 ? ips[i] : ips[i].substring(0, ips[i].lastIndexOf('.')) + ".0/24");
+        }
+        matcher = IpListMatcher.compile(rules);
+        bloomMatcher = IpListMatcher.compile(rules, 0.01);
+
+        Random random = new Random(11L);
+        String[] misses = BenchmarkPolicies.randomIps(PROBES, 13L);
+        probeIps = new String[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            probeIps[i] = i % 2 == 0 ? ips[random.nextInt(size) & ~1] : misses[i];
+        }
+        probeKeys = BenchmarkPolicies.toKeys(probeIps);
+        missKeys = BenchmarkPolicies.toKeys(misses);
+
+        context = new AnnotationConfigApplicationContext(BenchmarkConfig.class);
+        ipLimitUtils = context.getBean(IpLimitUtils.class);
+        ipLimitUtils.putWhiteIpGroup(BenchmarkPolicies.WHITE_GROUP, String.join(",", rules));
+        whiteListed = BenchmarkPolicies.annotation("whiteListed");
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public boolean compiledMatcher() {
+        return matcher.matches(probeKeys[next++ & (PROBES - 1)]);
+    }
+
+    @Benchmark
+    public boolean compiledMatcherMiss() {
+        return matcher.matches(missKeys[next++ & (PROBES - 1)]);
+    }
+
+    @Benchmark
+    public boolean bloomMatcherMiss() {
+        return bloomMatcher.matches(missKeys[next++ & (PROBES - 1)]);
+    }
+
+    @Benchmark
+    public boolean ipInWhiteIpList() {
+        return ipLimitUtils.ipInWhiteIpList(whiteListed, probeIps[next++ & (PROBES - 1)]);
+    }
+
+    @Benchmark
+    public boolean ipFuzzyMatch() {
+        String ip = probeIps[next++ & (PROBES - 1)];
+        for (String rule : rules) {
+            if (rule.indexOf('/') < 0 && IpUtils.ipFuzzyMatch(rule, ip)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,31 @@
+package com.van.limiter.benchmark;
+
+import com.van.limiter.core.annotation.IpLimit;
+import com.van.limiter.core.enums.CurrentLimiterType;
+
+/**
+ * 被限流的接口,用于测量切面整体开销
+ * @author van
+ */
+public class LimitedService {
+
+    /**
+     * 速率足够大,请求总是通过
+     */
+    @IpLimit(currentLimiter = CurrentLimiterType.TOKEN_BUCKET, maxTimes = 1e12, groupName = "BENCHMARK_PERMITTED")
+    public int permitted(int value) {
+        return value + 1;
+    }
+
+    /**
+     * 每秒只允许一次,请求几乎总是被拒绝
+     */
+    @IpLimit(currentLimiter = CurrentLimiterType.TOKEN_BUCKET, maxTimes = 1, groupName = "BENCHMARK_REJECTED")
+    public int rejected(int value) {
+        return value + 1;
+    }
+
+    public int unlimited(int value) {
+        return value + 1;
+    }
+}
@@ -0,0 +1,77 @@
+package com.van.limiter.benchmark;
+
+import com.van.limiter.core.engine.LimiterEngine;
+import com.van.limiter.core.engine.LimiterEngineRegistry;
+import com.van.limiter.core.engine.SlidingWindowCounterLimiterEngine;
+import com.van.limiter.core.engine.SlidingWindowLimiterEngine;
+import com.van.limiter.core.engine.TokenBucketLimiterEngine;
+import com.van.limiter.core.enums.LimitDecision;
+import com.van.limiter.core.matcher.CompiledIpLists;
+import com.van.limiter.core.policy.IpLimitPolicy;
+import com.van.limiter.core.util.IpKey;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 限流器本身的开销,不含切面与IP解析
+ * <ul>
+ *     <li>keys=1: 所有线程竞争同一个Key,线程数由 -t 指定</li>
+ *     <li>keys=131072: 高基数Key,主要体现状态存储的查找与插入开销</li>
+ * </ul>
+ * @author van
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LimiterEngineBenchmark {
+
+    @Param({"TOKEN_BUCKET", "SLIDING_WINDOW", "SLIDING_WINDOW_COUNTER"})
+    public String engine;
+
+    /**
+     * Key数量,需为2的幂
+     */
+    @Param({"1", "131072"})
+    public int keys;
+
+    private LimiterEngine limiterEngine;
+
+    private IpLimitPolicy policy;
+
+    private IpKey[] ipKeys;
+
+    @Setup
+    public void setUp() {
+        LimiterEngineRegistry registry = new LimiterEngineRegistry(Arrays.asList(new SlidingWindowLimiterEngine(),
+                new TokenBucketLimiterEngine(), new SlidingWindowCounterLimiterEngine()),
+                Collections.emptyList(), LimiterEngineBenchmark.class.getClassLoader());
+        limiterEngine = registry.getEngine(engine);
+        policy = IpLimitPolicy.compile(BenchmarkPolicies.annotation("limited"),
+                new CompiledIpLists(BenchmarkPolicies.GROUP, Collections.emptyList(), Collections.emptyList()), limiterEngine,
+                (groupId, windowNanos, maxTimes) -> null, () -> null);
+        ipKeys = BenchmarkPolicies.toKeys(BenchmarkPolicies.randomIps(keys, 42L));
+    }
+
+    @Benchmark
+    public LimitDecision tryAcquire() {
+        IpKey key = ipKeys[ThreadLocalRandom.current().nextInt() & (keys - 1)];
+        return limiterEngine.tryAcquire(key, policy, System.nanoTime());
+    }
+}
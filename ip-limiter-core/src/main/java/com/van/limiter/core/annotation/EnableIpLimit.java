@@ -1,6 +1,6 @@
 package com.van.limiter.core.annotation;
 
-import com.van.limiter.core.aspect.RateLimitAspectConfig;
+import com.van.limiter.core.aspect.IpLimitImportSelector;
 import org.springframework.context.annotation.Import;
 
 import java.lang.annotation.ElementType;
@@ -14,6 +14,13 @@ import java.lang.annotation.Target;
  */
 @Target(ElementType.TYPE)
 @Retention(RetentionPolicy.RUNTIME)
-@Import(RateLimitAspectConfig.class)
+@Import(IpLimitImportSelector.class)
 public @interface EnableIpLimit {
+
+    /**
+     * 是否开启前置过滤器模式,开启后 Controller 接口在过滤器链最前端完成限流,超限直接返回 429,名单拒绝返回 403
+     * 非 Controller 的方法仍由切面处理
+     * @return 是否开启
+     */
+    boolean filter() default false;
 }
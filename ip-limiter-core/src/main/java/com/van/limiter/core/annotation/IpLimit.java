@@ -0,0 +1,150 @@
+package com.van.limiter.core.annotation;
+
+import com.van.limiter.core.constant.IpLimitConstant;
+import com.van.limiter.core.engine.LimiterEngine;
+import com.van.limiter.core.enums.CurrentLimiterType;
+import com.van.limiter.core.enums.LimitTimeType;
+import com.van.limiter.core.enums.LimitType;
+
+import java.lang.annotation.*;
+
+/**
+ * 限流具体注解
+ * 可重复使用,叠加的多条规则需同时满足,如每秒10次且每小时500次且每天5000次:
+ * 叠加的规则在同一次判定中完成,同一 [IP,Group] 的各规则计数保存在同一条记录中,任一规则拒绝时不会占用其他规则的额度;
+ * 叠加时按滑动窗口计数器计算,各规则只取 {@link #maxTimes()}、{@link #unitTime()}、{@link #limitTimeType()},
+ * 其余属性以第一条为准,groupName 需相同;currentLimiter 只能为 SLIDING_WINDOW(按计数器计算) 或 SLIDING_WINDOW_COUNTER,
+ * 配置其他限流器、{@link #limiterEngine()} 或 {@link #burstCapacity()} 时启动报错
+ * @author van
+ */
+@Inherited
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Repeatable(IpLimits.class)
+public @interface IpLimit {
+
+    /**
+     * 限流器类型,默认采用滑动窗口限流器,可配置为令牌桶模式、滑动窗口计数器模式或并发数限制
+     * 需要自定义限流器时使用 {@link IpLimit#limiterEngine()}
+     * @return 限流器类型
+     */
+    CurrentLimiterType currentLimiter() default CurrentLimiterType.SLIDING_WINDOW;
+
+    /**
+     * 自定义限流器名称,对应 {@link LimiterEngine#name()},配置后忽略 {@link IpLimit#currentLimiter()}
+     * @return 限流器名称,为空时使用 currentLimiter
+     */
+    String limiterEngine() default "";
+
+    /**
+     * 限流组名称,用以分组限流,注解提供默认,该属性可自行维护
+     * 限流策略为IP下,对应分组分开进行限流统计,如果不需要分组则使用默认即可
+     * @return 限流组名称
+     */
+    String groupName() default IpLimitConstant.COMMON_LIMIT_GROUP;
+
+    /**
+     * 限流策略类型,策略类型同一Group下应当维护同一种
+     * DEFAULT 走默认限流策略,不考虑黑白名单参数
+     * LimitType.WHITE_LIST 只考虑白名单策略,非白名单的请求全部回绝
+     * LimitType.BLACK_LIST 只考虑黑名单策略,非黑名单请求不做限流措施
+     * LimitType.DEFAULT_WITH_WHITE_LIST 在默认限流策略的基础上,白名单内的IP不做限流
+     * LimitType.DEFAULT_WITH_BLACK_LIST 在默认限流策略的基础上,直接403黑名单
+     * LimitType.DEFAULT_WITH_WHITE_AND_BLACK_LIST 在默认限流策略的基础上,直接403黑名单,再让白名单内的IP直接通行
+     * @return 限流策略类型
+     */
+    LimitType limitType() default LimitType.DEFAULT;
+
+    /**
+     * 限流时间单位类型
+     * @return 毫秒,秒,分钟,小时,天
+     */
+    LimitTimeType limitTimeType() default LimitTimeType.SECOND;
+
+    /**
+     * 限流的单位时间长度
+     * @return 时间长度,单位由 {@link IpLimit#limitTimeType()} 决定
+     */
+    long unitTime() default 1;
+
+    /**
+     * 限流单位时间长度内的最多次数
+     * @return 最多次数
+     */
+    double maxTimes() default 10;
+
+    /**
+     * 同一 group 下所有IP在单位时间内的总次数上限,与单IP限流在同一次判定中完成,单IP限流通过后再扣减总量
+     * 用于保护下游的共享资源,时间窗口与单IP限流相同(固定窗口),同一 group 以首个解析的配置为准
+     * @return 总次数上限,小于等于0时不限制
+     */
+    double groupMaxTimes() default 0;
+
+    /**
+     * 等待模式: 超出限流时不直接拒绝,而是预约之后的许可,最多等待该时长(毫秒),等待期间不占用容器线程
+     * 只对返回 DeferredResult 或 CompletableFuture/CompletionStage 的方法生效,其他方法仍为超限拒绝;
+     * 仅支持 {@link CurrentLimiterType#TOKEN_BUCKET} 等支持预约的限流器,前置过滤器模式下不生效
+     * @return 最长等待时间,小于等于0时不等待
+     */
+    long maxWaitMillis() default 0;
+
+    /**
+     * 等待模式下同一IP最多排队等待的请求数,与 {@link IpLimit#maxWaitMillis()} 共同限制最长等待时间
+     * @return 排队请求数上限
+     */
+    int waitQueueSize() default 16;
+
+    /**
+     * 自动封禁阈值: 单IP在一个时间窗口({@link IpLimit#unitTime()})内被限流拒绝达到该次数时,临时封禁该IP在本 group 下的请求
+     * 封禁期间的请求在进入限流器之前直接拒绝,不再占用限流器与名单匹配的开销
+     * 同一 group 下应当维护同一配置
+     * @return 拒绝次数阈值,小于等于0时不封禁
+     */
+    int banThreshold() default 0;
+
+    /**
+     * 首次封禁的时长(毫秒),再次触发时逐级翻倍,直到 {@link IpLimit#maxBanMillis()}
+     * @return 封禁时长
+     */
+    long banMillis() default 60_000L;
+
+    /**
+     * 最长封禁时长(毫秒),上次封禁到期后超过该时长未再触发时,封禁级别重置
+     * @return 最长封禁时长
+     */
+    long maxBanMillis() default 3_600_000L;
+
+    /**
+     * 单IP限流时 IPV4 地址保留的前缀长度,同一网段内的地址共用一份限流状态
+     * 同一 group 下应当维护同一配置
+     * @return 前缀长度, 0-32, 默认32即按单个地址限流
+     */
+    int ipv4KeyPrefix() default IpLimitConstant.IPV4_BIT_SIZE;
+
+    /**
+     * 单IP限流时 IPV6 地址保留的前缀长度,如配置为64时同一 /64 网段共用一份限流状态,
+     * 避免攻击者在自己的网段内轮换地址绕过限流并无限制地创建限流状态
+     * 同一 group 下应当维护同一配置
+     * @return 前缀长度, 0-128, 默认128即按单个地址限流
+     */
+    int ipv6KeyPrefix() default IpLimitConstant.IPV6_BIT_SIZE;
+
+    /**
+     * 令牌桶模式下的突发容量,即桶满时最多可连续通过的请求数,仅对 {@link CurrentLimiterType#TOKEN_BUCKET} 生效
+     * 小于等于0时默认为一秒内生成的令牌数(至少为1)
+     * @return 突发容量
+     */
+    double burstCapacity() default 0;
+
+    /**
+     * 白名单,使用方式由 limitType() 确定,比如选择默认LimitType.DEFAULT时该参数配置无用
+     * @return 白名单str
+     */
+    String[] whiteList() default {"localhost", "127.0.0.1", "0:0:0:0:0:0:0:1"};
+
+    /**
+     * 黑名单,使用方式由 limitType() 确定,比如选择默认LimitType.DEFAULT时该参数配置无用
+     * @return 黑名单list
+     */
+    String[] blackList() default {};
+}
\ No newline at end of file
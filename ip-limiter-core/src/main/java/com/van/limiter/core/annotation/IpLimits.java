@@ -0,0 +1,19 @@
+package com.van.limiter.core.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * {@link IpLimit} 的容器注解,同一方法或类上叠加多条 {@link IpLimit} 时由编译器自动生成,无需直接使用
+ * 多条规则需同时满足,如每秒10次且每小时500次
+ * @author van
+ */
+@Inherited
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface IpLimits {
+
+    /**
+     * @return 叠加的限流规则
+     */
+    IpLimit[] value();
+}
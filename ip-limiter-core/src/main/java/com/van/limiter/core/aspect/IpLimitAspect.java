@@ -0,0 +1,239 @@
+package com.van.limiter.core.aspect;
+
+import com.van.limiter.core.enums.LimitDecision;
+import com.van.limiter.core.enums.RejectionStrategy;
+import com.van.limiter.core.exception.IpLimitException;
+import com.van.limiter.core.filter.IpLimitFilter;
+import com.van.limiter.core.handler.RejectionHandler;
+import com.van.limiter.core.handler.StatusRejectionHandler;
+import com.van.limiter.core.policy.IpLimitPolicy;
+import com.van.limiter.core.util.ClientIpResolver;
+import com.van.limiter.core.util.IpKey;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Pointcut;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * @author van
+ */
+@Aspect
+@Component
+public class IpLimitAspect {
+
+    @Autowired
+    private IpLimitEvaluator ipLimitEvaluator;
+
+    @Autowired
+    private ClientIpResolver clientIpResolver;
+
+    private final RejectionStrategy rejectionStrategy;
+
+    private final RejectionHandler rejectionHandler;
+
+    public IpLimitAspect() {
+        this(RejectionStrategy.EXCEPTION, new StatusRejectionHandler());
+    }
+
+    public IpLimitAspect(RejectionStrategy rejectionStrategy, RejectionHandler rejectionHandler) {
+        this.rejectionStrategy = rejectionStrategy;
+        this.rejectionHandler = rejectionHandler;
+    }
+
+    @Pointcut("@within(com.van.limiter.core.annotation.IpLimit) || @annotation(com.van.limiter.core.annotation.IpLimit)"
+            + " || @within(com.van.limiter.core.annotation.IpLimits) || @annotation(com.van.limiter.core.annotation.IpLimits)")
+    private void pointMethod() {
+    }
+
+    @Around("pointMethod()")
+    public Object around(ProceedingJoinPoint joinPoint) throws Throwable {
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        // 非 Servlet 请求(如 WebFlux、定时任务)不在切面中限流, WebFlux 由 ip-limiter-webflux 的 WebFilter 处理
+        if (!(requestAttributes instanceof ServletRequestAttributes)) {
+            return joinPoint.proceed();
+        }
+        ServletRequestAttributes attributes = (ServletRequestAttributes) requestAttributes;
+
+        IpLimitPolicy policy = null;
+        if (joinPoint.getSignature() instanceof MethodSignature) {
+            policy = ipLimitEvaluator.resolvePolicy(((MethodSignature) joinPoint.getSignature()).getMethod());
+        }
+        assert policy != null;
+
+        HttpServletRequest request = attributes.getRequest();
+        // 过滤器已按同一策略判定过的请求不再重复计数
+        if (request.getAttribute(IpLimitFilter.POLICY_ATTRIBUTE) == policy) {
+            return joinPoint.proceed();
+        }
+        IpKey requestHost = clientIpResolver.resolve(request);
+        if (policy.getMaxWaitNanos() > 0) {
+            Class<?> returnType = ((MethodSignature) joinPoint.getSignature()).getReturnType();
+            if (returnType == DeferredResult.class || returnType == CompletableFuture.class || returnType == CompletionStage.class) {
+                return aroundWaiting(joinPoint, attributes, policy, requestHost, returnType == DeferredResult.class);
+            }
+        }
+        long admitted = ipLimitEvaluator.admit(policy, requestHost);
+        if (admitted < 0) {
+            return reject(joinPoint, attributes, policy, requestHost, IpLimitEvaluator.toDecision(admitted));
+        }
+        if (admitted != IpLimitEvaluator.LEASED) {
+            return joinPoint.proceed();
+        }
+        // 并发数限制: 方法返回或抛出异常后归还许可,返回异步结果时在其完成后归还
+        Object value;
+        try {
+            value = joinPoint.proceed();
+        } catch (Throwable e) {
+            ipLimitEvaluator.release(policy, requestHost);
+            throw e;
+        }
+        IpLimitPolicy leasedPolicy = policy;
+        if (value instanceof CompletionStage) {
+            ((CompletionStage<?>) value).whenComplete((result, e) -> ipLimitEvaluator.release(leasedPolicy, requestHost));
+        } else if (value instanceof ListenableFuture) {
+            ((ListenableFuture<?>) value).addCallback(result -> ipLimitEvaluator.release(leasedPolicy, requestHost),
+                    e -> ipLimitEvaluator.release(leasedPolicy, requestHost));
+        } else {
+            ipLimitEvaluator.release(policy, requestHost);
+        }
+        return value;
+    }
+
+    /**
+     * 等待模式: 预约许可,需要等待时立即返回一个未完成的 DeferredResult / CompletableFuture 释放容器线程,
+     * 等待结束后由 {@link PermitScheduler} 执行被拦截的方法,并以其结果完成返回值
+     * @param joinPoint joinPoint
+     * @param attributes 当前请求
+     * @param policy 限流策略
+     * @param requestHost 请求方IP
+     * @param deferred 被拦截方法的返回值是否为 DeferredResult,否则为 CompletableFuture
+     * @return 被拦截方法的返回值或等待中的结果
+     * @throws Throwable 被拦截方法抛出的异常
+     */
+    private Object aroundWaiting(ProceedingJoinPoint joinPoint, ServletRequestAttributes attributes, IpLimitPolicy policy,
+                                 IpKey requestHost, boolean deferred) throws Throwable {
+        long delayNanos = ipLimitEvaluator.reserve(policy, requestHost);
+        if (delayNanos < 0) {
+            return reject(joinPoint, attributes, policy, requestHost, IpLimitEvaluator.toDecision(delayNanos));
+        }
+        if (delayNanos == 0) {
+            return joinPoint.proceed();
+        }
+        if (deferred) {
+            DeferredResult<Object> result = new DeferredResult<>();
+            scheduleLater(joinPoint, attributes, policy, requestHost, delayNanos, result::setResult, result::setErrorResult);
+            return result;
+        }
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        scheduleLater(joinPoint, attributes, policy, requestHost, delayNanos, result::complete, result::completeExceptionally);
+        return result;
+    }
+
+    /**
+     * 调度器恰好在容器关闭时停止的,退回预约时扣减的全部额度,并以 RejectedExecutionException 结束返回值
+     */
+    private void scheduleLater(ProceedingJoinPoint joinPoint, ServletRequestAttributes attributes, IpLimitPolicy policy,
+                               IpKey requestHost, long delayNanos, Consumer<Object> onResult, Consumer<Throwable> onError) {
+        try {
+            PermitScheduler.schedule(() -> proceedLater(joinPoint, attributes, onResult, onError), delayNanos);
+        } catch (RejectedExecutionException e) {
+            ipLimitEvaluator.cancelReservation(policy, requestHost);
+            onError.accept(e);
+        }
+    }
+
+    /**
+     * 在调度线程中执行被拦截的方法
+     * 原请求的 RequestAttributes 在容器线程返回时已被标记为结束,此时请求仍处于异步处理中,
+     * 因此为同一个 request/response 绑定新的 RequestAttributes,方法返回后按一次请求结束的流程销毁其中的 request 作用域对象
+     * @param joinPoint joinPoint
+     * @param attributes 原请求
+     * @param onResult 正常结果
+     * @param onError 异常结果
+     */
+    private static void proceedLater(ProceedingJoinPoint joinPoint, ServletRequestAttributes attributes, Consumer<Object> onResult,
+                                     Consumer<Throwable> onError) {
+        ServletRequestAttributes delayedAttributes = new ServletRequestAttributes(attributes.getRequest(), attributes.getResponse());
+        RequestContextHolder.setRequestAttributes(delayedAttributes);
+        try {
+            Object value = joinPoint.proceed();
+            if (value instanceof DeferredResult) {
+                // 异常结果同样以结果对象传递, Spring MVC 按异常处理
+                ((DeferredResult<?>) value).setResultHandler(onResult::accept);
+            } else if (value instanceof CompletionStage) {
+                ((CompletionStage<?>) value).whenComplete((result, e) -> {
+                    if (e != null) {
+                        onError.accept(e);
+                    } else {
+                        onResult.accept(result);
+                    }
+                });
+            } else {
+                onResult.accept(value);
+            }
+        } catch (Throwable e) {
+            onError.accept(e);
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+            delayedAttributes.requestCompleted();
+        }
+    }
+
+    /**
+     * 按配置的 {@link RejectionStrategy} 处理被拒绝的请求
+     * HANDLER 模式下被拦截方法的返回值为基本类型而回调返回 null 时,响应已写出,
+     * 改为抛出无堆栈的 IpLimitException 结束调用,避免 Spring AOP 因无法拆箱 null 而抛出 AopInvocationException
+     * @param joinPoint joinPoint
+     * @param attributes 当前请求
+     * @param policy 限流策略
+     * @param requestHost 请求方IP
+     * @param decision 判定结果
+     * @return RejectionHandler 的返回值
+     * @throws IOException RejectionHandler 写出响应失败
+     */
+    private Object reject(ProceedingJoinPoint joinPoint, ServletRequestAttributes attributes, IpLimitPolicy policy, IpKey requestHost,
+                          LimitDecision decision) throws IOException {
+        switch (rejectionStrategy) {
+            case STACKLESS_EXCEPTION:
+                throw policy.getRejectedException();
+            case HANDLER:
+                Object value = rejectionHandler.onRejected(attributes.getRequest(), attributes.getResponse(), policy, requestHost, decision);
+                Class<?> returnType = ((MethodSignature) joinPoint.getSignature()).getReturnType();
+                if (value == null && returnType.isPrimitive() && returnType != void.class) {
+                    throw policy.getRejectedException();
+                }
+                return value;
+            default:
+                ipLimitError(policy, requestHost);
+                return null;
+        }
+    }
+
+    /**
+     * 用于统一异常处理
+     * @param policy 限流策略
+     * @param requestHost 请求方IP
+     */
+    private void ipLimitError(IpLimitPolicy policy, IpKey requestHost) {
+        // 只有拒绝时才格式化IP
+        String host = requestHost.toString();
+        throw new IpLimitException(String.format("Ip limiter warning ! IP: %s, GroupName: %s", host, policy.getGroupName()),
+                host, policy.getGroupName(), policy.getIpLimit());
+    }
+
+}
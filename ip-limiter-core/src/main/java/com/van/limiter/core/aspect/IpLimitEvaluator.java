@@ -0,0 +1,331 @@
+package com.van.limiter.core.aspect;
+
+import com.google.common.collect.Maps;
+import com.van.limiter.core.annotation.IpLimit;
+import com.van.limiter.core.engine.LimiterEngine;
+import com.van.limiter.core.engine.MultiWindowLimiterEngine;
+import com.van.limiter.core.engine.LimiterEngineRegistry;
+import com.van.limiter.core.enums.LimitDecision;
+import com.van.limiter.core.limiter.StripedLeaseCounter;
+import com.van.limiter.core.metrics.GroupMetrics;
+import com.van.limiter.core.metrics.IpLimitMetrics;
+import com.van.limiter.core.policy.IpLimitPolicy;
+import com.van.limiter.core.store.IpBanTable;
+import com.van.limiter.core.util.IpKey;
+import com.van.limiter.core.util.IpLimitUtils;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.util.ClassUtils;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.WebAsyncTask;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * 限流判定核心逻辑,切面与过滤器共用
+ * 负责解析并缓存方法对应的 {@link IpLimitPolicy},以及按策略类型组合黑白名单与限流器
+ * @author van
+ */
+public class IpLimitEvaluator implements SmartInitializingSingleton {
+
+    @Autowired
+    private IpLimitUtils ipLimitUtils;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Autowired
+    private LimiterEngineRegistry limiterEngineRegistry;
+
+    @Autowired
+    private IpLimitMetrics ipLimitMetrics;
+
+    /**
+     * 方法对应的限流策略缓存，[Method,IpLimitPolicy]
+     */
+    private final Map<Method, IpLimitPolicy> policyCache = Maps.newConcurrentMap();
+
+    /**
+     * 容器中所有单例初始化完成后,提前解析所有被 {@link IpLimit} 修饰的方法
+     * 首个请求无需再解析注解,配置有误时也能在启动阶段直接报错
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        for (String beanName : applicationContext.getBeanNamesForType(Object.class, false, false)) {
+            Class<?> beanType = applicationContext.getType(beanName);
+            if (beanType == null) {
+                continue;
+            }
+            Class<?> userClass = ClassUtils.getUserClass(beanType);
+            for (Method method : userClass.getMethods()) {
+                resolvePolicy(method);
+            }
+            for (Method method : userClass.getDeclaredMethods()) {
+                resolvePolicy(method);
+            }
+        }
+    }
+
+    /**
+     * 获取方法对应的限流策略,方法上的注解优先于类上的注解
+     * 叠加了多条 {@link IpLimit} 时使用 {@link MultiWindowLimiterEngine} 同时判断全部规则
+     * 占用许可直到请求结束的限流器(如并发数限制)只支持同步返回或返回 CompletionStage / ListenableFuture 的方法,
+     * 返回 DeferredResult、Callable、WebAsyncTask 时切面无法得知其何时完成,启动时直接报错
+     * @param method method
+     * @return 限流策略,未被 {@link IpLimit} 修饰时返回 null
+     */
+    public IpLimitPolicy resolvePolicy(Method method) {
+        IpLimitPolicy policy = policyCache.get(method);
+        if (policy != null) {
+            return policy;
+        }
+        IpLimit[] ipLimitAnnotations = method.getAnnotationsByType(IpLimit.class);
+        if (ipLimitAnnotations.length == 0) {
+            ipLimitAnnotations = method.getDeclaringClass().getAnnotationsByType(IpLimit.class);
+        }
+        if (ipLimitAnnotations.length == 0) {
+            return null;
+        }
+        IpLimit[] ipLimits = ipLimitAnnotations;
+        IpLimit ipLimit = ipLimits[0];
+        String engineName;
+        if (ipLimits.length > 1) {
+            engineName = MultiWindowLimiterEngine.NAME;
+        } else {
+            engineName = ipLimit.limiterEngine().isEmpty() ? ipLimit.currentLimiter().name() : ipLimit.limiterEngine();
+        }
+        LimiterEngine limiterEngine = limiterEngineRegistry.getEngine(engineName);
+        if (limiterEngine.requiresRelease() && isUntrackedAsync(method.getReturnType())) {
+            throw new IllegalArgumentException("IpLimit " + engineName + " does not support " + method.getReturnType().getSimpleName()
+                    + " return type, return CompletableFuture instead, GroupName: " + ipLimit.groupName());
+        }
+        return policyCache.computeIfAbsent(method, k -> IpLimitPolicy.compile(ipLimits, ipLimitUtils.compiledIpLists(ipLimit),
+                limiterEngine, RateLimitAspectConfig::groupLimiter, RateLimitAspectConfig::banTable));
+    }
+
+    /**
+     * @param returnType 方法返回值类型
+     * @return 是否为只能由 Spring MVC 异步处理、无法注册完成回调的返回值
+     */
+    private static boolean isUntrackedAsync(Class<?> returnType) {
+        return DeferredResult.class.isAssignableFrom(returnType) || Callable.class.isAssignableFrom(returnType)
+                || WebAsyncTask.class.isAssignableFrom(returnType);
+    }
+
+    /**
+     * 等待模式下被限流拒绝时 {@link #reserve(IpLimitPolicy, IpKey)} 的返回值
+     */
+    public static final long REJECTED = -1L;
+
+    /**
+     * 等待模式下被名单拒绝时 {@link #reserve(IpLimitPolicy, IpKey)} 的返回值
+     */
+    public static final long BLOCKED = -2L;
+
+    /**
+     * {@link #admit(IpLimitPolicy, IpKey)} 通过且占用了许可时的返回值,请求结束后需调用 {@link #release(IpLimitPolicy, IpKey)}
+     */
+    public static final long LEASED = Long.MAX_VALUE;
+
+    /**
+     * 按策略判定一次请求,封禁中的IP在名单与限流器之前直接拒绝
+     * 需要在请求结束后归还许可的限流器(如 {@link com.van.limiter.core.enums.CurrentLimiterType#CONCURRENCY})在此立即归还,
+     * 只判断当前是否超限,需要限制执行中的请求时使用 {@link #admit(IpLimitPolicy, IpKey)}
+     * @param policy 限流策略
+     * @param requestHost 请求方IP
+     * @return {@link LimitDecision#BLOCKED} 名单拒绝, {@link LimitDecision#REJECTED} 超出限流或封禁中
+     */
+    public LimitDecision evaluate(IpLimitPolicy policy, IpKey requestHost) {
+        long result = acquire(policy, requestHost, false);
+        if (result == LEASED) {
+            release(policy, requestHost);
+        }
+        return toDecision(result);
+    }
+
+    /**
+     * 按策略判定一次请求,通过的请求可能占用许可直到请求结束
+     * @param policy 限流策略
+     * @param requestHost 请求方IP
+     * @return 0 表示通过, {@link #LEASED} 表示通过且占用了许可,需在请求结束后(finally 中)调用 {@link #release(IpLimitPolicy, IpKey)};
+     * 拒绝时为 {@link #REJECTED} 或 {@link #BLOCKED}
+     */
+    public long admit(IpLimitPolicy policy, IpKey requestHost) {
+        return acquire(policy, requestHost, false);
+    }
+
+    /**
+     * 归还 {@link #admit(IpLimitPolicy, IpKey)} 返回 {@link #LEASED} 时占用的许可
+     * @param policy 限流策略
+     * @param requestHost 请求方IP
+     */
+    public void release(IpLimitPolicy policy, IpKey requestHost) {
+        policy.getLimiterEngine().release(policy.limiterKey(requestHost), policy);
+    }
+
+    /**
+     * 等待模式下判定一次请求: 超出限流但可在 {@link IpLimitPolicy#getMaxWaitNanos()} 内获得许可时预约许可并返回需要等待的时间
+     * 预约后许可已被占用,调用方需在等待结束后执行请求
+     * @param policy 限流策略
+     * @param requestHost 请求方IP
+     * @return 需要等待的纳秒数, 0 表示立即通过; 拒绝时为 {@link #REJECTED} 或 {@link #BLOCKED}
+     */
+    public long reserve(IpLimitPolicy policy, IpKey requestHost) {
+        return acquire(policy, requestHost, true);
+    }
+
+    /**
+     * 退回 {@link #reserve(IpLimitPolicy, IpKey)} 预约的许可,用于预约成功后请求无法执行的情况(如调度器已停止)
+     * 单IP额度、group 总量与服务总量都在预约时扣减,在此一并退回
+     * @param policy 限流策略
+     * @param requestHost 请求方IP
+     */
+    public void cancelReservation(IpLimitPolicy policy, IpKey requestHost) {
+        long now = System.nanoTime();
+        StripedLeaseCounter globalLimiter = RateLimitAspectConfig.globalLimiter;
+        if (globalLimiter != null) {
+            globalLimiter.refund(now);
+        }
+        StripedLeaseCounter groupLimiter = policy.getGroupLimiter();
+        if (groupLimiter != null) {
+            groupLimiter.refund(now);
+        }
+        policy.getLimiterEngine().refund(policy.limiterKey(requestHost), policy, now);
+    }
+
+    /**
+     * 单IP限流的Key在此计算一次,封禁表与限流器共用,黑白名单仍按完整地址匹配
+     */
+    private long acquire(IpLimitPolicy policy, IpKey requestHost, boolean wait) {
+        IpKey limiterKey = policy.limiterKey(requestHost);
+        IpBanTable banTable = policy.getBanTable();
+        if (banTable != null && banTable.isBanned(limiterKey.getHi(), limiterKey.getLo(), policy.getGroupId(), System.nanoTime())) {
+            if (ipLimitMetrics.isEnabled()) {
+                ipLimitMetrics.group(policy.getGroupId()).record(LimitDecision.REJECTED);
+            }
+            return REJECTED;
+        }
+        if (!ipLimitMetrics.isEnabled()) {
+            return decide(policy, requestHost, limiterKey, wait);
+        }
+        GroupMetrics groupMetrics = ipLimitMetrics.group(policy.getGroupId());
+        long result;
+        if (ipLimitMetrics.sampleLatency()) {
+            long start = System.nanoTime();
+            result = decide(policy, requestHost, limiterKey, wait);
+            groupMetrics.getLatency().record(System.nanoTime() - start);
+        } else {
+            result = decide(policy, requestHost, limiterKey, wait);
+        }
+        groupMetrics.record(toDecision(result));
+        return result;
+    }
+
+    /**
+     * @param result {@link #admit(IpLimitPolicy, IpKey)} 或 {@link #reserve(IpLimitPolicy, IpKey)} 的返回值
+     * @return 对应的判定结果
+     */
+    public static LimitDecision toDecision(long result) {
+        if (result >= 0) {
+            return LimitDecision.PERMITTED;
+        }
+        return result == BLOCKED ? LimitDecision.BLOCKED : LimitDecision.REJECTED;
+    }
+
+    /**
+     * @return 需要等待的纳秒数, {@link #LEASED},或 {@link #REJECTED}、{@link #BLOCKED}
+     */
+    private long decide(IpLimitPolicy policy, IpKey requestHost, IpKey limiterKey, boolean wait) {
+        switch (policy.getLimitType()) {
+            case DEFAULT:
+                return tryAcquire(policy, limiterKey, wait);
+            case WHITE_LIST:
+                // 如果是白名单内的,则不再进行校验
+                return inWhiteList(policy, requestHost) ? 0 : BLOCKED;
+            case BLACK_LIST:
+                // 如果存在于黑名单,则拒绝
+                return inBlackList(policy, requestHost) ? BLOCKED : 0;
+            case DEFAULT_WITH_WHITE_LIST:
+                if (inWhiteList(policy, requestHost)) {
+                    return 0;
+                }
+                return tryAcquire(policy, limiterKey, wait);
+            case DEFAULT_WITH_BLACK_LIST:
+                if (inBlackList(policy, requestHost)) {
+                    return BLOCKED;
+                }
+                return tryAcquire(policy, limiterKey, wait);
+            case DEFAULT_WITH_WHITE_AND_BLACK_LIST:
+                if (inBlackList(policy, requestHost)) {
+                    return BLOCKED;
+                }
+                if (inWhiteList(policy, requestHost)) {
+                    return 0;
+                }
+                return tryAcquire(policy, limiterKey, wait);
+            default:
+                return 0;
+        }
+    }
+
+    private boolean inWhiteList(IpLimitPolicy policy, IpKey requestHost) {
+        return policy.getIpLists().inWhiteList(requestHost);
+    }
+
+    private boolean inBlackList(IpLimitPolicy policy, IpKey requestHost) {
+        return policy.getIpLists().inBlackList(requestHost);
+    }
+
+    /**
+     * 限流器入口方法,单IP限流通过后再依次扣减 group 总量与服务总量
+     * 单IP限流按 {@link IpLimitPolicy#limiterKey(IpKey)} 计数,黑白名单仍按完整地址匹配
+     * 单IP限流拒绝时记入封禁表,总量限流拒绝与单个客户端无关,不计入
+     * 等待模式下 group 总量与服务总量在预约时扣减
+     * 总量限流拒绝时通过 {@link LimiterEngine#refund(IpKey, IpLimitPolicy, long)} 退回单IP额度,服务总量拒绝时同时退回 group 额度,
+     * 被拒绝的请求不占用任何一级的额度
+     * @param policy 限流策略
+     * @param limiterKey {@link IpLimitPolicy#limiterKey(IpKey)}
+     * @param wait 是否预约等待
+     * @return 需要等待的纳秒数, {@link #LEASED},或 {@link #REJECTED}
+     */
+    private long tryAcquire(IpLimitPolicy policy, IpKey limiterKey, boolean wait) {
+        long now = System.nanoTime();
+        LimiterEngine limiterEngine = policy.getLimiterEngine();
+        long delay;
+        if (wait) {
+            delay = limiterEngine.reserve(limiterKey, policy, now);
+        } else {
+            LimitDecision decision = limiterEngine.tryAcquire(limiterKey, policy, now);
+            if (decision == LimitDecision.PERMITTED) {
+                delay = limiterEngine.requiresRelease() ? LEASED : 0;
+            } else {
+                delay = decision == LimitDecision.BLOCKED ? BLOCKED : REJECTED;
+            }
+        }
+        if (delay < 0) {
+            IpBanTable banTable = policy.getBanTable();
+            if (banTable != null && delay == REJECTED) {
+                banTable.recordRejection(limiterKey.getHi(), limiterKey.getLo(), policy.getGroupId(), now,
+                        policy.getBanThreshold(), policy.getWindowNanos(), policy.getBanNanos(), policy.getMaxBanNanos());
+            }
+            return delay;
+        }
+        StripedLeaseCounter groupLimiter = policy.getGroupLimiter();
+        if (groupLimiter != null && !groupLimiter.tryAcquire(now)) {
+            limiterEngine.refund(limiterKey, policy, now);
+            return REJECTED;
+        }
+        StripedLeaseCounter globalLimiter = RateLimitAspectConfig.globalLimiter;
+        if (globalLimiter != null && !globalLimiter.tryAcquire(now)) {
+            if (groupLimiter != null) {
+                groupLimiter.refund(now);
+            }
+            limiterEngine.refund(limiterKey, policy, now);
+            return REJECTED;
+        }
+        return delay;
+    }
+}
@@ -0,0 +1,24 @@
+package com.van.limiter.core.aspect;
+
+import com.van.limiter.core.annotation.EnableIpLimit;
+import com.van.limiter.core.filter.IpLimitFilterConfig;
+import org.springframework.context.annotation.ImportSelector;
+import org.springframework.core.annotation.AnnotationAttributes;
+import org.springframework.core.type.AnnotationMetadata;
+
+/**
+ * 根据 {@link EnableIpLimit} 的属性引入对应的配置
+ * @author van
+ */
+public class IpLimitImportSelector implements ImportSelector {
+
+    @Override
+    public String[] selectImports(AnnotationMetadata importingClassMetadata) {
+        AnnotationAttributes attributes = AnnotationAttributes.fromMap(
+                importingClassMetadata.getAnnotationAttributes(EnableIpLimit.class.getName()));
+        if (attributes != null && attributes.getBoolean("filter")) {
+            return new String[]{RateLimitAspectConfig.class.getName(), IpLimitFilterConfig.class.getName()};
+        }
+        return new String[]{RateLimitAspectConfig.class.getName()};
+    }
+}
@@ -0,0 +1,64 @@
+package com.van.limiter.core.aspect;
+
+import com.van.limiter.core.annotation.IpLimit;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link IpLimit#maxWaitMillis()} 等待模式的共享调度器,预约的许可到期后在此执行被拦截的方法
+ * 等待期间请求不占用任何线程;被拦截的方法返回 DeferredResult 或 CompletableFuture,应当很快返回,不应在其中阻塞
+ * 容器关闭时停止,已预约的请求在到期后仍会执行
+ * @author van
+ */
+public final class PermitScheduler {
+    private PermitScheduler() {}
+
+    private static final int THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * 首次预约时创建,容器关闭时置空,再次启动的容器重新创建
+     */
+    private static volatile ScheduledExecutorService executor;
+
+    /**
+     * 在等待结束后执行
+     * @param task task
+     * @param delayNanos 等待的纳秒数
+     * @throws RejectedExecutionException 调度器恰好在容器关闭时停止
+     */
+    static void schedule(Runnable task, long delayNanos) {
+        executor().schedule(task, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static ScheduledExecutorService executor() {
+        ScheduledExecutorService current = executor;
+        if (current != null) {
+            return current;
+        }
+        synchronized (PermitScheduler.class) {
+            if (executor == null) {
+                AtomicInteger index = new AtomicInteger();
+                executor = Executors.newScheduledThreadPool(THREADS, runnable -> {
+                    Thread thread = new Thread(runnable, "ip-limiter-permit-" + index.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            return executor;
+        }
+    }
+
+    /**
+     * 停止接收新的预约,已预约的请求到期执行后线程退出
+     */
+    public static synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+}
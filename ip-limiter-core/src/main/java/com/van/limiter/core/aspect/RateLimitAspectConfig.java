@@ -0,0 +1,394 @@
+package com.van.limiter.core.aspect;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.van.limiter.core.annotation.EnableIpLimit;
+import com.van.limiter.core.constant.IpLimitConstant;
+import com.van.limiter.core.engine.ConcurrencyLimiterEngine;
+import com.van.limiter.core.engine.LimiterEngine;
+import com.van.limiter.core.engine.LimiterEngineRegistry;
+import com.van.limiter.core.engine.MultiWindowLimiterEngine;
+import com.van.limiter.core.engine.SlidingWindowCounterLimiterEngine;
+import com.van.limiter.core.engine.SlidingWindowLimiterEngine;
+import com.van.limiter.core.engine.TokenBucketLimiterEngine;
+import com.van.limiter.core.enums.RejectionStrategy;
+import com.van.limiter.core.handler.RejectionHandler;
+import com.van.limiter.core.handler.StatusRejectionHandler;
+import com.van.limiter.core.limiter.GcraTokenBucket;
+import com.van.limiter.core.limiter.MultiWindowCounter;
+import com.van.limiter.core.limiter.StripedConcurrencyCounter;
+import com.van.limiter.core.limiter.StripedLeaseCounter;
+import com.van.limiter.core.matcher.IpListMatcher;
+import com.van.limiter.core.metrics.IpLimitMetrics;
+import com.van.limiter.core.policy.LimitGroups;
+import com.van.limiter.core.limiter.SlidingLogWindow;
+import com.van.limiter.core.limiter.SlidingWindowCounter;
+import com.van.limiter.core.store.IpBanTable;
+import com.van.limiter.core.store.LimiterKey;
+import com.van.limiter.core.store.LimiterStatePersistence;
+import com.van.limiter.core.store.LimiterStateSnapshot;
+import com.van.limiter.core.store.LimiterStateStore;
+import com.van.limiter.core.store.OffHeapLimiterTable;
+import com.van.limiter.core.store.StoreMaintenance;
+import com.van.limiter.core.util.ClientIpResolver;
+import com.van.limiter.core.util.IpLimitUtils;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.StringUtils;
+
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * @author van
+ */
+public class RateLimitAspectConfig implements EnvironmentAware, DisposableBean {
+    private RateLimitAspectConfig () {}
+
+    private Environment environment;
+
+    /**
+     * group 总量限流，[groupId,分段租约计数器], 同一 group 下所有IP共享
+     */
+    protected static final Map<Integer, StripedLeaseCounter> GROUP_AGGREGATE_LIMITER_MAP = Maps.newConcurrentMap();
+
+    /**
+     * 服务总量限流,所有限流接口共享,未配置 {@link IpLimitConstant#GLOBAL_MAX_TIMES_PROPERTY} 时为 null
+     */
+    protected static volatile StripedLeaseCounter globalLimiter;
+
+    /**
+     * 令牌桶模式，[IP+Group,GCRA令牌桶] , 用以区分不同groupName之间的限流措施
+     */
+    private static final LimiterStateStore<LimiterKey, GcraTokenBucket> TOKEN_BUCKET_LIMITER_MAP = new LimiterStateStore<>(
+            "token-bucket", IpLimitConstant.DEFAULT_STORE_MAXIMUM_SIZE,
+            TimeUnit.SECONDS.toNanos(IpLimitConstant.DEFAULT_STORE_EXPIRE_AFTER_ACCESS_SECONDS));
+
+
+    /**
+     * 滑动窗口模式，[IP+Group,请求时间环形数组], 用以区分不同groupName之间的限流措施
+     */
+    private static final LimiterStateStore<LimiterKey, SlidingLogWindow> WINDOW_TIMESTAMP_LIMITER_MAP = new LimiterStateStore<>(
+            "sliding-window", IpLimitConstant.DEFAULT_STORE_MAXIMUM_SIZE,
+            TimeUnit.SECONDS.toNanos(IpLimitConstant.DEFAULT_STORE_EXPIRE_AFTER_ACCESS_SECONDS));
+
+    /**
+     * 滑动窗口计数器模式，[IP+Group,计数器]
+     */
+    private static final LimiterStateStore<LimiterKey, SlidingWindowCounter> WINDOW_COUNTER_LIMITER_MAP = new LimiterStateStore<>(
+            "sliding-window-counter", IpLimitConstant.DEFAULT_STORE_MAXIMUM_SIZE,
+            TimeUnit.SECONDS.toNanos(IpLimitConstant.DEFAULT_STORE_EXPIRE_AFTER_ACCESS_SECONDS));
+
+    /**
+     * 叠加多条规则的接口，[IP+Group,多规则计数器], 同一客户端的全部规则计数保存在同一条记录中
+     */
+    private static final LimiterStateStore<LimiterKey, MultiWindowCounter> MULTI_WINDOW_LIMITER_MAP = new LimiterStateStore<>(
+            "multi-window", IpLimitConstant.DEFAULT_STORE_MAXIMUM_SIZE,
+            TimeUnit.SECONDS.toNanos(IpLimitConstant.DEFAULT_STORE_EXPIRE_AFTER_ACCESS_SECONDS));
+
+    /**
+     * 堆外限流状态表,启用后令牌桶与滑动窗口计数器的状态不再存放在堆内
+     */
+    private static volatile OffHeapLimiterTable offHeapLimiterTable;
+
+    /**
+     * 临时封禁表,首个配置了 {@link com.van.limiter.core.annotation.IpLimit#banThreshold()} 的策略解析时创建
+     */
+    protected static volatile IpBanTable ipBanTable;
+
+    private static volatile int banTableCapacity = IpLimitConstant.DEFAULT_BAN_TABLE_CAPACITY;
+
+    /**
+     * 并发数限制的计数器,所有 group 共用,首个 {@link com.van.limiter.core.enums.CurrentLimiterType#CONCURRENCY} 请求时创建
+     */
+    private static volatile StripedConcurrencyCounter concurrencyCounter;
+
+    private static volatile int concurrencyStripes = IpLimitConstant.DEFAULT_CONCURRENCY_STRIPES;
+
+    private static final List<LimiterStateStore<?, ?>> LIMITER_STORES = ImmutableList.of(
+            TOKEN_BUCKET_LIMITER_MAP, WINDOW_TIMESTAMP_LIMITER_MAP, WINDOW_COUNTER_LIMITER_MAP, MULTI_WINDOW_LIMITER_MAP);
+
+    static {
+        // 空闲超过一个时间窗口的客户端,释放其请求时间数组
+        WINDOW_TIMESTAMP_LIMITER_MAP.setTrimmer(SlidingLogWindow::trim);
+        for (LimiterStateStore<?, ?> store : LIMITER_STORES) {
+            StoreMaintenance.schedule(store, IpLimitConstant.STORE_CLEAN_UP_PERIOD_MILLIS);
+        }
+    }
+
+    /**
+     * 获取所有限流状态存储,可用于查看条目数及淘汰次数
+     * @return 限流状态存储
+     */
+    public static List<LimiterStateStore<?, ?>> getLimiterStores() {
+        return LIMITER_STORES;
+    }
+
+    /**
+     * 获取 {@link com.van.limiter.core.enums.CurrentLimiterType#TOKEN_BUCKET} 的堆内状态存储
+     * @return 令牌桶状态存储
+     */
+    public static LimiterStateStore<LimiterKey, GcraTokenBucket> getTokenBucketStore() {
+        return TOKEN_BUCKET_LIMITER_MAP;
+    }
+
+    /**
+     * 获取 {@link com.van.limiter.core.enums.CurrentLimiterType#SLIDING_WINDOW} 的状态存储
+     * @return 滑动窗口状态存储
+     */
+    public static LimiterStateStore<LimiterKey, SlidingLogWindow> getSlidingWindowStore() {
+        return WINDOW_TIMESTAMP_LIMITER_MAP;
+    }
+
+    /**
+     * 获取 {@link com.van.limiter.core.enums.CurrentLimiterType#SLIDING_WINDOW_COUNTER} 的堆内状态存储
+     * @return 滑动窗口计数器状态存储
+     */
+    public static LimiterStateStore<LimiterKey, SlidingWindowCounter> getWindowCounterStore() {
+        return WINDOW_COUNTER_LIMITER_MAP;
+    }
+
+    /**
+     * 获取叠加多条规则的接口的状态存储
+     * @return 多规则计数器状态存储
+     */
+    public static LimiterStateStore<LimiterKey, MultiWindowCounter> getMultiWindowStore() {
+        return MULTI_WINDOW_LIMITER_MAP;
+    }
+
+    /**
+     * 获取 group 总量限流器,同一 group 只创建一次
+     * 同一 group 的各个方法共用一个限流器,时间窗口或 groupMaxTimes 不一致时无法确定以哪个为准,直接报错
+     * @param groupId groupId
+     * @param windowNanos 时间窗口纳秒数
+     * @param maxTimes 总次数上限
+     * @return group 总量限流器
+     */
+    static StripedLeaseCounter groupLimiter(int groupId, long windowNanos, double maxTimes) {
+        StripedLeaseCounter groupLimiter = GROUP_AGGREGATE_LIMITER_MAP.computeIfAbsent(groupId,
+                k -> new StripedLeaseCounter(System.nanoTime(), windowNanos, maxTimes));
+        if (!groupLimiter.hasLimit(windowNanos, maxTimes)) {
+            throw new IllegalArgumentException("IpLimit groupMaxTimes and time window must be the same for all methods in a group, GroupName: "
+                    + LimitGroups.nameOf(groupId));
+        }
+        return groupLimiter;
+    }
+
+    /**
+     * 获取服务总量限流器
+     * @return 未配置时返回 null
+     */
+    public static StripedLeaseCounter getGlobalLimiter() {
+        return globalLimiter;
+    }
+
+    /**
+     * 获取封禁表,所有 group 共用一张表,只创建一次
+     * @return 封禁表
+     */
+    static IpBanTable banTable() {
+        IpBanTable banTable = ipBanTable;
+        if (banTable == null) {
+            synchronized (RateLimitAspectConfig.class) {
+                banTable = ipBanTable;
+                if (banTable == null) {
+                    banTable = new IpBanTable(banTableCapacity, TimeUnit.MILLISECONDS.toNanos(IpLimitConstant.BAN_TICK_MILLIS));
+                    StoreMaintenance.schedule(banTable, IpLimitConstant.BAN_TICK_MILLIS);
+                    ipBanTable = banTable;
+                }
+            }
+        }
+        return banTable;
+    }
+
+    /**
+     * 获取并发数限制的计数器,只创建一次
+     * @return 并发计数器
+     */
+    public static StripedConcurrencyCounter concurrencyCounter() {
+        StripedConcurrencyCounter counter = concurrencyCounter;
+        if (counter == null) {
+            synchronized (RateLimitAspectConfig.class) {
+                counter = concurrencyCounter;
+                if (counter == null) {
+                    counter = new StripedConcurrencyCounter(concurrencyStripes);
+                    concurrencyCounter = counter;
+                }
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * 获取封禁表,可用于查看封禁数
+     * @return 尚未有策略启用封禁时返回 null
+     */
+    public static IpBanTable getBanTable() {
+        return ipBanTable;
+    }
+
+    /**
+     * 获取堆外限流状态表
+     * @return 未启用时返回 null
+     */
+    public static OffHeapLimiterTable getOffHeapLimiterTable() {
+        return offHeapLimiterTable;
+    }
+
+    /**
+     * 通过配置项调整限流状态存储的容量与空闲过期时间
+     * @param environment environment
+     */
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.environment = environment;
+        // 同一JVM中的上一个容器关闭时已停止
+        StoreMaintenance.start();
+        long maximumSize = environment.getProperty(IpLimitConstant.STORE_MAXIMUM_SIZE_PROPERTY,
+                Long.class, IpLimitConstant.DEFAULT_STORE_MAXIMUM_SIZE);
+        long expireAfterAccessSeconds = environment.getProperty(IpLimitConstant.STORE_EXPIRE_AFTER_ACCESS_PROPERTY,
+                Long.class, IpLimitConstant.DEFAULT_STORE_EXPIRE_AFTER_ACCESS_SECONDS);
+        for (LimiterStateStore<?, ?> store : LIMITER_STORES) {
+            store.setMaximumSize(maximumSize);
+            store.setExpireAfterAccessNanos(TimeUnit.SECONDS.toNanos(expireAfterAccessSeconds));
+        }
+        double globalMaxTimes = environment.getProperty(IpLimitConstant.GLOBAL_MAX_TIMES_PROPERTY, Double.class, 0D);
+        if (globalMaxTimes > 0) {
+            globalLimiter = new StripedLeaseCounter(System.nanoTime(), TimeUnit.MILLISECONDS.toNanos(environment.getProperty(
+                    IpLimitConstant.GLOBAL_UNIT_MILLIS_PROPERTY, Long.class, IpLimitConstant.DEFAULT_GLOBAL_UNIT_MILLIS)), globalMaxTimes);
+        } else {
+            // 同一JVM中的上一个容器可能配置过
+            globalLimiter = null;
+        }
+        banTableCapacity = environment.getProperty(IpLimitConstant.BAN_TABLE_CAPACITY_PROPERTY, Integer.class,
+                IpLimitConstant.DEFAULT_BAN_TABLE_CAPACITY);
+        concurrencyStripes = environment.getProperty(IpLimitConstant.CONCURRENCY_STRIPES_PROPERTY, Integer.class,
+                IpLimitConstant.DEFAULT_CONCURRENCY_STRIPES);
+        if (environment.getProperty(IpLimitConstant.OFF_HEAP_ENABLED_PROPERTY, Boolean.class, false)) {
+            initOffHeapLimiterTable(environment.getProperty(IpLimitConstant.OFF_HEAP_CAPACITY_PROPERTY,
+                    Long.class, IpLimitConstant.DEFAULT_OFF_HEAP_CAPACITY), TimeUnit.SECONDS.toNanos(expireAfterAccessSeconds));
+        }
+    }
+
+    /**
+     * 容器关闭时停止维护线程与等待模式的调度器,限流状态保留,再次启动容器时继续使用
+     * group 总量限流器随策略重新创建,以便再次启动的容器可以使用新的 groupMaxTimes
+     */
+    @Override
+    public void destroy() {
+        PermitScheduler.shutdown();
+        StoreMaintenance.shutdown();
+        GROUP_AGGREGATE_LIMITER_MAP.clear();
+    }
+
+    /**
+     * 堆外表只分配一次,与JVM生命周期一致,避免释放时仍有请求在访问
+     */
+    private static synchronized void initOffHeapLimiterTable(long capacity, long expireAfterAccessNanos) {
+        if (offHeapLimiterTable == null) {
+            offHeapLimiterTable = new OffHeapLimiterTable(capacity, expireAfterAccessNanos);
+        } else {
+            offHeapLimiterTable.setExpireAfterAccessNanos(expireAfterAccessNanos);
+        }
+    }
+
+    /**
+     * 用于 {@link EnableIpLimit} 自动扫描
+     * @param rejectionHandler 容器中的 {@link RejectionHandler},不存在时使用 {@link StatusRejectionHandler}
+     * @return aspect
+     */
+    @Bean
+    public IpLimitAspect aspect(ObjectProvider<RejectionHandler> rejectionHandler) {
+        return new IpLimitAspect(environment.getProperty(IpLimitConstant.REJECTION_STRATEGY_PROPERTY, RejectionStrategy.class,
+                RejectionStrategy.EXCEPTION), rejectionHandler.getIfAvailable(StatusRejectionHandler::new));
+    }
+
+    /**
+     * 限流状态持久化,配置 {@link IpLimitConstant#STORE_SNAPSHOT_PATH_PROPERTY} 后启用
+     * 恢复在单例初始化阶段完成,早于 Web 容器开始接收请求
+     * @return 未配置时返回 null
+     */
+    @Bean
+    public LimiterStatePersistence limiterStatePersistence() {
+        String path = environment.getProperty(IpLimitConstant.STORE_SNAPSHOT_PATH_PROPERTY);
+        if (!StringUtils.hasText(path)) {
+            return null;
+        }
+        return new LimiterStatePersistence(new LimiterStateSnapshot(TOKEN_BUCKET_LIMITER_MAP, WINDOW_TIMESTAMP_LIMITER_MAP,
+                WINDOW_COUNTER_LIMITER_MAP, MULTI_WINDOW_LIMITER_MAP, RateLimitAspectConfig::getOffHeapLimiterTable), Paths.get(path),
+                TimeUnit.SECONDS.toMillis(environment.getProperty(IpLimitConstant.STORE_SNAPSHOT_INTERVAL_PROPERTY, Long.class,
+                        IpLimitConstant.DEFAULT_STORE_SNAPSHOT_INTERVAL_SECONDS)));
+    }
+
+    /**
+     * 限流判定核心逻辑,切面与过滤器共用
+     * @return IpLimitEvaluator
+     */
+    @Bean
+    public IpLimitEvaluator ipLimitEvaluator() {
+        return new IpLimitEvaluator();
+    }
+
+    /**
+     * 限流统计,可通过 ip-limiter-micrometer 对接 Micrometer
+     * 容器关闭时通过 {@link IpLimitMetrics#close()} 停止耗时直方图的轮换
+     * @return IpLimitMetrics
+     */
+    @Bean
+    public IpLimitMetrics ipLimitMetrics() {
+        IpLimitMetrics ipLimitMetrics = new IpLimitMetrics(environment.getProperty(IpLimitConstant.METRICS_ENABLED_PROPERTY, Boolean.class, true),
+                environment.getProperty(IpLimitConstant.METRICS_LATENCY_SAMPLE_RATE_PROPERTY, Integer.class,
+                        IpLimitConstant.DEFAULT_METRICS_LATENCY_SAMPLE_RATE));
+        if (ipLimitMetrics.isEnabled()) {
+            ipLimitMetrics.startLatencyRotation(TimeUnit.SECONDS.toMillis(environment.getProperty(
+                    IpLimitConstant.METRICS_LATENCY_WINDOW_PROPERTY, Long.class, IpLimitConstant.DEFAULT_METRICS_LATENCY_WINDOW_SECONDS)));
+        }
+        return ipLimitMetrics;
+    }
+
+    /**
+     * 用于开放给用户一些内部功能
+     * @return IpLimitUtils
+     */
+    @Bean
+    public IpLimitUtils utils() {
+        return new IpLimitUtils();
+    }
+
+    /**
+     * 客户端IP解析器,可通过 {@link IpLimitConstant#TRUSTED_PROXIES_PROPERTY} 配置可信代理
+     * @return ClientIpResolver
+     */
+    @Bean
+    public ClientIpResolver clientIpResolver() {
+        String trustedProxies = environment.getProperty(IpLimitConstant.TRUSTED_PROXIES_PROPERTY);
+        String forwardedHeader = environment.getProperty(IpLimitConstant.FORWARDED_HEADER_PROPERTY,
+                IpLimitConstant.DEFAULT_FORWARDED_HEADER);
+        if (!StringUtils.hasText(trustedProxies)) {
+            return new ClientIpResolver(null, forwardedHeader);
+        }
+        return new ClientIpResolver(IpListMatcher.compile(Arrays.asList(
+                StringUtils.tokenizeToStringArray(trustedProxies, IpLimitConstant.IP_PROPERTIES_SPLIT))), forwardedHeader);
+    }
+
+    /**
+     * 限流器注册表,包含内置限流器、ServiceLoader 提供的限流器以及容器中的 {@link LimiterEngine}
+     * @param limiterEngines 容器中的限流器
+     * @return LimiterEngineRegistry
+     */
+    @Bean
+    public LimiterEngineRegistry limiterEngineRegistry(ObjectProvider<LimiterEngine> limiterEngines) {
+        return new LimiterEngineRegistry(
+                ImmutableList.of(new SlidingWindowLimiterEngine(), new TokenBucketLimiterEngine(), new SlidingWindowCounterLimiterEngine(),
+                        new ConcurrencyLimiterEngine(), new MultiWindowLimiterEngine()),
+                limiterEngines.orderedStream().collect(Collectors.toList()), ClassUtils.getDefaultClassLoader());
+    }
+}
@@ -0,0 +1,200 @@
+package com.van.limiter.core.constant;
+
+
+/**
+ * 常量类
+ * @author van
+ */
+public class IpLimitConstant {
+    private IpLimitConstant() {}
+
+    /**
+     * 默认的通用组名
+     */
+    public static final String COMMON_LIMIT_GROUP = "COMMON_GROUP";
+
+    /**
+     * properties中配置Ip时的分隔符
+     */
+    public static final String IP_PROPERTIES_SPLIT = ",";
+
+    /**
+     * IP模糊匹配时的分隔符
+     */
+    public static final String IP_FUZZY_SPLIT = "*";
+
+    /**
+     * IPV4分几段
+     */
+    public static final Integer IPV4_SEGMENT_SIZE = 4;
+
+    /**
+     * 单*模糊匹配场景时,应当分成两端,应对规则设置为 172.*.1  这种场景
+     */
+    public static final Integer IPV4_SPLIT_TWO_SIZE = 2;
+
+    /**
+     * 单*模糊匹配场景时,应当分成两端,应对规则设置为 172.* / *.1 这种场景
+     */
+    public static final Integer IPV4_START_END_SPLIT = 1;
+
+    /**
+     * CIDR 规则中地址与前缀长度的分隔符, eg. 172.16.0.0/12
+     */
+    public static final String IP_CIDR_SPLIT = "/";
+
+    /**
+     * IPV4 地址位数
+     */
+    public static final int IPV4_BIT_SIZE = 32;
+
+    /**
+     * IPV6 地址位数
+     */
+    public static final int IPV6_BIT_SIZE = 128;
+
+    /**
+     * 限流状态存储最大条目数的配置项
+     */
+    public static final String STORE_MAXIMUM_SIZE_PROPERTY = "ip-limiter.store.maximum-size";
+
+    /**
+     * 限流状态存储空闲过期时间(秒)的配置项
+     */
+    public static final String STORE_EXPIRE_AFTER_ACCESS_PROPERTY = "ip-limiter.store.expire-after-access-seconds";
+
+    /**
+     * 限流状态存储默认最大条目数
+     */
+    public static final long DEFAULT_STORE_MAXIMUM_SIZE = 100_000L;
+
+    /**
+     * 限流状态存储默认空闲过期时间(秒)
+     */
+    public static final long DEFAULT_STORE_EXPIRE_AFTER_ACCESS_SECONDS = 600L;
+
+    /**
+     * 限流状态存储的定期维护间隔(毫秒),每次只处理时间轮中到期的条目
+     */
+    public static final long STORE_CLEAN_UP_PERIOD_MILLIS = 1_000L;
+
+    /**
+     * 是否将令牌桶与滑动窗口计数器的状态存放在堆外表中的配置项
+     */
+    public static final String OFF_HEAP_ENABLED_PROPERTY = "ip-limiter.store.off-heap.enabled";
+
+    /**
+     * 堆外表容量的配置项,每个条目占用 64 字节
+     */
+    public static final String OFF_HEAP_CAPACITY_PROPERTY = "ip-limiter.store.off-heap.capacity";
+
+    /**
+     * 堆外表默认容量
+     */
+    public static final long DEFAULT_OFF_HEAP_CAPACITY = 1L << 22;
+
+    /**
+     * 可信代理配置项,支持与名单相同的规则,未配置时沿用原有的请求头解析方式
+     */
+    public static final String TRUSTED_PROXIES_PROPERTY = "ip-limiter.trusted-proxies";
+
+    /**
+     * 配置可信代理后读取的转发头配置项
+     */
+    public static final String FORWARDED_HEADER_PROPERTY = "ip-limiter.forwarded-header";
+
+    /**
+     * 默认的转发头
+     */
+    public static final String DEFAULT_FORWARDED_HEADER = "X-Forwarded-For";
+
+    /**
+     * 是否开启限流统计的配置项
+     */
+    public static final String METRICS_ENABLED_PROPERTY = "ip-limiter.metrics.enabled";
+
+    /**
+     * 判定耗时采样率的配置项,每多少次判定记录一次耗时
+     */
+    public static final String METRICS_LATENCY_SAMPLE_RATE_PROPERTY = "ip-limiter.metrics.latency-sample-rate";
+
+    /**
+     * 判定耗时默认采样率
+     */
+    public static final int DEFAULT_METRICS_LATENCY_SAMPLE_RATE = 16;
+
+    /**
+     * 判定耗时直方图轮换间隔的配置项,单位秒
+     */
+    public static final String METRICS_LATENCY_WINDOW_PROPERTY = "ip-limiter.metrics.latency-window-seconds";
+
+    /**
+     * 判定耗时直方图默认的轮换间隔秒数
+     */
+    public static final long DEFAULT_METRICS_LATENCY_WINDOW_SECONDS = 60;
+
+    /**
+     * 切面中请求被拒绝时的处理方式配置项,取值见 RejectionStrategy
+     */
+    public static final String REJECTION_STRATEGY_PROPERTY = "ip-limiter.rejection-strategy";
+
+    /**
+     * 服务总量限流,单位时间内所有限流接口的总次数上限配置项,未配置时不限制
+     */
+    public static final String GLOBAL_MAX_TIMES_PROPERTY = "ip-limiter.global.max-times";
+
+    /**
+     * 服务总量限流的单位时间(毫秒)配置项
+     */
+    public static final String GLOBAL_UNIT_MILLIS_PROPERTY = "ip-limiter.global.unit-millis";
+
+    /**
+     * 服务总量限流默认的单位时间(毫秒)
+     */
+    public static final long DEFAULT_GLOBAL_UNIT_MILLIS = 1_000L;
+
+    /**
+     * 黑名单布隆过滤器的期望误判率配置项,配置后在每个黑名单的前缀树之前放置布隆过滤器,未配置时不开启
+     */
+    public static final String BLACK_LIST_BLOOM_FILTER_FPP_PROPERTY = "ip-limiter.black-list.bloom-filter.fpp";
+
+    /**
+     * 限流状态快照文件路径配置项,配置后启动时恢复、运行期间定期写入并在关闭时写入,未配置时不持久化
+     */
+    public static final String STORE_SNAPSHOT_PATH_PROPERTY = "ip-limiter.store.snapshot.path";
+
+    /**
+     * 限流状态快照定期写入间隔(秒)配置项,小于等于0时只在关闭时写入
+     */
+    public static final String STORE_SNAPSHOT_INTERVAL_PROPERTY = "ip-limiter.store.snapshot.interval-seconds";
+
+    /**
+     * 限流状态快照默认的定期写入间隔(秒)
+     */
+    public static final long DEFAULT_STORE_SNAPSHOT_INTERVAL_SECONDS = 60L;
+
+    /**
+     * 封禁表容量配置项,即可同时记录的 [IP,Group] 数
+     */
+    public static final String BAN_TABLE_CAPACITY_PROPERTY = "ip-limiter.ban.capacity";
+
+    /**
+     * 封禁表默认容量
+     */
+    public static final int DEFAULT_BAN_TABLE_CAPACITY = 1 << 16;
+
+    /**
+     * 封禁表时间轮 tick 时长(毫秒)
+     */
+    public static final long BAN_TICK_MILLIS = 250L;
+
+    /**
+     * 并发数限制的计数分段数配置项,分段越多不同IP共用分段而被多拒绝的概率越低
+     */
+    public static final String CONCURRENCY_STRIPES_PROPERTY = "ip-limiter.concurrency.stripes";
+
+    /**
+     * 并发数限制默认的计数分段数
+     */
+    public static final int DEFAULT_CONCURRENCY_STRIPES = 1 << 16;
+}
@@ -0,0 +1,49 @@
+package com.van.limiter.core.engine;
+
+import com.van.limiter.core.aspect.RateLimitAspectConfig;
+import com.van.limiter.core.enums.CurrentLimiterType;
+import com.van.limiter.core.enums.LimitDecision;
+import com.van.limiter.core.policy.IpLimitPolicy;
+import com.van.limiter.core.util.IpKey;
+
+/**
+ * 并发数限流器, {@link CurrentLimiterType#CONCURRENCY}
+ * maxTimes 为同一 [IP,Group] 同时执行中的请求数上限,与时间窗口无关
+ * @author van
+ */
+public class ConcurrencyLimiterEngine implements LimiterEngine {
+
+    @Override
+    public String name() {
+        return CurrentLimiterType.CONCURRENCY.name();
+    }
+
+    @Override
+    public LimitDecision tryAcquire(IpKey key, IpLimitPolicy policy, long nowNanos) {
+        return LimitDecision.of(RateLimitAspectConfig.concurrencyCounter().tryAcquire(key.getHi(), key.getLo(),
+                policy.getGroupId(), (int) policy.getMaxTimes()));
+    }
+
+    @Override
+    public void refund(IpKey key, IpLimitPolicy policy, long nowNanos) {
+        release(key, policy);
+    }
+
+    @Override
+    public void release(IpKey key, IpLimitPolicy policy) {
+        RateLimitAspectConfig.concurrencyCounter().release(key.getHi(), key.getLo(), policy.getGroupId());
+    }
+
+    @Override
+    public boolean requiresRelease() {
+        return true;
+    }
+
+    @Override
+    public void validate(IpLimitPolicy policy) {
+        if (policy.getMaxTimes() < 1 || policy.getMaxTimes() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("IpLimit maxTimes for CONCURRENCY must be between 1 and " + Integer.MAX_VALUE
+                    + ", GroupName: " + policy.getGroupName());
+        }
+    }
+}
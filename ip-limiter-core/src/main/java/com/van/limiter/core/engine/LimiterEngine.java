@@ -0,0 +1,83 @@
+package com.van.limiter.core.engine;
+
+import com.van.limiter.core.annotation.IpLimit;
+import com.van.limiter.core.enums.LimitDecision;
+import com.van.limiter.core.policy.IpLimitPolicy;
+import com.van.limiter.core.util.IpKey;
+
+/**
+ * 限流器扩展点,可注册为 Spring Bean 或通过 ServiceLoader (META-INF/services/com.van.limiter.core.engine.LimiterEngine) 提供
+ * 通过 {@link IpLimit#limiterEngine()} 按 {@link #name()} 选择,每个方法的限流器只在解析注解时查找一次
+ * 实现需保证线程安全,且不应抛出异常,超限时返回 {@link LimitDecision#REJECTED} 即可
+ * @author van
+ */
+public interface LimiterEngine {
+
+    /**
+     * 限流器名称,内置限流器的名称与 {@link com.van.limiter.core.enums.CurrentLimiterType} 一致
+     * @return 名称
+     */
+    String name();
+
+    /**
+     * 尝试通过一次请求
+     * @param key 请求方IP
+     * @param policy 限流策略,可通过 {@link IpLimitPolicy#getGroupId()} 区分不同分组
+     * @param nowNanos 当前时间 {@link System#nanoTime()}
+     * @return 判定结果
+     */
+    LimitDecision tryAcquire(IpKey key, IpLimitPolicy policy, long nowNanos);
+
+    /**
+     * 等待模式下预约一次请求,可在 {@link IpLimitPolicy#getMaxWaitNanos()} 内获得许可时占用该许可并返回需要等待的时间
+     * 只有 {@link #supportsReservation()} 返回 true 的限流器会被调用
+     * @param key 请求方IP
+     * @param policy 限流策略
+     * @param nowNanos 当前时间 {@link System#nanoTime()}
+     * @return 需要等待的纳秒数, 0 表示立即通过, 小于0表示拒绝
+     */
+    default long reserve(IpKey key, IpLimitPolicy policy, long nowNanos) {
+        return tryAcquire(key, policy, nowNanos) == LimitDecision.PERMITTED ? 0 : -1;
+    }
+
+    /**
+     * @return 是否支持 {@link IpLimit#maxWaitMillis()} 等待模式
+     */
+    default boolean supportsReservation() {
+        return false;
+    }
+
+    /**
+     * 撤销同一次判定中 {@link #tryAcquire(IpKey, IpLimitPolicy, long)} 或 {@link #reserve(IpKey, IpLimitPolicy, long)} 的通过结果,
+     * 在单IP限流通过但 group 总量或服务总量拒绝时调用,使被拒绝的请求不占用该IP的额度
+     * 默认不做处理,即被总量拒绝的请求仍计入单IP限流
+     * @param key 请求方IP
+     * @param policy 限流策略
+     * @param nowNanos 判定时传入的当前时间
+     */
+    default void refund(IpKey key, IpLimitPolicy policy, long nowNanos) {
+    }
+
+    /**
+     * 归还 {@link #tryAcquire(IpKey, IpLimitPolicy, long)} 占用的许可,在请求处理结束后调用
+     * 只有 {@link #requiresRelease()} 返回 true 的限流器会被调用,且只对判定通过的请求调用一次
+     * @param key 请求方IP
+     * @param policy 限流策略
+     */
+    default void release(IpKey key, IpLimitPolicy policy) {
+    }
+
+    /**
+     * @return 通过的请求是否占用许可直到请求结束,如并发数限制
+     */
+    default boolean requiresRelease() {
+        return false;
+    }
+
+    /**
+     * 解析策略时的校验,配置不适用于该限流器时抛出 {@link IllegalArgumentException}
+     * @param policy 限流策略
+     */
+    default void validate(IpLimitPolicy policy) {
+    }
+}
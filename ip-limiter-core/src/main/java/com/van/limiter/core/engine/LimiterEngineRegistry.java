@@ -0,0 +1,54 @@
+package com.van.limiter.core.engine;
+
+import com.google.common.collect.Maps;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+/**
+ * 限流器注册表,同名时优先级: Spring Bean > ServiceLoader > 内置限流器
+ * @author van
+ */
+public class LimiterEngineRegistry {
+
+    private final Map<String, LimiterEngine> engines = Maps.newHashMap();
+
+    /**
+     * @param builtInEngines 内置限流器
+     * @param beanEngines 容器中的限流器
+     * @param classLoader 用于 ServiceLoader 查找
+     */
+    public LimiterEngineRegistry(Collection<? extends LimiterEngine> builtInEngines,
+                                 Collection<? extends LimiterEngine> beanEngines, ClassLoader classLoader) {
+        register(builtInEngines);
+        for (LimiterEngine engine : ServiceLoader.load(LimiterEngine.class, classLoader)) {
+            engines.put(engine.name(), engine);
+        }
+        register(beanEngines);
+    }
+
+    private void register(Collection<? extends LimiterEngine> limiterEngines) {
+        for (LimiterEngine engine : limiterEngines) {
+            engines.put(engine.name(), engine);
+        }
+    }
+
+    /**
+     * 按名称获取限流器
+     * @param name 名称
+     * @return 限流器
+     * @throws IllegalArgumentException 不存在该名称的限流器
+     */
+    public LimiterEngine getEngine(String name) {
+        LimiterEngine engine = engines.get(name);
+        if (engine == null) {
+            throw new IllegalArgumentException("No LimiterEngine named: " + name + ", available: " + engines.keySet());
+        }
+        return engine;
+    }
+
+    public Collection<LimiterEngine> getEngines() {
+        return engines.values();
+    }
+}
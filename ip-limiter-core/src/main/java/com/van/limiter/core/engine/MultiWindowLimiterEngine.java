@@ -0,0 +1,46 @@
+package com.van.limiter.core.engine;
+
+import com.van.limiter.core.aspect.RateLimitAspectConfig;
+import com.van.limiter.core.enums.LimitDecision;
+import com.van.limiter.core.limiter.MultiWindowCounter;
+import com.van.limiter.core.policy.IpLimitPolicy;
+import com.van.limiter.core.store.LimiterKey;
+import com.van.limiter.core.util.IpKey;
+
+/**
+ * 多规则限流器,用于叠加了多条 {@link com.van.limiter.core.annotation.IpLimit} 的方法,不通过 currentLimiter 选择
+ * 每次请求只查找一次状态,在同一条 {@link MultiWindowCounter} 记录中判断全部规则
+ * @author van
+ */
+public class MultiWindowLimiterEngine implements LimiterEngine {
+
+    /**
+     * 限流器名称
+     */
+    public static final String NAME = "MULTI_WINDOW";
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public LimitDecision tryAcquire(IpKey key, IpLimitPolicy policy, long nowNanos) {
+        long[] windowNanos = policy.getRuleWindowNanos();
+        LimiterKey limiterKey = LimiterKey.probe(key, policy.getGroupId());
+        MultiWindowCounter counter = RateLimitAspectConfig.getMultiWindowStore().touch(limiterKey, nowNanos);
+        if (counter == null) {
+            counter = RateLimitAspectConfig.getMultiWindowStore().get(limiterKey, policy.getMaxRuleWindowNanos() * 2,
+                    k -> new MultiWindowCounter(nowNanos, windowNanos.length));
+        }
+        return LimitDecision.of(counter.tryAcquire(nowNanos, windowNanos, policy.getRuleMaxTimes()));
+    }
+
+    @Override
+    public void refund(IpKey key, IpLimitPolicy policy, long nowNanos) {
+        MultiWindowCounter counter = RateLimitAspectConfig.getMultiWindowStore().getIfPresent(LimiterKey.probe(key, policy.getGroupId()));
+        if (counter != null) {
+            counter.refund(nowNanos, policy.getRuleWindowNanos());
+        }
+    }
+}
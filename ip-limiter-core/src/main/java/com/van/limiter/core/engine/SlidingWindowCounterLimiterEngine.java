@@ -0,0 +1,52 @@
+package com.van.limiter.core.engine;
+
+import com.van.limiter.core.aspect.RateLimitAspectConfig;
+import com.van.limiter.core.enums.CurrentLimiterType;
+import com.van.limiter.core.enums.LimitDecision;
+import com.van.limiter.core.limiter.SlidingWindowCounter;
+import com.van.limiter.core.policy.IpLimitPolicy;
+import com.van.limiter.core.store.LimiterKey;
+import com.van.limiter.core.store.OffHeapLimiterTable;
+import com.van.limiter.core.util.IpKey;
+
+/**
+ * 滑动窗口计数器限流器, {@link CurrentLimiterType#SLIDING_WINDOW_COUNTER}
+ * @author van
+ */
+public class SlidingWindowCounterLimiterEngine implements LimiterEngine {
+
+    @Override
+    public String name() {
+        return CurrentLimiterType.SLIDING_WINDOW_COUNTER.name();
+    }
+
+    @Override
+    public LimitDecision tryAcquire(IpKey key, IpLimitPolicy policy, long nowNanos) {
+        OffHeapLimiterTable offHeapTable = RateLimitAspectConfig.getOffHeapLimiterTable();
+        if (offHeapTable != null) {
+            return LimitDecision.of(offHeapTable.tryAcquireWindowCounter(key.getHi(), key.getLo(),
+                    policy.getGroupId(), nowNanos, policy.getWindowNanos(), policy.getMaxTimes()));
+        }
+        LimiterKey limiterKey = LimiterKey.probe(key, policy.getGroupId());
+        SlidingWindowCounter counter = RateLimitAspectConfig.getWindowCounterStore().touch(limiterKey, nowNanos);
+        if (counter == null) {
+            counter = RateLimitAspectConfig.getWindowCounterStore().get(limiterKey, policy.getWindowNanos() * 2,
+                    k -> new SlidingWindowCounter(nowNanos));
+        }
+        return LimitDecision.of(counter.tryAcquire(nowNanos, policy.getWindowNanos(), policy.getMaxTimes()));
+    }
+
+    @Override
+    public void refund(IpKey key, IpLimitPolicy policy, long nowNanos) {
+        OffHeapLimiterTable offHeapTable = RateLimitAspectConfig.getOffHeapLimiterTable();
+        if (offHeapTable != null) {
+            offHeapTable.refundWindowCounter(key.getHi(), key.getLo(), policy.getGroupId(), nowNanos, policy.getWindowNanos());
+            return;
+        }
+        SlidingWindowCounter counter = RateLimitAspectConfig.getWindowCounterStore().getIfPresent(
+                LimiterKey.probe(key, policy.getGroupId()));
+        if (counter != null) {
+            counter.refund(nowNanos, policy.getWindowNanos());
+        }
+    }
+}
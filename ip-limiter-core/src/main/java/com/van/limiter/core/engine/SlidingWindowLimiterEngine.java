@@ -0,0 +1,56 @@
+package com.van.limiter.core.engine;
+
+import com.van.limiter.core.aspect.RateLimitAspectConfig;
+import com.van.limiter.core.enums.CurrentLimiterType;
+import com.van.limiter.core.enums.LimitDecision;
+import com.van.limiter.core.limiter.SlidingLogWindow;
+import com.van.limiter.core.policy.IpLimitPolicy;
+import com.van.limiter.core.store.LimiterKey;
+import com.van.limiter.core.util.IpKey;
+
+/**
+ * 滑动窗口限流器, {@link CurrentLimiterType#SLIDING_WINDOW}
+ * @author van
+ */
+public class SlidingWindowLimiterEngine implements LimiterEngine {
+
+    /**
+     * 滑动窗口模式下环形数组的最大容量
+     */
+    private static final double MAX_SLIDING_WINDOW_TIMES = Integer.MAX_VALUE - 9D;
+
+    @Override
+    public String name() {
+        return CurrentLimiterType.SLIDING_WINDOW.name();
+    }
+
+    @Override
+    public LimitDecision tryAcquire(IpKey key, IpLimitPolicy policy, long nowNanos) {
+        // 状态的空闲过期时间至少覆盖一个时间窗口
+        LimiterKey limiterKey = LimiterKey.probe(key, policy.getGroupId());
+        SlidingLogWindow slidingLogWindow = RateLimitAspectConfig.getSlidingWindowStore().touch(limiterKey, nowNanos);
+        if (slidingLogWindow == null) {
+            slidingLogWindow = RateLimitAspectConfig.getSlidingWindowStore().get(limiterKey, policy.getWindowNanos(),
+                    k -> new SlidingLogWindow(policy.getMaxTimes()));
+        }
+        return LimitDecision.of(
+                slidingLogWindow.tryAcquire(nowNanos, policy.getWindowNanos(), policy.getMaxTimes()));
+    }
+
+    @Override
+    public void refund(IpKey key, IpLimitPolicy policy, long nowNanos) {
+        SlidingLogWindow slidingLogWindow = RateLimitAspectConfig.getSlidingWindowStore().getIfPresent(
+                LimiterKey.probe(key, policy.getGroupId()));
+        if (slidingLogWindow != null) {
+            slidingLogWindow.refund(nowNanos);
+        }
+    }
+
+    @Override
+    public void validate(IpLimitPolicy policy) {
+        if (policy.getMaxTimes() > MAX_SLIDING_WINDOW_TIMES) {
+            throw new IllegalArgumentException("IpLimit maxTimes is too large for SLIDING_WINDOW, use SLIDING_WINDOW_COUNTER instead, GroupName: "
+                    + policy.getGroupName());
+        }
+    }
+}
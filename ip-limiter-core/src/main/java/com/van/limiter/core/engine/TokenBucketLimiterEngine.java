@@ -0,0 +1,74 @@
+package com.van.limiter.core.engine;
+
+import com.van.limiter.core.aspect.RateLimitAspectConfig;
+import com.van.limiter.core.enums.CurrentLimiterType;
+import com.van.limiter.core.enums.LimitDecision;
+import com.van.limiter.core.limiter.GcraTokenBucket;
+import com.van.limiter.core.policy.IpLimitPolicy;
+import com.van.limiter.core.store.LimiterKey;
+import com.van.limiter.core.store.OffHeapLimiterTable;
+import com.van.limiter.core.util.IpKey;
+
+/**
+ * 令牌桶限流器, {@link CurrentLimiterType#TOKEN_BUCKET}
+ * @author van
+ */
+public class TokenBucketLimiterEngine implements LimiterEngine {
+
+    @Override
+    public String name() {
+        return CurrentLimiterType.TOKEN_BUCKET.name();
+    }
+
+    @Override
+    public LimitDecision tryAcquire(IpKey key, IpLimitPolicy policy, long nowNanos) {
+        OffHeapLimiterTable offHeapTable = RateLimitAspectConfig.getOffHeapLimiterTable();
+        if (offHeapTable != null) {
+            return LimitDecision.of(offHeapTable.tryAcquireTokenBucket(key.getHi(), key.getLo(), policy.getGroupId(), nowNanos,
+                    policy.getEmissionIntervalNanos(), policy.getBurstNanos()));
+        }
+        // 取并判断是否已记录该IP对应Group的限流情况,桶回满后状态即可丢弃
+        LimiterKey limiterKey = LimiterKey.probe(key, policy.getGroupId());
+        GcraTokenBucket tokenBucket = RateLimitAspectConfig.getTokenBucketStore().touch(limiterKey, nowNanos);
+        if (tokenBucket == null) {
+            tokenBucket = RateLimitAspectConfig.getTokenBucketStore().get(limiterKey, policy.getBurstNanos(),
+                    k -> new GcraTokenBucket(nowNanos));
+        }
+        return LimitDecision.of(tokenBucket.tryAcquire(nowNanos, policy.getEmissionIntervalNanos(), policy.getBurstNanos()));
+    }
+
+    @Override
+    public long reserve(IpKey key, IpLimitPolicy policy, long nowNanos) {
+        OffHeapLimiterTable offHeapTable = RateLimitAspectConfig.getOffHeapLimiterTable();
+        if (offHeapTable != null) {
+            return offHeapTable.reserveTokenBucket(key.getHi(), key.getLo(), policy.getGroupId(), nowNanos,
+                    policy.getEmissionIntervalNanos(), policy.getBurstNanos(), policy.getMaxWaitNanos());
+        }
+        // 预约的令牌最晚在 burst + maxWait 之后生成,状态至少保留到那时
+        LimiterKey limiterKey = LimiterKey.probe(key, policy.getGroupId());
+        GcraTokenBucket tokenBucket = RateLimitAspectConfig.getTokenBucketStore().touch(limiterKey, nowNanos);
+        if (tokenBucket == null) {
+            tokenBucket = RateLimitAspectConfig.getTokenBucketStore().get(limiterKey, policy.getBurstNanos() + policy.getMaxWaitNanos(),
+                    k -> new GcraTokenBucket(nowNanos));
+        }
+        return tokenBucket.reserve(nowNanos, policy.getEmissionIntervalNanos(), policy.getBurstNanos(), policy.getMaxWaitNanos());
+    }
+
+    @Override
+    public void refund(IpKey key, IpLimitPolicy policy, long nowNanos) {
+        OffHeapLimiterTable offHeapTable = RateLimitAspectConfig.getOffHeapLimiterTable();
+        if (offHeapTable != null) {
+            offHeapTable.refundTokenBucket(key.getHi(), key.getLo(), policy.getGroupId(), nowNanos, policy.getEmissionIntervalNanos());
+            return;
+        }
+        GcraTokenBucket tokenBucket = RateLimitAspectConfig.getTokenBucketStore().getIfPresent(LimiterKey.probe(key, policy.getGroupId()));
+        if (tokenBucket != null) {
+            tokenBucket.refund(nowNanos, policy.getEmissionIntervalNanos());
+        }
+    }
+
+    @Override
+    public boolean supportsReservation() {
+        return true;
+    }
+}
@@ -0,0 +1,25 @@
+package com.van.limiter.core.enums;
+
+/**
+ * 限流器类型
+ * @author van
+ */
+public enum CurrentLimiterType {
+    /**
+     * 滑动窗口
+     */
+    SLIDING_WINDOW,
+    /**
+     * 令牌桶
+     */
+    TOKEN_BUCKET,
+    /**
+     * 滑动窗口计数器,近似的滑动窗口,每个IP只保存两个计数,适合 maxTimes 较大的场景
+     */
+    SLIDING_WINDOW_COUNTER,
+    /**
+     * 并发数限制,maxTimes 为同一IP同时执行中的请求数上限,请求结束后归还,不考虑时间窗口
+     */
+    CONCURRENCY;
+
+}
@@ -0,0 +1,29 @@
+package com.van.limiter.core.enums;
+
+/**
+ * 限流器的判定结果
+ * @author van
+ */
+public enum LimitDecision {
+    /**
+     * 允许通过
+     */
+    PERMITTED,
+    /**
+     * 超出限流
+     */
+    REJECTED,
+    /**
+     * 命中黑名单或不在白名单内,由名单判定,限流器不会返回该结果
+     */
+    BLOCKED;
+
+    /**
+     * @param permitted 是否允许通过
+     * @return 判定结果
+     */
+    public static LimitDecision of(boolean permitted) {
+        return permitted ? PERMITTED : REJECTED;
+    }
+
+}
@@ -16,5 +16,13 @@ public enum LimitTimeType {
     /**
      * 分钟
      */
-    MINUTE;
+    MINUTE,
+    /**
+     * 小时
+     */
+    HOUR,
+    /**
+     * 天
+     */
+    DAY;
 }
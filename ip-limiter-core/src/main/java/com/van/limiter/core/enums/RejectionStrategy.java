@@ -0,0 +1,22 @@
+package com.van.limiter.core.enums;
+
+/**
+ * 切面中请求被拒绝时的处理方式
+ * @author van
+ */
+public enum RejectionStrategy {
+    /**
+     * 每次拒绝都新建带堆栈与IP信息的 IpLimitException,默认方式
+     */
+    EXCEPTION,
+    /**
+     * 抛出每个限流策略预先创建的无堆栈 IpLimitException,不含请求IP,拒绝时不产生新对象
+     */
+    STACKLESS_EXCEPTION,
+    /**
+     * 交由 RejectionHandler 处理,如直接写出 429 响应,其返回值作为被拦截方法的返回值
+     * 被拦截方法返回基本类型而回调返回 null 时,写出响应后抛出与 STACKLESS_EXCEPTION 相同的异常
+     */
+    HANDLER;
+
+}
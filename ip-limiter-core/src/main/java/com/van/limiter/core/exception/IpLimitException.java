@@ -31,6 +31,20 @@ public class IpLimitException extends RuntimeException {
         this.ipLimitAnnotation = ipLimitAnnotation;
     }
 
+    /**
+     * 用于可复用的异常实例,不记录堆栈也不允许追加 suppressed 异常,可以安全地在多个线程中重复抛出
+     * @param message message
+     * @param groupName groupName
+     * @param ipLimitAnnotation ipLimitAnnotation
+     * @param writableStackTrace 是否记录堆栈
+     */
+    public IpLimitException(String message, String groupName, IpLimit ipLimitAnnotation, boolean writableStackTrace) {
+        super(message, null, false, writableStackTrace);
+        this.requestIp = null;
+        this.groupName = groupName;
+        this.ipLimitAnnotation = ipLimitAnnotation;
+    }
+
     public String getRequestIp() {
         return requestIp;
     }
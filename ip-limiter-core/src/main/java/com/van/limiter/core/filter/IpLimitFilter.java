@@ -0,0 +1,139 @@
+package com.van.limiter.core.filter;
+
+import com.van.limiter.core.aspect.IpLimitEvaluator;
+import com.van.limiter.core.handler.RejectionHandler;
+import com.van.limiter.core.handler.StatusRejectionHandler;
+import com.van.limiter.core.policy.IpLimitPolicy;
+import com.van.limiter.core.util.ClientIpResolver;
+import com.van.limiter.core.util.IpKey;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.Ordered;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 前置过滤器模式,在过滤器链最前端按路由表完成限流,被拒绝的请求交由 {@link RejectionHandler} 处理,默认超限返回 429,名单拒绝返回 403
+ * 被拒绝的请求不再经过后续过滤器、DispatcherServlet 以及 AOP 代理
+ * 通过 {@link com.van.limiter.core.annotation.EnableIpLimit#filter()} 开启
+ * @author van
+ */
+public class IpLimitFilter extends OncePerRequestFilter implements SmartInitializingSingleton, Ordered {
+
+    /**
+     * 过滤器已判定的策略,切面遇到相同的策略时不再重复计数
+     */
+    public static final String POLICY_ATTRIBUTE = IpLimitFilter.class.getName() + ".POLICY";
+
+    @Autowired
+    private IpLimitEvaluator ipLimitEvaluator;
+
+    @Autowired
+    private ClientIpResolver clientIpResolver;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+
+    private final RejectionHandler rejectionHandler;
+
+    private volatile IpLimitRoutes routes;
+
+    public IpLimitFilter() {
+        this(new StatusRejectionHandler());
+    }
+
+    public IpLimitFilter(RejectionHandler rejectionHandler) {
+        this.rejectionHandler = rejectionHandler;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        routes = IpLimitRoutes.build(applicationContext, ipLimitEvaluator);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        IpLimitRoutes currentRoutes = routes;
+        IpLimitPolicy policy = currentRoutes == null ? null
+                : currentRoutes.match(request.getMethod(), urlPathHelper.getPathWithinApplication(request));
+        if (policy == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        IpKey requestHost = clientIpResolver.resolve(request);
+        long admitted = ipLimitEvaluator.admit(policy, requestHost);
+        if (admitted < 0) {
+            rejectionHandler.onRejected(request, response, policy, requestHost, IpLimitEvaluator.toDecision(admitted));
+            return;
+        }
+        request.setAttribute(POLICY_ATTRIBUTE, policy);
+        if (admitted != IpLimitEvaluator.LEASED) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        // 并发数限制: Controller 返回 DeferredResult / CompletableFuture 等异步结果时,在异步处理完成后归还许可
+        boolean releaseLater = false;
+        try {
+            filterChain.doFilter(request, response);
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new ReleaseListener(policy, requestHost));
+                releaseLater = true;
+            }
+        } finally {
+            if (!releaseLater) {
+                ipLimitEvaluator.release(policy, requestHost);
+            }
+        }
+    }
+
+    /**
+     * 异步请求结束时归还许可,超时与异常之后容器同样会回调 onComplete
+     */
+    private final class ReleaseListener implements AsyncListener {
+
+        private final IpLimitPolicy policy;
+
+        private final IpKey requestHost;
+
+        ReleaseListener(IpLimitPolicy policy, IpKey requestHost) {
+            this.policy = policy;
+            this.requestHost = requestHost;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            ipLimitEvaluator.release(policy, requestHost);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // 再次开始异步处理时监听器会被清除,需要重新注册
+            event.getAsyncContext().addListener(this);
+        }
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+}
@@ -0,0 +1,23 @@
+package com.van.limiter.core.filter;
+
+import com.van.limiter.core.handler.RejectionHandler;
+import com.van.limiter.core.handler.StatusRejectionHandler;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * 前置过滤器模式配置,由 {@link com.van.limiter.core.annotation.EnableIpLimit#filter()} 引入
+ * Spring Boot 下会自动注册到过滤器链,非 Boot 环境可通过 DelegatingFilterProxy 引用名为 ipLimitFilter 的 Bean
+ * @author van
+ */
+public class IpLimitFilterConfig {
+
+    /**
+     * @param rejectionHandler 容器中的 {@link RejectionHandler},不存在时使用 {@link StatusRejectionHandler}
+     * @return IpLimitFilter
+     */
+    @Bean
+    public IpLimitFilter ipLimitFilter(ObjectProvider<RejectionHandler> rejectionHandler) {
+        return new IpLimitFilter(rejectionHandler.getIfAvailable(StatusRejectionHandler::new));
+    }
+}
@@ -0,0 +1,250 @@
+package com.van.limiter.core.filter;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.van.limiter.core.aspect.IpLimitEvaluator;
+import com.van.limiter.core.policy.IpLimitPolicy;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.server.PathContainer;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.stereotype.Controller;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.lang.reflect.Method;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 启动时由 {@link RequestMapping} 与 {@link com.van.limiter.core.annotation.IpLimit} 编译得到的路由表, [URL规则,限流策略]
+ * 未被限流的接口同样登记为无策略的路由,与框架自身选择的处理方法一致: 不含通配符的路径先直接查表,未命中时再匹配全部规则,
+ * 多个规则命中时取最具体的一个,例如 GET /users/me 未被限流时不会落到被限流的 /users/{id} 上
+ * <ul>
+ *     <li>{@link #build} 与 DispatcherServlet 相同,按 {@link AntPathMatcher} 匹配,包括后缀与末尾斜杠匹配</li>
+ *     <li>{@link #buildReactive} 与 WebFlux 相同,按默认的 {@link PathPatternParser} 匹配,不做后缀匹配</li>
+ * </ul>
+ * @author van
+ */
+public class IpLimitRoutes {
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    /**
+     * WebFlux 的规则解析器, Servlet 模式下为 null
+     */
+    private final PathPatternParser patternParser;
+
+    private final Map<String, List<Route>> exactRoutes = Maps.newHashMap();
+
+    private final List<Route> allRoutes = Lists.newArrayList();
+
+    private int limitedRoutes;
+
+    private IpLimitRoutes(PathPatternParser patternParser) {
+        this.patternParser = patternParser;
+    }
+
+    /**
+     * 扫描容器中的 Controller,按 Spring MVC 的匹配规则编译路由表
+     * @param applicationContext applicationContext
+     * @param ipLimitEvaluator 用于获取与切面相同的限流策略
+     * @return 路由表
+     */
+    public static IpLimitRoutes build(ApplicationContext applicationContext, IpLimitEvaluator ipLimitEvaluator) {
+        return scan(new IpLimitRoutes(null), applicationContext, ipLimitEvaluator);
+    }
+
+    /**
+     * 扫描容器中的 Controller,按 WebFlux 的匹配规则编译路由表
+     * @param applicationContext applicationContext
+     * @param ipLimitEvaluator 用于获取与切面相同的限流策略
+     * @return 路由表
+     */
+    public static IpLimitRoutes buildReactive(ApplicationContext applicationContext, IpLimitEvaluator ipLimitEvaluator) {
+        return scan(new IpLimitRoutes(new PathPatternParser()), applicationContext, ipLimitEvaluator);
+    }
+
+    private static IpLimitRoutes scan(IpLimitRoutes routes, ApplicationContext applicationContext, IpLimitEvaluator ipLimitEvaluator) {
+        for (String beanName : applicationContext.getBeanNamesForType(Object.class, false, false)) {
+            Class<?> beanType = applicationContext.getType(beanName);
+            if (beanType == null) {
+                continue;
+            }
+            Class<?> userClass = ClassUtils.getUserClass(beanType);
+            if (!AnnotatedElementUtils.hasAnnotation(userClass, Controller.class)
+                    && !AnnotatedElementUtils.hasAnnotation(userClass, RequestMapping.class)) {
+                continue;
+            }
+            RequestMapping typeMapping = AnnotatedElementUtils.findMergedAnnotation(userClass, RequestMapping.class);
+            for (Method method : ReflectionUtils.getUniqueDeclaredMethods(userClass)) {
+                RequestMapping methodMapping = AnnotatedElementUtils.findMergedAnnotation(method, RequestMapping.class);
+                if (methodMapping == null) {
+                    continue;
+                }
+                // 未被限流时策略为 null,仍需登记以免请求被更宽泛的限流规则匹配
+                IpLimitPolicy policy = ipLimitEvaluator.resolvePolicy(method);
+                for (String typePath : paths(typeMapping)) {
+                    for (String methodPath : paths(methodMapping)) {
+                        String pattern = applicationContext.getEnvironment().resolvePlaceholders(
+                                routes.pathMatcher.combine(typePath, methodPath));
+                        routes.add(pattern.startsWith("/") ? pattern : "/" + pattern, methodMapping.method(), policy);
+                    }
+                }
+            }
+        }
+        return routes;
+    }
+
+    private static String[] paths(RequestMapping mapping) {
+        return mapping == null || mapping.path().length == 0 ? new String[]{""} : mapping.path();
+    }
+
+    private void add(String pattern, RequestMethod[] methods, IpLimitPolicy policy) {
+        Route route = new Route(pattern, patternParser == null ? null : patternParser.parse(pattern), methods, policy);
+        if (!pathMatcher.isPattern(pattern)) {
+            exactRoutes.computeIfAbsent(pattern, k -> Lists.newArrayList()).add(route);
+        }
+        allRoutes.add(route);
+        if (policy != null) {
+            limitedRoutes++;
+        }
+    }
+
+    /**
+     * 获取请求对应的限流策略
+     * @param method 请求方法
+     * @param path 应用内路径
+     * @return 限流策略,未被限流时返回 null
+     */
+    public IpLimitPolicy match(String method, String path) {
+        List<Route> exact = exactRoutes.get(path);
+        if (exact != null) {
+            for (Route route : exact) {
+                if (route.matchesMethod(method)) {
+                    return route.policy;
+                }
+            }
+        }
+        if (patternParser != null) {
+            return matchReactive(method, PathContainer.parsePath(path));
+        }
+        Route best = null;
+        String bestPattern = null;
+        Comparator<String> comparator = null;
+        for (Route route : allRoutes) {
+            if (!route.matchesMethod(method)) {
+                continue;
+            }
+            String matchingPattern = matchingPattern(route.pattern, path);
+            if (matchingPattern == null) {
+                continue;
+            }
+            if (best == null) {
+                best = route;
+                bestPattern = matchingPattern;
+                continue;
+            }
+            if (comparator == null) {
+                comparator = pathMatcher.getPatternComparator(path);
+            }
+            if (comparator.compare(matchingPattern, bestPattern) < 0) {
+                best = route;
+                bestPattern = matchingPattern;
+            }
+        }
+        return best == null ? null : best.policy;
+    }
+
+    /**
+     * 与 WebFlux 的 RequestMappingHandlerMapping 相同,按 {@link PathPattern#SPECIFICITY_COMPARATOR} 取最具体的规则
+     */
+    private IpLimitPolicy matchReactive(String method, PathContainer path) {
+        Route best = null;
+        for (Route route : allRoutes) {
+            if (!route.matchesMethod(method) || !route.pathPattern.matches(path)) {
+                continue;
+            }
+            if (best == null || PathPattern.SPECIFICITY_COMPARATOR.compare(route.pathPattern, best.pathPattern) < 0) {
+                best = route;
+            }
+        }
+        return best == null ? null : best.policy;
+    }
+
+    /**
+     * 与 Spring MVC 默认的 PatternsRequestCondition 相同,依次尝试后缀匹配、直接匹配、末尾斜杠匹配
+     * @return 实际命中的规则,未命中时返回 null
+     */
+    private String matchingPattern(String pattern, String path) {
+        if (pattern.equals(path)) {
+            return pattern;
+        }
+        if (pattern.indexOf('.') == -1 && pathMatcher.match(pattern + ".*", path)) {
+            return pattern + ".*";
+        }
+        if (pathMatcher.match(pattern, path)) {
+            return pattern;
+        }
+        if (!pattern.endsWith("/") && pathMatcher.match(pattern + "/", path)) {
+            return pattern + "/";
+        }
+        return null;
+    }
+
+    /**
+     * @return 是否没有被限流的接口
+     */
+    public boolean isEmpty() {
+        return limitedRoutes == 0;
+    }
+
+    private static final class Route {
+
+        final String pattern;
+
+        /**
+         * WebFlux 下解析后的规则, Servlet 模式下为 null
+         */
+        final PathPattern pathPattern;
+
+        /**
+         * 为空时匹配所有请求方法
+         */
+        final Set<RequestMethod> methods;
+
+        /**
+         * 未被限流的接口为 null
+         */
+        final IpLimitPolicy policy;
+
+        Route(String pattern, PathPattern pathPattern, RequestMethod[] methods, IpLimitPolicy policy) {
+            this.pattern = pattern;
+            this.pathPattern = pathPattern;
+            this.methods = EnumSet.noneOf(RequestMethod.class);
+            for (RequestMethod requestMethod : methods) {
+                this.methods.add(requestMethod);
+            }
+            this.policy = policy;
+        }
+
+        boolean matchesMethod(String method) {
+            if (methods.isEmpty()) {
+                return true;
+            }
+            for (RequestMethod requestMethod : methods) {
+                if (requestMethod.name().equals(method)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
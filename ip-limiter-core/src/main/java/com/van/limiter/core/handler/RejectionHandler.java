@@ -0,0 +1,30 @@
+package com.van.limiter.core.handler;
+
+import com.van.limiter.core.enums.LimitDecision;
+import com.van.limiter.core.policy.IpLimitPolicy;
+import com.van.limiter.core.util.IpKey;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 请求被拒绝时的回调,注册为 Spring Bean 即可替换默认的 {@link StatusRejectionHandler}
+ * 过滤器模式下总是使用该回调,切面中需配置 ip-limiter.rejection-strategy=HANDLER
+ * @author van
+ */
+public interface RejectionHandler {
+
+    /**
+     * 处理被拒绝的请求
+     * @param request request
+     * @param response response,切面中可能为 null
+     * @param policy 限流策略
+     * @param requestHost 请求方IP
+     * @param decision {@link LimitDecision#REJECTED} 超出限流, {@link LimitDecision#BLOCKED} 名单拒绝
+     * @return 切面中作为被拦截方法的返回值,过滤器中忽略
+     * @throws IOException 写出响应失败
+     */
+    Object onRejected(HttpServletRequest request, HttpServletResponse response, IpLimitPolicy policy,
+                      IpKey requestHost, LimitDecision decision) throws IOException;
+}
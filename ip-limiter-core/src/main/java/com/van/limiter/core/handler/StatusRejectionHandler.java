@@ -0,0 +1,31 @@
+package com.van.limiter.core.handler;
+
+import com.van.limiter.core.enums.LimitDecision;
+import com.van.limiter.core.policy.IpLimitPolicy;
+import com.van.limiter.core.util.IpKey;
+import org.springframework.http.HttpStatus;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 默认的拒绝处理,超出限流返回 429,名单拒绝返回 403,不经过错误页转发
+ * @author van
+ */
+public class StatusRejectionHandler implements RejectionHandler {
+
+    @Override
+    public Object onRejected(HttpServletRequest request, HttpServletResponse response, IpLimitPolicy policy,
+                             IpKey requestHost, LimitDecision decision) throws IOException {
+        if (response == null || response.isCommitted()) {
+            return null;
+        }
+        HttpStatus status = decision == LimitDecision.BLOCKED ? HttpStatus.FORBIDDEN : HttpStatus.TOO_MANY_REQUESTS;
+        response.setStatus(status.value());
+        response.setContentType("text/plain;charset=UTF-8");
+        response.getWriter().write(status.getReasonPhrase());
+        response.flushBuffer();
+        return null;
+    }
+}
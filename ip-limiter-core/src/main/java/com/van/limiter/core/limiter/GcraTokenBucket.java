@@ -0,0 +1,92 @@
+package com.van.limiter.core.limiter;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * 基于 GCRA (generic cell rate algorithm) 的无锁令牌桶
+ * 状态只有一个 "理论到达时间" (TAT),每次请求通过 CAS 更新,不会像 Guava RateLimiter 一样进入互斥锁
+ * <ul>
+ *     <li>emissionIntervalNanos: 生成一个令牌所需的时间</li>
+ *     <li>burstNanos: 突发容量 * emissionIntervalNanos,即桶满时可连续通过的请求所占用的时间</li>
+ * </ul>
+ * @author van
+ */
+public class GcraTokenBucket {
+
+    private static final AtomicLongFieldUpdater<GcraTokenBucket> TAT_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(GcraTokenBucket.class, "theoreticalArrivalTime");
+
+    private volatile long theoreticalArrivalTime;
+
+    /**
+     * @param now 当前时间 {@link System#nanoTime()},新建的桶是满的
+     */
+    public GcraTokenBucket(long now) {
+        this.theoreticalArrivalTime = now;
+    }
+
+    /**
+     * 尝试获取一个令牌
+     * @param now 当前时间 {@link System#nanoTime()}
+     * @param emissionIntervalNanos 生成一个令牌所需的时间
+     * @param burstNanos 突发容量对应的时间
+     * @return 是否获取成功
+     */
+    public boolean tryAcquire(long now, long emissionIntervalNanos, long burstNanos) {
+        for (;;) {
+            long tat = theoreticalArrivalTime;
+            long newTat = (tat - now > 0 ? tat : now) + emissionIntervalNanos;
+            if (newTat - now > burstNanos) {
+                return false;
+            }
+            if (TAT_UPDATER.compareAndSet(this, tat, newTat)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 预约一个令牌,桶中没有令牌时占用未来生成的令牌,与 {@link #tryAcquire(long, long, long)} 的区别只在于允许等待
+     * @param now 当前时间 {@link System#nanoTime()}
+     * @param emissionIntervalNanos 生成一个令牌所需的时间
+     * @param burstNanos 突发容量对应的时间
+     * @param maxWaitNanos 最长等待时间
+     * @return 需要等待的纳秒数, 0 表示立即可用, 超过最长等待时间时返回 -1 且不占用令牌
+     */
+    public long reserve(long now, long emissionIntervalNanos, long burstNanos, long maxWaitNanos) {
+        for (;;) {
+            long tat = theoreticalArrivalTime;
+            long newTat = (tat - now > 0 ? tat : now) + emissionIntervalNanos;
+            long waitNanos = newTat - now - burstNanos;
+            if (waitNanos > maxWaitNanos) {
+                return -1;
+            }
+            if (TAT_UPDATER.compareAndSet(this, tat, newTat)) {
+                return Math.max(0, waitNanos);
+            }
+        }
+    }
+
+    /**
+     * 退回一个已获取或已预约的令牌,用于同一次判定中 group 总量或服务总量拒绝的请求
+     * @param now 获取令牌时的时间 {@link System#nanoTime()}
+     * @param emissionIntervalNanos 生成一个令牌所需的时间
+     */
+    public void refund(long now, long emissionIntervalNanos) {
+        for (;;) {
+            long tat = theoreticalArrivalTime;
+            if (tat - now <= 0) {
+                // 桶已回满
+                return;
+            }
+            long newTat = tat - emissionIntervalNanos - now > 0 ? tat - emissionIntervalNanos : now;
+            if (TAT_UPDATER.compareAndSet(this, tat, newTat)) {
+                return;
+            }
+        }
+    }
+
+    public long getTheoreticalArrivalTime() {
+        return theoreticalArrivalTime;
+    }
+}
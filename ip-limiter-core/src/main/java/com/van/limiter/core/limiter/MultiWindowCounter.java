@@ -0,0 +1,103 @@
+package com.van.limiter.core.limiter;
+
+import java.util.Arrays;
+
+/**
+ * 多规则滑动窗口计数器,同一接口叠加多条限流规则时,一个 [IP,Group] 的所有规则计数保存在这一条记录中
+ * <ul>
+ *     <li>每条规则的算法与 {@link SlidingWindowCounter} 相同,只保存窗口起点与两个计数</li>
+ *     <li>先检查全部规则,全部通过后才一起计数: 任一规则拒绝时不会占用其他规则的额度</li>
+ * </ul>
+ * @author van
+ */
+public class MultiWindowCounter {
+
+    /**
+     * 每条规则 [窗口起点,上一窗口计数,当前窗口计数]
+     */
+    private static final int STRIDE = 3;
+
+    private long[] state;
+
+    /**
+     * @param now 当前时间 {@link System#nanoTime()}
+     * @param rules 规则数
+     */
+    public MultiWindowCounter(long now, int rules) {
+        this.state = new long[rules * STRIDE];
+        for (int offset = 0; offset < state.length; offset += STRIDE) {
+            state[offset] = now;
+        }
+    }
+
+    /**
+     * 由快照恢复
+     * @param state {@link #snapshot()} 的结果
+     */
+    public MultiWindowCounter(long[] state) {
+        if (state.length % STRIDE != 0) {
+            throw new IllegalArgumentException("Multi window counter state length must be a multiple of " + STRIDE + ": " + state.length);
+        }
+        this.state = state;
+    }
+
+    /**
+     * @return 每条规则依次为 [窗口起点,上一窗口计数,当前窗口计数]
+     */
+    public synchronized long[] snapshot() {
+        return state.clone();
+    }
+
+    /**
+     * 尝试记录一次请求,所有规则都通过时才计数
+     * 同一 group 下的不同方法按规则顺序共用计数,规则数较多时补充新的规则
+     * @param now 当前时间 {@link System#nanoTime()}
+     * @param windowNanos 各规则的时间窗口长度
+     * @param maxTimes 各规则时间窗口内最多次数
+     * @return 是否允许通过
+     */
+    public synchronized boolean tryAcquire(long now, long[] windowNanos, double[] maxTimes) {
+        if (state.length < windowNanos.length * STRIDE) {
+            int offset = state.length;
+            state = Arrays.copyOf(state, windowNanos.length * STRIDE);
+            for (; offset < state.length; offset += STRIDE) {
+                state[offset] = now;
+            }
+        }
+        for (int rule = 0, offset = 0; rule < windowNanos.length; rule++, offset += STRIDE) {
+            long window = windowNanos[rule];
+            long elapsed = now - state[offset];
+            if (elapsed >= window) {
+                // 只是将窗口前移,与是否计数无关
+                long windows = elapsed / window;
+                state[offset + 1] = windows == 1 ? state[offset + 2] : 0;
+                state[offset + 2] = 0;
+                state[offset] += windows * window;
+                elapsed -= windows * window;
+            }
+            double previousWeight = (double) (window - elapsed) / window;
+            if (state[offset + 1] * previousWeight + state[offset + 2] + 1 > maxTimes[rule]) {
+                return false;
+            }
+        }
+        for (int rule = 0, offset = 0; rule < windowNanos.length; rule++, offset += STRIDE) {
+            state[offset + 2]++;
+        }
+        return true;
+    }
+
+    /**
+     * 撤销一次通过的请求,每条规则各减一,用于同一次判定中 group 总量或服务总量拒绝的请求
+     * @param now 请求通过时的时间 {@link System#nanoTime()}
+     * @param windowNanos 各规则的时间窗口长度
+     */
+    public synchronized void refund(long now, long[] windowNanos) {
+        for (int rule = 0, offset = 0; rule < windowNanos.length && offset < state.length; rule++, offset += STRIDE) {
+            if (now - state[offset] >= 0) {
+                state[offset + 2] = Math.max(0, state[offset + 2] - 1);
+            } else if (now - (state[offset] - windowNanos[rule]) >= 0) {
+                state[offset + 1] = Math.max(0, state[offset + 1] - 1);
+            }
+        }
+    }
+}
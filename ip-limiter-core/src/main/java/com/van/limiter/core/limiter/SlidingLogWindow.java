@@ -0,0 +1,135 @@
+package com.van.limiter.core.limiter;
+
+import java.util.Arrays;
+
+/**
+ * 精确滑动窗口,使用定长的 long 环形数组记录时间窗口内每次请求的 {@link System#nanoTime()}
+ * 容量由 maxTimes 决定,插入、淘汰、计数均为均摊 O(1),请求过程中不产生新对象
+ * @author van
+ */
+public class SlidingLogWindow {
+
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    private static final long[] EMPTY = {};
+
+    private long[] timestamps;
+
+    /**
+     * 最早一次请求所在下标
+     */
+    private int head;
+
+    private int count;
+
+    public SlidingLogWindow(double maxTimes) {
+        this.timestamps = new long[capacityOf(maxTimes)];
+    }
+
+    /**
+     * 由快照恢复,容量不足时在首次请求时按 maxTimes 扩容
+     * @param timestamps 按时间先后排列的请求时间 {@link System#nanoTime()}
+     */
+    public SlidingLogWindow(long[] timestamps) {
+        this.timestamps = Arrays.copyOf(timestamps, timestamps.length + 1);
+        this.count = timestamps.length;
+    }
+
+    /**
+     * @return 按时间先后排列的请求时间,包含可能已经超出窗口的记录
+     */
+    public synchronized long[] snapshot() {
+        long[] snapshot = new long[count];
+        for (int index = 0; index < count; index++) {
+            int from = head + index;
+            snapshot[index] = timestamps[from >= timestamps.length ? from - timestamps.length : from];
+        }
+        return snapshot;
+    }
+
+    /**
+     * 丢弃窗口外的记录,并按剩余记录数收缩数组,由维护线程在客户端空闲一个时间窗口后调用
+     * 全部失效时释放数组,再次请求时重新分配
+     * @param now 当前时间 {@link System#nanoTime()}
+     * @param windowNanos 时间窗口长度
+     */
+    public synchronized void trim(long now, long windowNanos) {
+        while (count > 0 && now - timestamps[head] > windowNanos) {
+            head = head + 1 == timestamps.length ? 0 : head + 1;
+            count--;
+        }
+        if (count == 0) {
+            timestamps = EMPTY;
+            head = 0;
+        } else if (count < timestamps.length / 2) {
+            resize(count + 1);
+        }
+    }
+
+    /**
+     * 尝试记录一次请求,与原滑动窗口语义一致: 丢弃窗口外的记录后,已有记录数超过 maxTimes 时拒绝,被拒绝的请求不计入窗口
+     * @param now 当前时间 {@link System#nanoTime()}
+     * @param windowNanos 时间窗口长度
+     * @param maxTimes 时间窗口内最多次数
+     * @return 是否允许通过
+     */
+    public synchronized boolean tryAcquire(long now, long windowNanos, double maxTimes) {
+        // 丢弃超出滑动窗口的失效数据
+        while (count > 0 && now - timestamps[head] > windowNanos) {
+            head = head + 1 == timestamps.length ? 0 : head + 1;
+            count--;
+        }
+        if (count > maxTimes) {
+            return false;
+        }
+        if (count == timestamps.length) {
+            // 同一 group 下存在 maxTimes 更大的接口时扩容
+            resize(capacityOf(maxTimes));
+        }
+        int tail = head + count;
+        timestamps[tail >= timestamps.length ? tail - timestamps.length : tail] = now;
+        count++;
+        return true;
+    }
+
+    /**
+     * 撤销一次通过的请求,移除最近一条时间为 now 的记录,用于同一次判定中 group 总量或服务总量拒绝的请求
+     * @param now 请求通过时的时间 {@link System#nanoTime()}
+     */
+    public synchronized void refund(long now) {
+        for (int index = count - 1; index >= 0; index--) {
+            int at = head + index;
+            at = at >= timestamps.length ? at - timestamps.length : at;
+            if (timestamps[at] != now) {
+                continue;
+            }
+            // 之后的记录依次前移
+            for (int next = index + 1; next < count; next++) {
+                int from = head + next;
+                from = from >= timestamps.length ? from - timestamps.length : from;
+                timestamps[at] = timestamps[from];
+                at = from;
+            }
+            count--;
+            return;
+        }
+    }
+
+    private void resize(int capacity) {
+        long[] grown = new long[Math.max(capacity, count + 1)];
+        for (int index = 0; index < count; index++) {
+            int from = head + index;
+            grown[index] = timestamps[from >= timestamps.length ? from - timestamps.length : from];
+        }
+        timestamps = grown;
+        head = 0;
+    }
+
+    private static int capacityOf(double maxTimes) {
+        double capacity = Math.floor(Math.max(maxTimes, 0)) + 1;
+        if (capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("maxTimes is too large for SLIDING_WINDOW, use SLIDING_WINDOW_COUNTER instead: " + maxTimes);
+        }
+        return (int) capacity;
+    }
+}
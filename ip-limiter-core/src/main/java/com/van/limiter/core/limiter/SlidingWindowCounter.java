@@ -0,0 +1,77 @@
+package com.van.limiter.core.limiter;
+
+/**
+ * 滑动窗口计数器,采用前后两个固定窗口加权的近似算法
+ * 估算值 = 上一窗口计数 * 上一窗口在滑动窗口内的占比 + 当前窗口计数
+ * 每个 [IP,Group] 只保存窗口起点与两个计数,内存与耗时不随 maxTimes 增长
+ * @author van
+ */
+public class SlidingWindowCounter {
+
+    private long windowStart;
+
+    private long previousCount;
+
+    private long currentCount;
+
+    public SlidingWindowCounter(long now) {
+        this.windowStart = now;
+    }
+
+    /**
+     * 由快照恢复
+     * @param windowStart 当前窗口起点 {@link System#nanoTime()}
+     * @param previousCount 上一窗口计数
+     * @param currentCount 当前窗口计数
+     */
+    public SlidingWindowCounter(long windowStart, long previousCount, long currentCount) {
+        this.windowStart = windowStart;
+        this.previousCount = previousCount;
+        this.currentCount = currentCount;
+    }
+
+    /**
+     * @return [窗口起点,上一窗口计数,当前窗口计数]
+     */
+    public synchronized long[] snapshot() {
+        return new long[]{windowStart, previousCount, currentCount};
+    }
+
+    /**
+     * 尝试记录一次请求
+     * @param now 当前时间 {@link System#nanoTime()}
+     * @param windowNanos 时间窗口长度
+     * @param maxTimes 时间窗口内最多次数
+     * @return 是否允许通过
+     */
+    public synchronized boolean tryAcquire(long now, long windowNanos, double maxTimes) {
+        long elapsed = now - windowStart;
+        if (elapsed >= windowNanos) {
+            long windows = elapsed / windowNanos;
+            previousCount = windows == 1 ? currentCount : 0;
+            currentCount = 0;
+            windowStart += windows * windowNanos;
+            elapsed -= windows * windowNanos;
+        }
+        double previousWeight = (double) (windowNanos - elapsed) / windowNanos;
+        if (previousCount * previousWeight + currentCount + 1 > maxTimes) {
+            return false;
+        }
+        currentCount++;
+        return true;
+    }
+
+    /**
+     * 撤销一次通过的请求,用于同一次判定中 group 总量或服务总量拒绝的请求
+     * @param now 请求通过时的时间 {@link System#nanoTime()}
+     * @param windowNanos 时间窗口长度
+     */
+    public synchronized void refund(long now, long windowNanos) {
+        if (now - windowStart >= 0) {
+            currentCount = Math.max(0, currentCount - 1);
+        } else if (now - (windowStart - windowNanos) >= 0) {
+            // 其他线程已进入下一个窗口,该请求已计入上一窗口
+            previousCount = Math.max(0, previousCount - 1);
+        }
+    }
+}
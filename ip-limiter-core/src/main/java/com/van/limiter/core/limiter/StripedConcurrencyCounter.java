@@ -0,0 +1,106 @@
+package com.van.limiter.core.limiter;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * 分段并发计数器,用于限制同一 [IP,Group] 同时执行中的请求数
+ * <ul>
+ *     <li>计数保存在固定长度的 {@link AtomicIntegerArray} 中,不为每个客户端创建 Semaphore,客户端数量再多内存占用也不变</li>
+ *     <li>每个Key散列到两个分段,两个分段都加一后取较小值判断是否超限(与 Count-Min Sketch 相同),
+ *     不同Key落在同一分段时只可能多拒绝,不会放行超过上限的请求</li>
+ *     <li>请求结束后两个分段各减一,不需要清理线程</li>
+ * </ul>
+ * @author van
+ */
+public class StripedConcurrencyCounter {
+
+    private final AtomicIntegerArray counters;
+
+    private final int mask;
+
+    /**
+     * @param stripes 分段数,会向上取整为2的幂,至少为2
+     */
+    public StripedConcurrencyCounter(int stripes) {
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("Concurrency counter stripes must be positive: " + stripes);
+        }
+        int size = Math.max(2, Integer.highestOneBit(stripes - 1) << 1);
+        this.counters = new AtomicIntegerArray(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * 尝试占用一个并发许可,通过后必须调用 {@link #release(long, long, int)} 归还
+     * @param hi IP高64位
+     * @param lo IP低64位
+     * @param groupId Group编号
+     * @param limit 并发数上限
+     * @return 是否允许通过
+     */
+    public boolean tryAcquire(long hi, long lo, int groupId, int limit) {
+        long hash = hash(hi, lo, groupId);
+        int first = first(hash);
+        int second = second(hash, first);
+        counters.incrementAndGet(first);
+        counters.incrementAndGet(second);
+        // 两个分段都加一之后再读取,同一Key的并发请求中最后通过的一个必然能看到其他请求的计数
+        if (Math.min(counters.get(first), counters.get(second)) <= limit) {
+            return true;
+        }
+        counters.decrementAndGet(first);
+        counters.decrementAndGet(second);
+        return false;
+    }
+
+    /**
+     * 归还 {@link #tryAcquire(long, long, int, int)} 占用的许可
+     * @param hi IP高64位
+     * @param lo IP低64位
+     * @param groupId Group编号
+     */
+    public void release(long hi, long lo, int groupId) {
+        long hash = hash(hi, lo, groupId);
+        int first = first(hash);
+        counters.decrementAndGet(first);
+        counters.decrementAndGet(second(hash, first));
+    }
+
+    /**
+     * @param hi IP高64位
+     * @param lo IP低64位
+     * @param groupId Group编号
+     * @return 执行中的请求数估计值,不小于实际值
+     */
+    public int inFlight(long hi, long lo, int groupId) {
+        long hash = hash(hi, lo, groupId);
+        int first = first(hash);
+        return Math.min(counters.get(first), counters.get(second(hash, first)));
+    }
+
+    /**
+     * @return 分段数
+     */
+    public int stripes() {
+        return counters.length();
+    }
+
+    private static long hash(long hi, long lo, int groupId) {
+        long h = hi * 0x9E3779B97F4A7C15L ^ lo;
+        h = (h ^ groupId) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+
+    private int first(long hash) {
+        return (int) hash & mask;
+    }
+
+    /**
+     * 第二个分段取散列值的高32位,与第一个相同时取相邻分段
+     */
+    private int second(long hash, int first) {
+        int second = (int) (hash >>> 32) & mask;
+        return second == first ? first ^ 1 : second;
+    }
+}
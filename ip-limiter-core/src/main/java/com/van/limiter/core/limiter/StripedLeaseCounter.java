@@ -0,0 +1,204 @@
+package com.van.limiter.core.limiter;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 分段租约计数器,用于所有IP共享同一个Key的总量限流(固定窗口)
+ * <ul>
+ *     <li>每个窗口的总额度保存在中心计数中,各线程分段按批次租用额度,之后只在本段内扣减,避免所有请求竞争同一个计数</li>
+ *     <li>中心额度用尽时从其他分段借用剩余额度,因此通过的请求数不会超过上限,也不会因额度分散而提前拒绝</li>
+ *     <li>计数与额度都带有窗口编号,进入新窗口时自动作废,无需额外的清理线程</li>
+ * </ul>
+ * @author van
+ */
+public class StripedLeaseCounter {
+
+    /**
+     * 每个分段占用的 long 数,使不同分段位于不同缓存行
+     */
+    private static final int PADDING = 8;
+
+    private static final int MAX_STRIPES = 64;
+
+    private static final int LEASES_PER_STRIPE = 4;
+
+    private static final int MAX_LEASE = 64;
+
+    private static final long TOKENS_MASK = 0xFFFF_FFFFL;
+
+    private final long origin;
+
+    private final long windowNanos;
+
+    private final long limit;
+
+    private final long leaseSize;
+
+    private final int stripeMask;
+
+    /**
+     * [窗口编号 32 | 剩余额度 32]
+     */
+    private final AtomicLong central;
+
+    /**
+     * 每个分段 [窗口编号 32 | 已租用的剩余额度 32]
+     */
+    private final AtomicLongArray stripes;
+
+    /**
+     * @param now 当前时间 {@link System#nanoTime()},作为窗口起点
+     * @param windowNanos 窗口长度
+     * @param maxTimes 每个窗口的总次数上限,向下取整
+     */
+    public StripedLeaseCounter(long now, long windowNanos, double maxTimes) {
+        int stripeCount = Math.min(MAX_STRIPES, Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)) << 1);
+        this.origin = now;
+        this.windowNanos = windowNanos;
+        this.limit = limitOf(maxTimes);
+        this.leaseSize = Math.max(1L, Math.min(MAX_LEASE, limit / ((long) stripeCount * LEASES_PER_STRIPE)));
+        this.stripeMask = stripeCount - 1;
+        this.central = new AtomicLong(pack(0, limit));
+        this.stripes = new AtomicLongArray(stripeCount * PADDING);
+    }
+
+    /**
+     * 尝试记录一次请求
+     * @param now 当前时间 {@link System#nanoTime()}
+     * @return 是否允许通过
+     */
+    public boolean tryAcquire(long now) {
+        int epoch = (int) ((now - origin) / windowNanos);
+        int index = ((int) Thread.currentThread().getId() & stripeMask) * PADDING;
+        // 本段已有额度
+        if (takeFromStripe(index, epoch)) {
+            return true;
+        }
+        // 向中心租用一批额度,本次请求使用其中一个,剩余的放入本段
+        long granted = lease(epoch);
+        if (granted > 0) {
+            if (granted > 1) {
+                depositToStripe(index, epoch, granted - 1);
+            }
+            return true;
+        }
+        // 中心额度已用尽,从其他分段借用
+        for (int other = 0; other < stripes.length(); other += PADDING) {
+            if (other != index && takeFromStripe(other, epoch)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 退回一次已通过的请求,额度放回当前线程所在分段,已进入新窗口时不做处理
+     * @param now 请求通过时的时间 {@link System#nanoTime()}
+     */
+    public void refund(long now) {
+        int epoch = (int) ((now - origin) / windowNanos);
+        depositToStripe(((int) Thread.currentThread().getId() & stripeMask) * PADDING, epoch, 1);
+    }
+
+    private boolean takeFromStripe(int index, int epoch) {
+        for (;;) {
+            long cell = stripes.get(index);
+            if (epochOf(cell) != epoch || tokensOf(cell) == 0) {
+                return false;
+            }
+            if (stripes.compareAndSet(index, cell, cell - 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void depositToStripe(int index, int epoch, long tokens) {
+        for (;;) {
+            long cell = stripes.get(index);
+            long current = epochOf(cell) == epoch ? tokensOf(cell) : 0;
+            if (epochOf(cell) - epoch > 0) {
+                // 已进入新的窗口,旧额度作废
+                return;
+            }
+            if (stripes.compareAndSet(index, cell, pack(epoch, current + tokens))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return 租到的额度,为0时表示当前窗口已无额度
+     */
+    private long lease(int epoch) {
+        for (;;) {
+            long state = central.get();
+            int stateEpoch = epochOf(state);
+            if (stateEpoch - epoch > 0) {
+                // 其他线程已进入新的窗口,本线程的时间已落后
+                return 0;
+            }
+            long remaining = stateEpoch == epoch ? tokensOf(state) : limit;
+            long granted = Math.min(leaseSize, remaining);
+            if (granted == 0) {
+                return 0;
+            }
+            if (central.compareAndSet(state, pack(epoch, remaining - granted))) {
+                return granted;
+            }
+        }
+    }
+
+    /**
+     * @param now 当前时间 {@link System#nanoTime()}
+     * @return 当前窗口尚未使用的额度,包含各分段已租用但未使用的部分
+     */
+    public long available(long now) {
+        int epoch = (int) ((now - origin) / windowNanos);
+        long state = central.get();
+        if (epochOf(state) != epoch) {
+            return limit;
+        }
+        long available = tokensOf(state);
+        for (int index = 0; index < stripes.length(); index += PADDING) {
+            long cell = stripes.get(index);
+            if (epochOf(cell) == epoch) {
+                available += tokensOf(cell);
+            }
+        }
+        return available;
+    }
+
+    public long getLimit() {
+        return limit;
+    }
+
+    /**
+     * @param windowNanos 窗口长度
+     * @param maxTimes 每个窗口的总次数上限
+     * @return 是否与当前的窗口长度与总次数上限一致
+     */
+    public boolean hasLimit(long windowNanos, double maxTimes) {
+        return this.windowNanos == windowNanos && limit == limitOf(maxTimes);
+    }
+
+    private static long limitOf(double maxTimes) {
+        return (long) Math.min(Math.floor(maxTimes), TOKENS_MASK);
+    }
+
+    public long getWindowNanos() {
+        return windowNanos;
+    }
+
+    private static long pack(int epoch, long tokens) {
+        return (long) epoch << 32 | tokens;
+    }
+
+    private static int epochOf(long packed) {
+        return (int) (packed >>> 32);
+    }
+
+    private static long tokensOf(long packed) {
+        return packed & TOKENS_MASK;
+    }
+}
@@ -0,0 +1,109 @@
+package com.van.limiter.core.matcher;
+
+import com.van.limiter.core.util.IpKey;
+
+import java.util.List;
+
+/**
+ * 某个 {@link com.van.limiter.core.annotation.IpLimit} 注解名单与所属 group 动态名单合并编译后的结果
+ * 动态名单变更时整体替换对应的匹配器,读取方无需加锁
+ * @author van
+ */
+public class CompiledIpLists {
+
+    private final String groupName;
+
+    /**
+     * 注解中配置的白名单规则(已解析占位符并拆分)
+     */
+    private final List<String> whiteRules;
+
+    /**
+     * 注解中配置的黑名单规则(已解析占位符并拆分)
+     */
+    private final List<String> blackRules;
+
+    private volatile IpListMatcher whiteMatcher = IpListMatcher.EMPTY;
+
+    private volatile IpListMatcher blackMatcher = IpListMatcher.EMPTY;
+
+    /**
+     * group 绑定的白名单区间文件,未绑定时为 null
+     */
+    private volatile IpRangeFile whiteRangeFile;
+
+    /**
+     * group 绑定的黑名单区间文件,未绑定时为 null
+     */
+    private volatile IpRangeFile blackRangeFile;
+
+    public CompiledIpLists(String groupName, List<String> whiteRules, List<String> blackRules) {
+        this.groupName = groupName;
+        this.whiteRules = whiteRules;
+        this.blackRules = blackRules;
+    }
+
+    /**
+     * 判断IP是否命中白名单,先查编译后的规则,再查区间文件
+     * @param ip ip
+     * @return 是否命中
+     */
+    public boolean inWhiteList(IpKey ip) {
+        IpRangeFile rangeFile = whiteRangeFile;
+        return whiteMatcher.matches(ip) || rangeFile != null && rangeFile.contains(ip);
+    }
+
+    /**
+     * 判断IP是否命中黑名单,先查编译后的规则,再查区间文件
+     * @param ip ip
+     * @return 是否命中
+     */
+    public boolean inBlackList(IpKey ip) {
+        IpRangeFile rangeFile = blackRangeFile;
+        return blackMatcher.matches(ip) || rangeFile != null && rangeFile.contains(ip);
+    }
+
+    public String getGroupName() {
+        return groupName;
+    }
+
+    public List<String> getWhiteRules() {
+        return whiteRules;
+    }
+
+    public List<String> getBlackRules() {
+        return blackRules;
+    }
+
+    public IpListMatcher getWhiteMatcher() {
+        return whiteMatcher;
+    }
+
+    public void setWhiteMatcher(IpListMatcher whiteMatcher) {
+        this.whiteMatcher = whiteMatcher;
+    }
+
+    public IpListMatcher getBlackMatcher() {
+        return blackMatcher;
+    }
+
+    public void setBlackMatcher(IpListMatcher blackMatcher) {
+        this.blackMatcher = blackMatcher;
+    }
+
+    public IpRangeFile getWhiteRangeFile() {
+        return whiteRangeFile;
+    }
+
+    public void setWhiteRangeFile(IpRangeFile whiteRangeFile) {
+        this.whiteRangeFile = whiteRangeFile;
+    }
+
+    public IpRangeFile getBlackRangeFile() {
+        return blackRangeFile;
+    }
+
+    public void setBlackRangeFile(IpRangeFile blackRangeFile) {
+        this.blackRangeFile = blackRangeFile;
+    }
+}
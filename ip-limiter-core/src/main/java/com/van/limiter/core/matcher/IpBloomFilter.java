@@ -0,0 +1,199 @@
+package com.van.limiter.core.matcher;
+
+import java.util.Arrays;
+
+/**
+ * 名单前缀的布隆过滤器,放在 {@link IpPrefixTrie} 之前,绝大多数未命中的请求只需几次哈希探测即可返回
+ * <ul>
+ *     <li>每条前缀规则按 [截断后的地址,前缀长度,地址族] 写入;查询时对名单中出现过的每种前缀长度各探测一次</li>
+ *     <li>一次查询最多探测 k 次(k 为同一地址族中前缀长度的种数),误判率约为单次探测的 k 倍,
+ *     因此位数组按单次探测 p/k 的误判率计算,再向上取整为2的幂,使每次查询的误判率不高于配置值 p</li>
+ * </ul>
+ * 构建完成后只读,可安全地被多线程共享
+ * @author van
+ */
+public final class IpBloomFilter {
+
+    private static final double LN2 = Math.log(2);
+
+    private static final int IPV6_FAMILY = 1 << 8;
+
+    private final long[] bits;
+
+    private final long bitMask;
+
+    private final int hashCount;
+
+    private final double falsePositiveRate;
+
+    private final int entryCount;
+
+    /**
+     * 出现过的 IPV4 前缀长度,查询时按此截断地址
+     */
+    private final int[] ipv4PrefixLengths;
+
+    /**
+     * 出现过的 IPV6 前缀长度,查询时按此截断地址
+     */
+    private final int[] ipv6PrefixLengths;
+
+    /**
+     * @param prefixes 前缀规则, 每条为 [hi,lo,前缀长度|地址族] 三个 long, IPV4 地址位于 hi 的高32位
+     * @param entryCount 规则条数
+     * @param falsePositiveRate 期望误判率
+     */
+    IpBloomFilter(long[] prefixes, int entryCount, double falsePositiveRate) {
+        boolean[] ipv4Seen = new boolean[33];
+        boolean[] ipv6Seen = new boolean[129];
+        for (int index = 0; index < entryCount * 3; index += 3) {
+            int key = (int) prefixes[index + 2];
+            if ((key & IPV6_FAMILY) != 0) {
+                ipv6Seen[key & 0xFF] = true;
+            } else {
+                ipv4Seen[key] = true;
+            }
+        }
+        this.ipv4PrefixLengths = seenLengths(ipv4Seen);
+        this.ipv6PrefixLengths = seenLengths(ipv6Seen);
+        double probeFalsePositiveRate = falsePositiveRate / probeCount();
+        long requiredBits = (long) Math.ceil(-Math.max(1, entryCount) * Math.log(probeFalsePositiveRate) / (LN2 * LN2));
+        long bitSize = Math.max(64L, Long.highestOneBit(requiredBits - 1) << 1);
+        this.bits = new long[(int) (bitSize >>> 6)];
+        this.bitMask = bitSize - 1;
+        this.hashCount = Math.max(1, (int) Math.round((double) requiredBits / Math.max(1, entryCount) * LN2));
+        this.falsePositiveRate = falsePositiveRate;
+        this.entryCount = entryCount;
+        for (int index = 0; index < entryCount * 3; index += 3) {
+            put(prefixes[index], prefixes[index + 1], (int) prefixes[index + 2]);
+        }
+    }
+
+    /**
+     * 构建过滤器
+     * @param prefixes 前缀规则, 每条为 [hi,lo,前缀长度|地址族]
+     * @param entryCount 规则条数
+     * @param falsePositiveRate 期望误判率, (0,1)
+     * @return 过滤器
+     */
+    static IpBloomFilter build(long[] prefixes, int entryCount, double falsePositiveRate) {
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("Bloom filter false positive rate must be in (0, 1): " + falsePositiveRate);
+        }
+        return new IpBloomFilter(prefixes, entryCount, falsePositiveRate);
+    }
+
+    /**
+     * 前缀规则的编码
+     * @param prefixLength 前缀长度
+     * @param ipv6 是否为 IPV6
+     * @return 与地址一同写入的第三个 long
+     */
+    static long key(int prefixLength, boolean ipv6) {
+        return ipv6 ? prefixLength | IPV6_FAMILY : prefixLength;
+    }
+
+    /**
+     * @param hi 地址高64位, IPV4 位于高32位
+     * @param lo 地址低64位
+     * @param ipv6 是否为 IPV6
+     * @return false 时一定不在名单的前缀规则中
+     */
+    public boolean mightContain(long hi, long lo, boolean ipv6) {
+        int[] prefixLengths = ipv6 ? ipv6PrefixLengths : ipv4PrefixLengths;
+        for (int prefixLength : prefixLengths) {
+            if (probe(hi & mask(prefixLength), lo & mask(prefixLength - 64), (int) key(prefixLength, ipv6))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void put(long hi, long lo, int key) {
+        long h1 = hash(hi, lo, key, 0x9E37_79B9_7F4A_7C15L);
+        long h2 = hash(hi, lo, key, 0xC2B2_AE3D_27D4_EB4FL) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = (h1 + i * h2) & bitMask;
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    private boolean probe(long hi, long lo, int key) {
+        long h1 = hash(hi, lo, key, 0x9E37_79B9_7F4A_7C15L);
+        long h2 = hash(hi, lo, key, 0xC2B2_AE3D_27D4_EB4FL) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = (h1 + i * h2) & bitMask;
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long hash(long hi, long lo, int key, long seed) {
+        long h = (hi ^ seed) * 0xBF58_476D_1CE4_E5B9L + lo;
+        h = (h ^ (h >>> 31) ^ key) * 0x94D0_49BB_1331_11EBL;
+        return h ^ (h >>> 29);
+    }
+
+    /**
+     * @param prefixLength 64位中保留的高位数
+     * @return 掩码
+     */
+    static long mask(int prefixLength) {
+        if (prefixLength <= 0) {
+            return 0;
+        }
+        return prefixLength >= 64 ? -1L : -1L << (64 - prefixLength);
+    }
+
+    private static int[] seenLengths(boolean[] seen) {
+        int[] lengths = new int[seen.length];
+        int size = 0;
+        // 较长的前缀(如单个IP)通常占多数,优先探测
+        for (int length = seen.length - 1; length >= 0; length--) {
+            if (seen[length]) {
+                lengths[size++] = length;
+            }
+        }
+        return Arrays.copyOf(lengths, size);
+    }
+
+    /**
+     * @return 配置的期望误判率
+     */
+    public double getFalsePositiveRate() {
+        return falsePositiveRate;
+    }
+
+    /**
+     * @return 按实际位数与哈希次数估算的单次查询误判率,已计入每种前缀长度各探测一次
+     */
+    public double getEstimatedFalsePositiveRate() {
+        double bitSize = bitMask + 1;
+        double probeRate = Math.pow(1 - Math.exp(-hashCount * Math.max(1, entryCount) / bitSize), hashCount);
+        return 1 - Math.pow(1 - probeRate, probeCount());
+    }
+
+    /**
+     * @return 单次查询最多的探测次数,即同一地址族中前缀长度的种数
+     */
+    public int probeCount() {
+        return Math.max(1, Math.max(ipv4PrefixLengths.length, ipv6PrefixLengths.length));
+    }
+
+    /**
+     * @return 位数组占用的字节数
+     */
+    public long getMemoryBytes() {
+        return (long) bits.length * Long.BYTES;
+    }
+
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    public int getEntryCount() {
+        return entryCount;
+    }
+}
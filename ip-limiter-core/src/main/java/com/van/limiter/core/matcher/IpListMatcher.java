@@ -0,0 +1,365 @@
+package com.van.limiter.core.matcher;
+
+import com.google.common.collect.Sets;
+import com.van.limiter.core.constant.IpLimitConstant;
+import com.van.limiter.core.util.IpKey;
+import com.van.limiter.core.util.IpUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 编译后的黑白名单匹配器,构建后只读
+ * <ul>
+ *     <li>精确IP、CIDR 以及 172.* / 172.16.*.* 这类尾部通配的规则编译进二进制前缀树</li>
+ *     <li>*.21 / 172.*.1 / *.*.*.21 这类无法转化为前缀的规则预先拆分,匹配时不再 split</li>
+ *     <li>无法解析为IP的规则(如 localhost)按字符串精确匹配</li>
+ *     <li>可选地在前缀树之前放置 {@link IpBloomFilter},未命中的地址只需几次哈希探测</li>
+ * </ul>
+ * @author van
+ */
+public class IpListMatcher {
+
+    /**
+     * 空名单
+     */
+    public static final IpListMatcher EMPTY = compile(Collections.emptyList());
+
+    private static final int ANY_SEGMENT = -1;
+
+    private static final int ILLEGAL_SEGMENT = -2;
+
+    private static final int IPV4_MAPPED_PREFIX = 96;
+
+    private final boolean matchAll;
+
+    private final IpPrefixTrie ipv4Trie;
+
+    private final IpPrefixTrie ipv6Trie;
+
+    private final Set<String> literals;
+
+    private final FuzzyRule[] fuzzyRules;
+
+    /**
+     * 前缀树之前的布隆过滤器,未开启时为 null
+     */
+    private final IpBloomFilter bloomFilter;
+
+    private IpListMatcher(boolean matchAll, IpPrefixTrie ipv4Trie, IpPrefixTrie ipv6Trie,
+                          Set<String> literals, List<FuzzyRule> fuzzyRules, IpBloomFilter bloomFilter) {
+        this.matchAll = matchAll;
+        this.ipv4Trie = ipv4Trie;
+        this.ipv6Trie = ipv6Trie;
+        this.literals = literals;
+        this.fuzzyRules = fuzzyRules.toArray(new FuzzyRule[0]);
+        this.bloomFilter = bloomFilter;
+    }
+
+    /**
+     * 编译名单规则
+     * @param rules 已解析占位符并按分隔符拆分后的单条规则
+     * @return 匹配器
+     */
+    public static IpListMatcher compile(Collection<String> rules) {
+        return compile(rules, 0);
+    }
+
+    /**
+     * 编译名单规则,并在前缀树之前放置布隆过滤器
+     * @param rules 已解析占位符并按分隔符拆分后的单条规则
+     * @param bloomFalsePositiveRate 布隆过滤器的期望误判率,小于等于0时不使用布隆过滤器
+     * @return 匹配器
+     */
+    public static IpListMatcher compile(Collection<String> rules, double bloomFalsePositiveRate) {
+        PrefixBuffer prefixes = bloomFalsePositiveRate > 0 ? new PrefixBuffer() : null;
+        boolean matchAll = false;
+        IpPrefixTrie ipv4Trie = new IpPrefixTrie(IpLimitConstant.IPV4_BIT_SIZE);
+        IpPrefixTrie ipv6Trie = new IpPrefixTrie(IpLimitConstant.IPV6_BIT_SIZE);
+        Set<String> literals = Sets.newHashSet();
+        List<FuzzyRule> fuzzyRules = new ArrayList<>();
+        long[] ipv6 = new long[2];
+        for (String rule : rules) {
+            if (rule == null || rule.isEmpty()) {
+                continue;
+            }
+            if (rule.contains(IpLimitConstant.IP_FUZZY_SPLIT)) {
+                int prefixLength = IpLimitConstant.IP_FUZZY_SPLIT.equals(rule) ? 0 : wildcardPrefixLength(rule);
+                if (prefixLength == 0) {
+                    matchAll = true;
+                } else if (prefixLength > 0) {
+                    long address = wildcardAddress(rule) << 32;
+                    ipv4Trie.insert(address, 0, prefixLength);
+                    PrefixBuffer.add(prefixes, address, 0, prefixLength, false);
+                } else {
+                    fuzzyRules.add(FuzzyRule.compile(rule));
+                }
+                continue;
+            }
+            int cidrIndex = rule.indexOf(IpLimitConstant.IP_CIDR_SPLIT);
+            int addressEnd = cidrIndex < 0 ? rule.length() : cidrIndex;
+            int prefixLength = cidrIndex < 0 ? -1 : parsePrefixLength(rule, cidrIndex + 1);
+            if (cidrIndex >= 0 && prefixLength < 0) {
+                literals.add(rule);
+                continue;
+            }
+            long ipv4 = IpUtils.parseIpv4(rule, 0, addressEnd);
+            if (ipv4 >= 0 && prefixLength <= IpLimitConstant.IPV4_BIT_SIZE) {
+                ipv4Trie.insert(ipv4 << 32, 0, prefixLength < 0 ? IpLimitConstant.IPV4_BIT_SIZE : prefixLength);
+                PrefixBuffer.add(prefixes, ipv4 << 32, 0, prefixLength < 0 ? IpLimitConstant.IPV4_BIT_SIZE : prefixLength, false);
+            } else if (ipv4 < 0 && IpUtils.parseIpv6(rule, 0, addressEnd, ipv6)) {
+                if (isIpv4Mapped(ipv6[0], ipv6[1]) && (prefixLength < 0 || prefixLength >= IPV4_MAPPED_PREFIX)) {
+                    // ::ffff:a.b.c.d 形式统一按 IPV4 处理
+                    int ipv4PrefixLength = prefixLength < 0
+                            ? IpLimitConstant.IPV4_BIT_SIZE : prefixLength - IPV4_MAPPED_PREFIX;
+                    ipv4Trie.insert(ipv6[1] << 32, 0, ipv4PrefixLength);
+                    PrefixBuffer.add(prefixes, ipv6[1] << 32, 0, ipv4PrefixLength, false);
+                } else {
+                    int ipv6PrefixLength = prefixLength < 0 ? IpLimitConstant.IPV6_BIT_SIZE : prefixLength;
+                    ipv6Trie.insert(ipv6[0], ipv6[1], ipv6PrefixLength);
+                    PrefixBuffer.add(prefixes, ipv6[0], ipv6[1], ipv6PrefixLength, true);
+                }
+            } else {
+                literals.add(rule);
+            }
+        }
+        IpBloomFilter bloomFilter = prefixes == null || prefixes.size == 0 || matchAll
+                ? null : IpBloomFilter.build(prefixes.values, prefixes.size, bloomFalsePositiveRate);
+        return new IpListMatcher(matchAll, ipv4Trie, ipv6Trie, literals, fuzzyRules, bloomFilter);
+    }
+
+    /**
+     * 判断IP是否命中名单
+     * @param ip ip
+     * @return 是否命中
+     */
+    public boolean matches(String ip) {
+        if (matchAll) {
+            return true;
+        }
+        return ip != null && matches(IpKey.of(ip));
+    }
+
+    /**
+     * 判断IP是否命中名单,前缀树按二进制地址查找,只有存在无法转化为前缀的规则时才会格式化为字符串
+     * @param ip ip
+     * @return 是否命中
+     */
+    public boolean matches(IpKey ip) {
+        if (matchAll) {
+            return true;
+        }
+        long ipv4 = -1;
+        if (ip.isIpv4()) {
+            ipv4 = ip.getLo() & 0xFFFFFFFFL;
+            if ((bloomFilter == null || bloomFilter.mightContain(ipv4 << 32, 0, false)) && ipv4Trie.contains(ipv4 << 32, 0)) {
+                return true;
+            }
+        } else if (!ip.isUnresolved() && (bloomFilter == null || bloomFilter.mightContain(ip.getHi(), ip.getLo(), true))
+                && ipv6Trie.contains(ip.getHi(), ip.getLo())) {
+            return true;
+        }
+        if (literals.isEmpty() && fuzzyRules.length == 0) {
+            return false;
+        }
+        String text = ip.toString();
+        if (literals.contains(text)) {
+            return true;
+        }
+        for (FuzzyRule fuzzyRule : fuzzyRules) {
+            if (fuzzyRule.matches(text, ipv4)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return 前缀树之前的布隆过滤器,未开启时为 null
+     */
+    public IpBloomFilter getBloomFilter() {
+        return bloomFilter;
+    }
+
+    private static boolean isIpv4Mapped(long hi, long lo) {
+        return hi == 0 && (lo >>> 32) == 0xFFFFL;
+    }
+
+    private static int parsePrefixLength(String rule, int from) {
+        if (from >= rule.length() || rule.length() - from > 3) {
+            return -1;
+        }
+        int prefixLength = 0;
+        for (int i = from; i < rule.length(); i++) {
+            char c = rule.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            prefixLength = prefixLength * 10 + (c - '0');
+        }
+        return prefixLength <= IpLimitConstant.IPV6_BIT_SIZE ? prefixLength : -1;
+    }
+
+    /**
+     * 计算尾部通配规则对应的 IPV4 前缀长度,如 172.* 为8, 172.16.*.* 为16, *.*.*.* 为0
+     * @param rule 含有 * 的规则
+     * @return 前缀长度,无法转化为前缀时返回 -1
+     */
+    private static int wildcardPrefixLength(String rule) {
+        int[] segments = FuzzyRule.parseSegments(rule);
+        if (segments != null) {
+            int prefixSegments = 0;
+            while (prefixSegments < segments.length && segments[prefixSegments] >= 0) {
+                prefixSegments++;
+            }
+            for (int index = prefixSegments; index < segments.length; index++) {
+                if (segments[index] != ANY_SEGMENT) {
+                    return -1;
+                }
+            }
+            return prefixSegments * 8;
+        }
+        // 172.* / 172.16.* 这类单星号结尾的规则
+        if (rule.indexOf('*') != rule.length() - 1 || rule.length() < 3 || rule.charAt(rule.length() - 2) != '.') {
+            return -1;
+        }
+        String head = rule.substring(0, rule.length() - 2);
+        int segmentSize = head.split("\\.").length;
+        if (segmentSize >= IpLimitConstant.IPV4_SEGMENT_SIZE || wildcardAddress(rule) < 0) {
+            return -1;
+        }
+        return segmentSize * 8;
+    }
+
+    /**
+     * 将尾部通配规则补齐为完整 IPV4 后解析, 如 172.16.* -> 172.16.0.0
+     */
+    private static long wildcardAddress(String rule) {
+        String[] split = rule.split("\\.");
+        StringBuilder builder = new StringBuilder();
+        for (int index = 0; index < IpLimitConstant.IPV4_SEGMENT_SIZE; index++) {
+            if (index > 0) {
+                builder.append('.');
+            }
+            builder.append(index < split.length && !IpLimitConstant.IP_FUZZY_SPLIT.equals(split[index]) ? split[index] : "0");
+        }
+        return IpUtils.parseIpv4(builder, 0, builder.length());
+    }
+
+    /**
+     * 编译过程中收集的前缀规则,用于构建布隆过滤器, 每条为 [hi,lo,前缀长度|地址族]
+     */
+    private static final class PrefixBuffer {
+
+        private long[] values = new long[48];
+
+        private int size;
+
+        static void add(PrefixBuffer buffer, long hi, long lo, int prefixLength, boolean ipv6) {
+            if (buffer == null) {
+                return;
+            }
+            if ((buffer.size + 1) * 3 > buffer.values.length) {
+                buffer.values = Arrays.copyOf(buffer.values, buffer.values.length * 2);
+            }
+            int offset = buffer.size * 3;
+            buffer.values[offset] = hi & IpBloomFilter.mask(prefixLength);
+            buffer.values[offset + 1] = lo & IpBloomFilter.mask(prefixLength - 64);
+            buffer.values[offset + 2] = IpBloomFilter.key(prefixLength, ipv6);
+            buffer.size++;
+        }
+    }
+
+    /**
+     * 无法转化为前缀的模糊规则, 规则与 {@link IpUtils#ipFuzzyMatch(String, String)} 保持一致, 只是预先完成了拆分
+     */
+    private static final class FuzzyRule {
+
+        /**
+         * 按段匹配时每段的值, -1 表示 *
+         */
+        private final int[] segments;
+
+        private final String prefix;
+
+        private final String suffix;
+
+        private FuzzyRule(int[] segments, String prefix, String suffix) {
+            this.segments = segments;
+            this.prefix = prefix;
+            this.suffix = suffix;
+        }
+
+        static FuzzyRule compile(String rule) {
+            int[] segments = parseSegments(rule);
+            if (segments != null) {
+                return new FuzzyRule(segments, null, null);
+            }
+            String[] split = rule.split("\\*");
+            if (split.length == IpLimitConstant.IPV4_START_END_SPLIT) {
+                return rule.startsWith(IpLimitConstant.IP_FUZZY_SPLIT)
+                        ? new FuzzyRule(null, "", split[0])
+                        : new FuzzyRule(null, split[0], "");
+            }
+            if (split.length == IpLimitConstant.IPV4_SPLIT_TWO_SIZE) {
+                return new FuzzyRule(null, split[0], split[1]);
+            }
+            // 其余场景按段匹配, 非法段永远不会命中
+            String[] matchStrSplit = rule.split("\\.");
+            int[] fallback = new int[IpLimitConstant.IPV4_SEGMENT_SIZE];
+            for (int index = 0; index < fallback.length; index++) {
+                fallback[index] = index < matchStrSplit.length ? parseSegment(matchStrSplit[index]) : ILLEGAL_SEGMENT;
+            }
+            return new FuzzyRule(fallback, null, null);
+        }
+
+        /**
+         * 解析形如 172.*.*.21 的四段规则
+         * @return 每段的值, 不是四段的合法规则时返回 null
+         */
+        static int[] parseSegments(String rule) {
+            String[] split = rule.split("\\.", -1);
+            if (split.length != IpLimitConstant.IPV4_SEGMENT_SIZE) {
+                return null;
+            }
+            int[] segments = new int[IpLimitConstant.IPV4_SEGMENT_SIZE];
+            for (int index = 0; index < split.length; index++) {
+                segments[index] = parseSegment(split[index]);
+                if (segments[index] == ILLEGAL_SEGMENT) {
+                    return null;
+                }
+            }
+            return segments;
+        }
+
+        private static int parseSegment(String segment) {
+            if (IpLimitConstant.IP_FUZZY_SPLIT.equals(segment)) {
+                return ANY_SEGMENT;
+            }
+            long value = IpUtils.parseIpv4(segment + ".0.0.0", 0, segment.length() + 6);
+            return value < 0 ? ILLEGAL_SEGMENT : (int) (value >>> 24);
+        }
+
+        boolean matches(String ip, long ipv4) {
+            if (segments == null) {
+                return ip.startsWith(prefix) && ip.endsWith(suffix);
+            }
+            boolean allAny = true;
+            for (int index = 0; index < segments.length; index++) {
+                int segment = segments[index];
+                if (segment == ANY_SEGMENT) {
+                    continue;
+                }
+                allAny = false;
+                if (ipv4 < 0 || segment != ((ipv4 >>> (24 - index * 8)) & 0xFF)) {
+                    return false;
+                }
+            }
+            return allAny || ipv4 >= 0;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.van.limiter.core.matcher;
+
+import java.util.Arrays;
+
+/**
+ * 二进制前缀树,用于 CIDR 及可转化为前缀的模糊规则匹配
+ * 地址统一按高64位/低64位表示,IPV4 放在高64位的高32位中,查询耗时只与地址位数相关,与规则条数无关
+ * 构建完成后只读,可安全地被多线程共享
+ * @author van
+ */
+public class IpPrefixTrie {
+
+    private static final int INITIAL_NODE_SIZE = 16;
+
+    /**
+     * 地址位数, IPV4 为32, IPV6 为128
+     */
+    private final int bitSize;
+
+    /**
+     * 子节点下标, children[node * 2 + bit], 0 表示不存在(根节点不会作为子节点)
+     */
+    private int[] children = new int[INITIAL_NODE_SIZE * 2];
+
+    /**
+     * 节点是否为某条规则的终点
+     */
+    private boolean[] terminal = new boolean[INITIAL_NODE_SIZE];
+
+    private int nodeSize = 1;
+
+    private int ruleSize;
+
+    public IpPrefixTrie(int bitSize) {
+        this.bitSize = bitSize;
+    }
+
+    /**
+     * 插入一条前缀规则
+     * @param hi 地址高64位
+     * @param lo 地址低64位
+     * @param prefixLength 前缀长度
+     */
+    public void insert(long hi, long lo, int prefixLength) {
+        if (prefixLength < 0 || prefixLength > bitSize) {
+            throw new IllegalArgumentException("Illegal prefix length: " + prefixLength);
+        }
+        int node = 0;
+        for (int index = 0; index < prefixLength; index++) {
+            if (terminal[node]) {
+                // 已被更短的前缀覆盖
+                return;
+            }
+            int slot = node * 2 + bit(hi, lo, index);
+            int child = children[slot];
+            if (child == 0) {
+                child = newNode();
+                children[slot] = child;
+            }
+            node = child;
+        }
+        terminal[node] = true;
+        ruleSize++;
+    }
+
+    /**
+     * 判断地址是否命中任一前缀
+     * @param hi 地址高64位
+     * @param lo 地址低64位
+     * @return 是否命中
+     */
+    public boolean contains(long hi, long lo) {
+        int node = 0;
+        for (int index = 0; index < bitSize; index++) {
+            if (terminal[node]) {
+                return true;
+            }
+            node = children[node * 2 + bit(hi, lo, index)];
+            if (node == 0) {
+                return false;
+            }
+        }
+        return terminal[node];
+    }
+
+    public boolean isEmpty() {
+        return ruleSize == 0;
+    }
+
+    private int newNode() {
+        if (nodeSize == terminal.length) {
+            terminal = Arrays.copyOf(terminal, nodeSize * 2);
+            children = Arrays.copyOf(children, nodeSize * 4);
+        }
+        return nodeSize++;
+    }
+
+    private static int bit(long hi, long lo, int index) {
+        return index < 64
+                ? (int) (hi >>> (63 - index)) & 1
+                : (int) (lo >>> (127 - index)) & 1;
+    }
+}
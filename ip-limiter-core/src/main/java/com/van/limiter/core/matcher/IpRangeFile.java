@@ -0,0 +1,117 @@
+package com.van.limiter.core.matcher;
+
+import com.van.limiter.core.util.IpKey;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 内存映射的IP区间名单文件,用于数百万条地址与网段的信誉库,条目不占用堆内存
+ * <ul>
+ *     <li>文件由 {@link IpRangeFileConverter} 生成: 按起始地址排序且互不重叠的 128 位闭区间, IPV4 按 IPV4-mapped 存储</li>
+ *     <li>查询时在映射区上二分查找,只使用绝对位置读取,可被多线程共享</li>
+ *     <li>映射建立后文件内容不应被原地修改,更新时应写入新文件后整体替换(参见 {@link IpRangeFileConverter#convert(Path, Path)})</li>
+ * </ul>
+ * 文件格式(大端): [魔数 4][版本 4][区间数 4][保留 4] + 区间数 * [起始hi 8][起始lo 8][结束hi 8][结束lo 8]
+ * @author van
+ */
+public final class IpRangeFile {
+
+    static final int MAGIC = 0x49505247;
+
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 16;
+
+    static final int RANGE_SIZE = 32;
+
+    private final Path path;
+
+    private final ByteBuffer buffer;
+
+    private final int size;
+
+    private IpRangeFile(Path path, ByteBuffer buffer, int size) {
+        this.path = path;
+        this.buffer = buffer;
+        this.size = size;
+    }
+
+    /**
+     * 映射并校验文件,映射建立后即可关闭文件句柄
+     * @param path 二进制区间文件
+     * @return 区间名单
+     * @throws IOException 文件无法读取或格式不正确
+     */
+    public static IpRangeFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE || fileSize > Integer.MAX_VALUE) {
+                throw new IOException("Illegal ip range file size: " + path + ", " + fileSize);
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("Not an ip range file: " + path);
+            }
+            int size = buffer.getInt(8);
+            if (size < 0 || (long) HEADER_SIZE + (long) size * RANGE_SIZE != fileSize) {
+                throw new IOException("Truncated ip range file: " + path);
+            }
+            return new IpRangeFile(path.toAbsolutePath().normalize(), buffer, size);
+        }
+    }
+
+    /**
+     * 判断IP是否落在任一区间内
+     * @param ip ip
+     * @return 是否命中
+     */
+    public boolean contains(IpKey ip) {
+        if (ip.isUnresolved()) {
+            return false;
+        }
+        long hi = ip.getHi();
+        long lo = ip.getLo();
+        // 查找起始地址小于等于 ip 的最后一个区间
+        int low = 0;
+        int high = size - 1;
+        int candidate = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int offset = HEADER_SIZE + mid * RANGE_SIZE;
+            if (compare(buffer.getLong(offset), buffer.getLong(offset + 8), hi, lo) <= 0) {
+                candidate = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (candidate < 0) {
+            return false;
+        }
+        int offset = HEADER_SIZE + candidate * RANGE_SIZE;
+        return compare(hi, lo, buffer.getLong(offset + 16), buffer.getLong(offset + 24)) <= 0;
+    }
+
+    static int compare(long hi1, long lo1, long hi2, long lo2) {
+        int result = Long.compareUnsigned(hi1, hi2);
+        return result != 0 ? result : Long.compareUnsigned(lo1, lo2);
+    }
+
+    /**
+     * @return 规范化后的绝对路径
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return 区间数
+     */
+    public int size() {
+        return size;
+    }
+}
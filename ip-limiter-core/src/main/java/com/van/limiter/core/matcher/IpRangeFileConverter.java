@@ -0,0 +1,249 @@
+package com.van.limiter.core.matcher;
+
+import com.van.limiter.core.constant.IpLimitConstant;
+import com.van.limiter.core.util.IpKey;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * 将文本名单转换为 {@link IpRangeFile} 使用的二进制区间文件
+ * 文本每行一条: 单个IP、CIDR(10.0.0.0/8, 2001:db8::/32) 或区间(10.0.0.1-10.0.0.9), # 之后为注释
+ * 转换时排序并合并重叠与相邻的区间,中间结果只使用基本类型数组
+ * 命令行用法: java -cp ip-limiter.jar com.van.limiter.core.matcher.IpRangeFileConverter 文本文件 二进制文件
+ * @author van
+ */
+public final class IpRangeFileConverter {
+
+    private static final int STRIDE = 4;
+
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    private IpRangeFileConverter() {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: IpRangeFileConverter <text-file> <binary-file>");
+            System.exit(1);
+        }
+        int size = convert(Paths.get(args[0]), Paths.get(args[1]));
+        System.out.println(size + " ranges written to " + args[1]);
+    }
+
+    /**
+     * 转换文本名单,先写入同目录下的临时文件再原子替换目标文件,已映射旧文件的读取方不受影响
+     * @param text 文本名单
+     * @param binary 二进制区间文件
+     * @return 合并后的区间数
+     * @throws IOException 读写失败
+     * @throws IllegalArgumentException 存在无法解析的行
+     */
+    public static int convert(Path text, Path binary) throws IOException {
+        long[] ranges = new long[1024 * STRIDE];
+        int size = 0;
+        try (BufferedReader reader = Files.newBufferedReader(text, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                int end = line.indexOf('#');
+                String rule = (end < 0 ? line : line.substring(0, end)).trim();
+                if (rule.isEmpty()) {
+                    continue;
+                }
+                if ((size + 1) * STRIDE > ranges.length) {
+                    ranges = Arrays.copyOf(ranges, ranges.length * 2);
+                }
+                if (!parseRange(rule, ranges, size * STRIDE)) {
+                    throw new IllegalArgumentException("Illegal ip range at line " + lineNumber + ": " + rule);
+                }
+                size++;
+            }
+        }
+        sort(ranges, 0, size - 1);
+        size = merge(ranges, size);
+        write(ranges, size, binary);
+        return size;
+    }
+
+    /**
+     * 解析单条规则为 [起始hi,起始lo,结束hi,结束lo]
+     */
+    static boolean parseRange(String rule, long[] ranges, int offset) {
+        int dash = rule.indexOf('-');
+        if (dash > 0) {
+            IpKey start = IpKey.parse(rule, 0, dash);
+            IpKey end = IpKey.parse(rule, dash + 1, rule.length());
+            if (start == null || end == null
+                    || IpRangeFile.compare(start.getHi(), start.getLo(), end.getHi(), end.getLo()) > 0) {
+                return false;
+            }
+            ranges[offset] = start.getHi();
+            ranges[offset + 1] = start.getLo();
+            ranges[offset + 2] = end.getHi();
+            ranges[offset + 3] = end.getLo();
+            return true;
+        }
+        int cidrIndex = rule.indexOf(IpLimitConstant.IP_CIDR_SPLIT);
+        IpKey address = IpKey.parse(rule, 0, cidrIndex < 0 ? rule.length() : cidrIndex);
+        if (address == null) {
+            return false;
+        }
+        int prefixLength = IpLimitConstant.IPV6_BIT_SIZE;
+        if (cidrIndex >= 0) {
+            try {
+                prefixLength = Integer.parseInt(rule.substring(cidrIndex + 1).trim());
+            } catch (NumberFormatException e) {
+                return false;
+            }
+            if (address.isIpv4() && rule.lastIndexOf(':', cidrIndex) < 0) {
+                // 点分 IPV4 的前缀长度换算为 IPV4-mapped 地址中的位数
+                prefixLength += IpLimitConstant.IPV6_BIT_SIZE - IpLimitConstant.IPV4_BIT_SIZE;
+            }
+            if (prefixLength < 0 || prefixLength > IpLimitConstant.IPV6_BIT_SIZE) {
+                return false;
+            }
+        }
+        long hiMask = prefixMask(prefixLength);
+        long loMask = prefixMask(prefixLength - 64);
+        ranges[offset] = address.getHi() & hiMask;
+        ranges[offset + 1] = address.getLo() & loMask;
+        ranges[offset + 2] = address.getHi() | ~hiMask;
+        ranges[offset + 3] = address.getLo() | ~loMask;
+        return true;
+    }
+
+    private static long prefixMask(int prefixLength) {
+        if (prefixLength <= 0) {
+            return 0;
+        }
+        return prefixLength >= 64 ? -1L : -1L << (64 - prefixLength);
+    }
+
+    /**
+     * 合并已排序的区间中重叠或相邻的部分
+     * @return 合并后的区间数
+     */
+    static int merge(long[] ranges, int size) {
+        if (size == 0) {
+            return 0;
+        }
+        int last = 0;
+        for (int index = 1; index < size; index++) {
+            int current = index * STRIDE;
+            int previous = last * STRIDE;
+            long endHi = ranges[previous + 2];
+            long endLo = ranges[previous + 3];
+            // 相邻: 起始地址等于上一区间结束地址加1
+            long nextLo = endLo + 1;
+            long nextHi = nextLo == 0 ? endHi + 1 : endHi;
+            boolean endIsMax = endHi == -1L && endLo == -1L;
+            if (endIsMax || IpRangeFile.compare(ranges[current], ranges[current + 1], nextHi, nextLo) <= 0) {
+                if (IpRangeFile.compare(ranges[current + 2], ranges[current + 3], endHi, endLo) > 0) {
+                    ranges[previous + 2] = ranges[current + 2];
+                    ranges[previous + 3] = ranges[current + 3];
+                }
+                continue;
+            }
+            last++;
+            if (last != index) {
+                System.arraycopy(ranges, current, ranges, last * STRIDE, STRIDE);
+            }
+        }
+        return last + 1;
+    }
+
+    /**
+     * 按起始地址对区间进行原地快速排序,区间数很小时改用插入排序
+     */
+    static void sort(long[] ranges, int from, int to) {
+        while (to - from >= INSERTION_SORT_THRESHOLD) {
+            int middle = (from + to) >>> 1;
+            // 三数取中作为基准
+            if (less(ranges, middle, from)) {
+                swap(ranges, middle, from);
+            }
+            if (less(ranges, to, from)) {
+                swap(ranges, to, from);
+            }
+            if (less(ranges, to, middle)) {
+                swap(ranges, to, middle);
+            }
+            long pivotHi = ranges[middle * STRIDE];
+            long pivotLo = ranges[middle * STRIDE + 1];
+            int i = from;
+            int j = to;
+            while (i <= j) {
+                while (IpRangeFile.compare(ranges[i * STRIDE], ranges[i * STRIDE + 1], pivotHi, pivotLo) < 0) {
+                    i++;
+                }
+                while (IpRangeFile.compare(ranges[j * STRIDE], ranges[j * STRIDE + 1], pivotHi, pivotLo) > 0) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(ranges, i++, j--);
+                }
+            }
+            // 递归处理较短的一侧,控制栈深度
+            if (j - from < to - i) {
+                sort(ranges, from, j);
+                from = i;
+            } else {
+                sort(ranges, i, to);
+                to = j;
+            }
+        }
+        for (int i = from + 1; i <= to; i++) {
+            for (int j = i; j > from && less(ranges, j, j - 1); j--) {
+                swap(ranges, j, j - 1);
+            }
+        }
+    }
+
+    private static boolean less(long[] ranges, int a, int b) {
+        return IpRangeFile.compare(ranges[a * STRIDE], ranges[a * STRIDE + 1], ranges[b * STRIDE], ranges[b * STRIDE + 1]) < 0;
+    }
+
+    private static void swap(long[] ranges, int a, int b) {
+        for (int k = 0; k < STRIDE; k++) {
+            long temp = ranges[a * STRIDE + k];
+            ranges[a * STRIDE + k] = ranges[b * STRIDE + k];
+            ranges[b * STRIDE + k] = temp;
+        }
+    }
+
+    private static void write(long[] ranges, int size, Path binary) throws IOException {
+        if (size > (Integer.MAX_VALUE - IpRangeFile.HEADER_SIZE) / IpRangeFile.RANGE_SIZE) {
+            throw new IOException("Too many ip ranges: " + size);
+        }
+        Path directory = binary.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, binary.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(IpRangeFile.MAGIC);
+                out.writeInt(IpRangeFile.VERSION);
+                out.writeInt(size);
+                out.writeInt(0);
+                for (int index = 0; index < size * STRIDE; index++) {
+                    out.writeLong(ranges[index]);
+                }
+            }
+            try {
+                Files.move(temp, binary, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, binary, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
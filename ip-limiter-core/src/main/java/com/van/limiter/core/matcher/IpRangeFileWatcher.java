@@ -0,0 +1,127 @@
+package com.van.limiter.core.matcher;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 基于 {@link WatchService} 的区间文件热加载,文件变更后重新映射并回调,由回调方整体替换引用
+ * <ul>
+ *     <li>监听文件所在目录,同一目录下的多个文件共用一个 WatchKey</li>
+ *     <li>一批事件只重新加载一次;新文件校验失败(如仍在写入)或回调抛出异常时保留旧的映射,等待下一次变更</li>
+ * </ul>
+ * 后台只有一个守护线程,调用 {@link #close()} 后停止
+ * @author van
+ */
+public class IpRangeFileWatcher implements Closeable {
+
+    /**
+     * 收到事件后等待文件写完的时间
+     */
+    private static final long SETTLE_MILLIS = 100L;
+
+    private final WatchService watchService;
+
+    private final Map<Path, Consumer<IpRangeFile>> listeners = new ConcurrentHashMap<>();
+
+    private final Map<Path, WatchKey> directories = new ConcurrentHashMap<>();
+
+    private final Thread thread;
+
+    public IpRangeFileWatcher() throws IOException {
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.thread = new Thread(this::run, "ip-limiter-range-file-watcher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * 监听文件变更
+     * @param file 区间文件
+     * @param listener 重新加载成功后的回调,在监听线程中执行
+     * @throws IOException 目录无法监听
+     */
+    public void register(Path file, Consumer<IpRangeFile> listener) throws IOException {
+        Path absolute = file.toAbsolutePath().normalize();
+        Path directory = absolute.getParent();
+        synchronized (directories) {
+            if (!directories.containsKey(directory)) {
+                directories.put(directory, directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY));
+            }
+        }
+        listeners.put(absolute, listener);
+    }
+
+    /**
+     * 取消监听文件,目录下的其他文件不受影响
+     * @param file 区间文件
+     */
+    public void unregister(Path file) {
+        listeners.remove(file.toAbsolutePath().normalize());
+    }
+
+    private void run() {
+        try {
+            for (;;) {
+                WatchKey key = watchService.take();
+                // 合并短时间内的连续事件,文件写完后再加载
+                TimeUnit.MILLISECONDS.sleep(SETTLE_MILLIS);
+                Set<Path> changed = ConcurrentHashMap.newKeySet();
+                do {
+                    Path directory = (Path) key.watchable();
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.context() instanceof Path) {
+                            changed.add(directory.resolve((Path) event.context()));
+                        }
+                    }
+                    key.reset();
+                    key = watchService.poll();
+                } while (key != null);
+                for (Path file : changed) {
+                    try {
+                        reload(file);
+                    } catch (RuntimeException e) {
+                        // 单个文件或回调出错不能终止监听线程,保留旧的映射,等待下一次变更
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // 已关闭
+        }
+    }
+
+    private void reload(Path file) {
+        Consumer<IpRangeFile> listener = listeners.get(file);
+        if (listener == null) {
+            return;
+        }
+        IpRangeFile rangeFile;
+        try {
+            rangeFile = IpRangeFile.open(file);
+        } catch (IOException e) {
+            // 文件不完整或已被删除,保留旧的映射
+            return;
+        }
+        listener.accept(rangeFile);
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+        thread.interrupt();
+    }
+}
@@ -0,0 +1,77 @@
+package com.van.limiter.core.metrics;
+
+import com.van.limiter.core.enums.LimitDecision;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个限流组的统计数据
+ * @author van
+ */
+public class GroupMetrics {
+
+    private final String groupName;
+
+    private final LongAdder permitted = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private final LongAdder blocked = new LongAdder();
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    GroupMetrics(String groupName) {
+        this.groupName = groupName;
+    }
+
+    /**
+     * 记录一次判定结果
+     * @param decision 判定结果
+     */
+    public void record(LimitDecision decision) {
+        switch (decision) {
+            case PERMITTED:
+                permitted.increment();
+                break;
+            case REJECTED:
+                rejected.increment();
+                break;
+            case BLOCKED:
+                blocked.increment();
+                break;
+            default:break;
+        }
+    }
+
+    public String getGroupName() {
+        return groupName;
+    }
+
+    /**
+     * @return 允许通过的次数
+     */
+    public long permittedCount() {
+        return permitted.sum();
+    }
+
+    /**
+     * @return 超出限流被拒绝的次数
+     */
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return 被黑白名单拒绝的次数
+     */
+    public long blockedCount() {
+        return blocked.sum();
+    }
+
+    /**
+     * @return 判定耗时直方图,按采样率记录
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+}
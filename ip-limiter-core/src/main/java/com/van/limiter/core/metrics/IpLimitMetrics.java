@@ -0,0 +1,132 @@
+package com.van.limiter.core.metrics;
+
+import com.van.limiter.core.policy.LimitGroups;
+import com.van.limiter.core.store.StoreMaintenance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+/**
+ * 限流统计入口,按限流组统计通过、限流、名单拒绝次数以及判定耗时
+ * 计数为分段的 LongAdder,耗时按采样率记录,避免每次判定都调用两次 {@link System#nanoTime()}
+ * 耗时直方图由维护线程按窗口轮换,分位值反映最近一到两个窗口的判定耗时,而不是启动以来的全部记录
+ * @author van
+ */
+public class IpLimitMetrics {
+
+    private final boolean enabled;
+
+    private final int latencySampleMask;
+
+    /**
+     * 以 groupId 为下标
+     */
+    private volatile GroupMetrics[] groups = new GroupMetrics[0];
+
+    private final List<Consumer<GroupMetrics>> groupListeners = new CopyOnWriteArrayList<>();
+
+    private final Runnable latencyRotation = this::rotateLatency;
+
+    /**
+     * @param enabled 是否开启
+     * @param latencySampleRate 每多少次判定记录一次耗时,向上取整为2的幂
+     */
+    public IpLimitMetrics(boolean enabled, int latencySampleRate) {
+        this.enabled = enabled;
+        this.latencySampleMask = latencySampleRate <= 1 ? 0 : Integer.highestOneBit(latencySampleRate - 1) * 2 - 1;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return 本次判定是否需要记录耗时
+     */
+    public boolean sampleLatency() {
+        return (ThreadLocalRandom.current().nextInt() & latencySampleMask) == 0;
+    }
+
+    /**
+     * 获取限流组的统计数据,首次访问时创建
+     * @param groupId {@link LimitGroups#idOf(String)}
+     * @return 统计数据
+     */
+    public GroupMetrics group(int groupId) {
+        GroupMetrics[] current = groups;
+        if (groupId < current.length && current[groupId] != null) {
+            return current[groupId];
+        }
+        return createGroup(groupId);
+    }
+
+    private synchronized GroupMetrics createGroup(int groupId) {
+        GroupMetrics[] current = groups;
+        if (groupId < current.length && current[groupId] != null) {
+            return current[groupId];
+        }
+        GroupMetrics[] grown = Arrays.copyOf(current, Math.max(current.length, groupId + 1));
+        GroupMetrics created = new GroupMetrics(LimitGroups.nameOf(groupId));
+        grown[groupId] = created;
+        groups = grown;
+        for (Consumer<GroupMetrics> listener : groupListeners) {
+            listener.accept(created);
+        }
+        return created;
+    }
+
+    /**
+     * @return 所有限流组的统计数据
+     */
+    public List<GroupMetrics> getGroups() {
+        List<GroupMetrics> result = new ArrayList<>();
+        for (GroupMetrics groupMetrics : groups) {
+            if (groupMetrics != null) {
+                result.add(groupMetrics);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 监听限流组的创建,已存在的限流组会立即回调,用于对接监控系统
+     * @param listener listener
+     */
+    public synchronized void addGroupListener(Consumer<GroupMetrics> listener) {
+        groupListeners.add(Objects.requireNonNull(listener));
+        for (GroupMetrics groupMetrics : getGroups()) {
+            listener.accept(groupMetrics);
+        }
+    }
+
+    /**
+     * 轮换所有限流组的耗时直方图,开始新的统计窗口
+     */
+    public void rotateLatency() {
+        for (GroupMetrics groupMetrics : groups) {
+            if (groupMetrics != null) {
+                groupMetrics.getLatency().rotate();
+            }
+        }
+    }
+
+    /**
+     * 在维护线程中按固定间隔轮换耗时直方图
+     * @param windowMillis 窗口毫秒数
+     */
+    public void startLatencyRotation(long windowMillis) {
+        StoreMaintenance.schedule(latencyRotation, windowMillis);
+    }
+
+    /**
+     * 容器关闭时停止轮换
+     */
+    public void close() {
+        StoreMaintenance.cancel(latencyRotation);
+    }
+}
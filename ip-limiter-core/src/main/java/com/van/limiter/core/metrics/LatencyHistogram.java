@@ -0,0 +1,178 @@
+package com.van.limiter.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 无锁的对数线性延迟直方图,单位纳秒
+ * <ul>
+ *     <li>小于16ns 的值每纳秒一个桶,之后每个2的幂区间均分为 {@link #SUB_BUCKETS} 个桶,相对误差不超过 12.5%</li>
+ *     <li>按线程分段记录,不同线程写入不同的计数行,避免同一计数的 CAS 竞争,读取时再汇总</li>
+ *     <li>按时间窗口轮换,{@link #rotate()} 时丢弃上上个窗口,读取结果只包含当前与上一个窗口的记录</li>
+ * </ul>
+ * @author van
+ */
+public class LatencyHistogram {
+
+    private static final int LINEAR_LIMIT = 16;
+
+    private static final int SUB_BUCKET_BITS = 3;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * 线性段之后的第一个指数
+     */
+    private static final int FIRST_EXPONENT = 4;
+
+    static final int BUCKETS = LINEAR_LIMIT + (Long.SIZE - 1 - FIRST_EXPONENT) * SUB_BUCKETS;
+
+    private static final int MAX_STRIPES = 16;
+
+    private final int stripeMask;
+
+    /**
+     * 正在记录的窗口,其 previous 为上一个窗口
+     */
+    private volatile Window current;
+
+    public LatencyHistogram() {
+        int stripes = Math.min(MAX_STRIPES, Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)) << 1);
+        this.stripeMask = stripes - 1;
+        this.current = new Window(stripes * BUCKETS, null);
+    }
+
+    /**
+     * 记录一次耗时
+     * @param nanos 耗时纳秒数
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        Window window = current;
+        int stripe = (int) Thread.currentThread().getId() & stripeMask;
+        window.counts.getAndIncrement(stripe * BUCKETS + bucketOf(nanos));
+        AtomicLong max = window.max;
+        long currentMax = max.get();
+        while (nanos > currentMax && !max.compareAndSet(currentMax, nanos)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * 开始新的时间窗口,由维护线程按固定间隔调用
+     */
+    public void rotate() {
+        Window retired = current;
+        current = new Window(retired.counts.length(), retired);
+        // 只保留一个历史窗口
+        retired.previous = null;
+    }
+
+    static int bucketOf(long nanos) {
+        if (nanos < LINEAR_LIMIT) {
+            return (int) nanos;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_LIMIT + (exponent - FIRST_EXPONENT) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @param bucket 桶下标
+     * @return 桶内的最大值
+     */
+    static long upperBoundOf(int bucket) {
+        if (bucket < LINEAR_LIMIT) {
+            return bucket;
+        }
+        int exponent = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + FIRST_EXPONENT;
+        long subBucket = (bucket - LINEAR_LIMIT) % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (SUB_BUCKETS + subBucket) * width + width - 1;
+    }
+
+    /**
+     * @return 各桶计数的汇总
+     */
+    public long[] snapshot() {
+        long[] snapshot = new long[BUCKETS];
+        Window window = current;
+        window.addTo(snapshot);
+        Window previous = window.previous;
+        if (previous != null) {
+            previous.addTo(snapshot);
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return 当前与上一个窗口的记录次数
+     */
+    public long count() {
+        long count = 0;
+        for (long bucketCount : snapshot()) {
+            count += bucketCount;
+        }
+        return count;
+    }
+
+    /**
+     * 估算分位值,返回所在桶的上界
+     * @param quantile 分位,如 0.99
+     * @return 耗时纳秒数,没有记录时为0
+     */
+    public long percentile(double quantile) {
+        long[] snapshot = snapshot();
+        long total = 0;
+        for (long count : snapshot) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long max = max();
+        long rank = Math.max(1L, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += snapshot[bucket];
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(bucket), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * @return 当前与上一个窗口的最大耗时纳秒数
+     */
+    public long max() {
+        Window window = current;
+        Window previous = window.previous;
+        return previous == null ? window.max.get() : Math.max(window.max.get(), previous.max.get());
+    }
+
+    private static final class Window {
+
+        private final AtomicLongArray counts;
+
+        private final AtomicLong max = new AtomicLong();
+
+        /**
+         * 轮换时由维护线程置空,读取时只访问当前窗口的 previous
+         */
+        private volatile Window previous;
+
+        Window(int length, Window previous) {
+            this.counts = new AtomicLongArray(length);
+            this.previous = previous;
+        }
+
+        void addTo(long[] snapshot) {
+            for (int index = 0; index < counts.length(); index++) {
+                snapshot[index % BUCKETS] += counts.get(index);
+            }
+        }
+    }
+}
@@ -0,0 +1,395 @@
+package com.van.limiter.core.policy;
+
+import com.van.limiter.core.annotation.IpLimit;
+import com.van.limiter.core.constant.IpLimitConstant;
+import com.van.limiter.core.engine.LimiterEngine;
+import com.van.limiter.core.enums.CurrentLimiterType;
+import com.van.limiter.core.enums.LimitType;
+import com.van.limiter.core.enums.RejectionStrategy;
+import com.van.limiter.core.exception.IpLimitException;
+import com.van.limiter.core.limiter.StripedLeaseCounter;
+import com.van.limiter.core.matcher.CompiledIpLists;
+import com.van.limiter.core.store.IpBanTable;
+import com.van.limiter.core.util.IpKey;
+
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalUnit;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 由 {@link IpLimit} 解析得到的不可变限流策略,每个接口方法只解析一次
+ * 请求过程中直接使用其中预先计算好的数值与编译后的名单,不再反射读取注解
+ * @author van
+ */
+public final class IpLimitPolicy {
+
+    private final IpLimit ipLimit;
+
+    private final String groupName;
+
+    private final int groupId;
+
+    private final LimitType limitType;
+
+    private final CurrentLimiterType currentLimiter;
+
+    private final double maxTimes;
+
+    private final long windowNanos;
+
+    private final long emissionIntervalNanos;
+
+    private final long burstNanos;
+
+    /**
+     * 各规则的时间窗口纳秒数,只有一条 {@link IpLimit} 时只包含 {@link #windowNanos}
+     */
+    private final long[] ruleWindowNanos;
+
+    /**
+     * 各规则时间窗口内的最多次数,与 {@link #ruleWindowNanos} 一一对应
+     */
+    private final double[] ruleMaxTimes;
+
+    private final long maxRuleWindowNanos;
+
+    /**
+     * 等待模式下的最长等待时间,不超过排队请求数对应的令牌生成时间,为0时不等待
+     */
+    private final long maxWaitNanos;
+
+    private final int ipv4KeyPrefix;
+
+    private final int ipv6KeyPrefix;
+
+    /**
+     * 是否需要按前缀截断限流Key
+     */
+    private final boolean prefixKeyed;
+
+    private final CompiledIpLists ipLists;
+
+    private final LimiterEngine limiterEngine;
+
+    /**
+     * group 总量限流器,未配置 {@link IpLimit#groupMaxTimes()} 时为 null
+     */
+    private final StripedLeaseCounter groupLimiter;
+
+    /**
+     * 封禁表,未配置 {@link IpLimit#banThreshold()} 时为 null
+     */
+    private final IpBanTable banTable;
+
+    private final int banThreshold;
+
+    private final long banNanos;
+
+    private final long maxBanNanos;
+
+    /**
+     * 预先创建的无堆栈异常,用于 {@link RejectionStrategy#STACKLESS_EXCEPTION}
+     */
+    private final IpLimitException rejectedException;
+
+    private IpLimitPolicy(IpLimit[] ipLimits, CompiledIpLists ipLists, LimiterEngine limiterEngine, StripedLeaseCounter groupLimiter,
+                          IpBanTable banTable) {
+        IpLimit ipLimit = ipLimits[0];
+        this.ipLimit = ipLimit;
+        this.groupName = ipLimit.groupName();
+        this.groupId = LimitGroups.idOf(groupName);
+        this.limitType = ipLimit.limitType();
+        this.currentLimiter = ipLimit.currentLimiter();
+        this.maxTimes = ipLimit.maxTimes();
+        this.windowNanos = computeWindowNanos(ipLimit);
+        this.emissionIntervalNanos = Math.max(1L, Math.round(windowNanos / maxTimes));
+        this.burstNanos = emissionIntervalNanos * computeBurstCapacity(ipLimit, emissionIntervalNanos);
+        this.ruleWindowNanos = new long[ipLimits.length];
+        this.ruleMaxTimes = new double[ipLimits.length];
+        for (int rule = 0; rule < ipLimits.length; rule++) {
+            ruleWindowNanos[rule] = computeWindowNanos(ipLimits[rule]);
+            ruleMaxTimes[rule] = ipLimits[rule].maxTimes();
+        }
+        this.maxRuleWindowNanos = Arrays.stream(ruleWindowNanos).max().getAsLong();
+        this.maxWaitNanos = ipLimit.maxWaitMillis() > 0
+                ? Math.min(TimeUnit.MILLISECONDS.toNanos(ipLimit.maxWaitMillis()), emissionIntervalNanos * ipLimit.waitQueueSize())
+                : 0L;
+        this.ipv4KeyPrefix = ipLimit.ipv4KeyPrefix();
+        this.ipv6KeyPrefix = ipLimit.ipv6KeyPrefix();
+        this.prefixKeyed = ipv4KeyPrefix < IpLimitConstant.IPV4_BIT_SIZE || ipv6KeyPrefix < IpLimitConstant.IPV6_BIT_SIZE;
+        this.ipLists = ipLists;
+        this.limiterEngine = limiterEngine;
+        this.groupLimiter = groupLimiter;
+        this.banTable = banTable;
+        this.banThreshold = ipLimit.banThreshold();
+        this.banNanos = TimeUnit.MILLISECONDS.toNanos(ipLimit.banMillis());
+        this.maxBanNanos = TimeUnit.MILLISECONDS.toNanos(ipLimit.maxBanMillis());
+        this.rejectedException = new IpLimitException(String.format("Ip limiter warning ! GroupName: %s", groupName),
+                groupName, ipLimit, false);
+    }
+
+    /**
+     * 解析并校验注解,配置有误时直接抛出异常,以便在启动阶段暴露问题
+     * @param ipLimit ipLimit
+     * @param ipLists 注解对应的编译后名单
+     * @param limiterEngine 注解对应的限流器
+     * @param groupLimiters 按 groupId 获取 group 总量限流器,入参为 [groupId,时间窗口纳秒数,总次数上限]
+     * @param banTable 获取封禁表,只在配置了 {@link IpLimit#banThreshold()} 时调用
+     * @return 限流策略
+     */
+    public static IpLimitPolicy compile(IpLimit ipLimit, CompiledIpLists ipLists, LimiterEngine limiterEngine,
+                                        GroupLimiterFactory groupLimiters, Supplier<IpBanTable> banTable) {
+        return compile(new IpLimit[]{ipLimit}, ipLists, limiterEngine, groupLimiters, banTable);
+    }
+
+    /**
+     * 解析并校验同一方法上叠加的多条规则,第一条规则提供名单、封禁等其余配置
+     * @param ipLimits 叠加的规则,至少一条
+     * @param ipLists 第一条规则对应的编译后名单
+     * @param limiterEngine 限流器,多条规则时需按 {@link #getRuleWindowNanos()} 同时判断全部规则
+     * @param groupLimiters 按 groupId 获取 group 总量限流器
+     * @param banTable 获取封禁表
+     * @return 限流策略
+     */
+    public static IpLimitPolicy compile(IpLimit[] ipLimits, CompiledIpLists ipLists, LimiterEngine limiterEngine,
+                                        GroupLimiterFactory groupLimiters, Supplier<IpBanTable> banTable) {
+        IpLimit ipLimit = ipLimits[0];
+        for (IpLimit rule : ipLimits) {
+            if (rule.unitTime() <= 0) {
+                throw new IllegalArgumentException("IpLimit unitTime must be positive, GroupName: " + rule.groupName());
+            }
+            if (rule.maxTimes() <= 0) {
+                throw new IllegalArgumentException("IpLimit maxTimes must be positive, GroupName: " + rule.groupName());
+            }
+            if (ipLimits.length > 1 && !rule.groupName().equals(ipLimit.groupName())) {
+                throw new IllegalArgumentException("Stacked IpLimit rules must share one groupName: " + ipLimit.groupName()
+                        + ", " + rule.groupName());
+            }
+            if (ipLimits.length > 1 && (!rule.limiterEngine().isEmpty() || rule.currentLimiter() == CurrentLimiterType.CONCURRENCY)) {
+                throw new IllegalArgumentException("Stacked IpLimit rules do not support limiterEngine or CONCURRENCY, GroupName: "
+                        + rule.groupName());
+            }
+            // 叠加的规则统一按滑动窗口计数器计算,其他算法的配置不会生效,直接报错而不是静默忽略
+            if (ipLimits.length > 1 && (rule.currentLimiter() == CurrentLimiterType.TOKEN_BUCKET || rule.burstCapacity() > 0)) {
+                throw new IllegalArgumentException("Stacked IpLimit rules always use SLIDING_WINDOW_COUNTER, "
+                        + "TOKEN_BUCKET and burstCapacity are not supported, GroupName: " + rule.groupName());
+            }
+        }
+        if (ipLimit.ipv4KeyPrefix() < 0 || ipLimit.ipv4KeyPrefix() > IpLimitConstant.IPV4_BIT_SIZE
+                || ipLimit.ipv6KeyPrefix() < 0 || ipLimit.ipv6KeyPrefix() > IpLimitConstant.IPV6_BIT_SIZE) {
+            throw new IllegalArgumentException("IpLimit key prefix out of range, GroupName: " + ipLimit.groupName());
+        }
+        if (ipLimit.banThreshold() > 0 && (ipLimit.banMillis() <= 0 || ipLimit.maxBanMillis() < ipLimit.banMillis())) {
+            throw new IllegalArgumentException("IpLimit banMillis must be positive and not greater than maxBanMillis, GroupName: "
+                    + ipLimit.groupName());
+        }
+        if (ipLimit.maxWaitMillis() > 0 && ipLimit.waitQueueSize() <= 0) {
+            throw new IllegalArgumentException("IpLimit waitQueueSize must be positive, GroupName: " + ipLimit.groupName());
+        }
+        StripedLeaseCounter groupLimiter = ipLimit.groupMaxTimes() > 0
+                ? groupLimiters.get(LimitGroups.idOf(ipLimit.groupName()), computeWindowNanos(ipLimit), ipLimit.groupMaxTimes())
+                : null;
+        IpLimitPolicy policy = new IpLimitPolicy(ipLimits, ipLists, limiterEngine, groupLimiter,
+                ipLimit.banThreshold() > 0 ? banTable.get() : null);
+        if (policy.getMaxWaitNanos() > 0 && !limiterEngine.supportsReservation()) {
+            throw new IllegalArgumentException("IpLimit maxWaitMillis is not supported by limiter " + limiterEngine.name()
+                    + ", use TOKEN_BUCKET instead, GroupName: " + ipLimit.groupName());
+        }
+        limiterEngine.validate(policy);
+        return policy;
+    }
+
+    /**
+     * 获取滑动窗口的时间窗时间类型,默认为毫秒
+     * @param ipLimit ipLimit
+     * @return 时间单位
+     */
+    private static TemporalUnit computeTemporalUnit(IpLimit ipLimit) {
+        switch (ipLimit.limitTimeType()) {
+            case SECOND:
+                return ChronoUnit.SECONDS;
+            case MINUTE:
+                return ChronoUnit.MINUTES;
+            case HOUR:
+                return ChronoUnit.HOURS;
+            case DAY:
+                return ChronoUnit.DAYS;
+            default:
+                return ChronoUnit.MILLIS;
+        }
+    }
+
+    /**
+     * 计算时间窗口长度
+     * @param ipLimit ipLimit
+     * @return 时间窗口纳秒数
+     */
+    private static long computeWindowNanos(IpLimit ipLimit) {
+        return computeTemporalUnit(ipLimit).getDuration().multipliedBy(ipLimit.unitTime()).toNanos();
+    }
+
+    /**
+     * 计算令牌桶突发容量,未配置时与 Guava RateLimiter 一致,为一秒内生成的令牌数
+     * @param ipLimit ipLimit
+     * @param emissionIntervalNanos 令牌生成间隔
+     * @return 突发容量
+     */
+    private static long computeBurstCapacity(IpLimit ipLimit, long emissionIntervalNanos) {
+        double burstCapacity = ipLimit.burstCapacity() > 0
+                ? ipLimit.burstCapacity()
+                : (double) TimeUnit.SECONDS.toNanos(1) / emissionIntervalNanos;
+        return Math.max(1L, (long) burstCapacity);
+    }
+
+    public IpLimit getIpLimit() {
+        return ipLimit;
+    }
+
+    public String getGroupName() {
+        return groupName;
+    }
+
+    public int getGroupId() {
+        return groupId;
+    }
+
+    public LimitType getLimitType() {
+        return limitType;
+    }
+
+    public CurrentLimiterType getCurrentLimiter() {
+        return currentLimiter;
+    }
+
+    public double getMaxTimes() {
+        return maxTimes;
+    }
+
+    /**
+     * @return 时间窗口纳秒数
+     */
+    public long getWindowNanos() {
+        return windowNanos;
+    }
+
+    /**
+     * @return 令牌桶生成一个令牌所需的纳秒数,直接由时间窗口与次数换算
+     */
+    public long getEmissionIntervalNanos() {
+        return emissionIntervalNanos;
+    }
+
+    /**
+     * @return 令牌桶突发容量对应的纳秒数
+     */
+    public long getBurstNanos() {
+        return burstNanos;
+    }
+
+    /**
+     * @return 规则数,叠加多条 {@link IpLimit} 时大于1
+     */
+    public int getRuleCount() {
+        return ruleWindowNanos.length;
+    }
+
+    /**
+     * @return 各规则的时间窗口纳秒数,为内部数组,不可修改
+     */
+    public long[] getRuleWindowNanos() {
+        return ruleWindowNanos;
+    }
+
+    /**
+     * @return 各规则时间窗口内的最多次数,为内部数组,不可修改
+     */
+    public double[] getRuleMaxTimes() {
+        return ruleMaxTimes;
+    }
+
+    /**
+     * @return 各规则中最长的时间窗口纳秒数
+     */
+    public long getMaxRuleWindowNanos() {
+        return maxRuleWindowNanos;
+    }
+
+    /**
+     * @return 等待模式下的最长等待纳秒数,为0时不等待
+     */
+    public long getMaxWaitNanos() {
+        return maxWaitNanos;
+    }
+
+    public int getIpv4KeyPrefix() {
+        return ipv4KeyPrefix;
+    }
+
+    public int getIpv6KeyPrefix() {
+        return ipv6KeyPrefix;
+    }
+
+    /**
+     * 获取单IP限流所用的Key,配置了前缀长度时截断为所在网段
+     * @param ip 请求方IP
+     * @return 限流Key
+     */
+    public IpKey limiterKey(IpKey ip) {
+        return prefixKeyed ? ip.toPrefix(ipv4KeyPrefix, ipv6KeyPrefix) : ip;
+    }
+
+    public CompiledIpLists getIpLists() {
+        return ipLists;
+    }
+
+    public LimiterEngine getLimiterEngine() {
+        return limiterEngine;
+    }
+
+    public IpLimitException getRejectedException() {
+        return rejectedException;
+    }
+
+    public StripedLeaseCounter getGroupLimiter() {
+        return groupLimiter;
+    }
+
+    public IpBanTable getBanTable() {
+        return banTable;
+    }
+
+    public int getBanThreshold() {
+        return banThreshold;
+    }
+
+    /**
+     * @return 首次封禁的纳秒数
+     */
+    public long getBanNanos() {
+        return banNanos;
+    }
+
+    /**
+     * @return 最长封禁的纳秒数
+     */
+    public long getMaxBanNanos() {
+        return maxBanNanos;
+    }
+
+    /**
+     * group 总量限流器的获取方式,同一 group 应返回同一个实例
+     */
+    @FunctionalInterface
+    public interface GroupLimiterFactory {
+
+        /**
+         * @param groupId groupId
+         * @param windowNanos 时间窗口纳秒数
+         * @param maxTimes 总次数上限
+         * @return group 总量限流器
+         */
+        StripedLeaseCounter get(int groupId, long windowNanos, double maxTimes);
+    }
+}
@@ -0,0 +1,46 @@
+package com.van.limiter.core.policy;
+
+import com.google.common.collect.Maps;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 限流组编号,限流状态以 int 编号代替 groupName 作为Key的一部分
+ * @author van
+ */
+public class LimitGroups {
+    private LimitGroups() {}
+
+    private static final Map<String, Integer> GROUP_IDS = Maps.newConcurrentMap();
+
+    private static final List<String> GROUP_NAMES = new CopyOnWriteArrayList<>();
+
+    /**
+     * 获取 groupName 对应的编号,首次出现时分配
+     * @param groupName groupName
+     * @return 编号
+     */
+    public static int idOf(String groupName) {
+        Integer groupId = GROUP_IDS.get(groupName);
+        if (groupId != null) {
+            return groupId;
+        }
+        synchronized (GROUP_NAMES) {
+            return GROUP_IDS.computeIfAbsent(groupName, k -> {
+                GROUP_NAMES.add(k);
+                return GROUP_NAMES.size() - 1;
+            });
+        }
+    }
+
+    /**
+     * 获取编号对应的 groupName
+     * @param groupId 编号
+     * @return groupName,不存在时返回 null
+     */
+    public static String nameOf(int groupId) {
+        return groupId >= 0 && groupId < GROUP_NAMES.size() ? GROUP_NAMES.get(groupId) : null;
+    }
+}
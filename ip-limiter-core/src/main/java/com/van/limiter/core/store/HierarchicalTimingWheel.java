@@ -0,0 +1,172 @@
+package com.van.limiter.core.store;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * 分层时间轮,用于限流状态存储中每个条目的过期与整理,只处理到期的条目,不需要扫描全部条目
+ * <ul>
+ *     <li>共 {@link #LEVELS} 层,每层 {@link #WHEEL_SIZE} 个槽,第 n 层每个槽覆盖 WHEEL_SIZE^n 个 tick</li>
+ *     <li>到期时间较远的条目放在高层,指针转到对应位置时降级到低层,最终在第0层到期</li>
+ *     <li>超出最高层范围的条目先放在最高层,到期时若尚未到达到期时间则重新放入</li>
+ * </ul>
+ * 非线程安全,只在维护线程中使用
+ * @author van
+ */
+public final class HierarchicalTimingWheel<T> {
+
+    static final int WHEEL_BITS = 6;
+
+    static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+
+    static final int LEVELS = 4;
+
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+    private static final long MAX_DELTA = (1L << (WHEEL_BITS * LEVELS)) - 1;
+
+    private final long startNanos;
+
+    private final long tickNanos;
+
+    private final Slot[][] wheels = new Slot[LEVELS][WHEEL_SIZE];
+
+    /**
+     * 下一个待处理的 tick
+     */
+    private long currentTick;
+
+    private int size;
+
+    /**
+     * @param startNanos 起始时间 {@link System#nanoTime()}
+     * @param tickNanos 每个 tick 的时长,即到期处理的最大延迟
+     */
+    public HierarchicalTimingWheel(long startNanos, long tickNanos) {
+        if (tickNanos <= 0) {
+            throw new IllegalArgumentException("Timing wheel tick must be positive: " + tickNanos);
+        }
+        this.startNanos = startNanos;
+        this.tickNanos = tickNanos;
+        for (Slot[] wheel : wheels) {
+            for (int index = 0; index < WHEEL_SIZE; index++) {
+                wheel[index] = new Slot();
+            }
+        }
+    }
+
+    /**
+     * 添加条目,到期时间已过时在下一次推进时到期,到期处理最多延迟一个 tick
+     * @param item 条目
+     * @param deadlineNanos 到期时间 {@link System#nanoTime()}
+     */
+    public void schedule(T item, long deadlineNanos) {
+        long tick = Math.floorDiv(deadlineNanos - startNanos, tickNanos);
+        place(item, deadlineNanos, tick);
+        size++;
+    }
+
+    /**
+     * 按与当前 tick 的距离选择层级,已过期的条目放入当前 tick 对应的槽
+     */
+    private void place(Object item, long deadlineNanos, long tick) {
+        long delta = Math.max(0L, Math.min(tick - currentTick, MAX_DELTA));
+        tick = currentTick + delta;
+        int level = 0;
+        while (delta >= WHEEL_SIZE) {
+            delta >>>= WHEEL_BITS;
+            level++;
+        }
+        wheels[level][(int) (tick >>> (WHEEL_BITS * level)) & WHEEL_MASK].add(item, deadlineNanos);
+    }
+
+    /**
+     * 推进到当前时间,到期的条目从时间轮中移除后回调,回调中可以再次添加
+     * @param now 当前时间 {@link System#nanoTime()}
+     * @param expired 到期回调
+     * @return 到期的条目数
+     */
+    @SuppressWarnings("unchecked")
+    public int advance(long now, Consumer<? super T> expired) {
+        long targetTick = Math.floorDiv(now - startNanos, tickNanos);
+        if (size == 0) {
+            // 没有条目时直接跳到当前 tick
+            currentTick = Math.max(currentTick, targetTick + 1);
+            return 0;
+        }
+        int count = 0;
+        while (currentTick <= targetTick) {
+            // 由高到低降级: tick 对齐到第 n 层的槽边界时,该槽中的条目重新放入低层
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (WHEEL_BITS * level)) - 1)) == 0) {
+                    Slot slot = wheels[level][(int) (currentTick >>> (WHEEL_BITS * level)) & WHEEL_MASK];
+                    Object[] items = slot.items;
+                    long[] deadlines = slot.deadlines;
+                    int slotSize = slot.detach();
+                    for (int index = 0; index < slotSize; index++) {
+                        place(items[index], deadlines[index], Math.floorDiv(deadlines[index] - startNanos, tickNanos));
+                    }
+                }
+            }
+            Slot slot = wheels[0][(int) currentTick & WHEEL_MASK];
+            Object[] items = slot.items;
+            long[] deadlines = slot.deadlines;
+            int slotSize = slot.detach();
+            currentTick++;
+            for (int index = 0; index < slotSize; index++) {
+                if (deadlines[index] - now > 0) {
+                    // 同一 tick 内尚未到期,或超出最高层范围后被截断的条目
+                    place(items[index], deadlines[index], Math.floorDiv(deadlines[index] - startNanos, tickNanos));
+                    continue;
+                }
+                size--;
+                count++;
+                expired.accept((T) items[index]);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return 时间轮中的条目数
+     */
+    public int size() {
+        return size;
+    }
+
+    private static final class Slot {
+
+        private static final Object[] EMPTY_ITEMS = {};
+
+        private static final long[] EMPTY_DEADLINES = {};
+
+        Object[] items = EMPTY_ITEMS;
+
+        long[] deadlines = EMPTY_DEADLINES;
+
+        int size;
+
+        void add(Object item, long deadline) {
+            if (size == items.length) {
+                int capacity = Math.max(4, size * 2);
+                items = Arrays.copyOf(items, capacity);
+                deadlines = Arrays.copyOf(deadlines, capacity);
+            }
+            items[size] = item;
+            deadlines[size] = deadline;
+            size++;
+        }
+
+        /**
+         * 取出全部条目,调用前先保存数组引用
+         * @return 条目数
+         */
+        int detach() {
+            int detached = size;
+            items = EMPTY_ITEMS;
+            deadlines = EMPTY_DEADLINES;
+            size = 0;
+            return detached;
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package com.van.limiter.core.store;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+/**
+ * 临时封禁表: 时间窗口内被限流拒绝达到阈值的 [IP,Group] 会被封禁一段时间,再次触发时封禁时长逐级翻倍
+ * <ul>
+ *     <li>固定容量的组相联表,每个桶 {@link #WAYS} 个槽位,状态以 long 数组保存,不为每个客户端创建对象</li>
+ *     <li>查询使用 {@link StampedLock} 的乐观读(seqlock): 无写入时只读取数组并校验版本,不加锁也不写共享内存</li>
+ *     <li>只有被拒绝的请求才会写入,写入时获取桶所在分段的写锁</li>
+ *     <li>封禁到期由 {@link HierarchicalTimingWheel} 驱动: 到期后解除封禁,封禁记录保留到 [到期时间 + 最长封禁时长] 用于逐级升级,之后释放槽位</li>
+ * </ul>
+ * 查询本身按时间判断是否仍在封禁中,时间轮只负责维护计数与回收槽位,推进不及时不影响判定
+ * 时间轮由其自身的监视器保护,到期回调在释放监视器之后执行,避免与分段写锁形成相反的加锁顺序
+ * @author van
+ */
+public class IpBanTable {
+
+    /**
+     * 每个桶的槽位数
+     */
+    static final int WAYS = 4;
+
+    private static final int MAX_STRIPES = 256;
+
+    /*
+     * 槽位布局: [控制字: 高32位 groupId+1(0表示空), 低位为封禁中标记][hi][lo][封禁到期时间][拒绝窗口起点][窗口内拒绝次数][封禁级别][保留到期时间]
+     */
+    private static final int STRIDE = 8;
+
+    private static final int HI = 1;
+
+    private static final int LO = 2;
+
+    private static final int BANNED_UNTIL = 3;
+
+    private static final int WINDOW_START = 4;
+
+    private static final int REJECTIONS = 5;
+
+    private static final int LEVEL = 6;
+
+    private static final int RETAIN_UNTIL = 7;
+
+    private static final long ACTIVE = 1L;
+
+    private final long[] slots;
+
+    private final int bucketMask;
+
+    private final StampedLock[] stripes;
+
+    private final int stripeMask;
+
+    /**
+     * 以槽位下标为条目,封禁时由请求线程添加,只在持有其监视器时访问
+     */
+    private final HierarchicalTimingWheel<Integer> timingWheel;
+
+    private final LongAdder activeCount = new LongAdder();
+
+    private final LongAdder banCount = new LongAdder();
+
+    private final LongAdder evictionCount = new LongAdder();
+
+    /**
+     * @param capacity 期望容量,会向上取整为 {@link #WAYS} 乘以2的幂
+     * @param tickNanos 时间轮 tick 时长,即解除封禁的最大延迟
+     */
+    public IpBanTable(int capacity, long tickNanos) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Ip ban table capacity must be positive: " + capacity);
+        }
+        int buckets = Math.max(1, Integer.highestOneBit(Math.max(1, (capacity + WAYS - 1) / WAYS) - 1) << 1);
+        this.slots = new long[buckets * WAYS * STRIDE];
+        this.bucketMask = buckets - 1;
+        int stripeCount = Math.min(buckets, MAX_STRIPES);
+        this.stripes = new StampedLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new StampedLock();
+        }
+        this.stripeMask = stripeCount - 1;
+        this.timingWheel = new HierarchicalTimingWheel<>(System.nanoTime(), tickNanos);
+    }
+
+    /**
+     * 判断是否处于封禁中,请求进入限流器之前调用
+     * @param hi IP高64位
+     * @param lo IP低64位
+     * @param groupId Group编号
+     * @param now 当前时间 {@link System#nanoTime()}
+     * @return 是否封禁中
+     */
+    public boolean isBanned(long hi, long lo, int groupId, long now) {
+        int bucket = bucket(hi, lo, groupId);
+        StampedLock lock = stripes[bucket & stripeMask];
+        long stamp = lock.tryOptimisticRead();
+        long bannedUntil = bannedUntil(bucket, hi, lo, groupId);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                bannedUntil = bannedUntil(bucket, hi, lo, groupId);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return bannedUntil != 0 && bannedUntil - now > 0;
+    }
+
+    /**
+     * @return 封禁到期时间,未封禁时为0
+     */
+    private long bannedUntil(int bucket, long hi, long lo, int groupId) {
+        long control = (long) (groupId + 1) << 32 | ACTIVE;
+        int slot = bucket * WAYS * STRIDE;
+        for (int i = 0; i < WAYS; i++, slot += STRIDE) {
+            if (slots[slot] == control && slots[slot + HI] == hi && slots[slot + LO] == lo) {
+                return slots[slot + BANNED_UNTIL];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 记录一次限流拒绝,时间窗口内的拒绝次数达到阈值时封禁
+     * 第 n 次封禁的时长为 banNanos * 2^(n-1),不超过 maxBanNanos;距上次封禁到期超过 maxBanNanos 后级别重置
+     * @param hi IP高64位
+     * @param lo IP低64位
+     * @param groupId Group编号
+     * @param now 当前时间 {@link System#nanoTime()}
+     * @param threshold 时间窗口内的拒绝次数阈值
+     * @param windowNanos 时间窗口长度
+     * @param banNanos 首次封禁时长
+     * @param maxBanNanos 最长封禁时长
+     * @return 本次是否触发封禁
+     */
+    public boolean recordRejection(long hi, long lo, int groupId, long now, int threshold, long windowNanos,
+                                   long banNanos, long maxBanNanos) {
+        int bucket = bucket(hi, lo, groupId);
+        StampedLock lock = stripes[bucket & stripeMask];
+        long stamp = lock.writeLock();
+        int slot;
+        long retainUntil;
+        try {
+            slot = findOrInsert(bucket, hi, lo, groupId, now);
+            if ((slots[slot] & ACTIVE) != 0 && slots[slot + BANNED_UNTIL] - now > 0) {
+                return false;
+            }
+            if (now - slots[slot + WINDOW_START] >= windowNanos) {
+                slots[slot + WINDOW_START] = now;
+                slots[slot + REJECTIONS] = 0;
+            }
+            long rejections = ++slots[slot + REJECTIONS];
+            if (rejections < threshold) {
+                if (slots[slot + RETAIN_UNTIL] - (now + windowNanos) < 0) {
+                    slots[slot + RETAIN_UNTIL] = now + windowNanos;
+                }
+                return false;
+            }
+            long level = slots[slot + LEVEL] + 1;
+            long banUntil = now + banDuration(level, banNanos, maxBanNanos);
+            retainUntil = banUntil + maxBanNanos;
+            if ((slots[slot] & ACTIVE) == 0) {
+                slots[slot] |= ACTIVE;
+                activeCount.increment();
+            }
+            slots[slot + BANNED_UNTIL] = banUntil;
+            slots[slot + WINDOW_START] = banUntil;
+            slots[slot + REJECTIONS] = 0;
+            slots[slot + LEVEL] = level;
+            slots[slot + RETAIN_UNTIL] = retainUntil;
+            banCount.increment();
+            schedule(slot, banUntil);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        return true;
+    }
+
+    private static long banDuration(long level, long banNanos, long maxBanNanos) {
+        // 左移后溢出时直接取上限
+        if (level >= Long.numberOfLeadingZeros(banNanos)) {
+            return maxBanNanos;
+        }
+        return Math.min(banNanos << (level - 1), maxBanNanos);
+    }
+
+    /**
+     * 查找槽位,不存在时选择一个槽位写入: 空槽位 > 保留期已过的槽位 > 未在封禁中且级别最低的槽位 > 最早到期的封禁
+     * @return 槽位下标
+     */
+    private int findOrInsert(int bucket, long hi, long lo, int groupId, long now) {
+        long key = (long) (groupId + 1) << 32;
+        int first = bucket * WAYS * STRIDE;
+        int victim = -1;
+        long victimScore = Long.MAX_VALUE;
+        for (int i = 0, slot = first; i < WAYS; i++, slot += STRIDE) {
+            long control = slots[slot];
+            if ((control & ~ACTIVE) == key && slots[slot + HI] == hi && slots[slot + LO] == lo) {
+                return slot;
+            }
+            long score;
+            if (control == 0) {
+                score = Long.MIN_VALUE;
+            } else if (slots[slot + RETAIN_UNTIL] - now <= 0 && (control & ACTIVE) == 0) {
+                score = Long.MIN_VALUE + 1;
+            } else if ((control & ACTIVE) == 0 || slots[slot + BANNED_UNTIL] - now <= 0) {
+                score = Long.MIN_VALUE + 2 + slots[slot + LEVEL];
+            } else {
+                score = slots[slot + BANNED_UNTIL] - now;
+            }
+            if (victim < 0 || score < victimScore) {
+                victim = slot;
+                victimScore = score;
+            }
+        }
+        if (slots[victim] != 0) {
+            if ((slots[victim] & ACTIVE) != 0) {
+                activeCount.decrement();
+            }
+            if (victimScore >= Long.MIN_VALUE + 2) {
+                evictionCount.increment();
+            }
+        }
+        slots[victim] = key;
+        slots[victim + HI] = hi;
+        slots[victim + LO] = lo;
+        slots[victim + BANNED_UNTIL] = 0;
+        slots[victim + WINDOW_START] = now;
+        slots[victim + REJECTIONS] = 0;
+        slots[victim + LEVEL] = 0;
+        slots[victim + RETAIN_UNTIL] = now;
+        return victim;
+    }
+
+    /**
+     * 推进时间轮,解除到期的封禁并回收保留期已过的槽位,由维护线程定期调用
+     * @return 处理的到期条目数
+     */
+    public int expire() {
+        ExpiredSlots expired = new ExpiredSlots();
+        synchronized (timingWheel) {
+            timingWheel.advance(System.nanoTime(), expired);
+        }
+        for (int index = 0; index < expired.size; index++) {
+            onExpired(expired.slots[index]);
+        }
+        return expired.size;
+    }
+
+    private void schedule(int slot, long deadlineNanos) {
+        synchronized (timingWheel) {
+            timingWheel.schedule(slot, deadlineNanos);
+        }
+    }
+
+    private void onExpired(int slot) {
+        StampedLock lock = stripes[(slot / (WAYS * STRIDE)) & stripeMask];
+        long stamp = lock.writeLock();
+        try {
+            long now = System.nanoTime();
+            long control = slots[slot];
+            if ((control & ACTIVE) != 0) {
+                // 槽位可能已被重新封禁或替换,以槽位中的到期时间为准
+                if (slots[slot + BANNED_UNTIL] - now > 0) {
+                    return;
+                }
+                slots[slot] = control & ~ACTIVE;
+                activeCount.decrement();
+                schedule(slot, slots[slot + RETAIN_UNTIL]);
+            } else if (control != 0 && slots[slot + LEVEL] > 0 && slots[slot + RETAIN_UNTIL] - now <= 0) {
+                for (int i = 0; i < STRIDE; i++) {
+                    slots[slot + i] = 0;
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private int bucket(long hi, long lo, int groupId) {
+        long h = hi * 0x9E3779B97F4A7C15L ^ lo;
+        h = (h ^ groupId) * 0xBF58476D1CE4E5B9L;
+        return (int) (h ^ (h >>> 31)) & bucketMask;
+    }
+
+    /**
+     * @return 槽位总数
+     */
+    public int capacity() {
+        return slots.length / STRIDE;
+    }
+
+    /**
+     * @return 封禁中的 [IP,Group] 数,到期后由时间轮更新
+     */
+    public long activeCount() {
+        return activeCount.sum();
+    }
+
+    /**
+     * @return 累计封禁次数
+     */
+    public long banCount() {
+        return banCount.sum();
+    }
+
+    /**
+     * @return 因桶满被替换的有效记录数
+     */
+    public long evictionCount() {
+        return evictionCount.sum();
+    }
+
+    /**
+     * 在持有时间轮监视器时收集到期的槽位
+     */
+    private static final class ExpiredSlots implements Consumer<Integer> {
+
+        private int[] slots = new int[8];
+
+        private int size;
+
+        @Override
+        public void accept(Integer slot) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            slots[size++] = slot;
+        }
+    }
+}
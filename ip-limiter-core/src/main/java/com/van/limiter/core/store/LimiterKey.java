@@ -0,0 +1,110 @@
+package com.van.limiter.core.store;
+
+import com.van.limiter.core.policy.LimitGroups;
+import com.van.limiter.core.util.IpKey;
+
+/**
+ * 限流状态的存储Key, [二进制IP,Group编号], 比较与哈希都只涉及基本类型
+ * 查找已有状态时使用 {@link #probe(long, long, int)} 返回的线程内复用实例,不产生新对象;
+ * 复用实例不会被存储持有,新建条目时由 {@link #retain()} 复制出不可变的Key
+ * @author van
+ */
+public final class LimiterKey {
+
+    private static final ThreadLocal<LimiterKey> PROBE = ThreadLocal.withInitial(() -> new LimiterKey(0, 0, 0, true));
+
+    private long hi;
+
+    private long lo;
+
+    private int groupId;
+
+    private int hash;
+
+    /**
+     * 是否为线程内复用的查找Key
+     */
+    private final boolean probe;
+
+    public LimiterKey(IpKey ip, int groupId) {
+        this(ip.getHi(), ip.getLo(), groupId);
+    }
+
+    public LimiterKey(long hi, long lo, int groupId) {
+        this(hi, lo, groupId, false);
+    }
+
+    private LimiterKey(long hi, long lo, int groupId, boolean probe) {
+        this.probe = probe;
+        set(hi, lo, groupId);
+    }
+
+    private LimiterKey set(long hi, long lo, int groupId) {
+        this.hi = hi;
+        this.lo = lo;
+        this.groupId = groupId;
+        this.hash = IpKey.mix(hi, lo) * 31 + groupId;
+        return this;
+    }
+
+    /**
+     * 获取当前线程复用的查找Key,只能用于本次查找,不能保存
+     * @param hi 地址高64位
+     * @param lo 地址低64位
+     * @param groupId groupId
+     * @return 查找Key
+     */
+    public static LimiterKey probe(long hi, long lo, int groupId) {
+        return PROBE.get().set(hi, lo, groupId);
+    }
+
+    /**
+     * @param ip 限流Key对应的地址
+     * @param groupId groupId
+     * @return 当前线程复用的查找Key
+     */
+    public static LimiterKey probe(IpKey ip, int groupId) {
+        return probe(ip.getHi(), ip.getLo(), groupId);
+    }
+
+    /**
+     * @return 可以被存储持有的Key,复用的查找Key会被复制
+     */
+    public LimiterKey retain() {
+        return probe ? new LimiterKey(hi, lo, groupId) : this;
+    }
+
+    public long getHi() {
+        return hi;
+    }
+
+    public long getLo() {
+        return lo;
+    }
+
+    public int getGroupId() {
+        return groupId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof LimiterKey)) {
+            return false;
+        }
+        LimiterKey that = (LimiterKey) o;
+        return hi == that.hi && lo == that.lo && groupId == that.groupId;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return IpKey.ofIpv6(hi, lo) + "@" + LimitGroups.nameOf(groupId);
+    }
+}
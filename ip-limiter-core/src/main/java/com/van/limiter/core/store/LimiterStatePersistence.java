@@ -0,0 +1,81 @@
+package com.van.limiter.core.store;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 限流状态的持久化: 启动时(对外提供服务之前)恢复快照,运行期间定期写入,关闭时再写入一次
+ * 滚动发布时各节点重启后沿用重启前的剩余额度,不会因状态清空而让客户端重新获得一次突发
+ * @author van
+ */
+public class LimiterStatePersistence implements InitializingBean, DisposableBean {
+
+    private final LimiterStateSnapshot snapshot;
+
+    private final Path file;
+
+    private final long periodMillis;
+
+    private ScheduledFuture<?> future;
+
+    /**
+     * @param snapshot 快照读写
+     * @param file 快照文件
+     * @param periodMillis 定期写入的间隔,小于等于0时只在关闭时写入
+     */
+    public LimiterStatePersistence(LimiterStateSnapshot snapshot, Path file, long periodMillis) {
+        this.snapshot = snapshot;
+        this.file = file;
+        this.periodMillis = periodMillis;
+    }
+
+    /**
+     * 恢复快照并开始定期写入
+     * 快照无法读取或内容损坏时与没有快照相同,不影响启动,下一次写入时覆盖
+     */
+    @Override
+    public void afterPropertiesSet() {
+        try {
+            snapshot.restore(file);
+        } catch (IOException | RuntimeException e) {
+            // 快照只是优化,读取失败时丢弃已恢复的部分,从空状态开始
+            snapshot.clear();
+        }
+        if (periodMillis > 0) {
+            future = StoreMaintenance.executor().scheduleWithFixedDelay(this::saveQuietly, periodMillis, periodMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 停止定期写入,并写入最终的快照
+     * @throws IOException 快照写入失败
+     */
+    @Override
+    public void destroy() throws IOException {
+        if (future != null) {
+            future.cancel(false);
+        }
+        snapshot.save(file);
+    }
+
+    /**
+     * 定期写入失败时保留上一次的快照,等待下一次写入
+     */
+    private void saveQuietly() {
+        try {
+            snapshot.save(file);
+        } catch (IOException | RuntimeException e) {
+            // 磁盘暂时不可写等情况不影响限流
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+}
@@ -0,0 +1,417 @@
+package com.van.limiter.core.store;
+
+import com.van.limiter.core.limiter.GcraTokenBucket;
+import com.van.limiter.core.limiter.MultiWindowCounter;
+import com.van.limiter.core.limiter.SlidingLogWindow;
+import com.van.limiter.core.limiter.SlidingWindowCounter;
+import com.van.limiter.core.policy.LimitGroups;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 限流状态快照,用于重启后恢复各客户端的剩余额度
+ * <ul>
+ *     <li>{@link System#nanoTime()} 只在单个进程内有意义,写入时统一换算为墙上时间(纳秒),恢复时再换算回当前进程的 nanoTime</li>
+ *     <li>groupId 由进程内首次出现的顺序分配,文件中保存 groupName 表,恢复时重新映射</li>
+ *     <li>恢复时跳过已失效的状态(令牌桶已回满、窗口内已无请求、堆外槽位已过期),且每个存储最多恢复到其容量上限</li>
+ * </ul>
+ * 文件格式(大端): [魔数 4][版本 4][写入时墙上时间 8][group数 4][groupName UTF...] + 若干条记录 + [结束标记 1]
+ * 每条记录: [类型 1][hi 8][lo 8][group下标 4] + 类型相关的状态,时间均为墙上时间
+ * @author van
+ */
+public class LimiterStateSnapshot {
+
+    private static final int MAGIC = 0x49504C53;
+
+    private static final int VERSION = 2;
+
+    private static final byte END = 0;
+
+    private static final byte TOKEN_BUCKET = 1;
+
+    private static final byte WINDOW_COUNTER = 2;
+
+    private static final byte SLIDING_LOG = 3;
+
+    private static final byte OFF_HEAP = 4;
+
+    private static final byte MULTI_WINDOW = 5;
+
+    private final LimiterStateStore<LimiterKey, GcraTokenBucket> tokenBuckets;
+
+    private final LimiterStateStore<LimiterKey, SlidingLogWindow> slidingLogs;
+
+    private final LimiterStateStore<LimiterKey, SlidingWindowCounter> windowCounters;
+
+    private final LimiterStateStore<LimiterKey, MultiWindowCounter> multiWindowCounters;
+
+    private final Supplier<OffHeapLimiterTable> offHeapTable;
+
+    /**
+     * @param tokenBuckets 令牌桶存储
+     * @param slidingLogs 滑动窗口存储
+     * @param windowCounters 滑动窗口计数器存储
+     * @param multiWindowCounters 多规则计数器存储
+     * @param offHeapTable 堆外限流状态表,未启用时返回 null
+     */
+    public LimiterStateSnapshot(LimiterStateStore<LimiterKey, GcraTokenBucket> tokenBuckets,
+                                LimiterStateStore<LimiterKey, SlidingLogWindow> slidingLogs,
+                                LimiterStateStore<LimiterKey, SlidingWindowCounter> windowCounters,
+                                LimiterStateStore<LimiterKey, MultiWindowCounter> multiWindowCounters,
+                                Supplier<OffHeapLimiterTable> offHeapTable) {
+        this.tokenBuckets = tokenBuckets;
+        this.slidingLogs = slidingLogs;
+        this.windowCounters = windowCounters;
+        this.multiWindowCounters = multiWindowCounters;
+        this.offHeapTable = offHeapTable;
+    }
+
+    /**
+     * 写入快照,先写入同目录下的临时文件再原子替换
+     * @param file 快照文件
+     * @return 写入的记录数
+     * @throws IOException 写入失败
+     */
+    public int save(Path file) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            int records;
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                records = write(out);
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return records;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private int write(DataOutputStream out) throws IOException {
+        Clock clock = Clock.now();
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(clock.wallNanos);
+        List<String> groupNames = new ArrayList<>();
+        for (String groupName = LimitGroups.nameOf(0); groupName != null; groupName = LimitGroups.nameOf(groupNames.size())) {
+            groupNames.add(groupName);
+        }
+        out.writeInt(groupNames.size());
+        for (String groupName : groupNames) {
+            out.writeUTF(groupName);
+        }
+        int groupCount = groupNames.size();
+        int[] records = new int[1];
+        try {
+            tokenBuckets.forEach((key, tokenBucket, minExpireNanos) -> {
+                if (writeKey(out, TOKEN_BUCKET, key.getHi(), key.getLo(), key.getGroupId(), groupCount)) {
+                    writeLong(out, clock.toWall(tokenBucket.getTheoreticalArrivalTime()));
+                    records[0]++;
+                }
+            });
+            windowCounters.forEach((key, counter, minExpireNanos) -> {
+                long[] state = counter.snapshot();
+                if (writeKey(out, WINDOW_COUNTER, key.getHi(), key.getLo(), key.getGroupId(), groupCount)) {
+                    writeLong(out, minExpireNanos);
+                    writeLong(out, clock.toWall(state[0]));
+                    writeLong(out, state[1]);
+                    writeLong(out, state[2]);
+                    records[0]++;
+                }
+            });
+            multiWindowCounters.forEach((key, counter, minExpireNanos) -> {
+                long[] state = counter.snapshot();
+                if (writeKey(out, MULTI_WINDOW, key.getHi(), key.getLo(), key.getGroupId(), groupCount)) {
+                    writeLong(out, minExpireNanos);
+                    writeInt(out, state.length);
+                    for (int index = 0; index < state.length; index += 3) {
+                        writeLong(out, clock.toWall(state[index]));
+                        writeLong(out, state[index + 1]);
+                        writeLong(out, state[index + 2]);
+                    }
+                    records[0]++;
+                }
+            });
+            slidingLogs.forEach((key, window, minExpireNanos) -> {
+                long[] timestamps = window.snapshot();
+                if (timestamps.length > 0 && writeKey(out, SLIDING_LOG, key.getHi(), key.getLo(), key.getGroupId(), groupCount)) {
+                    writeLong(out, minExpireNanos);
+                    writeInt(out, timestamps.length);
+                    for (long timestamp : timestamps) {
+                        writeLong(out, clock.toWall(timestamp));
+                    }
+                    records[0]++;
+                }
+            });
+            OffHeapLimiterTable table = offHeapTable.get();
+            if (table != null) {
+                table.forEach((hi, lo, groupId, kind, expireAt, state0, state1, state2) -> {
+                    if (writeKey(out, OFF_HEAP, hi, lo, groupId, groupCount)) {
+                        writeInt(out, kind);
+                        writeLong(out, clock.toWall(expireAt));
+                        writeLong(out, clock.toWall(state0));
+                        writeLong(out, state1);
+                        writeLong(out, state2);
+                        records[0]++;
+                    }
+                });
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        out.writeByte(END);
+        return records[0];
+    }
+
+    /**
+     * 读取快照并恢复仍然有效的状态,已存在的状态不会被覆盖
+     * 文件不存在或版本不兼容时不做处理;文件被截断时恢复已读取的部分
+     * 文件中的各项长度不超过文件本身的大小,内容损坏时不会按损坏的长度分配内存
+     * @param file 快照文件
+     * @return 恢复的记录数
+     * @throws IOException 读取失败或文件内容损坏,损坏之前的记录已被恢复
+     */
+    public int restore(Path file) throws IOException {
+        DataInputStream in;
+        try {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+        } catch (NoSuchFileException e) {
+            return 0;
+        }
+        int[] restored = new int[1];
+        try {
+            long fileSize = Files.size(file);
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return 0;
+            }
+            read(in, fileSize, restored);
+        } catch (EOFException e) {
+            // 文件被截断,保留已恢复的部分
+        } finally {
+            in.close();
+        }
+        return restored[0];
+    }
+
+    /**
+     * 清空恢复的状态,快照损坏时从空状态开始,只在开始处理请求之前调用
+     */
+    void clear() {
+        tokenBuckets.clear();
+        slidingLogs.clear();
+        windowCounters.clear();
+        multiWindowCounters.clear();
+        OffHeapLimiterTable table = offHeapTable.get();
+        if (table != null) {
+            // 遍历时持有桶锁,先收集再逐个删除
+            List<long[]> slots = new ArrayList<>();
+            table.forEach((hi, lo, groupId, kind, expireAt, state0, state1, state2) -> slots.add(new long[] {hi, lo, groupId, kind}));
+            for (long[] slot : slots) {
+                table.remove(slot[0], slot[1], (int) slot[2], (int) slot[3]);
+            }
+        }
+    }
+
+    /**
+     * @param in 输入流,已读取魔数与版本
+     * @param fileSize 文件大小,用于校验各项长度
+     * @param restored 已恢复的记录数
+     */
+    private void read(DataInputStream in, long fileSize, int[] restored) throws IOException {
+        Clock clock = Clock.now();
+        // 写入时的墙上时间,各条记录中的时间均为绝对时间,无需使用
+        in.readLong();
+        // 每个 groupName 至少占用2字节
+        int groupCount = checkLength(in.readInt(), fileSize / 2, "group count");
+        int[] groupIds = new int[groupCount];
+        for (int index = 0; index < groupIds.length; index++) {
+            groupIds[index] = LimitGroups.idOf(in.readUTF());
+        }
+        long now = System.nanoTime();
+        OffHeapLimiterTable table = offHeapTable.get();
+        for (byte type = in.readByte(); type != END; type = in.readByte()) {
+            long hi = in.readLong();
+            long lo = in.readLong();
+            int groupIndex = in.readInt();
+            if (groupIndex < 0 || groupIndex >= groupIds.length) {
+                throw new IOException("Corrupted limiter state snapshot, group index: " + groupIndex);
+            }
+            LimiterKey key = new LimiterKey(hi, lo, groupIds[groupIndex]);
+            switch (type) {
+                case TOKEN_BUCKET: {
+                    long tat = clock.toNano(in.readLong());
+                    // 桶已回满时与新建的状态相同
+                    if (tat - now > 0 && tokenBuckets.size() < tokenBuckets.getMaximumSize()
+                            && tokenBuckets.restore(key, tat - now, new GcraTokenBucket(tat))) {
+                        restored[0]++;
+                    }
+                    break;
+                }
+                case WINDOW_COUNTER: {
+                    long minExpireNanos = in.readLong();
+                    long windowStart = clock.toNano(in.readLong());
+                    long previousCount = in.readLong();
+                    long currentCount = in.readLong();
+                    // 最短过期时间为两个窗口,超过后两个计数均已失效
+                    if (now - windowStart < minExpireNanos && windowCounters.size() < windowCounters.getMaximumSize()
+                            && windowCounters.restore(key, minExpireNanos, new SlidingWindowCounter(windowStart, previousCount, currentCount))) {
+                        restored[0]++;
+                    }
+                    break;
+                }
+                case MULTI_WINDOW: {
+                    long minExpireNanos = in.readLong();
+                    int length = checkLength(in.readInt(), fileSize / Long.BYTES, "multi window state length");
+                    if (length % 3 != 0) {
+                        throw new IOException("Corrupted limiter state snapshot, multi window state length: " + length);
+                    }
+                    long[] state = new long[length];
+                    boolean live = false;
+                    for (int index = 0; index < length; index += 3) {
+                        state[index] = clock.toNano(in.readLong());
+                        state[index + 1] = in.readLong();
+                        state[index + 2] = in.readLong();
+                        // 最短过期时间为最长窗口的两倍,超过后该规则的计数均已失效
+                        live |= now - state[index] < minExpireNanos && (state[index + 1] > 0 || state[index + 2] > 0);
+                    }
+                    if (live && multiWindowCounters.size() < multiWindowCounters.getMaximumSize()
+                            && multiWindowCounters.restore(key, minExpireNanos, new MultiWindowCounter(state))) {
+                        restored[0]++;
+                    }
+                    break;
+                }
+                case SLIDING_LOG: {
+                    long minExpireNanos = in.readLong();
+                    int count = checkLength(in.readInt(), fileSize / Long.BYTES, "timestamp count");
+                    long[] timestamps = new long[count];
+                    int size = 0;
+                    for (int index = 0; index < timestamps.length; index++) {
+                        long timestamp = clock.toNano(in.readLong());
+                        // 最短过期时间即窗口长度,只保留仍在窗口内的记录
+                        if (now - timestamp <= minExpireNanos) {
+                            timestamps[size++] = timestamp;
+                        }
+                    }
+                    if (size > 0 && slidingLogs.size() < slidingLogs.getMaximumSize()
+                            && slidingLogs.restore(key, minExpireNanos, new SlidingLogWindow(Arrays.copyOf(timestamps, size)))) {
+                        restored[0]++;
+                    }
+                    break;
+                }
+                case OFF_HEAP: {
+                    int kind = in.readInt();
+                    if (kind != OffHeapLimiterTable.TOKEN_BUCKET && kind != OffHeapLimiterTable.WINDOW_COUNTER) {
+                        throw new IOException("Corrupted limiter state snapshot, off-heap state kind: " + kind);
+                    }
+                    long expireAt = clock.toNano(in.readLong());
+                    long state0 = clock.toNano(in.readLong());
+                    long state1 = in.readLong();
+                    long state2 = in.readLong();
+                    // 令牌桶已回满或计数器没有计数时与新建的状态相同
+                    boolean fresh = state0 - now <= 0 && state1 == 0 && state2 == 0;
+                    if (table != null && expireAt - now > 0 && !fresh
+                            && table.restore(hi, lo, groupIds[groupIndex], kind, expireAt, state0, state1, state2)) {
+                        restored[0]++;
+                    }
+                    break;
+                }
+                default:
+                    throw new IOException("Corrupted limiter state snapshot, record type: " + type);
+            }
+        }
+    }
+
+    /**
+     * @param length 文件中记录的长度
+     * @param maxLength 按文件大小计算的长度上限
+     * @param name 用于异常信息
+     * @return 校验后的长度
+     * @throws IOException 长度为负或超过上限
+     */
+    private static int checkLength(int length, long maxLength, String name) throws IOException {
+        if (length < 0 || length > maxLength) {
+            throw new IOException("Corrupted limiter state snapshot, " + name + ": " + length);
+        }
+        return length;
+    }
+
+    private static boolean writeKey(DataOutputStream out, byte type, long hi, long lo, int groupId, int groupCount) {
+        // 快照开始后才出现的 group 不在 groupName 表中,跳过
+        if (groupId < 0 || groupId >= groupCount) {
+            return false;
+        }
+        try {
+            out.writeByte(type);
+            out.writeLong(hi);
+            out.writeLong(lo);
+            out.writeInt(groupId);
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeLong(DataOutputStream out, long value) {
+        try {
+            out.writeLong(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeInt(DataOutputStream out, int value) {
+        try {
+            out.writeInt(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * nanoTime 与墙上时间的换算
+     */
+    private static final class Clock {
+
+        private final long nanoTime;
+
+        private final long wallNanos;
+
+        private Clock(long nanoTime, long wallNanos) {
+            this.nanoTime = nanoTime;
+            this.wallNanos = wallNanos;
+        }
+
+        static Clock now() {
+            return new Clock(System.nanoTime(), TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis()));
+        }
+
+        long toWall(long nanos) {
+            return nanos - nanoTime + wallNanos;
+        }
+
+        long toNano(long wall) {
+            return wall - wallNanos + nanoTime;
+        }
+    }
+}
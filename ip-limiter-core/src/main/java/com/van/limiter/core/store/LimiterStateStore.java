@@ -0,0 +1,449 @@
+package com.van.limiter.core.store;
+
+import com.google.common.collect.Maps;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * 有界、可自动淘汰的限流状态存储
+ * <ul>
+ *     <li>超过空闲时间未被访问的条目会被清理: 每个条目按到期时间放入 {@link HierarchicalTimingWheel},
+ *     维护时只处理到期的条目,到期时若期间被访问过则按新的到期时间重新放入,不需要扫描全部条目</li>
+ *     <li>配置了 {@link StateTrimmer} 时,条目空闲超过一个时间窗口后整理一次状态(如释放滑动窗口中已失效的请求记录),
+ *     内存占用随活跃客户端数变化,而不是保留到空闲过期</li>
+ *     <li>超过最大条目数时按 GCLOCK 淘汰: 每次访问累加频次(上限 {@link #MAX_FREQUENCY}),时钟指针扫过时递减,
+ *     频次为0的条目被淘汰,因此大量只访问一次的IP会先于真实客户端被淘汰</li>
+ *     <li>淘汰、过期与整理都在维护线程中执行,请求线程只负责把新条目放入待处理队列,以及在超限时投递一次清理任务</li>
+ * </ul>
+ * 条目数为软上限,两次清理之间可能短暂超出
+ * @author van
+ */
+public class LimiterStateStore<K, V> {
+
+    /**
+     * 访问频次上限
+     */
+    static final int MAX_FREQUENCY = 3;
+
+    /**
+     * 访问时间的刷新粒度,避免热点Key每次请求都写volatile
+     */
+    private static final long ACCESS_GRANULARITY_NANOS = 1_000_000L;
+
+    /**
+     * 时间轮 tick 时长,即过期清理的最大延迟
+     */
+    private static final long WHEEL_TICK_NANOS = 1_000_000_000L;
+
+    private final String name;
+
+    private final ConcurrentMap<K, Node<K, V>> data = Maps.newConcurrentMap();
+
+    /**
+     * 新建的条目,由维护线程放入时钟链表与时间轮
+     */
+    private final Queue<Node<K, V>> pending = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 时钟链表,表头即时钟指针所指的位置,只在持有 evictionLock 时访问
+     */
+    private Node<K, V> clockHead;
+
+    private Node<K, V> clockTail;
+
+    /**
+     * 过期时间轮,只在持有 evictionLock 时访问
+     */
+    private final HierarchicalTimingWheel<Node<K, V>> timingWheel;
+
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final LongAdder evictionCount = new LongAdder();
+
+    private final LongAdder expirationCount = new LongAdder();
+
+    private volatile long maximumSize;
+
+    private volatile long expireAfterAccessNanos;
+
+    private volatile Executor maintenanceExecutor = StoreMaintenance::execute;
+
+    private volatile StateTrimmer<? super V> trimmer;
+
+    public LimiterStateStore(String name, long maximumSize, long expireAfterAccessNanos) {
+        this(name, maximumSize, expireAfterAccessNanos, WHEEL_TICK_NANOS);
+    }
+
+    LimiterStateStore(String name, long maximumSize, long expireAfterAccessNanos, long wheelTickNanos) {
+        this.name = name;
+        this.maximumSize = maximumSize;
+        this.expireAfterAccessNanos = expireAfterAccessNanos;
+        this.timingWheel = new HierarchicalTimingWheel<>(System.nanoTime(), wheelTickNanos);
+    }
+
+    /**
+     * 获取Key对应的状态,不存在时创建
+     * Key 可以是 {@link LimiterKey#probe(long, long, int)} 返回的复用实例,新建条目时存储的是其副本
+     * @param key key
+     * @param minExpireNanos 该条目最短的空闲过期时间,用于保证大时间窗口的状态不被提前清理
+     * @param mappingFunction 创建方法
+     * @return 状态
+     */
+    public V get(K key, long minExpireNanos, Function<? super K, ? extends V> mappingFunction) {
+        long now = System.nanoTime();
+        Node<K, V> node = data.get(key);
+        if (node == null) {
+            K retained = retain(key);
+            Node<K, V> created = new Node<>(retained, mappingFunction.apply(retained), minExpireNanos, now);
+            node = data.putIfAbsent(retained, created);
+            if (node == null) {
+                pending.offer(created);
+                if (data.size() > maximumSize) {
+                    scheduleDrain();
+                }
+                return created.value;
+            }
+        }
+        node.recordAccess(now);
+        return node.value;
+    }
+
+    /**
+     * 获取已存在的状态并记录访问,与 {@link #get(Object, long, Function)} 配合使用:
+     * 条目已存在时无需创建捕获了参数的 mappingFunction
+     * @param key key
+     * @param nowNanos 当前时间 {@link System#nanoTime()}
+     * @return 状态,不存在时为 null
+     */
+    public V touch(K key, long nowNanos) {
+        Node<K, V> node = data.get(key);
+        if (node == null) {
+            return null;
+        }
+        node.recordAccess(nowNanos);
+        return node.value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K> K retain(K key) {
+        return key instanceof LimiterKey ? (K) ((LimiterKey) key).retain() : key;
+    }
+
+    /**
+     * 获取Key对应的状态,不会更新访问信息
+     * @param key key
+     * @return 状态,不存在时为 null
+     */
+    public V getIfPresent(K key) {
+        Node<K, V> node = data.get(key);
+        return node == null ? null : node.value;
+    }
+
+    /**
+     * 写入恢复的状态,已存在时不覆盖,不会触发超限淘汰
+     * @param key key
+     * @param minExpireNanos 该条目最短的空闲过期时间
+     * @param value 状态
+     * @return 是否写入
+     */
+    public boolean restore(K key, long minExpireNanos, V value) {
+        Node<K, V> created = new Node<>(key, value, minExpireNanos, System.nanoTime());
+        if (data.putIfAbsent(key, created) != null) {
+            return false;
+        }
+        pending.offer(created);
+        return true;
+    }
+
+    /**
+     * 遍历当前所有条目,用于生成快照,遍历期间的并发修改可能不可见
+     * @param consumer 条目处理方法
+     */
+    public void forEach(EntryConsumer<? super K, ? super V> consumer) {
+        for (Node<K, V> node : data.values()) {
+            if (!node.removed) {
+                consumer.accept(node.key, node.value, node.minExpireNanos);
+            }
+        }
+    }
+
+    public void remove(K key) {
+        Node<K, V> node = data.remove(key);
+        if (node != null) {
+            node.removed = true;
+        }
+    }
+
+    public void clear() {
+        for (K key : data.keySet()) {
+            remove(key);
+        }
+    }
+
+    /**
+     * 执行一次维护: 接收新条目,处理时间轮中到期的条目,再按需淘汰,由维护线程调用
+     */
+    public void cleanUp() {
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            drainScheduled.set(false);
+            long now = System.nanoTime();
+            StateTrimmer<? super V> currentTrimmer = trimmer;
+            for (Node<K, V> node = pending.poll(); node != null; node = pending.poll()) {
+                if (!node.removed) {
+                    linkClock(node);
+                    timingWheel.schedule(node, node.deadline(expireAfterAccessNanos, currentTrimmer != null));
+                }
+            }
+            timingWheel.advance(now, node -> onDeadline(node, now, currentTrimmer));
+            evictOverflow();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * 条目到达时间轮中的到期时间: 已过期时清理,空闲超过一个时间窗口时整理,否则按最新的访问时间重新放入
+     */
+    private void onDeadline(Node<K, V> node, long now, StateTrimmer<? super V> currentTrimmer) {
+        if (node.removed) {
+            unlinkClock(node);
+            return;
+        }
+        if (node.isExpired(now, expireAfterAccessNanos)) {
+            if (removeNode(node)) {
+                expirationCount.increment();
+            }
+            unlinkClock(node);
+            return;
+        }
+        long accessNanos = node.accessNanos;
+        if (currentTrimmer != null && node.trimmedAccessNanos != accessNanos && now - accessNanos >= node.minExpireNanos) {
+            currentTrimmer.trim(node.value, now, node.minExpireNanos);
+            node.trimmedAccessNanos = accessNanos;
+        }
+        timingWheel.schedule(node, node.deadline(expireAfterAccessNanos, currentTrimmer != null));
+    }
+
+    private void evictOverflow() {
+        while (data.size() > maximumSize) {
+            Node<K, V> node = clockHead;
+            if (node == null) {
+                return;
+            }
+            unlinkClock(node);
+            if (node.removed) {
+                continue;
+            }
+            if (node.frequency <= 0) {
+                // 仍在时间轮中,到期时发现已删除后丢弃
+                if (removeNode(node)) {
+                    evictionCount.increment();
+                }
+                continue;
+            }
+            node.frequency--;
+            linkClock(node);
+        }
+    }
+
+    private boolean removeNode(Node<K, V> node) {
+        node.removed = true;
+        return data.remove(node.key, node);
+    }
+
+    private void linkClock(Node<K, V> node) {
+        node.linked = true;
+        node.prev = clockTail;
+        node.next = null;
+        if (clockTail == null) {
+            clockHead = node;
+        } else {
+            clockTail.next = node;
+        }
+        clockTail = node;
+    }
+
+    private void unlinkClock(Node<K, V> node) {
+        if (!node.linked) {
+            return;
+        }
+        node.linked = false;
+        if (node.prev == null) {
+            clockHead = node.next;
+        } else {
+            node.prev.next = node.next;
+        }
+        if (node.next == null) {
+            clockTail = node.prev;
+        } else {
+            node.next.prev = node.prev;
+        }
+        node.prev = null;
+        node.next = null;
+    }
+
+    private void scheduleDrain() {
+        if (drainScheduled.compareAndSet(false, true)) {
+            try {
+                maintenanceExecutor.execute(this::cleanUp);
+            } catch (RuntimeException e) {
+                drainScheduled.set(false);
+            }
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return 当前条目数
+     */
+    public long size() {
+        return data.size();
+    }
+
+    /**
+     * @return 因超出最大条目数被淘汰的次数
+     */
+    public long evictionCount() {
+        return evictionCount.sum();
+    }
+
+    /**
+     * @return 因空闲超时被清理的次数
+     */
+    public long expirationCount() {
+        return expirationCount.sum();
+    }
+
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    public void setMaximumSize(long maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    public long getExpireAfterAccessNanos() {
+        return expireAfterAccessNanos;
+    }
+
+    public void setExpireAfterAccessNanos(long expireAfterAccessNanos) {
+        this.expireAfterAccessNanos = expireAfterAccessNanos;
+    }
+
+    public void setMaintenanceExecutor(Executor maintenanceExecutor) {
+        this.maintenanceExecutor = maintenanceExecutor;
+    }
+
+    /**
+     * @param trimmer 条目空闲超过一个时间窗口后的整理方法,为 null 时不整理
+     */
+    public void setTrimmer(StateTrimmer<? super V> trimmer) {
+        this.trimmer = trimmer;
+    }
+
+    /**
+     * 状态整理方法,在维护线程中执行,需与请求线程的访问保持线程安全
+     */
+    @FunctionalInterface
+    public interface StateTrimmer<V> {
+
+        /**
+         * @param value 状态
+         * @param now 当前时间 {@link System#nanoTime()}
+         * @param minExpireNanos 该条目最短的空闲过期时间,即时间窗口长度
+         */
+        void trim(V value, long now, long minExpireNanos);
+    }
+
+    /**
+     * 条目处理方法
+     */
+    @FunctionalInterface
+    public interface EntryConsumer<K, V> {
+
+        /**
+         * @param key key
+         * @param value 状态
+         * @param minExpireNanos 该条目最短的空闲过期时间
+         */
+        void accept(K key, V value, long minExpireNanos);
+    }
+
+    private static final class Node<K, V> {
+
+        final K key;
+
+        final V value;
+
+        final long minExpireNanos;
+
+        volatile long accessNanos;
+
+        /**
+         * 访问频次,并发下的丢失更新可以接受
+         */
+        int frequency;
+
+        volatile boolean removed;
+
+        /**
+         * 上次整理时的访问时间,此后未被访问时不再整理,只在维护线程中访问
+         */
+        long trimmedAccessNanos;
+
+        Node<K, V> prev;
+
+        Node<K, V> next;
+
+        boolean linked;
+
+        Node(K key, V value, long minExpireNanos, long now) {
+            this.key = key;
+            this.value = value;
+            this.minExpireNanos = minExpireNanos;
+            this.accessNanos = now;
+            this.trimmedAccessNanos = now - 1;
+        }
+
+        void recordAccess(long now) {
+            if (now - accessNanos > ACCESS_GRANULARITY_NANOS) {
+                accessNanos = now;
+            }
+            if (frequency < MAX_FREQUENCY) {
+                frequency++;
+            }
+        }
+
+        boolean isExpired(long now, long expireAfterAccessNanos) {
+            return now - accessNanos > Math.max(expireAfterAccessNanos, minExpireNanos);
+        }
+
+        /**
+         * @param trimming 是否需要整理
+         * @return 下一次在时间轮中到期的时间: 过期时间,或尚未整理时为一个时间窗口之后
+         */
+        long deadline(long expireAfterAccessNanos, boolean trimming) {
+            long access = accessNanos;
+            long expireAt = access + Math.max(expireAfterAccessNanos, minExpireNanos) + 1;
+            if (trimming && trimmedAccessNanos != access && minExpireNanos - Math.max(expireAfterAccessNanos, minExpireNanos) < 0) {
+                return access + minExpireNanos;
+            }
+            return expireAt;
+        }
+    }
+}
@@ -0,0 +1,478 @@
+package com.van.limiter.core.store;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 堆外限流状态表,用于需要跟踪数百万客户端的场景,条目不占用堆内存,也不产生GC压力
+ * <ul>
+ *     <li>固定容量的组相联开放寻址表: 每个桶 {@link #WAYS} 个槽位,Key只会落在 hash 对应的桶内</li>
+ *     <li>Key 为 [二进制IP,Group编号,状态类型],状态为打包的基本类型: GCRA 令牌桶只用一个 TAT,滑动窗口计数器用窗口起点与两个计数;
+ *     同一客户端在同一 group 下的令牌桶与计数器是两个不同的槽位,互不覆盖</li>
+ *     <li>每个桶头部有一个锁字,通过 CAS 获取,临界区只有几次内存读写</li>
+ *     <li>桶满时按 GCLOCK 替换: 优先复用已过期的槽位,否则时钟指针扫过时递减访问频次,频次为0的槽位被替换</li>
+ * </ul>
+ * 表在创建时一次性分配全部内存,调用 {@link #close()} 前需确保不再有请求访问
+ * @author van
+ */
+public class OffHeapLimiterTable implements AutoCloseable {
+
+    /**
+     * 每个桶的槽位数
+     */
+    static final int WAYS = 8;
+
+    /**
+     * 状态类型: GCRA 令牌桶
+     */
+    public static final int TOKEN_BUCKET = 1;
+
+    /**
+     * 状态类型: 滑动窗口计数器
+     */
+    public static final int WINDOW_COUNTER = 2;
+
+    private static final int MAX_FREQUENCY = 3;
+
+    private static final int KIND_SHIFT = 16;
+
+    private static final long FREQUENCY_MASK = 0xFFFFL;
+
+    /*
+     * 桶布局: [锁字 8][时钟指针 8][填充至64] + WAYS * 槽位
+     * 槽位布局: [控制字 8: 高32位 groupId+1(0表示空), 16-23位状态类型, 低16位访问频次][hi 8][lo 8][过期时间 8][状态0 8][状态1 8][状态2 8]
+     */
+    private static final int BUCKET_HEADER_SIZE = 64;
+
+    private static final int SLOT_SIZE = 56;
+
+    private static final int BUCKET_SIZE = BUCKET_HEADER_SIZE + WAYS * SLOT_SIZE;
+
+    private static final int HAND_OFFSET = 8;
+
+    private static final int HI_OFFSET = 8;
+
+    private static final int LO_OFFSET = 16;
+
+    private static final int EXPIRE_OFFSET = 24;
+
+    private static final int STATE0_OFFSET = 32;
+
+    private static final int STATE1_OFFSET = 40;
+
+    private static final int STATE2_OFFSET = 48;
+
+    private static final int SPINS_BEFORE_YIELD = 64;
+
+    private final long address;
+
+    private final long bucketMask;
+
+    private final long capacity;
+
+    private volatile long expireAfterAccessNanos;
+
+    private volatile boolean closed;
+
+    private final LongAdder size = new LongAdder();
+
+    private final LongAdder evictionCount = new LongAdder();
+
+    private final LongAdder expirationCount = new LongAdder();
+
+    /**
+     * @param capacity 期望容量,会向上取整为 {@link #WAYS} 乘以2的幂
+     * @param expireAfterAccessNanos 空闲过期时间
+     */
+    public OffHeapLimiterTable(long capacity, long expireAfterAccessNanos) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Off-heap limiter table capacity must be positive: " + capacity);
+        }
+        long buckets = Long.highestOneBit(Math.max(1L, (capacity + WAYS - 1) / WAYS) - 1) << 1;
+        if (buckets <= 0) {
+            buckets = 1;
+        }
+        this.bucketMask = buckets - 1;
+        this.capacity = buckets * WAYS;
+        this.expireAfterAccessNanos = expireAfterAccessNanos;
+        long bytes = buckets * BUCKET_SIZE;
+        this.address = UnsafeMemory.allocateMemory(bytes);
+        UnsafeMemory.setMemory(address, bytes, (byte) 0);
+    }
+
+    /**
+     * GCRA 令牌桶,状态0为理论到达时间
+     * @param hi IP高64位
+     * @param lo IP低64位
+     * @param groupId Group编号
+     * @param now 当前时间 {@link System#nanoTime()}
+     * @param emissionIntervalNanos 生成一个令牌所需的时间
+     * @param burstNanos 突发容量对应的时间
+     * @return 是否获取成功
+     */
+    public boolean tryAcquireTokenBucket(long hi, long lo, int groupId, long now, long emissionIntervalNanos, long burstNanos) {
+        return reserveTokenBucket(hi, lo, groupId, now, emissionIntervalNanos, burstNanos, 0L) == 0;
+    }
+
+    /**
+     * GCRA 令牌桶预约,桶中没有令牌时占用未来生成的令牌
+     * @param hi IP高64位
+     * @param lo IP低64位
+     * @param groupId Group编号
+     * @param now 当前时间 {@link System#nanoTime()}
+     * @param emissionIntervalNanos 生成一个令牌所需的时间
+     * @param burstNanos 突发容量对应的时间
+     * @param maxWaitNanos 最长等待时间
+     * @return 需要等待的纳秒数, 0 表示立即可用, 超过最长等待时间时返回 -1 且不占用令牌
+     */
+    public long reserveTokenBucket(long hi, long lo, int groupId, long now, long emissionIntervalNanos, long burstNanos,
+                                   long maxWaitNanos) {
+        long bucket = lockBucket(hi, lo, groupId, TOKEN_BUCKET);
+        try {
+            long slot = findOrInsert(bucket, hi, lo, groupId, TOKEN_BUCKET, now, burstNanos + maxWaitNanos);
+            long tat = UnsafeMemory.getLong(slot + STATE0_OFFSET);
+            long newTat = (tat - now > 0 ? tat : now) + emissionIntervalNanos;
+            long waitNanos = newTat - now - burstNanos;
+            if (waitNanos > maxWaitNanos) {
+                return -1;
+            }
+            UnsafeMemory.putLong(slot + STATE0_OFFSET, newTat);
+            return Math.max(0, waitNanos);
+        } finally {
+            unlockBucket(bucket);
+        }
+    }
+
+    /**
+     * 滑动窗口计数器,状态0为窗口起点,状态1为上一窗口计数,状态2为当前窗口计数
+     * @param hi IP高64位
+     * @param lo IP低64位
+     * @param groupId Group编号
+     * @param now 当前时间 {@link System#nanoTime()}
+     * @param windowNanos 时间窗口长度
+     * @param maxTimes 时间窗口内最多次数
+     * @return 是否允许通过
+     */
+    public boolean tryAcquireWindowCounter(long hi, long lo, int groupId, long now, long windowNanos, double maxTimes) {
+        long bucket = lockBucket(hi, lo, groupId, WINDOW_COUNTER);
+        try {
+            long slot = findOrInsert(bucket, hi, lo, groupId, WINDOW_COUNTER, now, windowNanos * 2);
+            long windowStart = UnsafeMemory.getLong(slot + STATE0_OFFSET);
+            long previousCount = UnsafeMemory.getLong(slot + STATE1_OFFSET);
+            long currentCount = UnsafeMemory.getLong(slot + STATE2_OFFSET);
+            long elapsed = now - windowStart;
+            if (elapsed >= windowNanos) {
+                long windows = elapsed / windowNanos;
+                previousCount = windows == 1 ? currentCount : 0;
+                currentCount = 0;
+                windowStart += windows * windowNanos;
+                elapsed -= windows * windowNanos;
+                UnsafeMemory.putLong(slot + STATE0_OFFSET, windowStart);
+                UnsafeMemory.putLong(slot + STATE1_OFFSET, previousCount);
+            }
+            double previousWeight = (double) (windowNanos - elapsed) / windowNanos;
+            if (previousCount * previousWeight + currentCount + 1 > maxTimes) {
+                UnsafeMemory.putLong(slot + STATE2_OFFSET, currentCount);
+                return false;
+            }
+            UnsafeMemory.putLong(slot + STATE2_OFFSET, currentCount + 1);
+            return true;
+        } finally {
+            unlockBucket(bucket);
+        }
+    }
+
+    /**
+     * 退回一个已获取或已预约的令牌,状态不存在时不做处理
+     * @param hi IP高64位
+     * @param lo IP低64位
+     * @param groupId Group编号
+     * @param now 获取令牌时的时间 {@link System#nanoTime()}
+     * @param emissionIntervalNanos 生成一个令牌所需的时间
+     */
+    public void refundTokenBucket(long hi, long lo, int groupId, long now, long emissionIntervalNanos) {
+        long bucket = lockBucket(hi, lo, groupId, TOKEN_BUCKET);
+        try {
+            long slot = find(bucket, hi, lo, groupId, TOKEN_BUCKET);
+            long tat = slot == 0 ? now : UnsafeMemory.getLong(slot + STATE0_OFFSET);
+            if (tat - now > 0) {
+                UnsafeMemory.putLong(slot + STATE0_OFFSET, tat - emissionIntervalNanos - now > 0 ? tat - emissionIntervalNanos : now);
+            }
+        } finally {
+            unlockBucket(bucket);
+        }
+    }
+
+    /**
+     * 撤销一次通过的请求,状态不存在时不做处理
+     * @param hi IP高64位
+     * @param lo IP低64位
+     * @param groupId Group编号
+     * @param now 请求通过时的时间 {@link System#nanoTime()}
+     * @param windowNanos 时间窗口长度
+     */
+    public void refundWindowCounter(long hi, long lo, int groupId, long now, long windowNanos) {
+        long bucket = lockBucket(hi, lo, groupId, WINDOW_COUNTER);
+        try {
+            long slot = find(bucket, hi, lo, groupId, WINDOW_COUNTER);
+            if (slot == 0) {
+                return;
+            }
+            long windowStart = UnsafeMemory.getLong(slot + STATE0_OFFSET);
+            long offset = now - windowStart >= 0 ? STATE2_OFFSET
+                    : now - (windowStart - windowNanos) >= 0 ? STATE1_OFFSET : 0;
+            if (offset != 0) {
+                UnsafeMemory.putLong(slot + offset, Math.max(0, UnsafeMemory.getLong(slot + offset) - 1));
+            }
+        } finally {
+            unlockBucket(bucket);
+        }
+    }
+
+    /**
+     * 删除Key对应的状态
+     * @param hi IP高64位
+     * @param lo IP低64位
+     * @param groupId Group编号
+     * @param kind 状态类型 {@link #TOKEN_BUCKET} 或 {@link #WINDOW_COUNTER}
+     */
+    public void remove(long hi, long lo, int groupId, int kind) {
+        long bucket = lockBucket(hi, lo, groupId, kind);
+        try {
+            long slot = find(bucket, hi, lo, groupId, kind);
+            if (slot != 0) {
+                UnsafeMemory.setMemory(slot, SLOT_SIZE, (byte) 0);
+                size.decrement();
+            }
+        } finally {
+            unlockBucket(bucket);
+        }
+    }
+
+    /**
+     * 写入恢复的状态,已存在时不覆盖,桶满时按正常流程替换
+     * @param hi IP高64位
+     * @param lo IP低64位
+     * @param groupId Group编号
+     * @param kind 状态类型 {@link #TOKEN_BUCKET} 或 {@link #WINDOW_COUNTER}
+     * @param expireAt 过期时间 {@link System#nanoTime()}
+     * @param state0 状态0
+     * @param state1 状态1
+     * @param state2 状态2
+     * @return 是否写入
+     */
+    public boolean restore(long hi, long lo, int groupId, int kind, long expireAt, long state0, long state1, long state2) {
+        if (kind != TOKEN_BUCKET && kind != WINDOW_COUNTER) {
+            throw new IllegalArgumentException("Unknown off-heap state kind: " + kind);
+        }
+        long bucket = lockBucket(hi, lo, groupId, kind);
+        try {
+            if (find(bucket, hi, lo, groupId, kind) != 0) {
+                return false;
+            }
+            long slot = findOrInsert(bucket, hi, lo, groupId, kind, System.nanoTime(), 0L);
+            UnsafeMemory.putLong(slot + EXPIRE_OFFSET, expireAt);
+            UnsafeMemory.putLong(slot + STATE0_OFFSET, state0);
+            UnsafeMemory.putLong(slot + STATE1_OFFSET, state1);
+            UnsafeMemory.putLong(slot + STATE2_OFFSET, state2);
+            return true;
+        } finally {
+            unlockBucket(bucket);
+        }
+    }
+
+    /**
+     * 逐个桶加锁遍历所有已占用的槽位,用于生成快照
+     * @param consumer 槽位处理方法
+     */
+    public void forEach(SlotConsumer consumer) {
+        for (long index = 0; index <= bucketMask; index++) {
+            if (closed) {
+                throw new IllegalStateException("Off-heap limiter table is closed");
+            }
+            long bucket = address + index * BUCKET_SIZE;
+            lockBucket(bucket);
+            try {
+                long slot = bucket + BUCKET_HEADER_SIZE;
+                for (int i = 0; i < WAYS; i++, slot += SLOT_SIZE) {
+                    long control = UnsafeMemory.getLong(slot);
+                    if (control == 0) {
+                        continue;
+                    }
+                    consumer.accept(UnsafeMemory.getLong(slot + HI_OFFSET), UnsafeMemory.getLong(slot + LO_OFFSET),
+                            (int) (control >>> 32) - 1, (int) (control >>> KIND_SHIFT) & 0xFF, UnsafeMemory.getLong(slot + EXPIRE_OFFSET), UnsafeMemory.getLong(slot + STATE0_OFFSET),
+                            UnsafeMemory.getLong(slot + STATE1_OFFSET), UnsafeMemory.getLong(slot + STATE2_OFFSET));
+                }
+            } finally {
+                unlockBucket(bucket);
+            }
+        }
+    }
+
+    /**
+     * 查找槽位,不存在时插入一个新的,新槽位的状态0为当前时间(令牌桶是满的,计数器窗口从当前开始)
+     * @return 槽位地址
+     */
+    private long findOrInsert(long bucket, long hi, long lo, int groupId, int kind, long now, long minExpireNanos) {
+        long expireAt = now + Math.max(expireAfterAccessNanos, minExpireNanos);
+        long slot = find(bucket, hi, lo, groupId, kind);
+        if (slot != 0) {
+            long control = UnsafeMemory.getLong(slot);
+            if ((control & FREQUENCY_MASK) < MAX_FREQUENCY) {
+                UnsafeMemory.putLong(slot, control + 1);
+            }
+            UnsafeMemory.putLong(slot + EXPIRE_OFFSET, expireAt);
+            return slot;
+        }
+        slot = victim(bucket, now);
+        UnsafeMemory.putLong(slot, tag(groupId, kind));
+        UnsafeMemory.putLong(slot + HI_OFFSET, hi);
+        UnsafeMemory.putLong(slot + LO_OFFSET, lo);
+        UnsafeMemory.putLong(slot + EXPIRE_OFFSET, expireAt);
+        UnsafeMemory.putLong(slot + STATE0_OFFSET, now);
+        UnsafeMemory.putLong(slot + STATE1_OFFSET, 0L);
+        UnsafeMemory.putLong(slot + STATE2_OFFSET, 0L);
+        return slot;
+    }
+
+    private long find(long bucket, long hi, long lo, int groupId, int kind) {
+        long tag = tag(groupId, kind);
+        long slot = bucket + BUCKET_HEADER_SIZE;
+        for (int i = 0; i < WAYS; i++, slot += SLOT_SIZE) {
+            long control = UnsafeMemory.getLong(slot);
+            if ((control & ~FREQUENCY_MASK) == tag
+                    && UnsafeMemory.getLong(slot + HI_OFFSET) == hi && UnsafeMemory.getLong(slot + LO_OFFSET) == lo) {
+                return slot;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return 控制字中除访问频次以外的部分
+     */
+    private static long tag(int groupId, int kind) {
+        return (long) (groupId + 1) << 32 | (long) kind << KIND_SHIFT;
+    }
+
+    /**
+     * 选择一个可写入的槽位: 空槽位 > 过期槽位 > 时钟指针扫到的频次为0的槽位
+     */
+    private long victim(long bucket, long now) {
+        long slots = bucket + BUCKET_HEADER_SIZE;
+        for (int i = 0; i < WAYS; i++) {
+            long slot = slots + (long) i * SLOT_SIZE;
+            long control = UnsafeMemory.getLong(slot);
+            if (control == 0) {
+                size.increment();
+                return slot;
+            }
+            if (now - UnsafeMemory.getLong(slot + EXPIRE_OFFSET) > 0) {
+                expirationCount.increment();
+                return slot;
+            }
+        }
+        int hand = (int) UnsafeMemory.getLong(bucket + HAND_OFFSET);
+        for (;;) {
+            long slot = slots + (long) hand * SLOT_SIZE;
+            hand = (hand + 1) & (WAYS - 1);
+            long control = UnsafeMemory.getLong(slot);
+            if ((control & FREQUENCY_MASK) == 0) {
+                UnsafeMemory.putLong(bucket + HAND_OFFSET, hand);
+                evictionCount.increment();
+                return slot;
+            }
+            UnsafeMemory.putLong(slot, control - 1);
+        }
+    }
+
+    private long lockBucket(long hi, long lo, int groupId, int kind) {
+        if (closed) {
+            throw new IllegalStateException("Off-heap limiter table is closed");
+        }
+        long bucket = address + (spread(hi, lo, groupId, kind) & bucketMask) * BUCKET_SIZE;
+        lockBucket(bucket);
+        return bucket;
+    }
+
+    private static void lockBucket(long bucket) {
+        int spins = 0;
+        while (!UnsafeMemory.compareAndSwapLong(bucket, 0L, 1L)) {
+            if (++spins >= SPINS_BEFORE_YIELD) {
+                spins = 0;
+                Thread.yield();
+            }
+        }
+    }
+
+    private static void unlockBucket(long bucket) {
+        UnsafeMemory.putLongVolatile(bucket, 0L);
+    }
+
+    private static long spread(long hi, long lo, int groupId, int kind) {
+        long h = hi * 0x9E3779B97F4A7C15L ^ lo;
+        h = (h ^ groupId ^ (long) kind << 32) * 0xBF58476D1CE4E5B9L;
+        return h ^ (h >>> 31);
+    }
+
+    /**
+     * @return 实际容量
+     */
+    public long capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return 已占用的槽位数,包含尚未被复用的过期槽位
+     */
+    public long size() {
+        return size.sum();
+    }
+
+    /**
+     * @return 因桶满被替换的次数
+     */
+    public long evictionCount() {
+        return evictionCount.sum();
+    }
+
+    /**
+     * @return 过期槽位被复用的次数
+     */
+    public long expirationCount() {
+        return expirationCount.sum();
+    }
+
+    public void setExpireAfterAccessNanos(long expireAfterAccessNanos) {
+        this.expireAfterAccessNanos = expireAfterAccessNanos;
+    }
+
+    /**
+     * 槽位处理方法
+     */
+    @FunctionalInterface
+    public interface SlotConsumer {
+
+        /**
+         * @param hi IP高64位
+         * @param lo IP低64位
+         * @param groupId Group编号
+         * @param kind 状态类型 {@link #TOKEN_BUCKET} 或 {@link #WINDOW_COUNTER}
+         * @param expireAt 过期时间 {@link System#nanoTime()}
+         * @param state0 状态0,令牌桶为理论到达时间,滑动窗口计数器为窗口起点
+         * @param state1 状态1,滑动窗口计数器的上一窗口计数
+         * @param state2 状态2,滑动窗口计数器的当前窗口计数
+         */
+        void accept(long hi, long lo, int groupId, int kind, long expireAt, long state0, long state1, long state2);
+    }
+
+    /**
+     * 释放堆外内存
+     */
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            UnsafeMemory.freeMemory(address);
+        }
+    }
+}
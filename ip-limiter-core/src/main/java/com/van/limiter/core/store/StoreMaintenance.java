@@ -0,0 +1,166 @@
+package com.van.limiter.core.store;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 限流状态存储的维护线程,负责定期过期清理、状态整理以及超限淘汰,不占用请求线程
+ * 所有存储共用一个守护线程;容器关闭时调用 {@link #shutdown()} 停止,已注册的定期任务在下次启动时重新调度
+ * @author van
+ */
+public class StoreMaintenance {
+    private StoreMaintenance() {}
+
+    /**
+     * 已注册的定期任务,[任务,间隔毫秒数]
+     */
+    private static final List<PeriodicTask> PERIODIC_TASKS = new ArrayList<>();
+
+    private static ScheduledExecutorService executor;
+
+    /**
+     * 获取共享的维护线程,已停止时重新启动
+     * @return 共享的维护线程
+     */
+    static synchronized ScheduledExecutorService executor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "ip-limiter-maintenance");
+                thread.setDaemon(true);
+                return thread;
+            });
+            for (PeriodicTask task : PERIODIC_TASKS) {
+                task.scheduleOn(executor);
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * 启动维护线程,已启动时不做处理
+     */
+    public static void start() {
+        executor();
+    }
+
+    /**
+     * 投递一次性的维护任务,维护线程已停止时拒绝,不会因此重新启动
+     * @param task task
+     */
+    static void execute(Runnable task) {
+        ScheduledExecutorService current;
+        synchronized (StoreMaintenance.class) {
+            current = executor;
+        }
+        if (current == null) {
+            throw new RejectedExecutionException("Store maintenance is shut down");
+        }
+        current.execute(task);
+    }
+
+    /**
+     * 停止维护线程,等待正在执行的任务结束
+     */
+    public static void shutdown() {
+        ScheduledExecutorService current;
+        synchronized (StoreMaintenance.class) {
+            current = executor;
+            executor = null;
+        }
+        if (current == null) {
+            return;
+        }
+        current.shutdownNow();
+        try {
+            current.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 定期维护对应的存储
+     * @param store store
+     * @param periodMillis 维护间隔
+     */
+    public static void schedule(LimiterStateStore<?, ?> store, long periodMillis) {
+        register(new PeriodicTask(store::cleanUp, periodMillis));
+    }
+
+    /**
+     * 定期推进封禁表的时间轮
+     * @param banTable banTable
+     * @param periodMillis 推进间隔
+     */
+    public static void schedule(IpBanTable banTable, long periodMillis) {
+        register(new PeriodicTask(banTable::expire, periodMillis));
+    }
+
+    /**
+     * 定期执行其他维护任务,如统计窗口的轮换,不再需要时通过 {@link #cancel(Runnable)} 取消
+     * @param task task
+     * @param periodMillis 执行间隔
+     */
+    public static void schedule(Runnable task, long periodMillis) {
+        register(new PeriodicTask(task, periodMillis));
+    }
+
+    /**
+     * 取消通过 {@link #schedule(Runnable, long)} 注册的定期任务
+     * @param task 注册时传入的同一实例
+     */
+    public static synchronized void cancel(Runnable task) {
+        PERIODIC_TASKS.removeIf(periodicTask -> {
+            if (periodicTask.task != task) {
+                return false;
+            }
+            periodicTask.cancel();
+            return true;
+        });
+    }
+
+    private static synchronized void register(PeriodicTask task) {
+        PERIODIC_TASKS.add(task);
+        task.scheduleOn(executor());
+    }
+
+    private static final class PeriodicTask {
+
+        private final Runnable task;
+
+        private final long periodMillis;
+
+        private ScheduledFuture<?> future;
+
+        PeriodicTask(Runnable task, long periodMillis) {
+            this.task = task;
+            this.periodMillis = periodMillis;
+        }
+
+        void scheduleOn(ScheduledExecutorService executor) {
+            future = executor.scheduleWithFixedDelay(this::runQuietly, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        }
+
+        void cancel() {
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+
+        /**
+         * 单次失败不影响后续调度
+         */
+        private void runQuietly() {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                // 下一次维护时重试
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.van.limiter.core.store;
+
+import sun.misc.Unsafe;
+
+import java.lang.reflect.Field;
+
+/**
+ * 堆外内存读写,{@link Unsafe} 只在此类中引用
+ * 方法均为静态转发,JIT 内联后与直接调用 Unsafe 相同
+ * @author van
+ */
+final class UnsafeMemory {
+
+    private static final Unsafe UNSAFE = loadUnsafe();
+
+    private UnsafeMemory() {}
+
+    static long allocateMemory(long bytes) {
+        return UNSAFE.allocateMemory(bytes);
+    }
+
+    static void freeMemory(long address) {
+        UNSAFE.freeMemory(address);
+    }
+
+    static void setMemory(long address, long bytes, byte value) {
+        UNSAFE.setMemory(address, bytes, value);
+    }
+
+    static long getLong(long address) {
+        return UNSAFE.getLong(address);
+    }
+
+    static void putLong(long address, long value) {
+        UNSAFE.putLong(address, value);
+    }
+
+    static void putLongVolatile(long address, long value) {
+        UNSAFE.putLongVolatile(null, address, value);
+    }
+
+    static boolean compareAndSwapLong(long address, long expected, long value) {
+        return UNSAFE.compareAndSwapLong(null, address, expected, value);
+    }
+
+    private static Unsafe loadUnsafe() {
+        try {
+            Field field = Unsafe.class.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return (Unsafe) field.get(null);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+}
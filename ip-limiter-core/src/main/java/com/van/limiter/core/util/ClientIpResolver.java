@@ -0,0 +1,159 @@
+package com.van.limiter.core.util;
+
+import com.van.limiter.core.matcher.IpListMatcher;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.function.Function;
+
+/**
+ * 客户端IP解析器,直接解析为 {@link IpKey},不产生子串
+ * <ul>
+ *     <li>未配置可信代理时与 {@link IpUtils#getIpAddress(HttpServletRequest)} 行为一致</li>
+ *     <li>配置可信代理后,只有来自可信代理的请求才会读取转发头,并从右向左跳过可信代理,第一个非可信地址即为客户端,避免伪造转发头</li>
+ *     <li>每个线程保留最近一次解析的地址,同一线程连续处理同一客户端(或同一代理)的请求时直接复用,不再创建 IpKey</li>
+ * </ul>
+ * @author van
+ */
+public class ClientIpResolver {
+
+    private static final String UNKNOWN = "unknown";
+
+    private static final String[] LEGACY_HEADERS = {"Proxy-Client-IP", "WL-Proxy-Client-IP", "HTTP_CLIENT_IP", "HTTP_X_FORWARDED_FOR"};
+
+    private static final ThreadLocal<LastParsed> LAST_PARSED = ThreadLocal.withInitial(LastParsed::new);
+
+    /**
+     * 可信代理,为 null 时使用兼容模式
+     */
+    private final IpListMatcher trustedProxies;
+
+    private final String forwardedHeader;
+
+    public ClientIpResolver(IpListMatcher trustedProxies, String forwardedHeader) {
+        this.trustedProxies = trustedProxies;
+        this.forwardedHeader = forwardedHeader;
+    }
+
+    /**
+     * 解析请求的客户端IP
+     * @param request request
+     * @return 客户端IP
+     */
+    public IpKey resolve(HttpServletRequest request) {
+        if (trustedProxies == null) {
+            IpKey ip = resolveLegacy(request::getHeader);
+            return ip != null ? ip : parseOrKeep(request.getRemoteAddr());
+        }
+        IpKey remote = parseOrKeep(request.getRemoteAddr());
+        if (!trustedProxies.matches(remote)) {
+            return remote;
+        }
+        return resolveForwarded(request.getHeader(forwardedHeader), remote);
+    }
+
+    /**
+     * 从转发头最右侧开始逐跳解析,跳过可信代理
+     * @param forwarded 转发头,如 X-Forwarded-For: client, proxy1, proxy2
+     * @param remote 直连地址,转发头为空或全部为可信代理时使用
+     * @return 客户端IP
+     */
+    public IpKey resolveForwarded(CharSequence forwarded, IpKey remote) {
+        if (forwarded == null) {
+            return remote;
+        }
+        IpKey client = remote;
+        int end = forwarded.length();
+        while (end > 0) {
+            int comma = end - 1;
+            while (comma >= 0 && forwarded.charAt(comma) != ',') {
+                comma--;
+            }
+            IpKey hop = IpKey.parse(forwarded, comma + 1, end);
+            if (hop == null) {
+                // 无法解析的一跳不可信,以最近一个可信代理看到的地址为准
+                return client;
+            }
+            client = hop;
+            if (!trustedProxies.matches(hop)) {
+                return hop;
+            }
+            end = comma;
+        }
+        return client;
+    }
+
+    /**
+     * 不依赖 Servlet 的解析入口,可用于 WebFlux 等环境
+     * @param headers 请求头读取方法,请求头不存在时返回 null
+     * @param remote 直连地址
+     * @return 客户端IP
+     */
+    public IpKey resolve(Function<String, String> headers, IpKey remote) {
+        if (trustedProxies == null) {
+            IpKey ip = resolveLegacy(headers);
+            return ip != null ? ip : remote;
+        }
+        if (!trustedProxies.matches(remote)) {
+            return remote;
+        }
+        return resolveForwarded(headers.apply(forwardedHeader), remote);
+    }
+
+    /**
+     * 按原有顺序读取请求头
+     * @return 客户端IP,所有请求头都不存在时返回 null
+     */
+    private IpKey resolveLegacy(Function<String, String> headers) {
+        String ip = headers.apply("X-Forwarded-For");
+        if (isPresent(ip)) {
+            int index = ip.indexOf(',');
+            return parseOrKeep(ip, index != -1 ? index : ip.length());
+        }
+        ip = headers.apply("X-Real-IP");
+        if (isPresent(ip)) {
+            return parseOrKeep(ip, ip.length());
+        }
+        for (String header : LEGACY_HEADERS) {
+            ip = headers.apply(header);
+            if (isPresent(ip)) {
+                return parseOrKeep(ip, ip.length());
+            }
+        }
+        return null;
+    }
+
+    private static IpKey parseOrKeep(String ip) {
+        return parseOrKeep(ip, ip.length());
+    }
+
+    private static IpKey parseOrKeep(String ip, int end) {
+        LastParsed last = LAST_PARSED.get();
+        if (last.end == end && ip.regionMatches(0, last.source, 0, end)) {
+            return last.ip;
+        }
+        IpKey ipKey = IpKey.parse(ip, 0, end);
+        if (ipKey == null) {
+            ipKey = IpKey.of(ip.substring(0, end));
+        }
+        last.source = ip;
+        last.end = end;
+        last.ip = ipKey;
+        return ipKey;
+    }
+
+    private static boolean isPresent(String ip) {
+        return ip != null && ip.length() > 0 && !UNKNOWN.equalsIgnoreCase(ip);
+    }
+
+    /**
+     * 线程最近一次解析的 [原文前 end 个字符,结果]
+     */
+    private static final class LastParsed {
+
+        private String source = "";
+
+        private int end = -1;
+
+        private IpKey ip;
+    }
+}
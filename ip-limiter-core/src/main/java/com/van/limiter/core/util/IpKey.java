@@ -0,0 +1,220 @@
+package com.van.limiter.core.util;
+
+import java.net.InetAddress;
+
+/**
+ * 二进制形式的客户端IP,用作限流状态与黑白名单匹配的Key
+ * 统一以128位表示, IPV4 按 IPV4-mapped IPV6 (::ffff:a.b.c.d) 存储, ::ffff:a.b.c.d 形式的IPV6 也会归一为IPV4
+ * 无法解析为IP的字符串(如 unknown、主机名)保留原文,并以其64位哈希占据保留的地址段
+ * @author van
+ */
+public final class IpKey {
+
+    private static final long IPV4_MAPPED_PREFIX = 0xFFFF_0000_0000L;
+
+    /**
+     * 无法解析的字符串所用的高64位,落在保留的 IPV6 地址段内,不会与真实地址冲突
+     */
+    private static final long UNRESOLVED_HI = 0x0100_0000_0000_0000L;
+
+    private static final ThreadLocal<long[]> IPV6_BUFFER = ThreadLocal.withInitial(() -> new long[2]);
+
+    private final long hi;
+
+    private final long lo;
+
+    private final String text;
+
+    private IpKey(long hi, long lo, String text) {
+        this.hi = hi;
+        this.lo = lo;
+        this.text = text;
+    }
+
+    public static IpKey ofIpv4(int ipv4) {
+        return new IpKey(0, IPV4_MAPPED_PREFIX | (ipv4 & 0xFFFF_FFFFL), null);
+    }
+
+    public static IpKey ofIpv6(long hi, long lo) {
+        return new IpKey(hi, lo, null);
+    }
+
+    /**
+     * 由 {@link InetAddress} 直接构建,不经过字符串
+     * @param address address
+     * @return IpKey
+     */
+    public static IpKey of(InetAddress address) {
+        byte[] bytes = address.getAddress();
+        if (bytes.length == 4) {
+            return ofIpv4((bytes[0] & 0xFF) << 24 | (bytes[1] & 0xFF) << 16 | (bytes[2] & 0xFF) << 8 | bytes[3] & 0xFF);
+        }
+        long hi = 0;
+        long lo = 0;
+        for (int i = 0; i < 8; i++) {
+            hi = hi << 8 | (bytes[i] & 0xFF);
+            lo = lo << 8 | (bytes[i + 8] & 0xFF);
+        }
+        return ofIpv6(hi, lo);
+    }
+
+    /**
+     * 解析IP字符串,无法解析时保留原文
+     * @param ip ip
+     * @return IpKey
+     */
+    public static IpKey of(String ip) {
+        IpKey ipKey = parse(ip, 0, ip.length());
+        return ipKey != null ? ipKey : new IpKey(UNRESOLVED_HI, hash64(ip), ip);
+    }
+
+    /**
+     * 直接从字符串片段中解析IP,不产生子串
+     * @param s 字符串
+     * @param from 起始下标(包含)
+     * @param to 结束下标(不包含)
+     * @return IpKey,无法解析时返回 null
+     */
+    public static IpKey parse(CharSequence s, int from, int to) {
+        while (from < to && s.charAt(from) == ' ') {
+            from++;
+        }
+        while (to > from && s.charAt(to - 1) == ' ') {
+            to--;
+        }
+        if (from == to) {
+            return null;
+        }
+        long ipv4 = IpUtils.parseIpv4(s, from, to);
+        if (ipv4 >= 0) {
+            return new IpKey(0, IPV4_MAPPED_PREFIX | ipv4, null);
+        }
+        long[] buffer = IPV6_BUFFER.get();
+        if (!IpUtils.parseIpv6(s, from, to, buffer)) {
+            return null;
+        }
+        return new IpKey(buffer[0], buffer[1], null);
+    }
+
+    public long getHi() {
+        return hi;
+    }
+
+    public long getLo() {
+        return lo;
+    }
+
+    public boolean isIpv4() {
+        return hi == 0 && (lo >>> 32) == 0xFFFFL;
+    }
+
+    /**
+     * @return IPV4 地址,仅 {@link #isIpv4()} 为 true 时有意义
+     */
+    public int ipv4() {
+        return (int) lo;
+    }
+
+    /**
+     * 按前缀长度截断地址,用于将同一网段的地址聚合为一个限流Key
+     * @param ipv4PrefixLength IPV4 保留的前缀长度, 0-32
+     * @param ipv6PrefixLength IPV6 保留的前缀长度, 0-128
+     * @return 截断后的地址,无需截断或无法解析时返回自身
+     */
+    public IpKey toPrefix(int ipv4PrefixLength, int ipv6PrefixLength) {
+        if (text != null) {
+            return this;
+        }
+        if (isIpv4()) {
+            if (ipv4PrefixLength >= 32) {
+                return this;
+            }
+            long mask = ipv4PrefixLength == 0 ? 0 : 0xFFFF_FFFFL << (32 - ipv4PrefixLength) & 0xFFFF_FFFFL;
+            return new IpKey(0, IPV4_MAPPED_PREFIX | (lo & mask), null);
+        }
+        if (ipv6PrefixLength >= 128) {
+            return this;
+        }
+        return new IpKey(hi & prefixMask(ipv6PrefixLength), lo & prefixMask(ipv6PrefixLength - 64), null);
+    }
+
+    /**
+     * @param prefixLength 64位中保留的高位数,小于等于0时全部清零,大于等于64时全部保留
+     * @return 掩码
+     */
+    private static long prefixMask(int prefixLength) {
+        if (prefixLength <= 0) {
+            return 0;
+        }
+        return prefixLength >= 64 ? -1L : -1L << (64 - prefixLength);
+    }
+
+    /**
+     * @return 是否为无法解析的字符串
+     */
+    public boolean isUnresolved() {
+        return text != null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof IpKey)) {
+            return false;
+        }
+        IpKey that = (IpKey) o;
+        return hi == that.hi && lo == that.lo;
+    }
+
+    @Override
+    public int hashCode() {
+        return mix(hi, lo);
+    }
+
+    /**
+     * 128位地址的哈希
+     * @param hi 高64位
+     * @param lo 低64位
+     * @return 哈希值
+     */
+    public static int mix(long hi, long lo) {
+        long h = hi * 0x9E37_79B9_7F4A_7C15L + lo;
+        h ^= h >>> 32;
+        h *= 0xD6E8_FEB8_6659_FD93L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static long hash64(String s) {
+        long h = 0xCBF2_9CE4_8422_2325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x0100_0000_01B3L;
+        }
+        return h;
+    }
+
+    /**
+     * 格式化为字符串,只在异常、日志等非热点路径中使用
+     * @return IPV4 点分格式,或IPV6 标准格式
+     */
+    @Override
+    public String toString() {
+        if (text != null) {
+            return text;
+        }
+        if (isIpv4()) {
+            return ((lo >>> 24) & 0xFF) + "." + ((lo >>> 16) & 0xFF) + "." + ((lo >>> 8) & 0xFF) + "." + (lo & 0xFF);
+        }
+        StringBuilder builder = new StringBuilder(39);
+        for (int index = 0; index < 8; index++) {
+            if (index > 0) {
+                builder.append(':');
+            }
+            long group = index < 4 ? hi >>> (48 - index * 16) : lo >>> (48 - (index - 4) * 16);
+            builder.append(Long.toHexString(group & 0xFFFF));
+        }
+        return builder.toString();
+    }
+}
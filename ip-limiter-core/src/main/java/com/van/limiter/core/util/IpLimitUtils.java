@@ -0,0 +1,541 @@
+package com.van.limiter.core.util;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.van.limiter.core.annotation.IpLimit;
+import com.van.limiter.core.constant.IpLimitConstant;
+import com.van.limiter.core.matcher.CompiledIpLists;
+import com.van.limiter.core.matcher.IpListMatcher;
+import com.van.limiter.core.matcher.IpRangeFile;
+import com.van.limiter.core.matcher.IpRangeFileConverter;
+import com.van.limiter.core.matcher.IpRangeFileWatcher;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * 通过注入获取实例后可以实现动态配置黑白名单
+ * @author van
+ */
+@Component
+public class IpLimitUtils implements DisposableBean {
+
+    /**
+     * 动态配置白名单快照，[Group,[IpStr]]，写入时复制后整体替换，读取方无需加锁
+     */
+    private static volatile Map<String, List<String>> whiteIpLists = ImmutableMap.of();
+
+    /**
+     * 动态配置黑名单快照，[Group,[IpStr]]，写入时复制后整体替换，读取方无需加锁
+     */
+    private static volatile Map<String, List<String>> blackIpLists = ImmutableMap.of();
+
+    /**
+     * 注解名单与动态名单合并编译后的匹配器，[IpLimit,[编译结果]]，动态名单变更时按 group 重建
+     */
+    private static final Map<IpLimit, CompiledIpLists> COMPILED_IP_LISTS_MAP = Maps.newConcurrentMap();
+
+    /**
+     * group 绑定的白名单区间文件，[Group,区间文件]
+     */
+    private static final Map<String, IpRangeFile> WHITE_IP_FILES = Maps.newConcurrentMap();
+
+    /**
+     * group 绑定的黑名单区间文件，[Group,区间文件]
+     */
+    private static final Map<String, IpRangeFile> BLACK_IP_FILES = Maps.newConcurrentMap();
+
+    /**
+     * 区间文件热加载,首次绑定文件时创建,受 LIST_LOCK 保护
+     */
+    private static IpRangeFileWatcher rangeFileWatcher;
+
+    /**
+     * 动态名单的写锁,保证并发写入不会丢失更新,请求线程只读取编译后的匹配器,不会进入该锁
+     */
+    private static final Object LIST_LOCK = new Object();
+
+    @Autowired
+    private Environment environment;
+
+
+    /**
+     * 可通过该方法动态配置新增白名单
+     * @param groupName 要配置的groupName
+     * @param arrayStr 对应的IPStr，支持多种格式
+     * @return success
+     */
+    public boolean putWhiteIpGroup(String groupName, String arrayStr) {
+        addAllWhiteIpGroup(groupName, Collections.singletonList(arrayStr));
+        return true;
+    }
+
+    /**
+     * 批量新增白名单,整批只重建一次匹配器,适用于大批量的名单推送
+     * @param groupName 要配置的groupName
+     * @param arrayStrs 对应的IPStr，支持多种格式
+     * @return 新增后的 group 白名单快照
+     */
+    public List<String> addAllWhiteIpGroup(String groupName, Collection<String> arrayStrs) {
+        return updateGroup(true, groupName, current -> concat(current, arrayStrs));
+    }
+
+    /**
+     * 整体替换对应 group 的白名单,整批只重建一次匹配器
+     * @param groupName 要配置的groupName
+     * @param arrayStrs 对应的IPStr，支持多种格式，为空时等同于清空
+     * @return 替换前的 group 白名单快照
+     */
+    public List<String> replaceWhiteIpGroup(String groupName, Collection<String> arrayStrs) {
+        synchronized (LIST_LOCK) {
+            List<String> previous = whiteIpLists.get(groupName);
+            updateGroup(true, groupName, current -> ImmutableList.copyOf(arrayStrs));
+            return previous;
+        }
+    }
+
+    /**
+     * 可通过该方法动态清空对应 group 的白名单配置
+     * @param groupName groupName
+     * @return 被清空的白名单数据
+     */
+    public List<String> removeWhiteIpGroup(String groupName) {
+        return replaceWhiteIpGroup(groupName, Collections.emptyList());
+    }
+
+    /**
+     * 可通过该方法动态去掉对应 group 中的某项 arrayStr 白名单
+     * @param groupName groupName
+     * @param arrayStr arrayStr
+     * @return 去掉后的 group 白名单情况
+     */
+    public List<String> deleteWhiteIpGroupArrayStr(String groupName, String arrayStr) {
+        return updateGroup(true, groupName, current -> without(current, arrayStr));
+    }
+
+    /**
+     * 获取对应 group 当前的动态白名单
+     * @param groupName groupName
+     * @return 不可变快照,不存在时为 null
+     */
+    public List<String> getWhiteIpGroup(String groupName) {
+        return whiteIpLists.get(groupName);
+    }
+
+    /**
+     * 可通过该方法动态配置新增黑名单
+     * @param groupName 要配置的groupName
+     * @param arrayStr 对应的IPStr，支持多种格式
+     * @return success
+     */
+    public boolean putBlackIpGroup(String groupName, String arrayStr) {
+        addAllBlackIpGroup(groupName, Collections.singletonList(arrayStr));
+        return true;
+    }
+
+    /**
+     * 批量新增黑名单,整批只重建一次匹配器,适用于大批量的名单推送
+     * @param groupName 要配置的groupName
+     * @param arrayStrs 对应的IPStr，支持多种格式
+     * @return 新增后的 group 黑名单快照
+     */
+    public List<String> addAllBlackIpGroup(String groupName, Collection<String> arrayStrs) {
+        return updateGroup(false, groupName, current -> concat(current, arrayStrs));
+    }
+
+    /**
+     * 整体替换对应 group 的黑名单,整批只重建一次匹配器
+     * @param groupName 要配置的groupName
+     * @param arrayStrs 对应的IPStr，支持多种格式，为空时等同于清空
+     * @return 替换前的 group 黑名单快照
+     */
+    public List<String> replaceBlackIpGroup(String groupName, Collection<String> arrayStrs) {
+        synchronized (LIST_LOCK) {
+            List<String> previous = blackIpLists.get(groupName);
+            updateGroup(false, groupName, current -> ImmutableList.copyOf(arrayStrs));
+            return previous;
+        }
+    }
+
+    /**
+     * 可通过该方法动态清空对应 group 的黑名单配置
+     * @param groupName groupName
+     * @return 被清空的黑名单数据
+     */
+    public List<String> removeBlackIpGroup(String groupName) {
+        return replaceBlackIpGroup(groupName, Collections.emptyList());
+    }
+
+    /**
+     * 可通过该方法动态去掉对应 group 中的某项 arrayStr 黑名单
+     * @param groupName groupName
+     * @param arrayStr arrayStr
+     * @return 去掉后的 group 黑名单情况
+     */
+    public List<String> deleteBlackIpGroupArrayStr(String groupName, String arrayStr) {
+        return updateGroup(false, groupName, current -> without(current, arrayStr));
+    }
+
+    /**
+     * 获取对应 group 当前的动态黑名单
+     * @param groupName groupName
+     * @return 不可变快照,不存在时为 null
+     */
+    public List<String> getBlackIpGroup(String groupName) {
+        return blackIpLists.get(groupName);
+    }
+
+    /**
+     * 将 group 的白名单绑定到 {@link IpRangeFileConverter} 生成的二进制区间文件,与其他白名单取并集
+     * 文件以内存映射方式读取,不占用堆内存;文件被替换后自动重新加载
+     * @param groupName groupName
+     * @param file 二进制区间文件
+     * @return 映射后的区间文件
+     * @throws IOException 文件无法读取或格式不正确
+     */
+    public IpRangeFile bindWhiteIpFile(String groupName, Path file) throws IOException {
+        return bindIpFile(true, groupName, file);
+    }
+
+    /**
+     * 解除 group 白名单与区间文件的绑定
+     * @param groupName groupName
+     * @return 解除绑定的区间文件,不存在时为 null
+     */
+    public IpRangeFile unbindWhiteIpFile(String groupName) {
+        return unbindIpFile(true, groupName);
+    }
+
+    /**
+     * 将 group 的黑名单绑定到 {@link IpRangeFileConverter} 生成的二进制区间文件,与其他黑名单取并集
+     * 文件以内存映射方式读取,不占用堆内存;文件被替换后自动重新加载
+     * @param groupName groupName
+     * @param file 二进制区间文件
+     * @return 映射后的区间文件
+     * @throws IOException 文件无法读取或格式不正确
+     */
+    public IpRangeFile bindBlackIpFile(String groupName, Path file) throws IOException {
+        return bindIpFile(false, groupName, file);
+    }
+
+    /**
+     * 解除 group 黑名单与区间文件的绑定
+     * @param groupName groupName
+     * @return 解除绑定的区间文件,不存在时为 null
+     */
+    public IpRangeFile unbindBlackIpFile(String groupName) {
+        return unbindIpFile(false, groupName);
+    }
+
+    private IpRangeFile bindIpFile(boolean white, String groupName, Path file) throws IOException {
+        IpRangeFile rangeFile = IpRangeFile.open(file);
+        synchronized (LIST_LOCK) {
+            if (rangeFileWatcher == null) {
+                rangeFileWatcher = new IpRangeFileWatcher();
+            }
+            rangeFileWatcher.register(rangeFile.getPath(), this::onRangeFileReloaded);
+            IpRangeFile previous = (white ? WHITE_IP_FILES : BLACK_IP_FILES).put(groupName, rangeFile);
+            applyRangeFile(white, groupName, rangeFile);
+            if (previous != null) {
+                unregisterIfUnused(previous.getPath());
+            }
+        }
+        return rangeFile;
+    }
+
+    private IpRangeFile unbindIpFile(boolean white, String groupName) {
+        synchronized (LIST_LOCK) {
+            IpRangeFile previous = (white ? WHITE_IP_FILES : BLACK_IP_FILES).remove(groupName);
+            if (previous != null) {
+                applyRangeFile(white, groupName, null);
+                unregisterIfUnused(previous.getPath());
+            }
+            return previous;
+        }
+    }
+
+    /**
+     * 文件被替换后,将绑定到该文件的所有 group 切换到新的映射,旧映射在不再被引用后由GC释放
+     * @param reloaded 重新映射的区间文件
+     */
+    private void onRangeFileReloaded(IpRangeFile reloaded) {
+        synchronized (LIST_LOCK) {
+            for (Map.Entry<String, IpRangeFile> entry : WHITE_IP_FILES.entrySet()) {
+                if (entry.getValue().getPath().equals(reloaded.getPath())) {
+                    entry.setValue(reloaded);
+                    applyRangeFile(true, entry.getKey(), reloaded);
+                }
+            }
+            for (Map.Entry<String, IpRangeFile> entry : BLACK_IP_FILES.entrySet()) {
+                if (entry.getValue().getPath().equals(reloaded.getPath())) {
+                    entry.setValue(reloaded);
+                    applyRangeFile(false, entry.getKey(), reloaded);
+                }
+            }
+        }
+    }
+
+    private static void unregisterIfUnused(Path path) {
+        for (IpRangeFile rangeFile : WHITE_IP_FILES.values()) {
+            if (rangeFile.getPath().equals(path)) {
+                return;
+            }
+        }
+        for (IpRangeFile rangeFile : BLACK_IP_FILES.values()) {
+            if (rangeFile.getPath().equals(path)) {
+                return;
+            }
+        }
+        rangeFileWatcher.unregister(path);
+    }
+
+    private static void applyRangeFile(boolean white, String groupName, IpRangeFile rangeFile) {
+        for (CompiledIpLists lists : COMPILED_IP_LISTS_MAP.values()) {
+            if (!lists.getGroupName().equals(groupName)) {
+                continue;
+            }
+            if (white) {
+                lists.setWhiteRangeFile(rangeFile);
+            } else {
+                lists.setBlackRangeFile(rangeFile);
+            }
+        }
+    }
+
+    /**
+     * 停止区间文件热加载
+     * @throws IOException 关闭失败
+     */
+    @Override
+    public void destroy() throws IOException {
+        synchronized (LIST_LOCK) {
+            if (rangeFileWatcher != null) {
+                rangeFileWatcher.close();
+                rangeFileWatcher = null;
+            }
+        }
+    }
+
+    /**
+     * 复制当前快照并修改对应 group,发布新快照后重建该 group 的匹配器
+     * @param white 是否为白名单
+     * @param groupName groupName
+     * @param update 由当前名单(不存在时为空列表)计算新名单,结果为空时删除该 group
+     * @return 新的 group 名单
+     */
+    private List<String> updateGroup(boolean white, String groupName, UnaryOperator<List<String>> update) {
+        synchronized (LIST_LOCK) {
+            Map<String, List<String>> snapshot = white ? whiteIpLists : blackIpLists;
+            List<String> current = snapshot.getOrDefault(groupName, ImmutableList.of());
+            List<String> updated = update.apply(current);
+            if (updated == current) {
+                return snapshot.get(groupName);
+            }
+            Map<String, List<String>> copy = Maps.newHashMap(snapshot);
+            if (updated.isEmpty()) {
+                copy.remove(groupName);
+            } else {
+                copy.put(groupName, updated);
+            }
+            if (white) {
+                whiteIpLists = ImmutableMap.copyOf(copy);
+            } else {
+                blackIpLists = ImmutableMap.copyOf(copy);
+            }
+            rebuildGroup(groupName, white, updated);
+            return updated;
+        }
+    }
+
+    private static List<String> concat(List<String> current, Collection<String> arrayStrs) {
+        if (arrayStrs.isEmpty()) {
+            return current;
+        }
+        return ImmutableList.<String>builderWithExpectedSize(current.size() + arrayStrs.size())
+                .addAll(current).addAll(arrayStrs).build();
+    }
+
+    private static List<String> without(List<String> current, String arrayStr) {
+        int index = current.indexOf(arrayStr);
+        if (index < 0) {
+            return current;
+        }
+        return ImmutableList.<String>builderWithExpectedSize(current.size() - 1)
+                .addAll(current.subList(0, index)).addAll(current.subList(index + 1, current.size())).build();
+    }
+
+    /**
+     * 判断IP是否在白名单列表里
+     * @param ipLimit ipLimit
+     * @param ip ip
+     * @return 是否存在
+     */
+    public boolean ipInWhiteIpList(IpLimit ipLimit, String ip) {
+        // 动态配置Map或注释中只要存在一个就算命中,两者已合并编译
+        CompiledIpLists lists = compiledIpLists(ipLimit);
+        return ip == null ? lists.getWhiteMatcher().matches(ip) : lists.inWhiteList(IpKey.of(ip));
+    }
+
+    /**
+     * 判断IP是否在黑名单列表里
+     * @param ipLimit ipLimit
+     * @param ip ip
+     * @return 是否存在
+     */
+    public boolean ipInBlackIpList(IpLimit ipLimit, String ip) {
+        // 动态配置Map或注释中只要存在一个就算命中,两者已合并编译
+        CompiledIpLists lists = compiledIpLists(ipLimit);
+        return ip == null ? lists.getBlackMatcher().matches(ip) : lists.inBlackList(IpKey.of(ip));
+    }
+
+    /**
+     * 获取注解对应的编译后名单,首次访问时编译,之后只在动态名单变更时重建
+     * @param ipLimit ipLimit
+     * @return 编译后的黑白名单
+     */
+    public CompiledIpLists compiledIpLists(IpLimit ipLimit) {
+        CompiledIpLists compiledIpLists = COMPILED_IP_LISTS_MAP.get(ipLimit);
+        if (compiledIpLists == null) {
+            synchronized (LIST_LOCK) {
+                compiledIpLists = COMPILED_IP_LISTS_MAP.computeIfAbsent(ipLimit, k -> {
+                    CompiledIpLists lists = new CompiledIpLists(k.groupName(),
+                            resolveRules(Arrays.asList(k.whiteList())), resolveRules(Arrays.asList(k.blackList())));
+                    lists.setWhiteMatcher(compileMatcher(lists.getWhiteRules(),
+                            resolveRules(whiteIpLists.getOrDefault(k.groupName(), ImmutableList.of())), 0));
+                    lists.setBlackMatcher(compileMatcher(lists.getBlackRules(),
+                            resolveRules(blackIpLists.getOrDefault(k.groupName(), ImmutableList.of())), blackListBloomFpp()));
+                    lists.setWhiteRangeFile(WHITE_IP_FILES.get(k.groupName()));
+                    lists.setBlackRangeFile(BLACK_IP_FILES.get(k.groupName()));
+                    return lists;
+                });
+            }
+        }
+        return compiledIpLists;
+    }
+
+    /**
+     * 动态名单变更后重建该 group 下所有的匹配器,调用方需持有 LIST_LOCK
+     * 动态名单只解析一次,各注解只合并各自的注解名单;重建期间请求线程继续使用旧的匹配器
+     * @param groupName groupName
+     * @param white 是否为白名单
+     * @param configArrayStrs 变更后的动态名单
+     */
+    private void rebuildGroup(String groupName, boolean white, List<String> configArrayStrs) {
+        List<String> configRules = null;
+        for (CompiledIpLists lists : COMPILED_IP_LISTS_MAP.values()) {
+            if (!lists.getGroupName().equals(groupName)) {
+                continue;
+            }
+            if (configRules == null) {
+                configRules = resolveRules(configArrayStrs);
+            }
+            if (white) {
+                lists.setWhiteMatcher(compileMatcher(lists.getWhiteRules(), configRules, 0));
+            } else {
+                lists.setBlackMatcher(compileMatcher(lists.getBlackRules(), configRules, blackListBloomFpp()));
+            }
+        }
+    }
+
+    /**
+     * @param annotationRules 注解名单规则
+     * @param configRules 已解析的动态名单规则
+     * @param bloomFalsePositiveRate 布隆过滤器的期望误判率,小于等于0时不使用
+     * @return 合并编译后的匹配器
+     */
+    private static IpListMatcher compileMatcher(List<String> annotationRules, List<String> configRules,
+                                                double bloomFalsePositiveRate) {
+        if (configRules.isEmpty()) {
+            return IpListMatcher.compile(annotationRules, bloomFalsePositiveRate);
+        }
+        List<String> rules = Lists.newArrayListWithCapacity(annotationRules.size() + configRules.size());
+        rules.addAll(annotationRules);
+        rules.addAll(configRules);
+        return IpListMatcher.compile(rules, bloomFalsePositiveRate);
+    }
+
+    /**
+     * 黑名单绝大多数请求都不会命中,开启后在前缀树之前先经过布隆过滤器
+     * @return 黑名单布隆过滤器的期望误判率,未配置时为0
+     */
+    private double blackListBloomFpp() {
+        return environment.getProperty(IpLimitConstant.BLACK_LIST_BLOOM_FILTER_FPP_PROPERTY, Double.class, 0D);
+    }
+
+    /**
+     * 通过environment解析占位符,并按分隔符拆分为单条规则
+     * @param arrayStrs 组合Str
+     * @return 单条规则
+     */
+    private List<String> resolveRules(Collection<String> arrayStrs) {
+        if (arrayStrs.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> rules = Lists.newArrayList();
+        for (String arrayStr : arrayStrs) {
+            for (String s : environment.resolvePlaceholders(arrayStr).split(IpLimitConstant.IP_PROPERTIES_SPLIT)) {
+                rules.add(s.trim());
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * 判断对应字符串是否存在于数组内
+     * @param array array
+     * @param str 字符串
+     * @return boolean
+     */
+    public boolean strInIpArray(String[] array, String str) {
+        for (String arrayStr : array) {
+            if (ipMatch(arrayStr, str)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 判断对应字符串是否存在于数组内
+     * @param array array
+     * @param str 字符串
+     * @return boolean
+     */
+    public boolean strInIpList(List<String> array, String str) {
+        for (String arrayStr : array) {
+            if (ipMatch(arrayStr, str)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 通过environment实现可通过properties配置对应的映射arrayStr
+     * @param arrayStr 组合Str
+     * @param ip ip
+     * @return 是否包含
+     */
+    private boolean ipMatch(String arrayStr, String ip) {
+        arrayStr = environment.resolvePlaceholders(arrayStr);
+        String[] split = arrayStr.split(IpLimitConstant.IP_PROPERTIES_SPLIT);
+        for (String s : split) {
+            if (IpUtils.ipFuzzyMatch(s.trim(), ip)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
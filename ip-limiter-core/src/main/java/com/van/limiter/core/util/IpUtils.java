@@ -0,0 +1,374 @@
+package com.van.limiter.core.util;
+
+import com.google.common.collect.Sets;
+import com.van.limiter.core.constant.IpLimitConstant;
+import org.springframework.util.StringUtils;
+
+import javax.servlet.http.HttpServletRequest;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.util.Enumeration;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * IP 工具类
+ * @author van
+ */
+public class IpUtils {
+    private IpUtils() {}
+
+    /**
+     * 内网ip正则
+     * <ul>
+     *     <li>127.0.0.1 或 localhost</li>
+     *     <li>10.x.x.x</li>
+     *     <li>172.16.x.x - 172.31.x.x</li>
+     *     <li>192.168.x.x</li>
+     * </ul>
+     */
+    private static final Pattern LAN_PATTERN = Pattern.compile("^(127\\.0\\.0\\.1)|(localhost)" +
+            "|(10\\.\\d{1,3}\\.\\d{1,3}\\.\\d{1,3})" +
+            "|(172\\.((1[6-9])|(2\\d)|(3[01]))\\.\\d{1,3}\\.\\d{1,3})" +
+            "|(192\\.168\\.\\d{1,3}\\.\\d{1,3})$");
+    /**
+     * localhost set
+     */
+    private static final Set<String> LOCAL_HOST_SET = Sets.newHashSet("0:0:0:0:0:0:0:1", "localhost");
+
+    /**
+     * 判断ip是否为空，空返回true
+     *
+     * @param ip ip
+     * @return bol
+     */
+    public static boolean isEmptyIp(final String ip) {
+        return (ip == null || ip.length() == 0 || ip.trim().equals("") || "unknown".equalsIgnoreCase(ip));
+    }
+
+
+    /**
+     * 判断ip是否不为空，不为空返回true
+     *
+     * @param ip ip
+     * @return bol
+     */
+    public static boolean isNotEmptyIp(final String ip) {
+        return !isEmptyIp(ip);
+    }
+
+    /***
+     * 获取客户端ip地址(可以穿透代理)
+     * @param request HttpServletRequest
+     * @return ip
+     */
+    public static String getIpAddress(HttpServletRequest request) {
+        String ip = request.getHeader("X-Forwarded-For");
+        if (!StringUtils.isEmpty(ip) && !"unknown".equalsIgnoreCase(ip)) {
+            int index = ip.indexOf(',');
+            if (index != -1) {
+                return ip.substring(0, index);
+            } else {
+                return ip;
+            }
+        }
+        ip = request.getHeader("X-Real-IP");
+        if (!StringUtils.isEmpty(ip) && !"unknown".equalsIgnoreCase(ip)) {
+            return ip;
+        }
+        if (ip == null || ip.length() == 0 || "unknown".equalsIgnoreCase(ip)) {
+            ip = request.getHeader("Proxy-Client-IP");
+        }
+        if (ip == null || ip.length() == 0 || "unknown".equalsIgnoreCase(ip)) {
+            ip = request.getHeader("WL-Proxy-Client-IP");
+        }
+        if (ip == null || ip.length() == 0 || "unknown".equalsIgnoreCase(ip)) {
+            ip = request.getHeader("HTTP_CLIENT_IP");
+        }
+        if (ip == null || ip.length() == 0 || "unknown".equalsIgnoreCase(ip)) {
+            ip = request.getHeader("HTTP_X_FORWARDED_FOR");
+        }
+        if (ip == null || ip.length() == 0 || "unknown".equalsIgnoreCase(ip)) {
+            ip = request.getRemoteAddr();
+        }
+        return ip;
+    }
+
+    /**
+     * 获取本机的局域网ip地址，兼容Linux
+     *
+     * @return String
+     * @throws SocketException SocketException
+     */
+    public static String getLocalHostIP() throws SocketException {
+        Enumeration<NetworkInterface> allNetInterfaces = NetworkInterface.getNetworkInterfaces();
+        String localHostAddress = "";
+        while (allNetInterfaces.hasMoreElements()) {
+            NetworkInterface networkInterface = allNetInterfaces.nextElement();
+            Enumeration<InetAddress> address = networkInterface.getInetAddresses();
+            while (address.hasMoreElements()) {
+                InetAddress inetAddress = address.nextElement();
+                if (inetAddress instanceof Inet4Address) {
+                    localHostAddress = inetAddress.getHostAddress();
+                }
+            }
+        }
+        return localHostAddress;
+    }
+
+    /**
+     * 判断是否为局域网ip
+     * @param ip ip
+     * @return boolean
+     */
+    private static boolean isLAN(String ip) {
+        ip = ip.trim();
+        return LAN_PATTERN.matcher(ip).matches() || LOCAL_HOST_SET.contains(ip.toLowerCase());
+    }
+
+    /**
+     * 是否是内网访问
+     * @param request HttpServletRequest
+     * @return boolean
+     */
+    public static boolean isLanAccess(HttpServletRequest request) {
+        String host = getRequestHost(request);
+        return isLAN(host);
+    }
+
+    public static String getRequestHost(HttpServletRequest request) {
+        String remoteHost = request.getHeader("host");
+        if (LOCAL_HOST_SET.contains(remoteHost)) {
+            return "localhost";
+        }
+        int colonIndex = remoteHost.indexOf(":");
+        return colonIndex > 0 ? remoteHost.substring(0, colonIndex) : remoteHost;
+    }
+
+    /**
+     * 将 IPV4 字符串解析为无符号整数,不会触发DNS解析
+     * @param s 字符串
+     * @param from 起始下标(包含)
+     * @param to 结束下标(不包含)
+     * @return 地址值(低32位),非法时返回 -1
+     */
+    public static long parseIpv4(CharSequence s, int from, int to) {
+        long result = 0;
+        int segmentCount = 0;
+        int segment = -1;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c == '.') {
+                if (segment < 0 || ++segmentCount == IpLimitConstant.IPV4_SEGMENT_SIZE) {
+                    return -1;
+                }
+                result = (result << 8) | segment;
+                segment = -1;
+            } else if (c >= '0' && c <= '9') {
+                segment = segment < 0 ? c - '0' : segment * 10 + (c - '0');
+                if (segment > 255) {
+                    return -1;
+                }
+            } else {
+                return -1;
+            }
+        }
+        if (segment < 0 || segmentCount != IpLimitConstant.IPV4_SEGMENT_SIZE - 1) {
+            return -1;
+        }
+        return (result << 8) | segment;
+    }
+
+    /**
+     * 将 IPV6 字符串解析为两个 long(高64位,低64位),支持 :: 缩写,尾部内嵌 IPV4 以及 %zone 后缀
+     * @param s 字符串
+     * @param from 起始下标(包含)
+     * @param to 结束下标(不包含)
+     * @param out 长度至少为2的数组,用于接收解析结果
+     * @return 是否解析成功
+     */
+    public static boolean parseIpv6(CharSequence s, int from, int to, long[] out) {
+        for (int i = from; i < to; i++) {
+            if (s.charAt(i) == '%') {
+                to = i;
+                break;
+            }
+        }
+        if (to - from < 2) {
+            return false;
+        }
+        // 分别累计 :: 之前与之后的分组, 最后再按缺省的分组数拼接
+        long headHi = 0;
+        long headLo = 0;
+        long tailHi = 0;
+        long tailLo = 0;
+        int headCount = 0;
+        int tailCount = 0;
+        boolean compressed = false;
+        int i = from;
+        if (s.charAt(i) == ':') {
+            if (s.charAt(i + 1) != ':') {
+                return false;
+            }
+            compressed = true;
+            i += 2;
+        }
+        while (i < to) {
+            int start = i;
+            int value = 0;
+            int groupSize = 1;
+            while (i < to && s.charAt(i) != ':') {
+                char c = s.charAt(i);
+                if (c == '.') {
+                    // 内嵌的 IPV4 只能出现在最后,占两个分组
+                    long ipv4 = parseIpv4(s, start, to);
+                    if (ipv4 < 0) {
+                        return false;
+                    }
+                    value = (int) ipv4;
+                    groupSize = 2;
+                    i = to;
+                    break;
+                }
+                int digit = Character.digit(c, 16);
+                if (digit < 0 || i - start == 4) {
+                    return false;
+                }
+                value = (value << 4) | digit;
+                i++;
+            }
+            if (i == start || headCount + tailCount + groupSize > 8) {
+                return false;
+            }
+            long bits = value & (groupSize == 2 ? 0xFFFFFFFFL : 0xFFFFL);
+            int shift = groupSize * 16;
+            if (compressed) {
+                tailHi = (tailHi << shift) | (tailLo >>> (64 - shift));
+                tailLo = (tailLo << shift) | bits;
+                tailCount += groupSize;
+            } else {
+                headHi = (headHi << shift) | (headLo >>> (64 - shift));
+                headLo = (headLo << shift) | bits;
+                headCount += groupSize;
+            }
+            if (i < to) {
+                i++;
+                if (i < to && s.charAt(i) == ':') {
+                    if (compressed) {
+                        return false;
+                    }
+                    compressed = true;
+                    i++;
+                } else if (i == to) {
+                    return false;
+                }
+            }
+        }
+        if (!compressed) {
+            if (headCount != 8) {
+                return false;
+            }
+            out[0] = headHi;
+            out[1] = headLo;
+            return true;
+        }
+        if (headCount + tailCount > 7) {
+            return false;
+        }
+        // 将 :: 之前的分组左移到高位
+        int shift = (8 - headCount) * 16;
+        if (shift >= 128) {
+            headHi = 0;
+            headLo = 0;
+        } else if (shift >= 64) {
+            headHi = headLo << (shift - 64);
+            headLo = 0;
+        } else {
+            headHi = (headHi << shift) | (headLo >>> (64 - shift));
+            headLo = headLo << shift;
+        }
+        out[0] = headHi | tailHi;
+        out[1] = headLo | tailLo;
+        return true;
+    }
+
+    /**
+     * 判断 ip 是否满足模糊匹配 matchIpPattern
+     * @param matchIpPattern 模糊匹配规则,支持多种模式 eg. 172.*.21 ; 172.*.*.21; 10.0.0.0/8 ; 2001:db8::/32
+     * @param ip 需要进行匹配的ip
+     * @return isAccess
+     */
+    public static boolean ipFuzzyMatch(String matchIpPattern, String ip) {
+        if (matchIpPattern.contains(IpLimitConstant.IP_CIDR_SPLIT)) {
+            return cidrMatch(matchIpPattern, ip);
+        }
+        if (!matchIpPattern.contains(IpLimitConstant.IP_FUZZY_SPLIT)) {
+            // IPV6 存在多种写法,能解析时按二进制地址比较
+            if (matchIpPattern.equals(ip)) {
+                return true;
+            }
+            IpKey pattern = IpKey.parse(matchIpPattern, 0, matchIpPattern.length());
+            return pattern != null && pattern.equals(IpKey.parse(ip, 0, ip.length()));
+        }
+
+        if (matchIpPattern.equals(IpLimitConstant.IP_FUZZY_SPLIT)) {
+            return true;
+        }
+
+        // 针对简易单星号场景
+        String[] split = matchIpPattern.split("\\*");
+        if (split.length == IpLimitConstant.IPV4_START_END_SPLIT) {
+            return matchIpPattern.startsWith(IpLimitConstant.IP_FUZZY_SPLIT)
+                    ? ip.endsWith(split[0])
+                    : ip.startsWith(split[0]);
+        }
+        if (split.length == IpLimitConstant.IPV4_SPLIT_TWO_SIZE) {
+            return ip.startsWith(split[0]) && ip.endsWith(split[1]);
+        }
+
+        // 不是一个星号的时候
+        String[] matchStrSplit = matchIpPattern.split("\\.");
+        String[] ipSplit = ip.split("\\.");
+        for (int index = 0; index < IpLimitConstant.IPV4_SEGMENT_SIZE; index ++) {
+            if (IpLimitConstant.IP_FUZZY_SPLIT.equals(matchStrSplit[index])) {
+                continue;
+            }
+            if (!matchStrSplit[index].equals(ipSplit[index])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 判断 ip 是否属于 CIDR 网段, IPV4 与 IPV4-mapped IPV6 视为同一地址
+     * @param cidr 网段, eg. 10.0.0.0/8 ; 2001:db8::/32
+     * @param ip 需要进行匹配的ip
+     * @return 是否属于该网段,网段或ip非法时返回 false
+     */
+    public static boolean cidrMatch(String cidr, String ip) {
+        int index = cidr.indexOf(IpLimitConstant.IP_CIDR_SPLIT);
+        IpKey network = IpKey.parse(cidr, 0, index);
+        IpKey address = IpKey.parse(ip, 0, ip.length());
+        if (network == null || address == null || network.isIpv4() != address.isIpv4()) {
+            return false;
+        }
+        int prefixLength;
+        try {
+            prefixLength = Integer.parseInt(cidr.substring(index + 1).trim());
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        if (network.isIpv4() && cidr.lastIndexOf(':', index) >= 0) {
+            // ::ffff:a.b.c.d/n 形式的前缀长度包含 96 位的 IPV4-mapped 前缀
+            prefixLength -= IpLimitConstant.IPV6_BIT_SIZE - IpLimitConstant.IPV4_BIT_SIZE;
+        }
+        int bitSize = network.isIpv4() ? IpLimitConstant.IPV4_BIT_SIZE : IpLimitConstant.IPV6_BIT_SIZE;
+        if (prefixLength < 0 || prefixLength > bitSize) {
+            return false;
+        }
+        return network.toPrefix(prefixLength, prefixLength).equals(address.toPrefix(prefixLength, prefixLength));
+    }
+}
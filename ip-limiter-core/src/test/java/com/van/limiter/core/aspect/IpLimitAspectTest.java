@@ -0,0 +1,282 @@
+package com.van.limiter.core.aspect;
+
+import com.van.limiter.core.annotation.EnableIpLimit;
+import com.van.limiter.core.annotation.IpLimit;
+import com.van.limiter.core.constant.IpLimitConstant;
+import com.van.limiter.core.enums.CurrentLimiterType;
+import com.van.limiter.core.enums.LimitTimeType;
+import com.van.limiter.core.enums.LimitType;
+import com.van.limiter.core.enums.RejectionStrategy;
+import com.van.limiter.core.exception.IpLimitException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.EnableAspectJAutoProxy;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author van
+ */
+class IpLimitAspectTest {
+
+    @Configuration
+    @EnableIpLimit
+    @EnableAspectJAutoProxy(proxyTargetClass = true)
+    @Import({WaitingService.class, ConcurrentService.class, RejectingService.class})
+    static class TestConfig {
+    }
+
+    public static class WaitingService {
+
+        @IpLimit(groupName = "aspect-waiting", currentLimiter = CurrentLimiterType.TOKEN_BUCKET, maxTimes = 10,
+                burstCapacity = 1, maxWaitMillis = 1000)
+        public CompletableFuture<Object> user() {
+            // 延迟执行时同样可以读取 request 作用域的属性
+            return CompletableFuture.completedFuture(RequestContextHolder.currentRequestAttributes()
+                    .getAttribute("user", RequestAttributes.SCOPE_REQUEST));
+        }
+
+        @IpLimit(groupName = "aspect-waiting-shutdown", currentLimiter = CurrentLimiterType.TOKEN_BUCKET, maxTimes = 1,
+                limitTimeType = LimitTimeType.MINUTE, groupMaxTimes = 2, maxWaitMillis = 90_000)
+        public CompletableFuture<Object> shutdown() {
+            return CompletableFuture.completedFuture("done");
+        }
+    }
+
+    public static class ConcurrentService {
+
+        final CompletableFuture<Object> pending = new CompletableFuture<>();
+
+        @IpLimit(groupName = "aspect-concurrency", currentLimiter = CurrentLimiterType.CONCURRENCY, maxTimes = 1)
+        public CompletableFuture<Object> slow() {
+            return pending;
+        }
+    }
+
+    public static class RejectingService {
+
+        @IpLimit(groupName = "aspect-stackless", currentLimiter = CurrentLimiterType.TOKEN_BUCKET, maxTimes = 1,
+                limitTimeType = LimitTimeType.MINUTE)
+        public String stackless() {
+            return "ok";
+        }
+
+        @IpLimit(groupName = "aspect-handler", currentLimiter = CurrentLimiterType.TOKEN_BUCKET, maxTimes = 1,
+                limitTimeType = LimitTimeType.MINUTE)
+        public String handled() {
+            return "ok";
+        }
+
+        @IpLimit(groupName = "aspect-handler-primitive", currentLimiter = CurrentLimiterType.TOKEN_BUCKET, maxTimes = 1,
+                limitTimeType = LimitTimeType.MINUTE)
+        public int count() {
+            return 1;
+        }
+
+        @IpLimit(groupName = "aspect-handler-black", limitType = LimitType.DEFAULT_WITH_BLACK_LIST, blackList = "10.2.0.1")
+        public String blocked() {
+            return "ok";
+        }
+    }
+
+    /**
+     * 记录状态码与响应内容的 response
+     */
+    private static HttpServletResponse response(int[] status, StringWriter body) {
+        PrintWriter writer = new PrintWriter(body);
+        return (HttpServletResponse) Proxy.newProxyInstance(IpLimitAspectTest.class.getClassLoader(),
+                new Class<?>[]{HttpServletResponse.class}, (proxy, m, args) -> {
+                    switch (m.getName()) {
+                        case "setStatus":
+                            status[0] = (int) args[0];
+                            return null;
+                        case "isCommitted":
+                            return false;
+                        case "getWriter":
+                            return writer;
+                        case "flushBuffer":
+                            writer.flush();
+                            return null;
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+    private static AnnotationConfigApplicationContext context(RejectionStrategy rejectionStrategy) {
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("test", Collections.singletonMap(
+                IpLimitConstant.REJECTION_STRATEGY_PROPERTY, rejectionStrategy.name())));
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.setEnvironment(environment);
+        context.register(TestConfig.class);
+        context.refresh();
+        return context;
+    }
+
+    private static HttpServletRequest request() {
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put("user", "van");
+        return (HttpServletRequest) Proxy.newProxyInstance(IpLimitAspectTest.class.getClassLoader(),
+                new Class<?>[]{HttpServletRequest.class}, (proxy, m, args) -> {
+                    switch (m.getName()) {
+                        case "getRemoteAddr":
+                            return "10.2.0.1";
+                        case "getAttribute":
+                            return attributes.get(args[0]);
+                        case "setAttribute":
+                            attributes.put((String) args[0], args[1]);
+                            return null;
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+    @Test
+    void delayedInvocationSeesActiveRequestTest() throws Exception {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(TestConfig.class)) {
+            WaitingService service = context.getBean(WaitingService.class);
+            HttpServletRequest request = request();
+            CompletableFuture<Object> result = runInRequest(request, service);
+            Assertions.assertEquals("van", result.get(1, TimeUnit.SECONDS));
+            // 突发容量用尽后预约许可,由调度线程在原请求结束之后执行
+            for (int i = 0; i < 3 && result.isDone(); i++) {
+                result = runInRequest(request, service);
+            }
+            Assertions.assertFalse(result.isDone());
+            Assertions.assertEquals("van", result.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    /**
+     * 模拟容器线程: 绑定请求,调用方法后立即结束原请求的 RequestAttributes
+     */
+    private static CompletableFuture<Object> runInRequest(HttpServletRequest request, WaitingService service) {
+        ServletRequestAttributes attributes = new ServletRequestAttributes(request);
+        RequestContextHolder.setRequestAttributes(attributes);
+        try {
+            return service.user();
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+            attributes.requestCompleted();
+        }
+    }
+
+    @Test
+    void rejectedScheduleRefundsReservationTest() throws Exception {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(TestConfig.class)) {
+            WaitingService service = context.getBean(WaitingService.class);
+            // 模拟调度器在预约之后、调度之前被容器关闭
+            ScheduledExecutorService stopped = Executors.newSingleThreadScheduledExecutor();
+            stopped.shutdown();
+            Field executor = PermitScheduler.class.getDeclaredField("executor");
+            executor.setAccessible(true);
+            executor.set(null, stopped);
+            RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request()));
+            try {
+                Assertions.assertEquals("done", service.shutdown().get(1, TimeUnit.SECONDS));
+                // 单IP额度与 group 总量都已退回,否则第三次调用会因超过最长等待或 group 总量被直接拒绝
+                for (int i = 0; i < 2; i++) {
+                    CompletableFuture<Object> result = service.shutdown();
+                    Assertions.assertTrue(result.isCompletedExceptionally());
+                    ExecutionException e = Assertions.assertThrows(ExecutionException.class, result::get);
+                    Assertions.assertTrue(e.getCause() instanceof RejectedExecutionException);
+                }
+            } finally {
+                RequestContextHolder.resetRequestAttributes();
+                PermitScheduler.shutdown();
+            }
+        }
+    }
+
+    @Test
+    void concurrencyPermitReleasedOnCompletionTest() throws Exception {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(TestConfig.class)) {
+            ConcurrentService service = context.getBean(ConcurrentService.class);
+            ServletRequestAttributes attributes = new ServletRequestAttributes(request());
+            RequestContextHolder.setRequestAttributes(attributes);
+            try {
+                CompletableFuture<Object> first = service.slow();
+                // 方法已返回但结果未完成,许可仍被占用
+                Assertions.assertThrows(IpLimitException.class, service::slow);
+                first.complete("done");
+                Assertions.assertSame(first, service.slow());
+            } finally {
+                RequestContextHolder.resetRequestAttributes();
+            }
+        }
+    }
+
+    @Test
+    void stacklessExceptionTest() {
+        try (AnnotationConfigApplicationContext context = context(RejectionStrategy.STACKLESS_EXCEPTION)) {
+            RejectingService service = context.getBean(RejectingService.class);
+            RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request()));
+            try {
+                Assertions.assertEquals("ok", service.stackless());
+                IpLimitException first = Assertions.assertThrows(IpLimitException.class, service::stackless);
+                IpLimitException second = Assertions.assertThrows(IpLimitException.class, service::stackless);
+                // 每次拒绝抛出同一个预先创建的实例,不记录堆栈
+                Assertions.assertSame(first, second);
+                Assertions.assertEquals(0, first.getStackTrace().length);
+                Assertions.assertNull(first.getRequestIp());
+                Assertions.assertEquals("aspect-stackless", first.getGroupName());
+            } finally {
+                RequestContextHolder.resetRequestAttributes();
+            }
+        }
+    }
+
+    @Test
+    void handlerWritesStatusTest() {
+        try (AnnotationConfigApplicationContext context = context(RejectionStrategy.HANDLER)) {
+            RejectingService service = context.getBean(RejectingService.class);
+            HttpServletRequest request = request();
+            int[] status = new int[1];
+            StringWriter body = new StringWriter();
+            RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request, response(status, body)));
+            try {
+                Assertions.assertEquals("ok", service.handled());
+                Assertions.assertNull(service.handled());
+                Assertions.assertEquals(429, status[0]);
+                Assertions.assertEquals("Too Many Requests", body.toString());
+
+                status[0] = 0;
+                Assertions.assertNull(service.blocked());
+                Assertions.assertEquals(403, status[0]);
+
+                // 基本类型的返回值无法为 null,写出响应后抛出无堆栈异常
+                status[0] = 0;
+                Assertions.assertEquals(1, service.count());
+                IpLimitException rejected = Assertions.assertThrows(IpLimitException.class, service::count);
+                Assertions.assertEquals(0, rejected.getStackTrace().length);
+                Assertions.assertEquals(429, status[0]);
+            } finally {
+                RequestContextHolder.resetRequestAttributes();
+            }
+        }
+    }
+}
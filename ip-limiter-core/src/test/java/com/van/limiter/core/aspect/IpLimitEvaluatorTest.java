@@ -0,0 +1,273 @@
+package com.van.limiter.core.aspect;
+
+import com.van.limiter.core.annotation.EnableIpLimit;
+import com.van.limiter.core.annotation.IpLimit;
+import com.van.limiter.core.constant.IpLimitConstant;
+import com.van.limiter.core.engine.MultiWindowLimiterEngine;
+import com.van.limiter.core.enums.CurrentLimiterType;
+import com.van.limiter.core.enums.LimitDecision;
+import com.van.limiter.core.enums.LimitTimeType;
+import com.van.limiter.core.limiter.StripedLeaseCounter;
+import com.van.limiter.core.policy.IpLimitPolicy;
+import com.van.limiter.core.store.LimiterKey;
+import com.van.limiter.core.util.IpKey;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author van
+ */
+class IpLimitEvaluatorTest {
+
+    @Configuration
+    @EnableIpLimit
+    static class TestConfig {
+    }
+
+    static class Endpoints {
+
+        @IpLimit(groupName = "evaluator-group-cap", maxTimes = 3, limitTimeType = LimitTimeType.MINUTE, groupMaxTimes = 2)
+        void groupCapped() {
+        }
+
+        @IpLimit(groupName = "evaluator-global-cap", currentLimiter = CurrentLimiterType.TOKEN_BUCKET, maxTimes = 3,
+                limitTimeType = LimitTimeType.MINUTE, burstCapacity = 3, groupMaxTimes = 100)
+        void globalCapped() {
+        }
+
+        @IpLimit(groupName = "evaluator-group-shared", maxTimes = 3, limitTimeType = LimitTimeType.MINUTE, groupMaxTimes = 5)
+        void groupShared() {
+        }
+
+        @IpLimit(groupName = "evaluator-group-shared", maxTimes = 1, limitTimeType = LimitTimeType.MINUTE, groupMaxTimes = 5)
+        void groupSharedSameCap() {
+        }
+
+        @IpLimit(groupName = "evaluator-group-shared", maxTimes = 3, limitTimeType = LimitTimeType.MINUTE, groupMaxTimes = 6)
+        void groupSharedOtherCap() {
+        }
+
+        @IpLimit(groupName = "evaluator-stacked", maxTimes = 2)
+        @IpLimit(groupName = "evaluator-stacked", maxTimes = 5, limitTimeType = LimitTimeType.HOUR)
+        void stacked() {
+        }
+
+        @IpLimit(groupName = "evaluator-stacked-bucket", currentLimiter = CurrentLimiterType.TOKEN_BUCKET, maxTimes = 2)
+        @IpLimit(groupName = "evaluator-stacked-bucket", maxTimes = 5, limitTimeType = LimitTimeType.HOUR)
+        void stackedTokenBucket() {
+        }
+
+        @IpLimit(groupName = "evaluator-stacked-burst", maxTimes = 2)
+        @IpLimit(groupName = "evaluator-stacked-burst", maxTimes = 5, limitTimeType = LimitTimeType.HOUR, burstCapacity = 5)
+        void stackedBurst() {
+        }
+
+        @IpLimit(groupName = "evaluator-concurrency-deferred", currentLimiter = CurrentLimiterType.CONCURRENCY, maxTimes = 2)
+        DeferredResult<String> concurrencyDeferred() {
+            return new DeferredResult<>();
+        }
+
+        @IpLimit(groupName = "evaluator-concurrency-future", currentLimiter = CurrentLimiterType.CONCURRENCY, maxTimes = 2)
+        CompletableFuture<String> concurrencyFuture() {
+            return new CompletableFuture<>();
+        }
+    }
+
+    @IpLimit(groupName = "evaluator-class", maxTimes = 3, limitTimeType = LimitTimeType.MINUTE)
+    static class ClassLevelEndpoints {
+
+        void inherited() {
+        }
+
+        @IpLimit(groupName = "evaluator-method", maxTimes = 7)
+        void overridden() {
+        }
+    }
+
+    public static class InvalidUnitTimeService {
+
+        @IpLimit(groupName = "evaluator-invalid-unit-time", unitTime = 0)
+        public void invalid() {
+        }
+    }
+
+    public static class InvalidMaxTimesService {
+
+        @IpLimit(groupName = "evaluator-invalid-max-times", maxTimes = 0)
+        public void invalid() {
+        }
+    }
+
+    @Configuration
+    @EnableIpLimit
+    static class InvalidUnitTimeConfig {
+
+        @Bean
+        public InvalidUnitTimeService invalidUnitTimeService() {
+            return new InvalidUnitTimeService();
+        }
+    }
+
+    @Configuration
+    @EnableIpLimit
+    static class InvalidMaxTimesConfig {
+
+        @Bean
+        public InvalidMaxTimesService invalidMaxTimesService() {
+            return new InvalidMaxTimesService();
+        }
+    }
+
+    private static IpLimitPolicy policy(IpLimitEvaluator evaluator, String methodName) throws NoSuchMethodException {
+        return evaluator.resolvePolicy(Endpoints.class.getDeclaredMethod(methodName));
+    }
+
+    @Test
+    void resolvePolicyCachedTest() throws Exception {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(TestConfig.class)) {
+            IpLimitEvaluator evaluator = context.getBean(IpLimitEvaluator.class);
+            IpLimitPolicy policy = policy(evaluator, "groupCapped");
+            Assertions.assertSame(policy, policy(evaluator, "groupCapped"));
+            Assertions.assertSame(policy.getGroupLimiter(), policy(evaluator, "groupCapped").getGroupLimiter());
+            Assertions.assertNull(evaluator.resolvePolicy(Object.class.getMethod("toString")));
+        }
+    }
+
+    @Test
+    void invalidConfigFailsRefreshTest() {
+        // 启动时提前解析注解,配置有误时容器刷新失败
+        Exception unitTime = Assertions.assertThrows(Exception.class, () -> new AnnotationConfigApplicationContext(InvalidUnitTimeConfig.class));
+        Throwable cause = rootCause(unitTime);
+        Assertions.assertTrue(cause instanceof IllegalArgumentException);
+        Assertions.assertTrue(cause.getMessage().startsWith("IpLimit unitTime must be positive"));
+        Exception maxTimes = Assertions.assertThrows(Exception.class, () -> new AnnotationConfigApplicationContext(InvalidMaxTimesConfig.class));
+        cause = rootCause(maxTimes);
+        Assertions.assertTrue(cause instanceof IllegalArgumentException);
+        Assertions.assertTrue(cause.getMessage().startsWith("IpLimit maxTimes must be positive"));
+    }
+
+    @Test
+    void methodAnnotationOverridesClassTest() throws Exception {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(TestConfig.class)) {
+            IpLimitEvaluator evaluator = context.getBean(IpLimitEvaluator.class);
+            IpLimitPolicy inherited = evaluator.resolvePolicy(ClassLevelEndpoints.class.getDeclaredMethod("inherited"));
+            Assertions.assertEquals("evaluator-class", inherited.getGroupName());
+            Assertions.assertEquals(3, inherited.getMaxTimes());
+            Assertions.assertEquals(TimeUnit.MINUTES.toNanos(1), inherited.getWindowNanos());
+            IpLimitPolicy overridden = evaluator.resolvePolicy(ClassLevelEndpoints.class.getDeclaredMethod("overridden"));
+            Assertions.assertEquals("evaluator-method", overridden.getGroupName());
+            Assertions.assertEquals(7, overridden.getMaxTimes());
+            // 方法上的注解整体替换类上的注解,未配置的属性取注解默认值而不是类上的值
+            Assertions.assertEquals(TimeUnit.SECONDS.toNanos(1), overridden.getWindowNanos());
+        }
+    }
+
+    private static Throwable rootCause(Throwable e) {
+        while (e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e;
+    }
+
+    @Test
+    void groupRejectionRefundsIpQuotaTest() throws Exception {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(TestConfig.class)) {
+            IpLimitEvaluator evaluator = context.getBean(IpLimitEvaluator.class);
+            IpLimitPolicy policy = policy(evaluator, "groupCapped");
+            IpKey first = IpKey.of("10.0.0.1");
+            IpKey second = IpKey.of("10.0.0.2");
+            Assertions.assertEquals(LimitDecision.PERMITTED, evaluator.evaluate(policy, first));
+            Assertions.assertEquals(LimitDecision.PERMITTED, evaluator.evaluate(policy, first));
+            // group 总量已用尽,其他IP被拒绝的请求不占用其单IP额度
+            for (int i = 0; i < 5; i++) {
+                Assertions.assertEquals(LimitDecision.REJECTED, evaluator.evaluate(policy, second));
+            }
+            Assertions.assertEquals(0, RateLimitAspectConfig.getSlidingWindowStore().getIfPresent(
+                    new LimiterKey(second, policy.getGroupId())).snapshot().length);
+        }
+    }
+
+    @Test
+    void globalRejectionRefundsGroupAndIpQuotaTest() throws Exception {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(TestConfig.class)) {
+            IpLimitEvaluator evaluator = context.getBean(IpLimitEvaluator.class);
+            IpLimitPolicy policy = policy(evaluator, "globalCapped");
+            IpKey ip = IpKey.of("10.0.1.1");
+            RateLimitAspectConfig.globalLimiter = new StripedLeaseCounter(System.nanoTime(), TimeUnit.MINUTES.toNanos(1), 1);
+            try {
+                Assertions.assertEquals(LimitDecision.PERMITTED, evaluator.evaluate(policy, ip));
+                for (int i = 0; i < 5; i++) {
+                    Assertions.assertEquals(LimitDecision.REJECTED, evaluator.evaluate(policy, ip));
+                }
+                long now = System.nanoTime();
+                Assertions.assertEquals(99, policy.getGroupLimiter().available(now));
+                // 只有通过的一次请求占用令牌
+                long tat = RateLimitAspectConfig.getTokenBucketStore().getIfPresent(
+                        new LimiterKey(ip, policy.getGroupId())).getTheoreticalArrivalTime();
+                Assertions.assertTrue(tat - now <= policy.getEmissionIntervalNanos());
+            } finally {
+                RateLimitAspectConfig.globalLimiter = null;
+            }
+        }
+    }
+
+    @Test
+    void stackedRulesRejectIgnoredOptionsTest() throws Exception {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(TestConfig.class)) {
+            IpLimitEvaluator evaluator = context.getBean(IpLimitEvaluator.class);
+            Assertions.assertEquals(MultiWindowLimiterEngine.NAME, policy(evaluator, "stacked").getLimiterEngine().name());
+            Assertions.assertThrows(IllegalArgumentException.class, () -> policy(evaluator, "stackedTokenBucket"));
+            Assertions.assertThrows(IllegalArgumentException.class, () -> policy(evaluator, "stackedBurst"));
+        }
+    }
+
+    @Test
+    void concurrencyRejectsUntrackedAsyncReturnTypeTest() throws Exception {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(TestConfig.class)) {
+            IpLimitEvaluator evaluator = context.getBean(IpLimitEvaluator.class);
+            Assertions.assertThrows(IllegalArgumentException.class, () -> policy(evaluator, "concurrencyDeferred"));
+            Assertions.assertNotNull(policy(evaluator, "concurrencyFuture"));
+        }
+    }
+
+    @Test
+    void conflictingGroupMaxTimesTest() throws Exception {
+        StripedLeaseCounter groupLimiter;
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(TestConfig.class)) {
+            IpLimitEvaluator evaluator = context.getBean(IpLimitEvaluator.class);
+            groupLimiter = policy(evaluator, "groupShared").getGroupLimiter();
+            Assertions.assertSame(groupLimiter, policy(evaluator, "groupSharedSameCap").getGroupLimiter());
+            Assertions.assertThrows(IllegalArgumentException.class, () -> policy(evaluator, "groupSharedOtherCap"));
+        }
+        // 容器关闭后 group 总量限流器随策略重新创建
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(TestConfig.class)) {
+            Assertions.assertNotSame(groupLimiter, policy(context.getBean(IpLimitEvaluator.class), "groupShared").getGroupLimiter());
+        }
+    }
+
+    @Test
+    void globalLimiterFollowsCurrentContextTest() {
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("test", Collections.singletonMap(
+                IpLimitConstant.GLOBAL_MAX_TIMES_PROPERTY, "100")));
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            context.setEnvironment(environment);
+            context.register(TestConfig.class);
+            context.refresh();
+            Assertions.assertEquals(100, RateLimitAspectConfig.getGlobalLimiter().getLimit());
+        }
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(TestConfig.class)) {
+            Assertions.assertNull(RateLimitAspectConfig.getGlobalLimiter());
+        }
+    }
+}
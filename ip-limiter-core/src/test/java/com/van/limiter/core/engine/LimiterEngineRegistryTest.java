@@ -0,0 +1,167 @@
+package com.van.limiter.core.engine;
+
+import com.van.limiter.core.annotation.EnableIpLimit;
+import com.van.limiter.core.annotation.IpLimit;
+import com.van.limiter.core.enums.CurrentLimiterType;
+import com.van.limiter.core.enums.LimitDecision;
+import com.van.limiter.core.policy.IpLimitPolicy;
+import com.van.limiter.core.util.IpKey;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * @author van
+ */
+class LimiterEngineRegistryTest {
+
+    /**
+     * 只做标记的限流器,按名称区分
+     */
+    abstract static class NamedEngine implements LimiterEngine {
+
+        private final String name;
+
+        NamedEngine(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public LimitDecision tryAcquire(IpKey key, IpLimitPolicy policy, long nowNanos) {
+            return LimitDecision.PERMITTED;
+        }
+    }
+
+    /**
+     * 由 engine-fixture/META-INF/services 提供,覆盖内置的令牌桶
+     */
+    public static class ServiceTokenBucketEngine extends NamedEngine {
+
+        public ServiceTokenBucketEngine() {
+            super(CurrentLimiterType.TOKEN_BUCKET.name());
+        }
+    }
+
+    /**
+     * 由 engine-fixture/META-INF/services 提供,被同名的 Bean 覆盖
+     */
+    public static class ServiceSlidingWindowEngine extends NamedEngine {
+
+        public ServiceSlidingWindowEngine() {
+            super(CurrentLimiterType.SLIDING_WINDOW.name());
+        }
+    }
+
+    /**
+     * 只允许 maxTimes 不超过 5 的策略
+     */
+    static class StrictEngine extends NamedEngine {
+
+        StrictEngine() {
+            super("STRICT");
+        }
+
+        @Override
+        public void validate(IpLimitPolicy policy) {
+            if (policy.getMaxTimes() > 5) {
+                throw new IllegalArgumentException("STRICT maxTimes must not exceed 5, GroupName: " + policy.getGroupName());
+            }
+        }
+    }
+
+    public static class StrictService {
+
+        @IpLimit(groupName = "registry-strict", limiterEngine = "STRICT", maxTimes = 10)
+        public void strict() {
+        }
+    }
+
+    public static class UnknownEngineService {
+
+        @IpLimit(groupName = "registry-unknown", limiterEngine = "UNKNOWN")
+        public void unknown() {
+        }
+    }
+
+    @Configuration
+    @EnableIpLimit
+    static class StrictConfig {
+
+        @Bean
+        public StrictEngine strictEngine() {
+            return new StrictEngine();
+        }
+
+        @Bean
+        public StrictService strictService() {
+            return new StrictService();
+        }
+    }
+
+    @Configuration
+    @EnableIpLimit
+    static class UnknownEngineConfig {
+
+        @Bean
+        public UnknownEngineService unknownEngineService() {
+            return new UnknownEngineService();
+        }
+    }
+
+    @Test
+    void precedenceTest() throws Exception {
+        URL fixture = LimiterEngineRegistryTest.class.getClassLoader().getResource("engine-fixture/");
+        Assertions.assertNotNull(fixture);
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{fixture}, LimiterEngineRegistryTest.class.getClassLoader())) {
+            LimiterEngine beanEngine = new NamedEngine(CurrentLimiterType.SLIDING_WINDOW.name()) {
+            };
+            LimiterEngineRegistry registry = new LimiterEngineRegistry(
+                    Arrays.asList(new SlidingWindowLimiterEngine(), new TokenBucketLimiterEngine(), new SlidingWindowCounterLimiterEngine()),
+                    Collections.singletonList(beanEngine), classLoader);
+            // Bean > ServiceLoader > 内置限流器
+            Assertions.assertSame(beanEngine, registry.getEngine(CurrentLimiterType.SLIDING_WINDOW.name()));
+            Assertions.assertTrue(registry.getEngine(CurrentLimiterType.TOKEN_BUCKET.name()) instanceof ServiceTokenBucketEngine);
+            Assertions.assertTrue(registry.getEngine(CurrentLimiterType.SLIDING_WINDOW_COUNTER.name())
+                    instanceof SlidingWindowCounterLimiterEngine);
+            Assertions.assertEquals(3, registry.getEngines().size());
+        }
+    }
+
+    @Test
+    void unknownEngineTest() {
+        LimiterEngineRegistry registry = new LimiterEngineRegistry(Collections.singletonList(new TokenBucketLimiterEngine()),
+                Collections.emptyList(), LimiterEngineRegistryTest.class.getClassLoader());
+        IllegalArgumentException e = Assertions.assertThrows(IllegalArgumentException.class, () -> registry.getEngine("UNKNOWN"));
+        Assertions.assertTrue(e.getMessage().contains("UNKNOWN"));
+        // 启动时解析注解,名称不存在时容器刷新失败
+        Exception refresh = Assertions.assertThrows(Exception.class, () -> new AnnotationConfigApplicationContext(UnknownEngineConfig.class));
+        Assertions.assertTrue(rootCause(refresh) instanceof IllegalArgumentException);
+    }
+
+    @Test
+    void validateOnCompileTest() {
+        Exception refresh = Assertions.assertThrows(Exception.class, () -> new AnnotationConfigApplicationContext(StrictConfig.class));
+        Throwable cause = rootCause(refresh);
+        Assertions.assertTrue(cause instanceof IllegalArgumentException);
+        Assertions.assertTrue(cause.getMessage().startsWith("STRICT maxTimes"));
+    }
+
+    private static Throwable rootCause(Throwable e) {
+        while (e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e;
+    }
+}
@@ -0,0 +1,160 @@
+package com.van.limiter.core.filter;
+
+import com.van.limiter.core.annotation.EnableIpLimit;
+import com.van.limiter.core.annotation.IpLimit;
+import com.van.limiter.core.enums.CurrentLimiterType;
+import com.van.limiter.core.enums.LimitTimeType;
+import com.van.limiter.core.handler.RejectionHandler;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author van
+ */
+class IpLimitFilterTest {
+
+    private static final AtomicInteger REJECTED = new AtomicInteger();
+
+    @Configuration
+    @EnableIpLimit(filter = true)
+    @Import(ItemController.class)
+    static class TestConfig {
+
+        @Bean
+        public RejectionHandler rejectionHandler() {
+            return (request, response, policy, host, decision) -> REJECTED.incrementAndGet();
+        }
+    }
+
+    @RestController
+    @RequestMapping("/items")
+    public static class ItemController {
+
+        @IpLimit(groupName = "filter-item", maxTimes = 1, limitTimeType = LimitTimeType.MINUTE)
+        @GetMapping("/{id}")
+        public String get(@PathVariable String id) {
+            return id;
+        }
+
+        @IpLimit(groupName = "filter-export", currentLimiter = CurrentLimiterType.CONCURRENCY, maxTimes = 1)
+        @GetMapping("/export")
+        public CompletableFuture<String> export() {
+            return new CompletableFuture<>();
+        }
+
+        @GetMapping("/latest")
+        public String latest() {
+            return "latest";
+        }
+    }
+
+    private static HttpServletRequest request(String method, String uri) {
+        return request(method, uri, null);
+    }
+
+    /**
+     * @param asyncListeners 不为 null 时模拟已开始异步处理的请求,记录注册的监听器
+     */
+    private static HttpServletRequest request(String method, String uri, List<AsyncListener> asyncListeners) {
+        Map<String, Object> attributes = new HashMap<>();
+        AsyncContext asyncContext = asyncListeners == null ? null : (AsyncContext) Proxy.newProxyInstance(
+                IpLimitFilterTest.class.getClassLoader(), new Class<?>[]{AsyncContext.class}, (proxy, m, args) -> {
+                    if ("addListener".equals(m.getName())) {
+                        asyncListeners.add((AsyncListener) args[0]);
+                    }
+                    return null;
+                });
+        return (HttpServletRequest) Proxy.newProxyInstance(IpLimitFilterTest.class.getClassLoader(),
+                new Class<?>[]{HttpServletRequest.class}, (proxy, m, args) -> {
+                    switch (m.getName()) {
+                        case "getMethod":
+                            return method;
+                        case "getRequestURI":
+                            return uri;
+                        case "getContextPath":
+                            return "";
+                        case "getRemoteAddr":
+                            return "10.1.0.1";
+                        case "getAttribute":
+                            return attributes.get(args[0]);
+                        case "setAttribute":
+                            attributes.put((String) args[0], args[1]);
+                            return null;
+                        case "removeAttribute":
+                            attributes.remove(args[0]);
+                            return null;
+                        case "isAsyncStarted":
+                            return asyncContext != null;
+                        case "getAsyncContext":
+                            return asyncContext;
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+    private static HttpServletResponse response() {
+        return (HttpServletResponse) Proxy.newProxyInstance(IpLimitFilterTest.class.getClassLoader(),
+                new Class<?>[]{HttpServletResponse.class}, (proxy, m, args) -> m.getReturnType() == boolean.class ? false : null);
+    }
+
+    private static int passed(IpLimitFilter filter, String method, String uri, int times) throws Exception {
+        AtomicInteger passed = new AtomicInteger();
+        for (int i = 0; i < times; i++) {
+            filter.doFilter(request(method, uri), response(), (req, res) -> passed.incrementAndGet());
+        }
+        return passed.get();
+    }
+
+    @Test
+    void unlimitedExactRouteIsNotLimitedByPatternTest() throws Exception {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(TestConfig.class)) {
+            IpLimitFilter filter = context.getBean(IpLimitFilter.class);
+            REJECTED.set(0);
+            Assertions.assertEquals(3, passed(filter, "GET", "/items/latest", 3));
+            Assertions.assertEquals(0, REJECTED.get());
+            // 滑动窗口已有记录数超过 maxTimes 时才拒绝
+            Assertions.assertEquals(2, passed(filter, "GET", "/items/1", 3));
+            Assertions.assertEquals(1, REJECTED.get());
+            // 请求方法不匹配时不限流
+            Assertions.assertEquals(3, passed(filter, "POST", "/items/1", 3));
+            Assertions.assertEquals(1, REJECTED.get());
+        }
+    }
+
+    @Test
+    void concurrencyPermitReleasedOnAsyncCompleteTest() throws Exception {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(TestConfig.class)) {
+            IpLimitFilter filter = context.getBean(IpLimitFilter.class);
+            REJECTED.set(0);
+            List<AsyncListener> listeners = new ArrayList<>();
+            filter.doFilter(request("GET", "/items/export", listeners), response(), (req, res) -> { });
+            Assertions.assertEquals(1, listeners.size());
+            // 过滤器链已返回,异步处理未完成时许可仍被占用
+            Assertions.assertEquals(0, passed(filter, "GET", "/items/export", 1));
+            Assertions.assertEquals(1, REJECTED.get());
+            listeners.get(0).onComplete(null);
+            Assertions.assertEquals(1, passed(filter, "GET", "/items/export", 1));
+        }
+    }
+}
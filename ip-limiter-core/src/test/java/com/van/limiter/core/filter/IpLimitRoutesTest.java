@@ -0,0 +1,92 @@
+package com.van.limiter.core.filter;
+
+import com.van.limiter.core.annotation.EnableIpLimit;
+import com.van.limiter.core.annotation.IpLimit;
+import com.van.limiter.core.aspect.IpLimitEvaluator;
+import com.van.limiter.core.enums.LimitTimeType;
+import com.van.limiter.core.policy.IpLimitPolicy;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * @author van
+ */
+class IpLimitRoutesTest {
+
+    @Configuration
+    @EnableIpLimit
+    @Import(UserController.class)
+    static class TestConfig {
+    }
+
+    @RestController
+    @RequestMapping("/users")
+    public static class UserController {
+
+        @IpLimit(groupName = "routes-user", maxTimes = 10, limitTimeType = LimitTimeType.MINUTE)
+        @GetMapping("/{id}")
+        public String get(@PathVariable String id) {
+            return id;
+        }
+
+        @GetMapping("/me")
+        public String me() {
+            return "me";
+        }
+
+        @IpLimit(groupName = "routes-create", maxTimes = 10, limitTimeType = LimitTimeType.MINUTE)
+        @PostMapping("/me")
+        public String updateMe() {
+            return "me";
+        }
+
+        @GetMapping("/{id}/profile")
+        public String profile(@PathVariable String id) {
+            return id;
+        }
+
+        @IpLimit(groupName = "routes-any", maxTimes = 10, limitTimeType = LimitTimeType.MINUTE)
+        @GetMapping("/**")
+        public String any() {
+            return "any";
+        }
+    }
+
+    @Test
+    void exactRouteTakesPrecedenceOverPatternTest() {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(TestConfig.class)) {
+            IpLimitRoutes routes = IpLimitRoutes.build(context, context.getBean(IpLimitEvaluator.class));
+            Assertions.assertFalse(routes.isEmpty());
+            // 未被限流的精确路径不会落到被限流的 /users/{id}
+            Assertions.assertNull(routes.match("GET", "/users/me"));
+            Assertions.assertNull(routes.match("GET", "/users/me/"));
+            Assertions.assertEquals("routes-user", routes.match("GET", "/users/42").getGroupName());
+            Assertions.assertEquals("routes-user", routes.match("GET", "/users/42.json").getGroupName());
+            // 更具体的未限流规则优先于 /users/**
+            Assertions.assertNull(routes.match("GET", "/users/42/profile"));
+            Assertions.assertEquals("routes-any", routes.match("GET", "/users/42/orders").getGroupName());
+        }
+    }
+
+    @Test
+    void methodMatchTest() {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(TestConfig.class)) {
+            IpLimitRoutes routes = IpLimitRoutes.build(context, context.getBean(IpLimitEvaluator.class));
+            IpLimitPolicy update = routes.match("POST", "/users/me");
+            Assertions.assertNotNull(update);
+            Assertions.assertEquals("routes-create", update.getGroupName());
+            // 精确路径没有对应方法时按通配规则匹配
+            Assertions.assertNull(routes.match("DELETE", "/users/me"));
+            Assertions.assertNull(routes.match("POST", "/users/42"));
+            Assertions.assertNull(routes.match("GET", "/orders/1"));
+        }
+    }
+}
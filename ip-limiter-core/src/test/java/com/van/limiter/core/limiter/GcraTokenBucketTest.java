@@ -0,0 +1,60 @@
+package com.van.limiter.core.limiter;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author van
+ */
+class GcraTokenBucketTest {
+
+    @Test
+    void burstAndRefillTest() {
+        long interval = 100L;
+        long burstNanos = interval * 3;
+        GcraTokenBucket tokenBucket = new GcraTokenBucket(0L);
+        Assertions.assertTrue(tokenBucket.tryAcquire(0, interval, burstNanos));
+        Assertions.assertTrue(tokenBucket.tryAcquire(0, interval, burstNanos));
+        Assertions.assertTrue(tokenBucket.tryAcquire(0, interval, burstNanos));
+        Assertions.assertFalse(tokenBucket.tryAcquire(0, interval, burstNanos));
+
+        // 每经过一个间隔补充一个令牌
+        Assertions.assertTrue(tokenBucket.tryAcquire(100, interval, burstNanos));
+        Assertions.assertFalse(tokenBucket.tryAcquire(150, interval, burstNanos));
+        Assertions.assertTrue(tokenBucket.tryAcquire(200, interval, burstNanos));
+
+        // 空闲足够久后桶回满,但不会超过突发容量
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertTrue(tokenBucket.tryAcquire(10_000, interval, burstNanos));
+        }
+        Assertions.assertFalse(tokenBucket.tryAcquire(10_000, interval, burstNanos));
+    }
+
+    @Test
+    void slowRateTest() {
+        // 每分钟一次
+        long interval = 60_000_000_000L;
+        GcraTokenBucket tokenBucket = new GcraTokenBucket(0L);
+        Assertions.assertTrue(tokenBucket.tryAcquire(0, interval, interval));
+        Assertions.assertFalse(tokenBucket.tryAcquire(30_000_000_000L, interval, interval));
+        Assertions.assertTrue(tokenBucket.tryAcquire(interval, interval, interval));
+    }
+
+    @Test
+    void reserveTest() {
+        long interval = 100L;
+        long burstNanos = interval * 3;
+        long maxWaitNanos = interval * 2;
+        GcraTokenBucket tokenBucket = new GcraTokenBucket(0L);
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertEquals(0L, tokenBucket.reserve(0, interval, burstNanos, maxWaitNanos));
+        }
+        // 桶空后预约未来的令牌,等待时间逐个递增
+        Assertions.assertEquals(100L, tokenBucket.reserve(0, interval, burstNanos, maxWaitNanos));
+        Assertions.assertEquals(200L, tokenBucket.reserve(0, interval, burstNanos, maxWaitNanos));
+        // 超过最长等待时间时拒绝且不占用令牌
+        Assertions.assertEquals(-1L, tokenBucket.reserve(0, interval, burstNanos, maxWaitNanos));
+        Assertions.assertEquals(500L, tokenBucket.getTheoreticalArrivalTime());
+        Assertions.assertEquals(100L, tokenBucket.reserve(200, interval, burstNanos, maxWaitNanos));
+    }
+}
@@ -0,0 +1,43 @@
+package com.van.limiter.core.limiter;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author van
+ */
+class MultiWindowCounterTest {
+
+    @Test
+    void allRulesTest() {
+        long second = 1_000L;
+        long hour = second * 3600;
+        long[] windows = {second, hour};
+        double[] maxTimes = {2, 3};
+        MultiWindowCounter counter = new MultiWindowCounter(0L, windows.length);
+        Assertions.assertTrue(counter.tryAcquire(0, windows, maxTimes));
+        Assertions.assertTrue(counter.tryAcquire(0, windows, maxTimes));
+        // 每秒规则拒绝
+        Assertions.assertFalse(counter.tryAcquire(0, windows, maxTimes));
+
+        Assertions.assertTrue(counter.tryAcquire(2 * second, windows, maxTimes));
+        // 每秒规则已重置,每小时规则拒绝
+        Assertions.assertFalse(counter.tryAcquire(4 * second, windows, maxTimes));
+        Assertions.assertTrue(counter.tryAcquire(3 * hour, windows, maxTimes));
+    }
+
+    @Test
+    void rejectedRuleDoesNotConsumeTest() {
+        long[] windows = {1_000L, 3_600_000L};
+        double[] maxTimes = {1, 2};
+        MultiWindowCounter counter = new MultiWindowCounter(0L, windows.length);
+        Assertions.assertTrue(counter.tryAcquire(0, windows, maxTimes));
+        // 被每秒规则拒绝的请求不占用每小时规则的额度
+        for (int i = 0; i < 10; i++) {
+            Assertions.assertFalse(counter.tryAcquire(0, windows, maxTimes));
+        }
+        Assertions.assertTrue(counter.tryAcquire(2_000L, windows, maxTimes));
+        long[] state = counter.snapshot();
+        Assertions.assertEquals(2, state[5]);
+    }
+}
@@ -0,0 +1,47 @@
+package com.van.limiter.core.limiter;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Random;
+
+/**
+ * @author van
+ */
+class SlidingLogWindowTest {
+
+    @Test
+    void matchDequeWindowTest() {
+        long window = 1_000L;
+        double maxTimes = 5;
+        SlidingLogWindow slidingLogWindow = new SlidingLogWindow(maxTimes);
+        Deque<Long> expected = new ArrayDeque<>();
+        Random random = new Random(7);
+        long now = 0;
+        for (int i = 0; i < 10_000; i++) {
+            now += random.nextInt(300);
+            while (!expected.isEmpty() && now - expected.peekFirst() > window) {
+                expected.pollFirst();
+            }
+            boolean allowed = expected.size() <= maxTimes;
+            if (allowed) {
+                expected.addLast(now);
+            }
+            Assertions.assertEquals(allowed, slidingLogWindow.tryAcquire(now, window, maxTimes));
+        }
+    }
+
+    @Test
+    void growForLargerMaxTimesTest() {
+        SlidingLogWindow slidingLogWindow = new SlidingLogWindow(1);
+        Assertions.assertTrue(slidingLogWindow.tryAcquire(0, 100, 1));
+        Assertions.assertTrue(slidingLogWindow.tryAcquire(1, 100, 1));
+        Assertions.assertFalse(slidingLogWindow.tryAcquire(2, 100, 1));
+        Assertions.assertTrue(slidingLogWindow.tryAcquire(3, 100, 3));
+        Assertions.assertTrue(slidingLogWindow.tryAcquire(4, 100, 3));
+        Assertions.assertFalse(slidingLogWindow.tryAcquire(5, 100, 3));
+        Assertions.assertTrue(slidingLogWindow.tryAcquire(101, 100, 3));
+    }
+}
@@ -0,0 +1,33 @@
+package com.van.limiter.core.limiter;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author van
+ */
+class SlidingWindowCounterTest {
+
+    private static final long WINDOW = 1_000_000_000L;
+
+    @Test
+    void weightedWindowTest() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(0L);
+        for (int i = 0; i < 10; i++) {
+            Assertions.assertTrue(counter.tryAcquire(i, WINDOW, 10));
+        }
+        Assertions.assertFalse(counter.tryAcquire(10, WINDOW, 10));
+
+        // 进入下一个窗口的一半时,上一窗口仍占一半权重: 10 * 0.5 = 5
+        long halfOfNextWindow = WINDOW + WINDOW / 2;
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertTrue(counter.tryAcquire(halfOfNextWindow, WINDOW, 10));
+        }
+        Assertions.assertFalse(counter.tryAcquire(halfOfNextWindow, WINDOW, 10));
+
+        // 空闲超过两个窗口后计数全部失效
+        for (int i = 0; i < 10; i++) {
+            Assertions.assertTrue(counter.tryAcquire(WINDOW * 5, WINDOW, 10));
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.van.limiter.core.limiter;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author van
+ */
+class StripedConcurrencyCounterTest {
+
+    @Test
+    void acquireAndReleaseTest() {
+        StripedConcurrencyCounter counter = new StripedConcurrencyCounter(1 << 10);
+        Assertions.assertTrue(counter.tryAcquire(0L, 1L, 0, 2));
+        Assertions.assertTrue(counter.tryAcquire(0L, 1L, 0, 2));
+        Assertions.assertFalse(counter.tryAcquire(0L, 1L, 0, 2));
+        // 被拒绝的请求不占用许可
+        Assertions.assertEquals(2, counter.inFlight(0L, 1L, 0));
+
+        // 其他 group 与其他IP分开计数
+        Assertions.assertTrue(counter.tryAcquire(0L, 1L, 1, 2));
+        Assertions.assertTrue(counter.tryAcquire(0L, 2L, 0, 2));
+
+        counter.release(0L, 1L, 0);
+        Assertions.assertTrue(counter.tryAcquire(0L, 1L, 0, 2));
+        Assertions.assertFalse(counter.tryAcquire(0L, 1L, 0, 2));
+    }
+
+    @Test
+    void concurrentLimitTest() throws InterruptedException {
+        int threads = 8;
+        int limit = 3;
+        // 分段很少,不同Key大量共用分段
+        StripedConcurrencyCounter counter = new StripedConcurrencyCounter(4);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            long ip = t % 2;
+            new Thread(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    if (!counter.tryAcquire(0L, ip, 0, limit)) {
+                        continue;
+                    }
+                    if (ip == 0) {
+                        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                        inFlight.decrementAndGet();
+                    }
+                    counter.release(0L, ip, 0);
+                }
+                latch.countDown();
+            }).start();
+        }
+        latch.await();
+        Assertions.assertTrue(maxInFlight.get() <= limit);
+        Assertions.assertEquals(0, counter.inFlight(0L, 0L, 0));
+        Assertions.assertEquals(0, counter.inFlight(0L, 1L, 0));
+    }
+}
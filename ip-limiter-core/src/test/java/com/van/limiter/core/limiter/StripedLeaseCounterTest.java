@@ -0,0 +1,49 @@
+package com.van.limiter.core.limiter;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author van
+ */
+class StripedLeaseCounterTest {
+
+    @Test
+    void windowLimitTest() {
+        long window = 1_000L;
+        StripedLeaseCounter counter = new StripedLeaseCounter(0L, window, 100);
+        for (int i = 0; i < 100; i++) {
+            Assertions.assertTrue(counter.tryAcquire(10));
+        }
+        Assertions.assertFalse(counter.tryAcquire(999));
+        Assertions.assertEquals(0, counter.available(999));
+
+        // 进入新的窗口后额度恢复
+        Assertions.assertEquals(100, counter.available(window));
+        Assertions.assertTrue(counter.tryAcquire(window));
+    }
+
+    @Test
+    void concurrentLimitTest() throws InterruptedException {
+        int threads = 8;
+        StripedLeaseCounter counter = new StripedLeaseCounter(0L, Long.MAX_VALUE, 10_000);
+        AtomicInteger permitted = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                for (int i = 0; i < 5_000; i++) {
+                    if (counter.tryAcquire(1L)) {
+                        permitted.incrementAndGet();
+                    }
+                }
+                latch.countDown();
+            }).start();
+        }
+        latch.await();
+        // 额度分散在各分段中也不会提前拒绝,总数恰好等于上限
+        Assertions.assertEquals(10_000, permitted.get());
+    }
+}
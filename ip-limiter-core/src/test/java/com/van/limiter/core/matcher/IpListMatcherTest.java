@@ -0,0 +1,137 @@
+package com.van.limiter.core.matcher;
+
+import com.van.limiter.core.util.IpKey;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * @author van
+ */
+class IpListMatcherTest {
+
+    @Test
+    void fuzzyPatternTest() {
+        IpListMatcher matcher1 = IpListMatcher.compile(Collections.singletonList("172.*.*.*"));
+        IpListMatcher matcher2 = IpListMatcher.compile(Collections.singletonList("172.*"));
+        IpListMatcher matcher3 = IpListMatcher.compile(Collections.singletonList("*"));
+        IpListMatcher matcher4 = IpListMatcher.compile(Collections.singletonList("*.21"));
+        IpListMatcher matcher5 = IpListMatcher.compile(Collections.singletonList("172.*.*.21"));
+        IpListMatcher matcher6 = IpListMatcher.compile(Collections.singletonList("172.16.*.*"));
+
+        String ip1 = "172.16.50.21";
+        String ip2 = "173.16.50.21";
+        String ip3 = "172.16.50.22";
+        String ip4 = "172.17.51.21";
+
+        Assertions.assertTrue(matcher1.matches(ip1));
+        Assertions.assertFalse(matcher1.matches(ip2));
+
+        Assertions.assertTrue(matcher2.matches(ip1));
+        Assertions.assertFalse(matcher2.matches(ip2));
+
+        Assertions.assertTrue(matcher3.matches(ip2));
+        Assertions.assertTrue(matcher3.matches("::1"));
+
+        Assertions.assertTrue(matcher4.matches(ip2));
+        Assertions.assertFalse(matcher4.matches(ip3));
+
+        Assertions.assertTrue(matcher5.matches(ip4));
+        Assertions.assertFalse(matcher5.matches(ip3));
+
+        Assertions.assertTrue(matcher6.matches(ip3));
+        Assertions.assertFalse(matcher6.matches(ip4));
+    }
+
+    @Test
+    void cidrAndExactTest() {
+        IpListMatcher matcher = IpListMatcher.compile(Arrays.asList(
+                "10.0.0.0/8", "2001:db8::/32", "192.168.1.1", "0:0:0:0:0:0:0:1", "localhost"));
+
+        Assertions.assertTrue(matcher.matches("10.20.30.40"));
+        Assertions.assertFalse(matcher.matches("11.0.0.1"));
+        Assertions.assertTrue(matcher.matches("2001:db8:1::5"));
+        Assertions.assertFalse(matcher.matches("2001:db9::5"));
+        Assertions.assertTrue(matcher.matches("192.168.1.1"));
+        Assertions.assertTrue(matcher.matches("::ffff:192.168.1.1"));
+        Assertions.assertFalse(matcher.matches("192.168.1.2"));
+        Assertions.assertTrue(matcher.matches("::1"));
+        Assertions.assertTrue(matcher.matches("localhost"));
+        Assertions.assertFalse(IpListMatcher.EMPTY.matches("10.0.0.1"));
+    }
+
+    @Test
+    void bloomFilterTest() {
+        List<String> rules = new ArrayList<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 10_000; i++) {
+            int ip = random.nextInt();
+            rules.add((ip >>> 24) + "." + (ip >>> 16 & 0xFF) + "." + (ip >>> 8 & 0xFF) + "." + (ip & 0xFF));
+        }
+        rules.add("10.0.0.0/8");
+        rules.add("2001:db8::/32");
+        IpListMatcher matcher = IpListMatcher.compile(rules, 0.01);
+        IpBloomFilter bloomFilter = matcher.getBloomFilter();
+        Assertions.assertNotNull(bloomFilter);
+        Assertions.assertEquals(0.01, bloomFilter.getFalsePositiveRate());
+        Assertions.assertTrue(bloomFilter.getEstimatedFalsePositiveRate() <= 0.01);
+        Assertions.assertTrue(bloomFilter.getMemoryBytes() > 0);
+
+        // 不会漏判
+        for (String rule : rules.subList(0, 10_000)) {
+            Assertions.assertTrue(matcher.matches(rule));
+        }
+        Assertions.assertTrue(matcher.matches("10.1.2.3"));
+        Assertions.assertTrue(matcher.matches("2001:db8::1"));
+        Assertions.assertFalse(matcher.matches("2001:db9::1"));
+
+        // 每种前缀长度各探测一次, IPV4 有 /32 与 /8 两种
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            long ip = (random.nextInt() & 0xFFFFFFFFL) | 0x8000_0000L;
+            if (bloomFilter.mightContain(ip << 32, 0, false) && !matcher.matches(IpKey.ofIpv4((int) ip))) {
+                falsePositives++;
+            }
+        }
+        Assertions.assertTrue(falsePositives <= 100_000 * 0.01, "false positives: " + falsePositives);
+        Assertions.assertNull(IpListMatcher.compile(rules).getBloomFilter());
+    }
+
+    @Test
+    void bloomFilterMultiPrefixFalsePositiveRateTest() {
+        List<String> rules = new ArrayList<>();
+        Random random = new Random(11);
+        int[] prefixLengths = {32, 28, 24, 20, 16, 12};
+        for (int prefixLength : prefixLengths) {
+            for (int i = 0; i < 2_000; i++) {
+                int ip = random.nextInt();
+                rules.add((ip >>> 24) + "." + (ip >>> 16 & 0xFF) + "." + (ip >>> 8 & 0xFF) + "." + (ip & 0xFF) + "/" + prefixLength);
+            }
+        }
+        IpListMatcher matcher = IpListMatcher.compile(rules, 0.01);
+        IpBloomFilter bloomFilter = matcher.getBloomFilter();
+        Assertions.assertEquals(prefixLengths.length, bloomFilter.probeCount());
+        Assertions.assertTrue(bloomFilter.getEstimatedFalsePositiveRate() <= 0.01, "estimated: " + bloomFilter.getEstimatedFalsePositiveRate());
+
+        // 每次查询探测6种前缀长度,观测到的误判率仍不高于配置值
+        int misses = 0;
+        int falsePositives = 0;
+        for (int i = 0; i < 200_000; i++) {
+            int ip = random.nextInt();
+            if (matcher.matches(IpKey.ofIpv4(ip))) {
+                continue;
+            }
+            misses++;
+            if (bloomFilter.mightContain((ip & 0xFFFFFFFFL) << 32, 0, false)) {
+                falsePositives++;
+            }
+        }
+        double observed = (double) falsePositives / misses;
+        Assertions.assertTrue(observed <= 0.01, "observed false positive rate: " + observed);
+    }
+}
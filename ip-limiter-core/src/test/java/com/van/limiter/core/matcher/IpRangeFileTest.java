@@ -0,0 +1,50 @@
+package com.van.limiter.core.matcher;
+
+import com.van.limiter.core.util.IpKey;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * @author van
+ */
+class IpRangeFileTest {
+
+    @Test
+    void convertAndContainsTest() throws IOException {
+        Path directory = Files.createTempDirectory("ip-range");
+        Path text = directory.resolve("blocklist.txt");
+        Path binary = directory.resolve("blocklist.bin");
+        Files.write(text, Arrays.asList(
+                "# threat feed",
+                "10.0.0.0/8",
+                "10.1.0.0/16   # 已被 10.0.0.0/8 覆盖",
+                "192.168.1.1",
+                "192.168.1.2",
+                "172.16.0.1-172.16.0.9",
+                "2001:db8::/32",
+                ""), StandardCharsets.UTF_8);
+
+        // 重叠与相邻的区间会被合并
+        Assertions.assertEquals(4, IpRangeFileConverter.convert(text, binary));
+        IpRangeFile rangeFile = IpRangeFile.open(binary);
+        Assertions.assertEquals(4, rangeFile.size());
+
+        Assertions.assertTrue(rangeFile.contains(IpKey.of("10.255.255.255")));
+        Assertions.assertFalse(rangeFile.contains(IpKey.of("11.0.0.0")));
+        Assertions.assertTrue(rangeFile.contains(IpKey.of("192.168.1.2")));
+        Assertions.assertFalse(rangeFile.contains(IpKey.of("192.168.1.3")));
+        Assertions.assertTrue(rangeFile.contains(IpKey.of("172.16.0.9")));
+        Assertions.assertFalse(rangeFile.contains(IpKey.of("172.16.0.10")));
+        Assertions.assertTrue(rangeFile.contains(IpKey.of("::ffff:10.0.0.1")));
+        Assertions.assertTrue(rangeFile.contains(IpKey.of("2001:db8:ffff::1")));
+        Assertions.assertFalse(rangeFile.contains(IpKey.of("2001:db9::1")));
+        Assertions.assertFalse(rangeFile.contains(IpKey.of("0.0.0.0")));
+        Assertions.assertFalse(rangeFile.contains(IpKey.of("unknown")));
+    }
+}
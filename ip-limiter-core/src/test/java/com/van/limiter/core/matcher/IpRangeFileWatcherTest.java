@@ -0,0 +1,69 @@
+package com.van.limiter.core.matcher;
+
+import com.van.limiter.core.util.IpKey;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @author van
+ */
+class IpRangeFileWatcherTest {
+
+    private static void rewrite(Path directory, Path binary, String rule) throws IOException {
+        Path text = directory.resolve("blocklist.txt");
+        Files.write(text, Collections.singletonList(rule), StandardCharsets.UTF_8);
+        IpRangeFileConverter.convert(text, binary);
+    }
+
+    /**
+     * 一次替换可能产生多批事件,等待包含新规则的映射
+     */
+    static IpRangeFile awaitContains(BlockingQueue<IpRangeFile> reloaded, String ip) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        IpRangeFile rangeFile;
+        while ((rangeFile = reloaded.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) != null) {
+            if (rangeFile.contains(IpKey.of(ip))) {
+                return rangeFile;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    void failingListenerKeepsWatchingTest() throws Exception {
+        Path directory = Files.createTempDirectory("ip-range-watch");
+        Path binary = directory.resolve("blocklist.bin");
+        rewrite(directory, binary, "10.6.0.1");
+        BlockingQueue<IpRangeFile> reloaded = new LinkedBlockingQueue<>();
+        AtomicBoolean failed = new AtomicBoolean();
+        try (IpRangeFileWatcher watcher = new IpRangeFileWatcher()) {
+            watcher.register(binary, rangeFile -> {
+                // 第一次回调抛出异常,监听线程仍需处理之后的变更
+                if (failed.compareAndSet(false, true)) {
+                    throw new IllegalStateException("listener failed");
+                }
+                reloaded.add(rangeFile);
+            });
+            rewrite(directory, binary, "10.6.0.2");
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (!failed.get() && System.nanoTime() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+            Assertions.assertTrue(failed.get());
+            rewrite(directory, binary, "10.6.0.3");
+            IpRangeFile rangeFile = awaitContains(reloaded, "10.6.0.3");
+            Assertions.assertNotNull(rangeFile);
+            Assertions.assertFalse(rangeFile.contains(IpKey.of("10.6.0.1")));
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.van.limiter.core.metrics;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author van
+ */
+class LatencyHistogramTest {
+
+    @Test
+    void bucketBoundsTest() {
+        for (long value : new long[]{0, 1, 15, 16, 17, 100, 1_000, 123_456_789L, Long.MAX_VALUE}) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            Assertions.assertTrue(bucket < LatencyHistogram.BUCKETS);
+            Assertions.assertTrue(value <= LatencyHistogram.upperBoundOf(bucket));
+            // 相对误差不超过 1/8
+            Assertions.assertTrue(LatencyHistogram.upperBoundOf(bucket) - value <= value / 8);
+        }
+    }
+
+    @Test
+    void percentileTest() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 100L);
+        }
+        Assertions.assertEquals(1000, histogram.count());
+        Assertions.assertEquals(100_000, histogram.max());
+        long p50 = histogram.percentile(0.5);
+        Assertions.assertTrue(p50 >= 50_000 && p50 <= 50_000 * 9 / 8, "p50=" + p50);
+        Assertions.assertEquals(100_000, histogram.percentile(1.0));
+    }
+
+    @Test
+    void rotateTest() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1_000_000);
+        histogram.rotate();
+        histogram.record(100);
+        // 上一个窗口仍然计入
+        Assertions.assertEquals(2, histogram.count());
+        Assertions.assertEquals(1_000_000, histogram.max());
+        histogram.rotate();
+        Assertions.assertEquals(1, histogram.count());
+        Assertions.assertEquals(100, histogram.max());
+        Assertions.assertEquals(100, histogram.percentile(0.99));
+        histogram.rotate();
+        Assertions.assertEquals(0, histogram.count());
+        Assertions.assertEquals(0, histogram.percentile(0.99));
+    }
+}
@@ -0,0 +1,67 @@
+package com.van.limiter.core.store;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author van
+ */
+class IpBanTableTest {
+
+    private static final long WINDOW = TimeUnit.SECONDS.toNanos(10);
+
+    private static final long BAN = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private static final long MAX_BAN = TimeUnit.SECONDS.toNanos(10);
+
+    @Test
+    void escalatingBanTest() throws Exception {
+        IpBanTable banTable = new IpBanTable(64, TimeUnit.MILLISECONDS.toNanos(10));
+        long now = System.nanoTime();
+        Assertions.assertFalse(banTable.recordRejection(1L, 2L, 0, now, 3, WINDOW, BAN, MAX_BAN));
+        Assertions.assertFalse(banTable.recordRejection(1L, 2L, 0, now, 3, WINDOW, BAN, MAX_BAN));
+        Assertions.assertFalse(banTable.isBanned(1L, 2L, 0, now));
+        Assertions.assertTrue(banTable.recordRejection(1L, 2L, 0, now, 3, WINDOW, BAN, MAX_BAN));
+        Assertions.assertTrue(banTable.isBanned(1L, 2L, 0, now));
+        // 封禁只针对对应的 group
+        Assertions.assertFalse(banTable.isBanned(1L, 2L, 1, now));
+        Assertions.assertFalse(banTable.isBanned(1L, 2L, 0, now + BAN));
+        Assertions.assertEquals(1, banTable.activeCount());
+
+        TimeUnit.NANOSECONDS.sleep(BAN * 2);
+        banTable.expire();
+        Assertions.assertEquals(0, banTable.activeCount());
+
+        // 再次触发时封禁时长翻倍
+        now = System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            banTable.recordRejection(1L, 2L, 0, now, 3, WINDOW, BAN, MAX_BAN);
+        }
+        Assertions.assertTrue(banTable.isBanned(1L, 2L, 0, now + BAN));
+        Assertions.assertFalse(banTable.isBanned(1L, 2L, 0, now + BAN * 2));
+        Assertions.assertEquals(2, banTable.banCount());
+    }
+
+    @Test
+    void expiredBanReleasesSlotTest() throws Exception {
+        IpBanTable banTable = new IpBanTable(4, TimeUnit.MILLISECONDS.toNanos(10));
+        long now = System.nanoTime();
+        Assertions.assertTrue(banTable.recordRejection(1L, 2L, 0, now, 1, WINDOW, BAN, BAN));
+        Assertions.assertEquals(1, banTable.activeCount());
+        // 封禁时长远大于两次调用的间隔,构建机负载较高时也不会提前到期
+        Assertions.assertEquals(0, banTable.expire());
+
+        // 到期后解除封禁,保留期 (maxBanNanos) 过后回收槽位
+        TimeUnit.NANOSECONDS.sleep(BAN * 2);
+        Assertions.assertEquals(1, banTable.expire());
+        Assertions.assertEquals(0, banTable.activeCount());
+        TimeUnit.NANOSECONDS.sleep(BAN * 2);
+        Assertions.assertEquals(1, banTable.expire());
+        // 级别已重置,再次触发时仍为首次封禁时长
+        now = System.nanoTime();
+        Assertions.assertTrue(banTable.recordRejection(1L, 2L, 0, now, 1, WINDOW, BAN, MAX_BAN));
+        Assertions.assertFalse(banTable.isBanned(1L, 2L, 0, now + BAN));
+    }
+}
@@ -0,0 +1,44 @@
+package com.van.limiter.core.store;
+
+import com.van.limiter.core.limiter.GcraTokenBucket;
+import com.van.limiter.core.policy.LimitGroups;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author van
+ */
+class LimiterStatePersistenceTest {
+
+    @Test
+    void corruptedSnapshotStartsColdTest() throws Exception {
+        LimiterStateStore<LimiterKey, GcraTokenBucket> tokenBuckets = new LimiterStateStore<>("tokenBucket", 10, 0L);
+        LimiterStateSnapshot snapshot = new LimiterStateSnapshot(tokenBuckets,
+                new LimiterStateStore<>("slidingLog", 10, 0L), new LimiterStateStore<>("windowCounter", 10, 0L),
+                new LimiterStateStore<>("multiWindow", 10, 0L), () -> null);
+        long window = TimeUnit.SECONDS.toNanos(60);
+        tokenBuckets.restore(new LimiterKey(1L, 2L, LimitGroups.idOf("persistence-test")), window,
+                new GcraTokenBucket(System.nanoTime() + window));
+        Path file = Files.createTempDirectory("ip-limiter").resolve("state.bin");
+        snapshot.save(file);
+        tokenBuckets.clear();
+        // 第一条记录之后是一条未知类型的记录
+        byte[] content = Files.readAllBytes(file);
+        content[content.length - 1] = 9;
+        Files.write(file, Arrays.copyOf(content, content.length + 20));
+
+        LimiterStatePersistence persistence = new LimiterStatePersistence(snapshot, file, 0L);
+        persistence.afterPropertiesSet();
+        // 已恢复的部分同样被丢弃
+        Assertions.assertEquals(0, tokenBuckets.size());
+        // 关闭时以当前状态覆盖损坏的快照
+        persistence.destroy();
+        Assertions.assertEquals(0, snapshot.restore(file));
+        Files.delete(file);
+    }
+}
@@ -0,0 +1,102 @@
+package com.van.limiter.core.store;
+
+import com.van.limiter.core.limiter.GcraTokenBucket;
+import com.van.limiter.core.limiter.MultiWindowCounter;
+import com.van.limiter.core.limiter.SlidingLogWindow;
+import com.van.limiter.core.limiter.SlidingWindowCounter;
+import com.van.limiter.core.policy.LimitGroups;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author van
+ */
+class LimiterStateSnapshotTest {
+
+    @Test
+    void saveAndRestoreTest() throws Exception {
+        LimiterStateStore<LimiterKey, GcraTokenBucket> tokenBuckets = new LimiterStateStore<>("tokenBucket", 100, 0L);
+        LimiterStateStore<LimiterKey, SlidingLogWindow> slidingLogs = new LimiterStateStore<>("slidingLog", 100, 0L);
+        LimiterStateStore<LimiterKey, SlidingWindowCounter> windowCounters = new LimiterStateStore<>("windowCounter", 100, 0L);
+        LimiterStateStore<LimiterKey, MultiWindowCounter> multiWindowCounters = new LimiterStateStore<>("multiWindow", 100, 0L);
+        LimiterStateSnapshot snapshot = new LimiterStateSnapshot(tokenBuckets, slidingLogs, windowCounters, multiWindowCounters, () -> null);
+        int groupId = LimitGroups.idOf("snapshot-test");
+        long now = System.nanoTime();
+        long window = TimeUnit.SECONDS.toNanos(60);
+        LimiterKey active = new LimiterKey(1L, 2L, groupId);
+        LimiterKey idle = new LimiterKey(3L, 4L, groupId);
+        // 令牌桶未回满的客户端需要恢复,已回满的无需恢复
+        tokenBuckets.restore(active, window, new GcraTokenBucket(now + window));
+        tokenBuckets.restore(idle, window, new GcraTokenBucket(now - window));
+        slidingLogs.restore(active, window, new SlidingLogWindow(new long[] {now - 2 * window, now - 1000L}));
+        windowCounters.restore(active, 2 * window, new SlidingWindowCounter(now, 3, 5));
+        multiWindowCounters.restore(active, 2 * window, new MultiWindowCounter(new long[] {now, 0, 7, now - 4 * window, 0, 9}));
+        // 所有规则的计数均已失效
+        multiWindowCounters.restore(idle, 2 * window, new MultiWindowCounter(new long[] {now - 4 * window, 1, 1}));
+
+        Path file = Files.createTempDirectory("ip-limiter").resolve("state.bin");
+        Assertions.assertEquals(6, snapshot.save(file));
+        tokenBuckets.clear();
+        slidingLogs.clear();
+        windowCounters.clear();
+        multiWindowCounters.clear();
+        Assertions.assertEquals(4, snapshot.restore(file));
+
+        Assertions.assertNull(tokenBuckets.getIfPresent(idle));
+        long tat = tokenBuckets.getIfPresent(active).getTheoreticalArrivalTime();
+        // 墙上时间精度为毫秒
+        Assertions.assertTrue(Math.abs(tat - (now + window)) < TimeUnit.MILLISECONDS.toNanos(50));
+        Assertions.assertEquals(1, slidingLogs.getIfPresent(active).snapshot().length);
+        long[] counter = windowCounters.getIfPresent(active).snapshot();
+        Assertions.assertEquals(3, counter[1]);
+        Assertions.assertEquals(5, counter[2]);
+        long[] rules = multiWindowCounters.getIfPresent(active).snapshot();
+        Assertions.assertEquals(6, rules.length);
+        Assertions.assertEquals(7, rules[2]);
+        Assertions.assertNull(multiWindowCounters.getIfPresent(idle));
+        Files.delete(file);
+    }
+
+    @Test
+    void missingFileTest() throws Exception {
+        LimiterStateSnapshot snapshot = new LimiterStateSnapshot(new LimiterStateStore<>("tokenBucket", 10, 0L),
+                new LimiterStateStore<>("slidingLog", 10, 0L), new LimiterStateStore<>("windowCounter", 10, 0L),
+                new LimiterStateStore<>("multiWindow", 10, 0L), () -> null);
+        Assertions.assertEquals(0, snapshot.restore(Files.createTempDirectory("ip-limiter").resolve("missing.bin")));
+    }
+
+    @Test
+    void corruptedLengthTest() throws Exception {
+        LimiterStateStore<LimiterKey, SlidingLogWindow> slidingLogs = new LimiterStateStore<>("slidingLog", 10, 0L);
+        LimiterStateSnapshot snapshot = new LimiterStateSnapshot(new LimiterStateStore<>("tokenBucket", 10, 0L), slidingLogs,
+                new LimiterStateStore<>("windowCounter", 10, 0L), new LimiterStateStore<>("multiWindow", 10, 0L), () -> null);
+        int groupId = LimitGroups.idOf("snapshot-corrupted");
+        slidingLogs.restore(new LimiterKey(1L, 2L, groupId), TimeUnit.SECONDS.toNanos(60),
+                new SlidingLogWindow(new long[] {System.nanoTime()}));
+        Path file = Files.createTempDirectory("ip-limiter").resolve("state.bin");
+        snapshot.save(file);
+        byte[] content = Files.readAllBytes(file);
+        slidingLogs.clear();
+
+        // 时间戳数量被改写为 Integer.MAX_VALUE,位于记录末尾的 [数量 4][时间戳 8][结束标记 1] 之前
+        int countOffset = content.length - 1 - Long.BYTES - Integer.BYTES;
+        content[countOffset] = 0x7F;
+        Files.write(file, content);
+        Assertions.assertThrows(IOException.class, () -> snapshot.restore(file));
+        Assertions.assertEquals(0, slidingLogs.size());
+
+        // group 数被改写为 Integer.MAX_VALUE,位于 [魔数 4][版本 4][墙上时间 8] 之后
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+            out.write(content, 0, 16);
+            out.writeInt(Integer.MAX_VALUE);
+        }
+        Assertions.assertThrows(IOException.class, () -> snapshot.restore(file));
+        Files.delete(file);
+    }
+}
@@ -0,0 +1,115 @@
+package com.van.limiter.core.store;
+
+import com.van.limiter.core.limiter.SlidingLogWindow;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author van
+ */
+class LimiterStateStoreTest {
+
+    @Test
+    void frequentKeysSurviveOneShotFloodTest() {
+        LimiterStateStore<String, String> store = new LimiterStateStore<>("test", 10, TimeUnit.MINUTES.toNanos(10));
+        store.setMaintenanceExecutor(runnable -> { });
+        for (int i = 0; i < 5; i++) {
+            for (int times = 0; times < 3; times++) {
+                store.get("client-" + i, 0L, k -> k);
+            }
+        }
+        for (int i = 0; i < 1000; i++) {
+            store.get("scan-" + i, 0L, k -> k);
+            if (i % 50 == 0) {
+                // 真实客户端持续有请求
+                for (int client = 0; client < 5; client++) {
+                    store.get("client-" + client, 0L, k -> k);
+                    store.get("client-" + client, 0L, k -> k);
+                }
+                store.cleanUp();
+            }
+        }
+        store.cleanUp();
+
+        Assertions.assertTrue(store.size() <= 10);
+        Assertions.assertTrue(store.evictionCount() > 0);
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertNotNull(store.getIfPresent("client-" + i));
+        }
+    }
+
+    @Test
+    void idleEntriesExpireTest() {
+        LimiterStateStore<String, String> store = new LimiterStateStore<>("test", 10, 0L);
+        store.get("short", 0L, k -> k);
+        store.get("long", TimeUnit.MINUTES.toNanos(10), k -> k);
+        store.cleanUp();
+
+        Assertions.assertNull(store.getIfPresent("short"));
+        Assertions.assertNotNull(store.getIfPresent("long"));
+        Assertions.assertEquals(1, store.expirationCount());
+    }
+
+    @Test
+    void idleWindowsTrimmedTest() throws Exception {
+        long window = TimeUnit.MILLISECONDS.toNanos(5);
+        LimiterStateStore<String, SlidingLogWindow> store = new LimiterStateStore<>("test", 10, TimeUnit.MINUTES.toNanos(10),
+                TimeUnit.MILLISECONDS.toNanos(1));
+        store.setTrimmer(SlidingLogWindow::trim);
+        SlidingLogWindow window1 = store.get("idle", window, k -> new SlidingLogWindow(100));
+        for (int i = 0; i < 10; i++) {
+            window1.tryAcquire(System.nanoTime(), window, 100);
+        }
+        store.cleanUp();
+        TimeUnit.MILLISECONDS.sleep(20);
+        store.cleanUp();
+
+        // 空闲超过一个时间窗口后请求记录被释放,条目本身保留到空闲过期
+        Assertions.assertSame(window1, store.getIfPresent("idle"));
+        Assertions.assertEquals(0, window1.snapshot().length);
+        Assertions.assertTrue(window1.tryAcquire(System.nanoTime(), window, 100));
+    }
+
+    @Test
+    void hierarchicalTimingWheelTest() {
+        HierarchicalTimingWheel<Long> timingWheel = new HierarchicalTimingWheel<>(0L, 1L);
+        long[] deadlines = {0L, 5L, 63L, 64L, 100L, 4095L, 4096L, 300_000L, 17_000_000L};
+        for (long deadline : deadlines) {
+            timingWheel.schedule(deadline, deadline);
+        }
+        List<Long> expired = new ArrayList<>();
+        for (long now = 0; now <= 17_000_010L; now += 7) {
+            timingWheel.advance(now, expired::add);
+            for (Long deadline : expired) {
+                // 到期时间之后的一次推进内到期
+                Assertions.assertTrue(deadline <= now && now - deadline < 7 + 1, deadline + " at " + now);
+            }
+            expired.clear();
+        }
+        Assertions.assertEquals(0, timingWheel.size());
+    }
+
+    @Test
+    void probeKeyIsNotRetainedTest() {
+        LimiterStateStore<LimiterKey, String> store = new LimiterStateStore<>("test", 10, TimeUnit.MINUTES.toNanos(10));
+        LimiterKey probe = LimiterKey.probe(1L, 2L, 3);
+        Assertions.assertSame(probe, LimiterKey.probe(4L, 5L, 6));
+        Assertions.assertNull(store.touch(LimiterKey.probe(1L, 2L, 3), System.nanoTime()));
+        Assertions.assertEquals("first", store.get(LimiterKey.probe(1L, 2L, 3), 0L, k -> "first"));
+        // 复用的查找Key被改写后,已存储的条目不受影响
+        store.get(LimiterKey.probe(7L, 8L, 9), 0L, k -> "second");
+        Assertions.assertEquals("first", store.touch(LimiterKey.probe(1L, 2L, 3), System.nanoTime()));
+        Assertions.assertEquals("first", store.getIfPresent(new LimiterKey(1L, 2L, 3)));
+        Assertions.assertEquals("second", store.getIfPresent(new LimiterKey(7L, 8L, 9)));
+        List<LimiterKey> keys = new ArrayList<>();
+        store.forEach((key, value, minExpireNanos) -> keys.add(key));
+        Assertions.assertEquals(2, keys.size());
+        for (LimiterKey key : keys) {
+            Assertions.assertNotSame(probe, key);
+        }
+    }
+}
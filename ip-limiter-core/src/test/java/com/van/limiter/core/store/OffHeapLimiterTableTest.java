@@ -0,0 +1,85 @@
+package com.van.limiter.core.store;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author van
+ */
+class OffHeapLimiterTableTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void tokenBucketAndCounterTest() {
+        try (OffHeapLimiterTable table = new OffHeapLimiterTable(64, TimeUnit.MINUTES.toNanos(10))) {
+            long now = 0L;
+            // 每秒2个令牌,突发2个
+            Assertions.assertTrue(table.tryAcquireTokenBucket(0L, 1L, 0, now, SECOND / 2, SECOND));
+            Assertions.assertTrue(table.tryAcquireTokenBucket(0L, 1L, 0, now, SECOND / 2, SECOND));
+            Assertions.assertFalse(table.tryAcquireTokenBucket(0L, 1L, 0, now, SECOND / 2, SECOND));
+            // 不同 group 互不影响
+            Assertions.assertTrue(table.tryAcquireTokenBucket(0L, 1L, 1, now, SECOND / 2, SECOND));
+            Assertions.assertTrue(table.tryAcquireTokenBucket(0L, 1L, 0, now + SECOND / 2, SECOND / 2, SECOND));
+
+            for (int i = 0; i < 3; i++) {
+                Assertions.assertTrue(table.tryAcquireWindowCounter(0L, 2L, 0, now, SECOND, 3));
+            }
+            Assertions.assertFalse(table.tryAcquireWindowCounter(0L, 2L, 0, now, SECOND, 3));
+            Assertions.assertTrue(table.tryAcquireWindowCounter(0L, 2L, 0, now + 2 * SECOND, SECOND, 3));
+            Assertions.assertEquals(3, table.size());
+        }
+    }
+
+    @Test
+    void tokenBucketAndCounterShareKeyTest() {
+        try (OffHeapLimiterTable table = new OffHeapLimiterTable(64, TimeUnit.MINUTES.toNanos(10))) {
+            long now = SECOND * 100;
+            // 同一IP在同一 group 下同时访问令牌桶接口与计数器接口,两种状态分开保存
+            for (int i = 0; i < 3; i++) {
+                Assertions.assertTrue(table.tryAcquireTokenBucket(0L, 1L, 0, now, SECOND, 3 * SECOND));
+                Assertions.assertTrue(table.tryAcquireWindowCounter(0L, 1L, 0, now, SECOND, 3));
+            }
+            Assertions.assertFalse(table.tryAcquireTokenBucket(0L, 1L, 0, now, SECOND, 3 * SECOND));
+            Assertions.assertFalse(table.tryAcquireWindowCounter(0L, 1L, 0, now, SECOND, 3));
+            Assertions.assertEquals(2, table.size());
+
+            table.forEach((hi, lo, groupId, kind, expireAt, state0, state1, state2) -> {
+                if (kind == OffHeapLimiterTable.TOKEN_BUCKET) {
+                    Assertions.assertEquals(now + 3 * SECOND, state0);
+                } else {
+                    Assertions.assertEquals(OffHeapLimiterTable.WINDOW_COUNTER, kind);
+                    Assertions.assertEquals(now, state0);
+                    Assertions.assertEquals(3, state2);
+                }
+            });
+
+            table.remove(0L, 1L, 0, OffHeapLimiterTable.TOKEN_BUCKET);
+            Assertions.assertTrue(table.tryAcquireTokenBucket(0L, 1L, 0, now, SECOND, 3 * SECOND));
+            Assertions.assertFalse(table.tryAcquireWindowCounter(0L, 1L, 0, now, SECOND, 3));
+        }
+    }
+
+    @Test
+    void fullBucketReplacesColdEntriesTest() {
+        try (OffHeapLimiterTable table = new OffHeapLimiterTable(OffHeapLimiterTable.WAYS, TimeUnit.MINUTES.toNanos(10))) {
+            for (int i = 0; i < 3; i++) {
+                table.tryAcquireTokenBucket(0L, 0L, 0, 0L, 1L, SECOND);
+            }
+            for (long ip = 1; ip < 100; ip++) {
+                table.tryAcquireTokenBucket(0L, ip, 0, 0L, 1L, SECOND);
+                // 真实客户端持续有请求
+                table.tryAcquireTokenBucket(0L, 0L, 0, 0L, 1L, SECOND);
+            }
+            Assertions.assertEquals(OffHeapLimiterTable.WAYS, table.capacity());
+            Assertions.assertEquals(OffHeapLimiterTable.WAYS, table.size());
+            Assertions.assertTrue(table.evictionCount() > 0);
+            long evicted = table.evictionCount();
+            // 热点Key仍在表中,再次访问不会触发替换
+            table.tryAcquireTokenBucket(0L, 0L, 0, 0L, 1L, SECOND);
+            Assertions.assertEquals(evicted, table.evictionCount());
+        }
+    }
+}
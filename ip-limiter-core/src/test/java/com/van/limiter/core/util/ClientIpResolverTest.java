@@ -0,0 +1,50 @@
+package com.van.limiter.core.util;
+
+import com.van.limiter.core.matcher.IpListMatcher;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * @author van
+ */
+class ClientIpResolverTest {
+
+    private final ClientIpResolver resolver = new ClientIpResolver(
+            IpListMatcher.compile(Arrays.asList("10.0.0.0/8", "fd00::/8")), "X-Forwarded-For");
+
+    private final IpKey proxy = IpKey.of("10.0.0.1");
+
+    @Test
+    void skipTrustedHopsFromRightTest() {
+        Assertions.assertEquals(IpKey.of("203.0.113.7"),
+                resolver.resolveForwarded("6.6.6.6, 203.0.113.7, 10.1.1.1", proxy));
+        Assertions.assertEquals(IpKey.of("2001:db8::1"),
+                resolver.resolveForwarded("2001:db8::1,fd00::2", proxy));
+        Assertions.assertEquals("203.0.113.7", resolver.resolveForwarded(" 203.0.113.7 ", proxy).toString());
+    }
+
+    @Test
+    void fallbackTest() {
+        Assertions.assertEquals(proxy, resolver.resolveForwarded(null, proxy));
+        // 全部为可信代理时取最左侧地址
+        Assertions.assertEquals(IpKey.of("10.3.3.3"), resolver.resolveForwarded("10.3.3.3,10.2.2.2", proxy));
+        // 伪造的非法地址不会被当作客户端
+        Assertions.assertEquals(IpKey.of("10.2.2.2"), resolver.resolveForwarded("unknown,10.2.2.2", proxy));
+    }
+
+    @Test
+    void repeatedClientReusesParsedKeyTest() {
+        ClientIpResolver legacy = new ClientIpResolver(null, "X-Forwarded-For");
+        IpKey remote = IpKey.of("10.0.0.1");
+        IpKey first = legacy.resolve(Collections.singletonMap("X-Forwarded-For", "203.0.113.7, 10.1.1.1")::get, remote);
+        IpKey second = legacy.resolve(Collections.singletonMap("X-Forwarded-For", new String("203.0.113.7, 10.2.2.2"))::get, remote);
+        Assertions.assertEquals(IpKey.of("203.0.113.7"), first);
+        Assertions.assertSame(first, second);
+        IpKey other = legacy.resolve(Collections.singletonMap("X-Forwarded-For", "203.0.113.70")::get, remote);
+        Assertions.assertEquals("203.0.113.70", other.toString());
+        Assertions.assertEquals("unknown-host", legacy.resolve(Collections.singletonMap("X-Real-IP", "unknown-host")::get, remote).toString());
+    }
+}
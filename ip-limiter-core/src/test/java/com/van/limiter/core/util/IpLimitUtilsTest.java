@@ -0,0 +1,168 @@
+package com.van.limiter.core.util;
+
+import com.van.limiter.core.annotation.IpLimit;
+import com.van.limiter.core.constant.IpLimitConstant;
+import com.van.limiter.core.matcher.CompiledIpLists;
+import com.van.limiter.core.matcher.IpRangeFileConverter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author van
+ */
+class IpLimitUtilsTest {
+
+    /**
+     * 每次重建黑名单匹配器读取一次布隆过滤器配置,用于统计重建次数
+     */
+    static class CountingEnvironment extends StandardEnvironment {
+
+        final AtomicInteger blackListRebuilds = new AtomicInteger();
+
+        @Override
+        public <T> T getProperty(String key, Class<T> targetType, T defaultValue) {
+            if (IpLimitConstant.BLACK_LIST_BLOOM_FILTER_FPP_PROPERTY.equals(key)) {
+                blackListRebuilds.incrementAndGet();
+            }
+            return super.getProperty(key, targetType, defaultValue);
+        }
+    }
+
+    static class Endpoints {
+
+        @IpLimit(groupName = "utils-batch")
+        void batch() {
+        }
+
+        @IpLimit(groupName = "utils-replace")
+        void replace() {
+        }
+
+        @IpLimit(groupName = "utils-remove")
+        void remove() {
+        }
+
+        @IpLimit(groupName = "utils-file")
+        void file() {
+        }
+    }
+
+    private static IpLimit ipLimit(String methodName) throws NoSuchMethodException {
+        return Endpoints.class.getDeclaredMethod(methodName).getAnnotation(IpLimit.class);
+    }
+
+    private static AnnotationConfigApplicationContext context(CountingEnvironment environment) {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.setEnvironment(environment);
+        context.register(IpLimitUtils.class);
+        context.refresh();
+        return context;
+    }
+
+    @Test
+    void batchRebuildsMatcherOnceTest() throws Exception {
+        CountingEnvironment environment = new CountingEnvironment();
+        try (AnnotationConfigApplicationContext context = context(environment)) {
+            IpLimitUtils utils = context.getBean(IpLimitUtils.class);
+            CompiledIpLists lists = utils.compiledIpLists(ipLimit("batch"));
+            List<String> ips = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                ips.add("10.3.0." + i);
+            }
+            environment.blackListRebuilds.set(0);
+            List<String> added = utils.addAllBlackIpGroup("utils-batch", ips);
+            Assertions.assertEquals(1, environment.blackListRebuilds.get());
+            Assertions.assertEquals(ips, added);
+            Assertions.assertSame(added, utils.getBlackIpGroup("utils-batch"));
+            for (String ip : ips) {
+                Assertions.assertTrue(lists.inBlackList(IpKey.of(ip)));
+            }
+            Assertions.assertFalse(lists.inBlackList(IpKey.of("10.3.1.0")));
+            // 空批次不修改名单,也不重建
+            Assertions.assertSame(added, utils.addAllBlackIpGroup("utils-batch", Collections.emptyList()));
+            Assertions.assertEquals(1, environment.blackListRebuilds.get());
+            // 逐条新增时每条都会重建
+            utils.putBlackIpGroup("utils-batch", "10.3.1.0");
+            utils.putBlackIpGroup("utils-batch", "10.3.1.1");
+            Assertions.assertEquals(3, environment.blackListRebuilds.get());
+            Assertions.assertEquals(102, utils.getBlackIpGroup("utils-batch").size());
+            utils.removeBlackIpGroup("utils-batch");
+        }
+    }
+
+    @Test
+    void replaceReturnsPreviousSnapshotTest() throws Exception {
+        try (AnnotationConfigApplicationContext context = context(new CountingEnvironment())) {
+            IpLimitUtils utils = context.getBean(IpLimitUtils.class);
+            CompiledIpLists lists = utils.compiledIpLists(ipLimit("replace"));
+            Assertions.assertNull(utils.replaceWhiteIpGroup("utils-replace", Arrays.asList("10.4.0.1", "10.4.0.2")));
+            List<String> previous = utils.replaceWhiteIpGroup("utils-replace", Collections.singletonList("10.4.0.3"));
+            Assertions.assertEquals(Arrays.asList("10.4.0.1", "10.4.0.2"), previous);
+            Assertions.assertEquals(Collections.singletonList("10.4.0.3"), utils.getWhiteIpGroup("utils-replace"));
+            // 返回的旧快照不受之后修改的影响
+            utils.addAllWhiteIpGroup("utils-replace", Collections.singletonList("10.4.0.4"));
+            Assertions.assertEquals(2, previous.size());
+            Assertions.assertThrows(UnsupportedOperationException.class, () -> previous.add("10.4.0.5"));
+            Assertions.assertFalse(lists.inWhiteList(IpKey.of("10.4.0.1")));
+            Assertions.assertTrue(lists.inWhiteList(IpKey.of("10.4.0.3")));
+            Assertions.assertTrue(lists.inWhiteList(IpKey.of("10.4.0.4")));
+            utils.removeWhiteIpGroup("utils-replace");
+        }
+    }
+
+    @Test
+    void emptyReplaceRemovesGroupTest() throws Exception {
+        try (AnnotationConfigApplicationContext context = context(new CountingEnvironment())) {
+            IpLimitUtils utils = context.getBean(IpLimitUtils.class);
+            CompiledIpLists lists = utils.compiledIpLists(ipLimit("remove"));
+            utils.addAllBlackIpGroup("utils-remove", Arrays.asList("10.5.0.1", "10.5.0.0/24"));
+            Assertions.assertTrue(lists.inBlackList(IpKey.of("10.5.0.9")));
+            Assertions.assertEquals(Arrays.asList("10.5.0.1", "10.5.0.0/24"),
+                    utils.replaceBlackIpGroup("utils-remove", Collections.emptyList()));
+            Assertions.assertNull(utils.getBlackIpGroup("utils-remove"));
+            Assertions.assertFalse(lists.inBlackList(IpKey.of("10.5.0.9")));
+            // 不存在的 group 清空后仍不存在
+            Assertions.assertNull(utils.removeBlackIpGroup("utils-remove"));
+            Assertions.assertNull(utils.getBlackIpGroup("utils-remove"));
+        }
+    }
+
+    @Test
+    void boundFileReloadTest() throws Exception {
+        Path directory = Files.createTempDirectory("ip-range-bind");
+        Path text = directory.resolve("blocklist.txt");
+        Path binary = directory.resolve("blocklist.bin");
+        Files.write(text, Collections.singletonList("10.7.0.0/24"), StandardCharsets.UTF_8);
+        IpRangeFileConverter.convert(text, binary);
+        try (AnnotationConfigApplicationContext context = context(new CountingEnvironment())) {
+            IpLimitUtils utils = context.getBean(IpLimitUtils.class);
+            CompiledIpLists lists = utils.compiledIpLists(ipLimit("file"));
+            utils.bindBlackIpFile("utils-file", binary);
+            Assertions.assertTrue(lists.inBlackList(IpKey.of("10.7.0.1")));
+            Assertions.assertFalse(lists.inBlackList(IpKey.of("10.8.0.1")));
+            // 替换文件后由监听线程切换到新的映射
+            Files.write(text, Collections.singletonList("10.8.0.0/24"), StandardCharsets.UTF_8);
+            IpRangeFileConverter.convert(text, binary);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (!lists.inBlackList(IpKey.of("10.8.0.1")) && System.nanoTime() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+            Assertions.assertTrue(lists.inBlackList(IpKey.of("10.8.0.1")));
+            Assertions.assertFalse(lists.inBlackList(IpKey.of("10.7.0.1")));
+            Assertions.assertNotNull(utils.unbindBlackIpFile("utils-file"));
+            Assertions.assertFalse(lists.inBlackList(IpKey.of("10.8.0.1")));
+        }
+    }
+}
@@ -46,4 +46,31 @@ class IpUtilsTest {
         Assertions.assertFalse(IpUtils.ipFuzzyMatch(matchStr5, ip3));
         Assertions.assertFalse(IpUtils.ipFuzzyMatch(matchStr5, ip4));
     }
+
+    @Test
+    void cidrMatchTest() {
+        Assertions.assertTrue(IpUtils.ipFuzzyMatch("10.0.0.0/8", "10.20.30.40"));
+        Assertions.assertFalse(IpUtils.ipFuzzyMatch("10.0.0.0/8", "11.0.0.1"));
+        Assertions.assertTrue(IpUtils.ipFuzzyMatch("2001:db8::/32", "2001:db8:1::5"));
+        Assertions.assertFalse(IpUtils.ipFuzzyMatch("2001:db8::/32", "2001:db9::5"));
+        Assertions.assertTrue(IpUtils.ipFuzzyMatch("::ffff:10.0.0.0/104", "10.1.2.3"));
+        Assertions.assertFalse(IpUtils.ipFuzzyMatch("10.0.0.0/8", "::a00:1"));
+        Assertions.assertFalse(IpUtils.ipFuzzyMatch("10.0.0.0/33", "10.0.0.1"));
+        // IPV6 不同写法按地址比较
+        Assertions.assertTrue(IpUtils.ipFuzzyMatch("0:0:0:0:0:0:0:1", "::1"));
+    }
+
+    @Test
+    void toPrefixTest() {
+        IpKey ipv6 = IpKey.of("2001:db8:1:2:3:4:5:6");
+        Assertions.assertEquals(IpKey.of("2001:db8:1:2::"), ipv6.toPrefix(32, 64));
+        Assertions.assertEquals(IpKey.of("2001:db8:1:2:3:4:5:6"), ipv6.toPrefix(24, 128));
+        Assertions.assertEquals(IpKey.of("2001:db8::"), ipv6.toPrefix(32, 32));
+        Assertions.assertEquals(IpKey.of("2001:db8:1:2:3:4:4::"), ipv6.toPrefix(32, 110));
+
+        IpKey ipv4 = IpKey.of("172.16.50.21");
+        Assertions.assertEquals(IpKey.of("172.16.50.0"), ipv4.toPrefix(24, 64));
+        Assertions.assertEquals(IpKey.of("0.0.0.0"), ipv4.toPrefix(0, 64));
+        Assertions.assertSame(ipv4, ipv4.toPrefix(32, 64));
+    }
 }
@@ -0,0 +1,90 @@
+package com.van.limiter.micrometer;
+
+import com.van.limiter.core.aspect.RateLimitAspectConfig;
+import com.van.limiter.core.metrics.GroupMetrics;
+import com.van.limiter.core.metrics.IpLimitMetrics;
+import com.van.limiter.core.store.IpBanTable;
+import com.van.limiter.core.store.LimiterStateStore;
+import com.van.limiter.core.store.OffHeapLimiterTable;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 将 {@link IpLimitMetrics} 与限流状态存储注册到 Micrometer
+ * <ul>
+ *     <li>ip.limiter.decisions{group,decision}: 判定次数, decision 为 permitted / rejected / blocked</li>
+ *     <li>ip.limiter.decision.latency{group,quantile}: 最近一到两个统计窗口内采样得到的判定耗时分位值(纳秒), quantile 为 max 时为最大值</li>
+ *     <li>ip.limiter.store.size / evictions / expirations{store}: 限流状态存储的条目数与淘汰情况</li>
+ *     <li>ip.limiter.bans.active / ip.limiter.bans: 封禁中的 [IP,Group] 数与累计封禁次数</li>
+ * </ul>
+ * 限流组在首次出现时注册
+ * @author van
+ */
+public class IpLimitMeterBinder implements MeterBinder {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private static final String OFF_HEAP_STORE = "off-heap";
+
+    private final IpLimitMetrics ipLimitMetrics;
+
+    public IpLimitMeterBinder(IpLimitMetrics ipLimitMetrics) {
+        this.ipLimitMetrics = ipLimitMetrics;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        ipLimitMetrics.addGroupListener(groupMetrics -> bindGroup(registry, groupMetrics));
+        for (LimiterStateStore<?, ?> store : RateLimitAspectConfig.getLimiterStores()) {
+            Gauge.builder("ip.limiter.store.size", store, LimiterStateStore::size)
+                    .tag("store", store.getName()).register(registry);
+            FunctionCounter.builder("ip.limiter.store.evictions", store, LimiterStateStore::evictionCount)
+                    .tag("store", store.getName()).register(registry);
+            FunctionCounter.builder("ip.limiter.store.expirations", store, LimiterStateStore::expirationCount)
+                    .tag("store", store.getName()).register(registry);
+        }
+        // 堆外表可能在绑定之后才创建,每次读取时再获取
+        Gauge.builder("ip.limiter.store.size", this, offHeap(OffHeapLimiterTable::size))
+                .tag("store", OFF_HEAP_STORE).register(registry);
+        FunctionCounter.builder("ip.limiter.store.evictions", this, offHeap(OffHeapLimiterTable::evictionCount))
+                .tag("store", OFF_HEAP_STORE).register(registry);
+        FunctionCounter.builder("ip.limiter.store.expirations", this, offHeap(OffHeapLimiterTable::expirationCount))
+                .tag("store", OFF_HEAP_STORE).register(registry);
+        Gauge.builder("ip.limiter.bans.active", this, banTable(IpBanTable::activeCount)).register(registry);
+        FunctionCounter.builder("ip.limiter.bans", this, banTable(IpBanTable::banCount)).register(registry);
+    }
+
+    private void bindGroup(MeterRegistry registry, GroupMetrics groupMetrics) {
+        String group = groupMetrics.getGroupName();
+        FunctionCounter.builder("ip.limiter.decisions", groupMetrics, GroupMetrics::permittedCount)
+                .tag("group", group).tag("decision", "permitted").register(registry);
+        FunctionCounter.builder("ip.limiter.decisions", groupMetrics, GroupMetrics::rejectedCount)
+                .tag("group", group).tag("decision", "rejected").register(registry);
+        FunctionCounter.builder("ip.limiter.decisions", groupMetrics, GroupMetrics::blockedCount)
+                .tag("group", group).tag("decision", "blocked").register(registry);
+        for (double quantile : QUANTILES) {
+            Gauge.builder("ip.limiter.decision.latency", groupMetrics, g -> g.getLatency().percentile(quantile))
+                    .tag("group", group).tag("quantile", String.valueOf(quantile)).baseUnit("nanoseconds").register(registry);
+        }
+        Gauge.builder("ip.limiter.decision.latency", groupMetrics, g -> g.getLatency().max())
+                .tag("group", group).tag("quantile", "max").baseUnit("nanoseconds").register(registry);
+    }
+
+    private static ToDoubleFunction<IpLimitMeterBinder> banTable(ToDoubleFunction<IpBanTable> function) {
+        return binder -> {
+            IpBanTable banTable = RateLimitAspectConfig.getBanTable();
+            return banTable == null ? 0 : function.applyAsDouble(banTable);
+        };
+    }
+
+    private static ToDoubleFunction<IpLimitMeterBinder> offHeap(ToDoubleFunction<OffHeapLimiterTable> function) {
+        return binder -> {
+            OffHeapLimiterTable table = RateLimitAspectConfig.getOffHeapLimiterTable();
+            return table == null ? 0 : function.applyAsDouble(table);
+        };
+    }
+}
@@ -0,0 +1,16 @@
+package com.van.limiter.micrometer;
+
+import com.van.limiter.core.metrics.IpLimitMetrics;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * 与 {@link com.van.limiter.core.annotation.EnableIpLimit} 一起通过 @Import 引入,Spring Boot 会自动绑定到 MeterRegistry
+ * @author van
+ */
+public class IpLimitMicrometerConfig {
+
+    @Bean
+    public IpLimitMeterBinder ipLimitMeterBinder(IpLimitMetrics ipLimitMetrics) {
+        return new IpLimitMeterBinder(ipLimitMetrics);
+    }
+}
@@ -0,0 +1,50 @@
+package com.van.limiter.micrometer;
+
+import com.van.limiter.core.enums.LimitDecision;
+import com.van.limiter.core.metrics.GroupMetrics;
+import com.van.limiter.core.metrics.IpLimitMetrics;
+import com.van.limiter.core.policy.LimitGroups;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author van
+ */
+class IpLimitMeterBinderTest {
+
+    @Test
+    void bindTest() {
+        IpLimitMetrics ipLimitMetrics = new IpLimitMetrics(true, 1);
+        GroupMetrics existing = ipLimitMetrics.group(LimitGroups.idOf("binder-existing"));
+        existing.record(LimitDecision.PERMITTED);
+        existing.record(LimitDecision.REJECTED);
+        existing.getLatency().record(1_000);
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        new IpLimitMeterBinder(ipLimitMetrics).bindTo(registry);
+        // 绑定之后出现的限流组同样注册
+        GroupMetrics created = ipLimitMetrics.group(LimitGroups.idOf("binder-created"));
+        created.record(LimitDecision.BLOCKED);
+
+        Assertions.assertEquals(1, registry.get("ip.limiter.decisions").tag("group", "binder-existing")
+                .tag("decision", "permitted").functionCounter().count());
+        Assertions.assertEquals(1, registry.get("ip.limiter.decisions").tag("group", "binder-existing")
+                .tag("decision", "rejected").functionCounter().count());
+        Assertions.assertEquals(1, registry.get("ip.limiter.decisions").tag("group", "binder-created")
+                .tag("decision", "blocked").functionCounter().count());
+        Assertions.assertEquals(1_000, registry.get("ip.limiter.decision.latency").tag("group", "binder-existing")
+                .tag("quantile", "max").gauge().value());
+        double p99 = registry.get("ip.limiter.decision.latency").tag("group", "binder-existing")
+                .tag("quantile", "0.99").gauge().value();
+        Assertions.assertTrue(p99 > 0 && p99 <= 1_000, "p99=" + p99);
+        Assertions.assertEquals(0, registry.get("ip.limiter.bans.active").gauge().value());
+        Assertions.assertEquals(0, registry.get("ip.limiter.store.size").tag("store", "off-heap").gauge().value());
+
+        // 两次轮换后旧窗口的耗时不再计入
+        ipLimitMetrics.rotateLatency();
+        ipLimitMetrics.rotateLatency();
+        Assertions.assertEquals(0, registry.get("ip.limiter.decision.latency").tag("group", "binder-existing")
+                .tag("quantile", "max").gauge().value());
+    }
+}
@@ -0,0 +1,20 @@
+package com.van.limiter.webflux;
+
+import com.van.limiter.core.aspect.RateLimitAspectConfig;
+import org.springframework.context.annotation.Import;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * WebFlux 项目中用于自动注册,使用时将该注解添加到 application 类上即可
+ * 同时注册与 Servlet 模式相同的限流器、限流状态与名单配置,两种模式可以在同一个应用中共存
+ * @author van
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Import({RateLimitAspectConfig.class, ReactiveIpLimitConfig.class})
+public @interface EnableReactiveIpLimit {
+}
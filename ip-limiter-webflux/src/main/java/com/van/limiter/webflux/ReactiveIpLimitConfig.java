@@ -0,0 +1,15 @@
+package com.van.limiter.webflux;
+
+import org.springframework.context.annotation.Bean;
+
+/**
+ * WebFlux 限流配置,由 {@link EnableReactiveIpLimit} 引入
+ * @author van
+ */
+public class ReactiveIpLimitConfig {
+
+    @Bean
+    public ReactiveIpLimitFilter reactiveIpLimitFilter() {
+        return new ReactiveIpLimitFilter();
+    }
+}
@@ -0,0 +1,82 @@
+package com.van.limiter.webflux;
+
+import com.van.limiter.core.aspect.IpLimitEvaluator;
+import com.van.limiter.core.filter.IpLimitRoutes;
+import com.van.limiter.core.policy.IpLimitPolicy;
+import com.van.limiter.core.util.ClientIpResolver;
+import com.van.limiter.core.util.IpKey;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+
+/**
+ * WebFlux 下的限流过滤器,与 Servlet 模式共用同一份路由规则、限流策略、限流器及限流状态
+ * 判定过程只有 CAS 与极短的临界区,直接在事件循环线程中同步完成,不会阻塞或挂起线程
+ * 超限直接返回 429,名单拒绝直接返回 403
+ * @author van
+ */
+public class ReactiveIpLimitFilter implements WebFilter, SmartInitializingSingleton, Ordered {
+
+    @Autowired
+    private IpLimitEvaluator ipLimitEvaluator;
+
+    @Autowired
+    private ClientIpResolver clientIpResolver;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    private volatile IpLimitRoutes routes;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        routes = IpLimitRoutes.buildReactive(applicationContext, ipLimitEvaluator);
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        IpLimitRoutes currentRoutes = routes;
+        ServerHttpRequest request = exchange.getRequest();
+        IpLimitPolicy policy = currentRoutes == null ? null
+                : currentRoutes.match(request.getMethodValue(), request.getPath().pathWithinApplication().value());
+        if (policy == null) {
+            return chain.filter(exchange);
+        }
+        IpKey requestHost = clientIpResolver.resolve(request.getHeaders()::getFirst, remoteAddress(request));
+        long admitted = ipLimitEvaluator.admit(policy, requestHost);
+        if (admitted < 0) {
+            exchange.getResponse().setStatusCode(admitted == IpLimitEvaluator.BLOCKED ? HttpStatus.FORBIDDEN : HttpStatus.TOO_MANY_REQUESTS);
+            return exchange.getResponse().setComplete();
+        }
+        if (admitted == IpLimitEvaluator.LEASED) {
+            // 并发数限制: 响应完成、出错或取消时归还许可
+            return chain.filter(exchange).doFinally(signal -> ipLimitEvaluator.release(policy, requestHost));
+        }
+        return chain.filter(exchange);
+    }
+
+    private static IpKey remoteAddress(ServerHttpRequest request) {
+        InetSocketAddress remoteAddress = request.getRemoteAddress();
+        if (remoteAddress == null) {
+            return IpKey.of("");
+        }
+        if (remoteAddress.getAddress() != null) {
+            return IpKey.of(remoteAddress.getAddress());
+        }
+        return IpKey.of(remoteAddress.getHostString());
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+}
@@ -0,0 +1,130 @@
+package com.van.limiter.webflux;
+
+import com.van.limiter.core.annotation.IpLimit;
+import com.van.limiter.core.enums.CurrentLimiterType;
+import com.van.limiter.core.enums.LimitTimeType;
+import com.van.limiter.core.enums.LimitType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.reactive.config.EnableWebFlux;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+
+/**
+ * @author van
+ */
+class ReactiveIpLimitFilterTest {
+
+    @Configuration
+    @EnableWebFlux
+    @EnableReactiveIpLimit
+    @Import(ItemController.class)
+    static class TestConfig {
+    }
+
+    @RestController
+    @RequestMapping("/items")
+    public static class ItemController {
+
+        @IpLimit(groupName = "reactive-item", maxTimes = 1, limitTimeType = LimitTimeType.MINUTE)
+        @GetMapping("/{id}")
+        public Mono<String> get(@PathVariable String id) {
+            return Mono.just(id);
+        }
+
+        @GetMapping("/latest")
+        public Mono<String> latest() {
+            return Mono.just("latest");
+        }
+
+        @IpLimit(groupName = "reactive-black", limitType = LimitType.DEFAULT_WITH_BLACK_LIST, blackList = "10.8.0.66")
+        @GetMapping("/public")
+        public Mono<String> open() {
+            return Mono.just("public");
+        }
+
+        @IpLimit(groupName = "reactive-stream", currentLimiter = CurrentLimiterType.CONCURRENCY, maxTimes = 1)
+        @GetMapping("/stream")
+        public Mono<String> stream() {
+            return Mono.never();
+        }
+    }
+
+    private static WebTestClient.ResponseSpec get(WebTestClient client, String uri, String ip) {
+        return client.get().uri(uri).header("X-Forwarded-For", ip).exchange();
+    }
+
+    @Test
+    void tooManyRequestsTest() {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(TestConfig.class)) {
+            WebTestClient client = WebTestClient.bindToApplicationContext(context).build();
+            // 滑动窗口已有记录数超过 maxTimes 时才拒绝
+            get(client, "/items/1", "10.8.0.1").expectStatus().isOk().expectBody(String.class).isEqualTo("1");
+            get(client, "/items/1", "10.8.0.1").expectStatus().isOk();
+            get(client, "/items/1", "10.8.0.1").expectStatus().isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+            // 其他IP不受影响
+            get(client, "/items/1", "10.8.0.2").expectStatus().isOk();
+        }
+    }
+
+    @Test
+    void blackListForbiddenTest() {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(TestConfig.class)) {
+            WebTestClient client = WebTestClient.bindToApplicationContext(context).build();
+            get(client, "/items/public", "10.8.0.66").expectStatus().isForbidden();
+            get(client, "/items/public", "10.8.0.67").expectStatus().isOk();
+        }
+    }
+
+    @Test
+    void routesFollowWebFluxMatchingTest() {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(TestConfig.class)) {
+            WebTestClient client = WebTestClient.bindToApplicationContext(context).build();
+            // 未被限流的精确路径不会落到被限流的 /items/{id}
+            for (int i = 0; i < 3; i++) {
+                get(client, "/items/latest", "10.8.1.1").expectStatus().isOk().expectBody(String.class).isEqualTo("latest");
+                get(client, "/items/latest/", "10.8.1.1").expectStatus().isOk().expectBody(String.class).isEqualTo("latest");
+            }
+            // WebFlux 不做后缀匹配, latest.json 由 /items/{id} 处理,因此同样被限流
+            for (int i = 0; i < 2; i++) {
+                get(client, "/items/latest.json", "10.8.1.2").expectStatus().isOk().expectBody(String.class).isEqualTo("latest.json");
+            }
+            get(client, "/items/latest.json", "10.8.1.2").expectStatus().isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        }
+    }
+
+    @Test
+    void concurrencyReleasedOnCancelTest() {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(TestConfig.class)) {
+            ReactiveIpLimitFilter filter = context.getBean(ReactiveIpLimitFilter.class);
+            Disposable first = filter.filter(exchange("/items/stream"), exchange -> Mono.never()).subscribe();
+            // 第一个请求仍在处理中
+            MockServerWebExchange rejected = exchange("/items/stream");
+            filter.filter(rejected, exchange -> Mono.never()).subscribe();
+            Assertions.assertEquals(HttpStatus.TOO_MANY_REQUESTS, rejected.getResponse().getStatusCode());
+            // 客户端断开后归还许可
+            first.dispose();
+            MockServerWebExchange admitted = exchange("/items/stream");
+            filter.filter(admitted, exchange -> Mono.empty()).block();
+            Assertions.assertNull(admitted.getResponse().getStatusCode());
+        }
+    }
+
+    private static MockServerWebExchange exchange(String uri) {
+        return MockServerWebExchange.from(MockServerHttpRequest.get(uri)
+                .remoteAddress(new InetSocketAddress("10.8.2.1", 40000)));
+    }
+}